@@ -1,6 +1,10 @@
 package org.ruoyi.controller;
 
+import cn.dev33.satoken.annotation.SaCheckRole;
+import cn.dev33.satoken.annotation.SaMode;
 import cn.dev33.satoken.stp.StpUtil;
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.NumberUtil;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
@@ -9,7 +13,9 @@ import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.ruoyi.common.chat.domain.request.ChatRequest;
 import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.core.constant.TenantConstants;
 import org.ruoyi.common.core.domain.R;
+import org.ruoyi.common.core.exception.ServiceException;
 import org.ruoyi.common.core.validate.AddGroup;
 import org.ruoyi.common.excel.utils.ExcelUtil;
 import org.ruoyi.common.log.annotation.Log;
@@ -25,14 +31,18 @@ import org.ruoyi.knowledge.domain.bo.KnowledgeInfoBo;
 import org.ruoyi.knowledge.domain.req.KnowledgeInfoUploadRequest;
 import org.ruoyi.knowledge.domain.vo.KnowledgeAttachVo;
 import org.ruoyi.knowledge.domain.vo.KnowledgeFragmentVo;
+import org.ruoyi.knowledge.domain.vo.KnowledgeImportProgressVo;
 import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
 import org.ruoyi.knowledge.service.EmbeddingService;
 import org.ruoyi.knowledge.service.IKnowledgeAttachService;
 import org.ruoyi.knowledge.service.IKnowledgeFragmentService;
 import org.ruoyi.knowledge.service.IKnowledgeInfoService;
+import org.ruoyi.knowledge.service.KnowledgeImportService;
+import org.ruoyi.knowledge.service.KnowledgeSearchService;
 import org.ruoyi.system.service.ISseService;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
@@ -62,6 +72,10 @@ public class KnowledgeController extends BaseController {
 
     private final ISseService sseService;
 
+    private final KnowledgeSearchService knowledgeSearchService;
+
+    private final KnowledgeImportService knowledgeImportService;
+
     /**
      * 知识库对话
      */
@@ -72,8 +86,13 @@ public class KnowledgeController extends BaseController {
         Message message = messages.get(messages.size() - 1);
         StringBuilder sb = new StringBuilder(message.getContent().toString());
         List<String> nearestList;
-        List<Double> queryVector = embeddingService.getQueryVector(message.getContent().toString(), chatRequest.getKid());
-        nearestList = vectorStore.nearest(queryVector, chatRequest.getKid());
+        if (CollUtil.isNotEmpty(chatRequest.getKids())) {
+            // 多知识库并行检索
+            nearestList = knowledgeSearchService.nearest(message.getContent().toString(), chatRequest.getKids());
+        } else {
+            List<Double> queryVector = embeddingService.getQueryVector(message.getContent().toString(), chatRequest.getKid());
+            nearestList = vectorStore.nearest(queryVector, chatRequest.getKid());
+        }
         for (String prompt : nearestList) {
             sb.append("\n####").append(prompt);
         }
@@ -150,6 +169,57 @@ public class KnowledgeController extends BaseController {
         return R.ok("上传知识库附件成功!");
     }
 
+    /**
+     * 重新上传知识库附件(增量更新片段)
+     */
+    @PostMapping(value = "/attach/reupload")
+    public R<String> reUpload(KnowledgeInfoUploadRequest request){
+        checkKnowledge(request.getKid());
+        knowledgeInfoService.reUpload(request);
+        return R.ok("更新知识库附件成功!");
+    }
+
+    /**
+     * 批量导入压缩包(zip/tar/tar.gz)
+     */
+    @PostMapping(value = "/import/archive")
+    public R<String> importArchive(@RequestParam String kid, @RequestParam MultipartFile file){
+        checkKnowledge(kid);
+        return R.ok("导入任务已提交", knowledgeImportService.importArchive(kid, file));
+    }
+
+    /**
+     * 批量导入服务器目录, 仅管理员可用
+     */
+    @SaCheckRole(value = {TenantConstants.SUPER_ADMIN_ROLE_KEY, TenantConstants.TENANT_ADMIN_ROLE_KEY}, mode = SaMode.OR)
+    @PostMapping(value = "/import/folder")
+    public R<String> importFolder(@RequestParam String kid, @RequestParam String path){
+        checkKnowledge(kid);
+        return R.ok("导入任务已提交", knowledgeImportService.importFolder(kid, path));
+    }
+
+    /**
+     * 批量导入服务器上的本地 git 仓库, 仅管理员可用
+     */
+    @SaCheckRole(value = {TenantConstants.SUPER_ADMIN_ROLE_KEY, TenantConstants.TENANT_ADMIN_ROLE_KEY}, mode = SaMode.OR)
+    @PostMapping(value = "/import/repository")
+    public R<String> importRepository(@RequestParam String kid, @RequestParam String path){
+        checkKnowledge(kid);
+        return R.ok("导入任务已提交", knowledgeImportService.importRepository(kid, path));
+    }
+
+    /**
+     * 查询当前用户的批量导入进度
+     */
+    @GetMapping("/import/progress/{taskId}")
+    public R<KnowledgeImportProgressVo> importProgress(@PathVariable String taskId){
+        KnowledgeImportProgressVo progress = knowledgeImportService.getProgress(taskId);
+        if (progress == null) {
+            return R.fail("导入任务不存在");
+        }
+        return R.ok(progress);
+    }
+
     /**
      * 获取知识库附件详细信息
      *
@@ -181,4 +251,17 @@ public class KnowledgeController extends BaseController {
         return fragmentService.queryPageList(bo, pageQuery);
     }
 
+    /**
+     * 校验知识库存在且属于当前用户
+     *
+     * @param kid 知识库ID
+     */
+    private void checkKnowledge(String kid) {
+        KnowledgeInfoVo knowledgeInfoVo = NumberUtil.isLong(kid) ? knowledgeInfoService.queryById(Long.valueOf(kid)) : null;
+        if (knowledgeInfoVo == null) {
+            throw new ServiceException("知识库不存在");
+        }
+        knowledgeInfoService.check(List.of(knowledgeInfoVo));
+    }
+
 }
@@ -0,0 +1,257 @@
+package org.ruoyi.common.chat.cache;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.chat.entity.chat.ChatCompletion;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
+import org.ruoyi.common.chat.openai.OpenAiStreamClient;
+import org.ruoyi.common.chat.sse.ChatStreamManager;
+import org.ruoyi.common.chat.sse.ChatStreamManager.ChatStream;
+import org.ruoyi.common.chat.sse.StreamFrames;
+import org.ruoyi.common.chat.utils.TikTokensUtil;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.json.utils.JsonUtils;
+import org.ruoyi.common.redis.utils.RedisUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 对话结果缓存
+ * temperature 为 0 的请求输出基本确定, 同一服务(apiHost, apiKey)上相同的 (模型, 完整消息列表, 影响输出的参数)
+ * 直接返回缓存的回复, 不再请求模型. 不同服务的同名模型可能是不同的模型, 不共用缓存.
+ * 缓存通过 chat/completionCache 开启, 保存在 Redis 中所有节点共享, 过期时间由 chat/completionCacheMinutes 配置.
+ * 流式对话命中缓存时按模型输出的格式分段推送, 前端无需区分. 按调用方统计命中率和节省的 token, 发布为 Micrometer 指标
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CompletionCache {
+
+    private static final String KEY_PREFIX = "chat:completion:";
+
+    /**
+     * 默认缓存时间(分钟)
+     */
+    private static final long DEFAULT_TTL_MINUTES = 1440;
+
+    /**
+     * 回放时每段的字符数范围
+     */
+    private static final int MIN_CHUNK_CHARS = 1;
+
+    private static final int MAX_CHUNK_CHARS = 6;
+
+    /**
+     * 回放时相邻两段的间隔
+     */
+    private static final long CHUNK_INTERVAL_MILLIS = 10;
+
+    private final ConfigService configService;
+
+    private final ChatStreamManager chatStreamManager;
+
+    /**
+     * 计算请求的缓存key
+     *
+     * @param client     发送请求的客户端
+     * @param completion 对话请求
+     * @return 缓存未开启或请求输出不确定时返回 null
+     */
+    public String getKey(OpenAiStreamClient client, ChatCompletion completion) {
+        return isEnabled() ? digest(client, completion) : null;
+    }
+
+    /**
+     * 计算请求的摘要, 输出相同的请求摘要相同, 也用于合并同时进行的相同请求
+     *
+     * @param client     发送请求的客户端, 服务地址和 key 参与计算
+     * @param completion 对话请求
+     * @return 请求输出不确定时返回 null
+     */
+    public String digest(OpenAiStreamClient client, ChatCompletion completion) {
+        if (!isDeterministic(completion)) {
+            return null;
+        }
+        // stream 只影响返回方式, 不影响内容, 不参与计算
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("apiHost", client.getApiHost());
+        params.put("apiKey", keyDigest(client.getApiKey()));
+        params.put("model", completion.getModel());
+        params.put("messages", completion.getMessages());
+        params.put("topP", completion.getTopP());
+        params.put("maxTokens", completion.getMaxTokens());
+        params.put("stop", completion.getStop());
+        params.put("presencePenalty", completion.getPresencePenalty());
+        params.put("frequencyPenalty", completion.getFrequencyPenalty());
+        params.put("logitBias", completion.getLogitBias());
+        params.put("responseFormat", completion.getResponseFormat());
+        params.put("seed", completion.getSeed());
+        return KEY_PREFIX + DigestUtil.sha256Hex(JsonUtils.toJsonString(params));
+    }
+
+    /**
+     * 获取缓存的回复
+     *
+     * @param caller 调用方, 用于统计
+     * @param key    缓存key, 为空时不查询也不统计
+     * @return 缓存的回复, 未命中时为 null
+     */
+    public String get(String caller, String key) {
+        if (key == null) {
+            return null;
+        }
+        String callerTag = ChatMetrics.tagValue(caller);
+        CachedCompletion cached;
+        try {
+            cached = RedisUtils.getCacheObject(key);
+        } catch (Exception e) {
+            log.warn("读取对话缓存失败: {}", e.getMessage());
+            cached = null;
+        }
+        if (cached == null) {
+            ChatMetrics.counter(ChatMetrics.COMPLETION_CACHE_REQUESTS, "caller", callerTag, "result", "miss").increment();
+            return null;
+        }
+        ChatMetrics.counter(ChatMetrics.COMPLETION_CACHE_REQUESTS, "caller", callerTag, "result", "hit").increment();
+        ChatMetrics.counter(ChatMetrics.COMPLETION_CACHE_SAVED_TOKENS, "caller", callerTag).increment(cached.getTokens());
+        return cached.getContent();
+    }
+
+    /**
+     * 缓存回复
+     *
+     * @param key        缓存key, 为空时不缓存
+     * @param completion 对话请求
+     * @param content    完整回复
+     */
+    public void put(String key, ChatCompletion completion, String content) {
+        if (key == null || StringUtils.isBlank(content)) {
+            return;
+        }
+        CachedCompletion cached = new CachedCompletion();
+        cached.setContent(content);
+        cached.setTokens(TikTokensUtil.estimateTokens(completion.getMessages()) + TikTokensUtil.estimateTokens(content));
+        try {
+            RedisUtils.setCacheObject(key, cached, Duration.ofMinutes(getTtlMinutes()));
+        } catch (Exception e) {
+            log.warn("写入对话缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 以流式对话的格式推送缓存的回复, 分段长度和间隔接近模型输出, 推送完成后关闭连接
+     *
+     * @param stream     对话句柄
+     * @param emitter    SseEmitter
+     * @param model      模型名称
+     * @param content    缓存的回复
+     * @param onComplete 推送完成后执行(如计费)
+     */
+    public void replay(ChatStream stream, SseEmitter emitter, String model, String content, Runnable onComplete) {
+        chatStreamManager.execute(stream, () -> {
+            String id = "chatcmpl-" + IdUtil.fastSimpleUUID();
+            long created = System.currentTimeMillis() / 1000;
+            try {
+                int start = 0;
+                while (start < content.length() && !stream.isClosed()) {
+                    int end = Math.min(content.length(),
+                        start + ThreadLocalRandom.current().nextInt(MIN_CHUNK_CHARS, MAX_CHUNK_CHARS + 1));
+                    // 不拆开代理对
+                    if (end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) {
+                        end++;
+                    }
+                    emitter.send(chunk(id, created, model, content.substring(start, end), null));
+                    start = end;
+                    Thread.sleep(CHUNK_INTERVAL_MILLIS);
+                }
+                emitter.send(chunk(id, created, model, null, "stop"));
+                StreamFrames.done(emitter);
+                onComplete.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.warn("推送缓存的回复失败: {}", e.getMessage());
+                emitter.complete();
+            }
+        });
+    }
+
+    private boolean isEnabled() {
+        return Boolean.parseBoolean(configService.getConfigValue("chat", "completionCache"));
+    }
+
+    private long getTtlMinutes() {
+        String value = configService.getConfigValue("chat", "completionCacheMinutes");
+        return StringUtils.isBlank(value) ? DEFAULT_TTL_MINUTES : Long.parseLong(value.trim());
+    }
+
+    /**
+     * temperature 为 0、只要一个结果且不调用工具的请求才缓存
+     */
+    private static boolean isDeterministic(ChatCompletion completion) {
+        return completion.getTemperature() == 0
+            && (completion.getN() == null || completion.getN() == 1)
+            && CollUtil.isEmpty(completion.getFunctions())
+            && CollUtil.isEmpty(completion.getTools());
+    }
+
+    /**
+     * key 只以摘要参与计算, 多个 key 轮询时与顺序无关
+     */
+    private static String keyDigest(List<String> apiKeys) {
+        if (CollUtil.isEmpty(apiKeys)) {
+            return null;
+        }
+        List<String> sorted = new ArrayList<>(apiKeys);
+        Collections.sort(sorted);
+        return DigestUtil.sha256Hex(String.join("\n", sorted));
+    }
+
+    private static String chunk(String id, long created, String model, String content, String finishReason) {
+        Map<String, Object> delta = new LinkedHashMap<>();
+        if (content != null) {
+            delta.put("content", content);
+        }
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", created);
+        chunk.put("model", model);
+        chunk.put("choices", List.of(choice));
+        return JsonUtils.toJsonString(chunk);
+    }
+
+    /**
+     * 缓存的回复
+     */
+    @Data
+    public static class CachedCompletion implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private String content;
+
+        /**
+         * 提问和回复的 token 数
+         */
+        private long tokens;
+    }
+}
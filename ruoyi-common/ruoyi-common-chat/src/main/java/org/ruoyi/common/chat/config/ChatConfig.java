@@ -1,17 +1,18 @@
 package org.ruoyi.common.chat.config;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.core.util.StrUtil;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import okhttp3.OkHttpClient;
-import okhttp3.logging.HttpLoggingInterceptor;
 import org.ruoyi.common.chat.openai.OpenAiStreamClient;
-import org.ruoyi.common.chat.openai.function.KeyRandomStrategy;
-import org.ruoyi.common.chat.openai.interceptor.OpenAILogger;
+import org.ruoyi.common.chat.openai.function.KeyHealthStrategy;
 import org.ruoyi.common.core.service.ConfigService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -28,6 +29,30 @@ public class ChatConfig {
 
     private final ConfigService configService;
 
+    private final OkHttpClientRegistry okHttpClientRegistry;
+
+    /**
+     * 客户端缓存的最大数量, 超出时淘汰最久未使用的客户端
+     */
+    private static final int CLIENT_POOL_CAPACITY = 256;
+
+    /**
+     * 客户端缓存的空闲过期时间
+     */
+    private static final long CLIENT_POOL_IDLE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * 按 (apiHost, apiKey) 缓存的客户端, 创建后不再修改, 可被并发请求共享.
+     * key 可由用户配置, 数量不受控, 因此限制容量并在空闲后过期; 客户端共享注册表中的长连接, 淘汰时无需关闭
+     */
+    private final LRUCache<ClientKey, OpenAiStreamClient> clientPool =
+        CacheUtil.newLRUCache(CLIENT_POOL_CAPACITY, CLIENT_POOL_IDLE_MILLIS);
+
+    /**
+     * 所有客户端共享的 key 选择策略, 同一个 key 在不同客户端中的调用结果合并统计
+     */
+    private final KeyHealthStrategy keyStrategy = new KeyHealthStrategy();
+
     // 重启才会生效
     @Bean
     public OpenAiStreamClient openAiStreamClient() {
@@ -37,20 +62,34 @@ public class ChatConfig {
         return openAiStreamClient;
     }
 
+    /**
+     * 获取模型对应的客户端
+     * 调用方应把返回值作为局部变量使用, 不要写入单例的成员变量, 否则并发请求会互相覆盖
+     */
+    public OpenAiStreamClient getOpenAiStreamClient(String apiHost, String apiKey) {
+        return clientPool.get(new ClientKey(apiHost, apiKey), true,
+            () -> createOpenAiStreamClient(apiHost, apiKey));
+    }
+
     public OpenAiStreamClient createOpenAiStreamClient(String apiHost, String apiKey) {
-        HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor(new OpenAILogger());
-        httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.HEADERS);
-        OkHttpClient okHttpClient = new OkHttpClient.Builder()
-            .addInterceptor(httpLoggingInterceptor)
-            .connectTimeout(30, TimeUnit.SECONDS)
-            .writeTimeout(600, TimeUnit.SECONDS)
-            .readTimeout(600, TimeUnit.SECONDS)
-            .build();
+        // 同一 host 复用注册表中的长连接客户端, api key 由鉴权拦截器按请求写入请求头
+        // 多个 key 用逗号分隔, 由 keyStrategy 按健康状况选择
         return OpenAiStreamClient.builder()
             .apiHost(apiHost)
-            .apiKey(Collections.singletonList(apiKey))
-            .keyStrategy(new KeyRandomStrategy())
-            .okHttpClient(okHttpClient)
+            .apiKey(splitApiKeys(apiKey))
+            .keyStrategy(keyStrategy)
+            .okHttpClient(okHttpClientRegistry.getClient(apiHost, OkHttpClientRegistry.TimeoutProfile.STREAM))
             .build();
     }
+
+    /**
+     * 拆分逗号分隔的多个 key, 未配置时保持原样, 由请求时报错
+     */
+    private static List<String> splitApiKeys(String apiKey) {
+        List<String> apiKeys = StrUtil.splitTrim(apiKey, ',');
+        return apiKeys.isEmpty() ? Collections.singletonList(apiKey) : apiKeys;
+    }
+
+    private record ClientKey(String apiHost, String apiKey) {
+    }
 }
@@ -0,0 +1,140 @@
+package org.ruoyi.common.chat.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.logging.HttpLoggingInterceptor;
+import org.apache.commons.lang3.StringUtils;
+import org.ruoyi.common.chat.openai.interceptor.OpenAILogger;
+import org.ruoyi.common.core.service.ConfigService;
+import org.springframework.stereotype.Component;
+
+import java.net.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OkHttpClient 注册表
+ * 按 (host, 代理, 超时配置) 缓存长期存活的 OkHttpClient, 所有客户端共享同一个连接池和调度器,
+ * 同一服务商的请求复用 TLS 连接(HTTP/2 下多路复用), 不再每次请求重新握手.
+ * 客户端本身不带鉴权信息, api key 由 OpenAiStreamClient 的鉴权拦截器按请求写入请求头
+ *
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OkHttpClientRegistry {
+
+    /**
+     * 超时配置
+     */
+    @Getter
+    public enum TimeoutProfile {
+
+        /**
+         * 流式对话: 长连接持续输出
+         */
+        STREAM(30, 600, 600),
+
+        /**
+         * 普通请求
+         */
+        DEFAULT(10, 50, 50);
+
+        private final long connectSeconds;
+        private final long readSeconds;
+        private final long writeSeconds;
+
+        TimeoutProfile(long connectSeconds, long readSeconds, long writeSeconds) {
+            this.connectSeconds = connectSeconds;
+            this.readSeconds = readSeconds;
+            this.writeSeconds = writeSeconds;
+        }
+    }
+
+    private final ConfigService configService;
+
+    private final Map<ClientKey, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * 共享连接池和调度器的根客户端
+     */
+    private OkHttpClient rootClient;
+
+    @PostConstruct
+    public void init() {
+        // 流式对话会长时间占用调度器的并发名额, 上限需要按同时在线的对话数设置
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(getIntConfig("maxRequests", 1024));
+        dispatcher.setMaxRequestsPerHost(getIntConfig("maxRequestsPerHost", 512));
+        ConnectionPool connectionPool = new ConnectionPool(
+            getIntConfig("maxIdleConnections", 32), getIntConfig("keepAliveMinutes", 5), TimeUnit.MINUTES);
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .dispatcher(dispatcher)
+            .connectionPool(connectionPool)
+            .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .retryOnConnectionFailure(true);
+        // 请求日志默认关闭, 需要排查问题时配置 chat/httpLog 为 HEADERS 或 BODY
+        String logLevel = configService.getConfigValue("chat", "httpLog");
+        if (StringUtils.isNotBlank(logLevel) && !HttpLoggingInterceptor.Level.NONE.name().equalsIgnoreCase(logLevel)) {
+            HttpLoggingInterceptor httpLoggingInterceptor = new HttpLoggingInterceptor(new OpenAILogger());
+            httpLoggingInterceptor.setLevel(HttpLoggingInterceptor.Level.valueOf(logLevel.trim().toUpperCase()));
+            builder.addInterceptor(httpLoggingInterceptor);
+        }
+        rootClient = builder.build();
+    }
+
+    /**
+     * 获取指定 host 的客户端(不使用代理)
+     */
+    public OkHttpClient getClient(String host, TimeoutProfile profile) {
+        return getClient(host, null, profile);
+    }
+
+    /**
+     * 获取指定 host、代理和超时配置的客户端
+     *
+     * @param host    服务地址
+     * @param proxy   代理, 为空时直连
+     * @param profile 超时配置
+     */
+    public OkHttpClient getClient(String host, Proxy proxy, TimeoutProfile profile) {
+        return clients.computeIfAbsent(new ClientKey(host, proxy, profile), key -> {
+            // newBuilder 创建的客户端与根客户端共享连接池和调度器
+            OkHttpClient.Builder builder = rootClient.newBuilder()
+                .connectTimeout(profile.getConnectSeconds(), TimeUnit.SECONDS)
+                .readTimeout(profile.getReadSeconds(), TimeUnit.SECONDS)
+                .writeTimeout(profile.getWriteSeconds(), TimeUnit.SECONDS);
+            if (proxy != null) {
+                builder.proxy(proxy);
+            }
+            log.info("创建 OkHttpClient: host={}, proxy={}, profile={}", host, proxy, profile);
+            return builder.build();
+        });
+    }
+
+    private int getIntConfig(String configKey, int defaultValue) {
+        String value = configService.getConfigValue("chat", configKey);
+        return StringUtils.isBlank(value) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (rootClient != null) {
+            rootClient.dispatcher().executorService().shutdown();
+            rootClient.connectionPool().evictAll();
+        }
+    }
+
+    private record ClientKey(String host, Proxy proxy, TimeoutProfile profile) {
+    }
+}
@@ -11,6 +11,16 @@ public interface WebSocketConstants {
      */
     String LOGIN_USER_KEY = "loginUser";
 
+    /**
+     * 已登录用户的会话同时以该前缀加用户ID保存, 用于按用户推送消息(如异步任务状态)
+     */
+    String USER_SESSION_KEY_PREFIX = "user:";
+
+    /**
+     * websocketSession中对话ID的key, 登录用户重连时在握手参数中带上原对话ID即可继续对话, 保存时加上用户ID前缀
+     */
+    String CONVERSATION_ID_KEY = "conversationId";
+
     /**
      * 订阅的频道
      */
@@ -2,6 +2,7 @@ package org.ruoyi.common.chat.domain.request;
 
 import org.ruoyi.common.chat.entity.chat.Message;
 import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 
 import java.util.List;
@@ -39,6 +40,12 @@ public class ChatRequest {
      */
     private String kid;
 
+    /**
+     * 多个知识库id(联合检索)
+     */
+    @Size(max = 10, message = "单次最多检索10个知识库")
+    private List<String> kids;
+
     private String userId;
 
     /**
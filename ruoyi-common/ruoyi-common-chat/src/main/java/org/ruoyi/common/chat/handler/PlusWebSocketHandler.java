@@ -1,24 +1,26 @@
 package org.ruoyi.common.chat.handler;
 
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
-import com.alibaba.fastjson2.JSONObject;
 import lombok.extern.slf4j.Slf4j;
-import org.ruoyi.common.chat.config.LocalCache;
+import org.ruoyi.common.core.domain.model.LoginUser;
 import org.ruoyi.common.chat.entity.chat.ChatCompletion;
 import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.holder.ConversationHolder;
 import org.ruoyi.common.chat.holder.WebSocketSessionHolder;
 import org.ruoyi.common.chat.listener.WebSocketEventListener;
 import org.ruoyi.common.chat.openai.OpenAiStreamClient;
 import org.ruoyi.common.chat.utils.WebSocketUtils;
+import org.ruoyi.common.core.service.ConfigService;
 import org.ruoyi.common.core.utils.SpringUtils;
-import org.springframework.beans.factory.annotation.Value;
+import org.ruoyi.common.core.utils.StringUtils;
 import org.springframework.web.socket.*;
 import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
-import java.util.ArrayList;
 import java.util.List;
 
+import static org.ruoyi.common.chat.constant.WebSocketConstants.CONVERSATION_ID_KEY;
+import static org.ruoyi.common.chat.constant.WebSocketConstants.LOGIN_USER_KEY;
+import static org.ruoyi.common.chat.constant.WebSocketConstants.USER_SESSION_KEY_PREFIX;
+
 /**
  * WebSocketHandler 实现类
  *
@@ -27,12 +29,25 @@ import java.util.List;
 @Slf4j
 public class PlusWebSocketHandler extends AbstractWebSocketHandler {
 
+    /**
+     * 默认对话模型
+     */
+    private static final String DEFAULT_MODEL = "gpt-4o-mini";
+
+    /**
+     * 默认上下文 token 预算
+     */
+    private static final int DEFAULT_CONTEXT_TOKENS = 4000;
+
     /**
      * 连接成功后
      */
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         WebSocketSessionHolder.addSession(session.getId(), session);
+        if (session.getAttributes().get(LOGIN_USER_KEY) instanceof LoginUser loginUser) {
+            WebSocketSessionHolder.addSession(USER_SESSION_KEY_PREFIX + loginUser.getUserId(), session);
+        }
     }
 
     /**
@@ -43,35 +58,28 @@ public class PlusWebSocketHandler extends AbstractWebSocketHandler {
      */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
-        WebSocketEventListener eventSourceListener = new WebSocketEventListener(session);
-        String messageContext = (String) LocalCache.CACHE.get(session.getId());
-        List<Message> messages = new ArrayList<>();
-        if (StrUtil.isNotBlank(messageContext)) {
-            messages = JSONUtil.toList(messageContext, Message.class);
-            // 上下文长度
-            int contextSize=10;
-            if (messages.size() >= contextSize) {
-                messages = messages.subList(1, contextSize);
-            }
-            Message currentMessage = Message.builder().content(message.getPayload()).role(Message.Role.USER).build();
-            messages.add(currentMessage);
-        } else {
-            Message currentMessage = Message.builder().content(message.getPayload()).role(Message.Role.USER).build();
-            messages.add(currentMessage);
-        }
+        String conversationId = getConversationId(session);
+        Message currentMessage = Message.builder().content(message.getPayload()).role(Message.Role.USER).build();
+        ConversationHolder.append(conversationId, currentMessage);
+
+        ConfigService configService = SpringUtils.getBean(ConfigService.class);
+        String model = StringUtils.blankToDefault(configService.getConfigValue("chat", "wsModel"), DEFAULT_MODEL);
+        String contextTokens = configService.getConfigValue("chat", "wsContextTokens");
+        int maxTokens = StringUtils.isBlank(contextTokens) ? DEFAULT_CONTEXT_TOKENS : Integer.parseInt(contextTokens.trim());
+        List<Message> messages = ConversationHolder.getContext(conversationId, model, maxTokens);
+
         ChatCompletion chatCompletion = ChatCompletion
             .builder()
-            .model("gpt-4o-mini")
+            .model(model)
             .messages(messages)
             .temperature(0.2)
             .stream(true)
             .build();
+        WebSocketEventListener eventSourceListener = new WebSocketEventListener(session, conversationId);
         OpenAiStreamClient openAiStreamClient=(OpenAiStreamClient) SpringUtils.context().getBean("openAiStreamClient");
         openAiStreamClient.streamChatCompletion(chatCompletion, eventSourceListener);
-        LocalCache.CACHE.put(session.getId(), JSONUtil.toJsonStr(messages), LocalCache.TIMEOUT);
     }
 
-
     @Override
     protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws Exception {
         super.handleBinaryMessage(session, message);
@@ -110,6 +118,21 @@ public class PlusWebSocketHandler extends AbstractWebSocketHandler {
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         WebSocketSessionHolder.removeSession(session.getId());
+        if (session.getAttributes().get(LOGIN_USER_KEY) instanceof LoginUser loginUser) {
+            WebSocketSessionHolder.removeSession(USER_SESSION_KEY_PREFIX + loginUser.getUserId(), session);
+        }
+        // 客户端未指定对话ID时对话无法恢复, 直接清理; 指定了的保留到过期, 供重连后继续
+        if (!session.getAttributes().containsKey(CONVERSATION_ID_KEY)) {
+            ConversationHolder.remove(session.getId());
+        }
+    }
+
+    /**
+     * 对话ID, 优先使用客户端握手时传入的ID, 否则使用会话ID
+     */
+    private String getConversationId(WebSocketSession session) {
+        Object conversationId = session.getAttributes().get(CONVERSATION_ID_KEY);
+        return conversationId != null ? conversationId.toString() : session.getId();
     }
 
     /**
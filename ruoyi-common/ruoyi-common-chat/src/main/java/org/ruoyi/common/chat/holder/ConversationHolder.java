@@ -0,0 +1,131 @@
+package org.ruoyi.common.chat.holder;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.redisson.api.RBatch;
+import org.redisson.api.RListAsync;
+import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.utils.TikTokensUtil;
+import org.ruoyi.common.redis.utils.RedisUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * WebSocket 对话上下文
+ * 每个对话的消息按顺序保存在 Redis 列表中, 任意节点都能读取, 重启或重连到其他节点后上下文不丢失.
+ * 列表只保留最近 {@link #MAX_MESSAGES} 条消息, 单条内容超过 {@link #MAX_CONTENT_LENGTH} 字符时截断,
+ * 对话空闲 {@link #TIMEOUT} 后自动过期. 发送给模型的上下文再按 token 预算从最新消息向前截取.
+ * 客户端指定的对话ID按用户隔离({@link #userConversationId(Long, String)}), 未指定时使用服务端生成的会话ID
+ *
+ * @date 2026/10/19
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class ConversationHolder {
+
+    private static final String KEY_PREFIX = "chat:conversation:";
+
+    /**
+     * 每个对话保留的最大消息数
+     */
+    public static final int MAX_MESSAGES = 50;
+
+    /**
+     * 单条消息保存的最大字符数
+     */
+    public static final int MAX_CONTENT_LENGTH = 8000;
+
+    /**
+     * 对话空闲过期时间
+     */
+    public static final Duration TIMEOUT = Duration.ofMinutes(30);
+
+    /**
+     * 每条消息固定开销的 token 数
+     */
+    private static final int TOKENS_PER_MESSAGE = 4;
+
+    /**
+     * 客户端指定的对话ID加上用户ID前缀, 不同用户使用相同的对话ID也不会读写到对方的对话
+     *
+     * @param userId         登录用户ID
+     * @param conversationId 客户端指定的对话ID
+     * @return 保存对话使用的ID
+     */
+    public static String userConversationId(Long userId, String conversationId) {
+        return userId + ":" + conversationId;
+    }
+
+    /**
+     * 追加一条消息, 超出条数上限的旧消息被裁剪, 同时刷新过期时间
+     *
+     * @param conversationId 对话ID
+     * @param message        消息
+     */
+    public static void append(String conversationId, Message message) {
+        if (message.getContent() instanceof String content && content.length() > MAX_CONTENT_LENGTH) {
+            message.setContent(content.substring(0, MAX_CONTENT_LENGTH));
+        }
+        // 追加、裁剪、续期合并为一次往返
+        RBatch batch = RedisUtils.getClient().createBatch();
+        RListAsync<Message> list = batch.getList(KEY_PREFIX + conversationId);
+        list.addAsync(message);
+        list.trimAsync(-MAX_MESSAGES, -1);
+        list.expireAsync(TIMEOUT);
+        batch.execute();
+    }
+
+    /**
+     * 获取发送给模型的上下文
+     * 从最新消息向前累计 token, 超出预算即停止, 最新一条消息无论长短都保留
+     *
+     * @param conversationId 对话ID
+     * @param modelName      模型名称, 用于计算 token
+     * @param maxTokens      上下文 token 预算
+     * @return 按时间正序排列的消息
+     */
+    public static List<Message> getContext(String conversationId, String modelName, int maxTokens) {
+        return truncate(getMessages(conversationId), modelName, maxTokens);
+    }
+
+    /**
+     * 按 token 预算从最新消息向前截取, 最新一条消息无论长短都保留
+     *
+     * @param messages  按时间正序排列的消息
+     * @param modelName 模型名称, 用于计算 token
+     * @param maxTokens 上下文 token 预算
+     * @return 按时间正序排列的消息
+     */
+    static List<Message> truncate(List<Message> messages, String modelName, int maxTokens) {
+        List<Message> context = new ArrayList<>();
+        int usedTokens = 0;
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Message message = messages.get(i);
+            int tokens = TOKENS_PER_MESSAGE + (message.getContent() instanceof String content
+                ? TikTokensUtil.tokens(modelName, content) : 0);
+            if (!context.isEmpty() && usedTokens + tokens > maxTokens) {
+                break;
+            }
+            usedTokens += tokens;
+            context.add(message);
+        }
+        Collections.reverse(context);
+        return context;
+    }
+
+    /**
+     * 获取对话中保存的全部消息
+     */
+    public static List<Message> getMessages(String conversationId) {
+        return RedisUtils.getCacheList(KEY_PREFIX + conversationId);
+    }
+
+    /**
+     * 删除对话
+     */
+    public static void remove(String conversationId) {
+        RedisUtils.deleteObject(KEY_PREFIX + conversationId);
+    }
+}
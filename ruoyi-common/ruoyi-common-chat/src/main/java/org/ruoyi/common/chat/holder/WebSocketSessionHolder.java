@@ -27,11 +27,18 @@ public class WebSocketSessionHolder {
         }
     }
 
-    public static WebSocketSession getSessions(Long sessionKey) {
+    /**
+     * 移除会话, 仅当该key当前对应的就是这个会话时移除(同一用户重新连接后旧会话关闭不影响新会话)
+     */
+    public static void removeSession(String sessionKey, WebSocketSession session) {
+        USER_SESSION_MAP.remove(sessionKey, session);
+    }
+
+    public static WebSocketSession getSessions(String sessionKey) {
         return USER_SESSION_MAP.get(sessionKey);
     }
 
-    public static Boolean existSession(Long sessionKey) {
+    public static Boolean existSession(String sessionKey) {
         return USER_SESSION_MAP.containsKey(sessionKey);
     }
 }
@@ -1,13 +1,22 @@
 package org.ruoyi.common.chat.interceptor;
 
+import cn.hutool.core.util.ReUtil;
 import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.chat.holder.ConversationHolder;
+import org.ruoyi.common.core.domain.model.LoginUser;
+import org.ruoyi.common.satoken.utils.LoginHelper;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.Map;
 
+import static org.ruoyi.common.chat.constant.WebSocketConstants.CONVERSATION_ID_KEY;
+import static org.ruoyi.common.chat.constant.WebSocketConstants.LOGIN_USER_KEY;
+
 /**
  * WebSocket握手请求的拦截器
  *
@@ -27,9 +36,38 @@ public class PlusWebSocketInterceptor implements HandshakeInterceptor {
      */
     @Override
     public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response, WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        // 握手时带了登录凭证的会话可以接收按用户推送的消息, 未登录也允许连接
+        LoginUser loginUser = getLoginUser();
+        if (loginUser != null) {
+            attributes.put(LOGIN_USER_KEY, loginUser);
+        }
+        // 对话ID作为 Redis key 的一部分, 只接受字母数字、下划线和短横线
+        String conversationId = UriComponentsBuilder.fromUri(request.getURI()).build()
+            .getQueryParams().getFirst(CONVERSATION_ID_KEY);
+        if (conversationId == null) {
+            return true;
+        }
+        // 未登录时无法确认对话归属, 不允许指定对话ID, 只能使用会话ID作为对话
+        if (loginUser == null || !ReUtil.isMatch("[\\w-]{1,64}", conversationId)) {
+            response.setStatusCode(loginUser == null ? HttpStatus.UNAUTHORIZED : HttpStatus.BAD_REQUEST);
+            return false;
+        }
+        attributes.put(CONVERSATION_ID_KEY, ConversationHolder.userConversationId(loginUser.getUserId(), conversationId));
         return true;
     }
 
+    /**
+     * 获取握手请求的登录用户, 未登录时返回 null
+     */
+    protected LoginUser getLoginUser() {
+        try {
+            return LoginHelper.getLoginUser();
+        } catch (Exception e) {
+            log.debug("WebSocket握手未登录: {}", e.getMessage());
+            return null;
+        }
+    }
+
 
     /**
      * 握手后
@@ -10,6 +10,7 @@ import okhttp3.sse.EventSourceListener;
 import org.ruoyi.common.chat.constant.OpenAIConst;
 import org.ruoyi.common.chat.entity.chat.ChatCompletionResponse;
 import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.holder.ConversationHolder;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
@@ -24,15 +25,25 @@ import java.util.Objects;
 @Slf4j
 public class WebSocketEventListener extends EventSourceListener {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private WebSocketSession session;
 
+    /**
+     * 对话ID, 回复结束后把完整回复追加到对话上下文
+     */
+    private final String conversationId;
+
+    private final StringBuilder reply = new StringBuilder();
+
     /**
      * 消息结束标识
      */
     private final String msgEnd = "[DONE]";
 
-    public WebSocketEventListener(WebSocketSession session) {
+    public WebSocketEventListener(WebSocketSession session, String conversationId) {
         this.session = session;
+        this.conversationId = conversationId;
     }
 
     /**
@@ -52,15 +63,22 @@ public class WebSocketEventListener extends EventSourceListener {
         log.info("OpenAI返回数据：{}", data);
         if (data.equals(msgEnd)) {
             log.info("OpenAI返回数据结束了");
+            if (reply.length() > 0) {
+                ConversationHolder.append(conversationId,
+                    Message.builder().content(reply.toString()).role(Message.Role.ASSISTANT).build());
+            }
             session.sendMessage(new TextMessage(msgEnd));
             return;
         }
-        ObjectMapper mapper = new ObjectMapper();
         // 读取Json
-        ChatCompletionResponse completionResponse = mapper.readValue(data, ChatCompletionResponse.class);
+        ChatCompletionResponse completionResponse = MAPPER.readValue(data, ChatCompletionResponse.class);
         String delta = "";
         try {
-            delta = mapper.writeValueAsString(completionResponse.getChoices().get(0).getDelta());
+            Message message = completionResponse.getChoices().get(0).getDelta();
+            if (message.getContent() instanceof String content) {
+                reply.append(content);
+            }
+            delta = MAPPER.writeValueAsString(message);
         }catch (Exception e){
             log.error("转换失败{}",e.getMessage());
         }   
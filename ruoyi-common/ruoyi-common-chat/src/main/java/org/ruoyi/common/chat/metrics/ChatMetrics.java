@@ -0,0 +1,242 @@
+package org.ruoyi.common.chat.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import okhttp3.HttpUrl;
+import okhttp3.sse.EventSourceListener;
+import org.ruoyi.common.core.utils.StringUtils;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 对话相关的监控指标
+ * 指标注册到 Micrometer 全局注册表, Spring Boot 的注册表(如 Prometheus)会自动加入全局注册表, 无需注入.
+ * 耗时指标发布百分位直方图, 由 Prometheus 按 histogram_quantile 计算 P50/P95/P99.
+ * 每个标签组合的直方图有几十个桶, 标签取值必须有限: model 只取已配置的模型名称(见 {@link #setModels}), 其余为 other;
+ * 知识库(kid)数量不受控, 按知识库统计的指标不发布直方图(见 {@link #simpleTimer}).
+ * 只在请求开始和结束时记录, 不在每个输出分片上操作指标
+ *
+ * @date 2026/10/19
+ */
+public final class ChatMetrics {
+
+    /**
+     * 流式对话首个分片的等待时间, 标签 model、provider
+     */
+    public static final String STREAM_FIRST_TOKEN = "chat.stream.first.token";
+
+    /**
+     * 流式对话总时长, 标签 model、provider、outcome
+     */
+    public static final String STREAM_DURATION = "chat.stream.duration";
+
+    /**
+     * 流式对话输出速度(分片/秒, 一个分片约为一个 token), 标签 model、provider
+     */
+    public static final String STREAM_TOKENS_PER_SECOND = "chat.stream.tokens.per.second";
+
+    /**
+     * 回复推送给客户端失败(客户端已断开)的次数, 标签 model
+     */
+    public static final String STREAM_CLIENT_ERRORS = "chat.stream.client.errors";
+
+    /**
+     * 非流式对话耗时, 标签 model、provider、outcome
+     */
+    public static final String COMPLETION_DURATION = "chat.completion.duration";
+
+    /**
+     * 模型服务请求次数, 标签 model、provider、type(stream、completion)、outcome, 按 outcome 计算错误率
+     */
+    public static final String PROVIDER_REQUESTS = "chat.provider.requests";
+
+    /**
+     * 向量化耗时, 标签 provider
+     */
+    public static final String EMBEDDING_DURATION = "knowledge.embedding.duration";
+
+    /**
+     * 按知识库统计的向量化耗时(次数、总耗时、最大值, 无直方图), 标签 provider、kid
+     */
+    public static final String EMBEDDING_KID_DURATION = "knowledge.embedding.kid.duration";
+
+    /**
+     * 每次向量化的文本条数, 标签 provider
+     */
+    public static final String EMBEDDING_BATCH_SIZE = "knowledge.embedding.batch.size";
+
+    /**
+     * 向量库操作耗时, 标签 backend、operation(search、store、remove)
+     */
+    public static final String VECTOR_DURATION = "knowledge.vector.duration";
+
+    /**
+     * 按知识库统计的向量库操作耗时(次数、总耗时、最大值, 无直方图), 标签 backend、operation、kid
+     */
+    public static final String VECTOR_KID_DURATION = "knowledge.vector.kid.duration";
+
+    /**
+     * 对话结果缓存查询次数, 标签 caller、result(hit、miss), 按 result 计算命中率
+     */
+    public static final String COMPLETION_CACHE_REQUESTS = "chat.completion.cache.requests";
+
+    /**
+     * 对话结果缓存命中节省的 token 数(提问和回复合计), 标签 caller
+     */
+    public static final String COMPLETION_CACHE_SAVED_TOKENS = "chat.completion.cache.saved.tokens";
+
+    /**
+     * 插件执行耗时, 标签 plugin、outcome(success、error)
+     */
+    public static final String PLUGIN_DURATION = "chat.plugin.duration";
+
+    /**
+     * 插件调用次数, 标签 plugin、outcome(success、error、timeout、rejected、cancelled)
+     */
+    public static final String PLUGIN_REQUESTS = "chat.plugin.requests";
+
+    public static final String SUCCESS = "success";
+
+    public static final String ERROR = "error";
+
+    /**
+     * 上游连接正常关闭但没有收到结束标记
+     */
+    public static final String INCOMPLETE = "incomplete";
+
+    /**
+     * 客户端断开等原因主动取消, 不计入模型服务错误
+     */
+    public static final String CANCELLED = "cancelled";
+
+    /**
+     * 超过等待时间
+     */
+    public static final String TIMEOUT = "timeout";
+
+    /**
+     * 线程池已满被拒绝执行
+     */
+    public static final String REJECTED = "rejected";
+
+    private static final String UNKNOWN = "unknown";
+
+    /**
+     * 未配置的模型
+     */
+    private static final String OTHER = "other";
+
+    private static final Map<String, String> PROVIDERS = new ConcurrentHashMap<>();
+
+    /**
+     * 已配置的模型名称
+     */
+    private static volatile Set<String> models = Set.of();
+
+    private ChatMetrics() {
+    }
+
+    /**
+     * 耗时指标, 发布百分位直方图
+     *
+     * @param name 指标名称
+     * @param tags 标签, 名称和值交替
+     */
+    public static Timer timer(String name, String... tags) {
+        return Timer.builder(name).tags(tags).publishPercentileHistogram().register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 耗时指标, 只记录次数、总耗时和最大值, 不发布直方图, 用于标签取值较多的指标
+     *
+     * @param name 指标名称
+     * @param tags 标签, 名称和值交替
+     */
+    public static Timer simpleTimer(String name, String... tags) {
+        return Timer.builder(name).tags(tags).register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 数值分布指标, 发布百分位直方图
+     *
+     * @param name 指标名称
+     * @param tags 标签, 名称和值交替
+     */
+    public static DistributionSummary summary(String name, String... tags) {
+        return DistributionSummary.builder(name).tags(tags).publishPercentileHistogram().register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 计数指标
+     *
+     * @param name 指标名称
+     * @param tags 标签, 名称和值交替
+     */
+    public static Counter counter(String name, String... tags) {
+        return Counter.builder(name).tags(tags).register(Metrics.globalRegistry);
+    }
+
+    /**
+     * 记录从 startNanos 到现在的耗时
+     */
+    public static void record(Timer timer, long startNanos) {
+        timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 包装流式对话监听器, 记录首个分片时间、总时长、输出速度和请求结果
+     *
+     * @param listener 原监听器
+     * @param model    模型
+     * @param apiHost  模型服务地址
+     */
+    public static EventSourceListener instrument(EventSourceListener listener, String model, String apiHost) {
+        return new MeteredEventSourceListener(listener, modelTag(model), provider(apiHost));
+    }
+
+    /**
+     * 设置已配置的模型名称, 模型新增、修改、删除后重新设置
+     *
+     * @param modelNames 模型名称
+     */
+    public static void setModels(Collection<String> modelNames) {
+        models = modelNames.stream().filter(StringUtils::isNotBlank).collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * 模型标签, 模型名称由客户端传入, 未配置的模型统一为 other, 避免任意名称产生新的时间序列
+     */
+    public static String modelTag(String model) {
+        if (StringUtils.isBlank(model)) {
+            return UNKNOWN;
+        }
+        return models.contains(model) ? model : OTHER;
+    }
+
+    /**
+     * 模型服务地址对应的 provider 标签(主机名)
+     */
+    public static String provider(String apiHost) {
+        if (StringUtils.isBlank(apiHost)) {
+            return UNKNOWN;
+        }
+        return PROVIDERS.computeIfAbsent(apiHost, host -> {
+            HttpUrl url = HttpUrl.parse(host);
+            return url == null ? UNKNOWN : url.host();
+        });
+    }
+
+    /**
+     * 空值转为 unknown, 同一指标的标签必须一致
+     */
+    public static String tagValue(String value) {
+        return StringUtils.isBlank(value) ? UNKNOWN : value;
+    }
+}
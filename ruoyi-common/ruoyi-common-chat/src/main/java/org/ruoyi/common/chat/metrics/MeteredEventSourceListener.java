@@ -0,0 +1,96 @@
+package org.ruoyi.common.chat.metrics;
+
+import okhttp3.Response;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 记录监控指标的流式对话监听器, 事件原样交给被包装的监听器.
+ * 同一连接的事件由 OkHttp 在一个线程中依次回调, 字段无需同步; 每个分片只做计数, 指标在结束时记录一次
+ *
+ * @date 2026/10/19
+ */
+final class MeteredEventSourceListener extends EventSourceListener {
+
+    private final EventSourceListener delegate;
+
+    private final String model;
+
+    private final String provider;
+
+    private final long startNanos = System.nanoTime();
+
+    private long firstEventNanos;
+
+    private int events;
+
+    private boolean recorded;
+
+    MeteredEventSourceListener(EventSourceListener delegate, String model, String provider) {
+        this.delegate = delegate;
+        this.model = model;
+        this.provider = provider;
+    }
+
+    @Override
+    public void onOpen(@NotNull EventSource eventSource, @NotNull Response response) {
+        delegate.onOpen(eventSource, response);
+    }
+
+    @Override
+    public void onEvent(@NotNull EventSource eventSource, @Nullable String id, @Nullable String type, @NotNull String data) {
+        if ("[DONE]".equals(data)) {
+            finish(ChatMetrics.SUCCESS);
+        } else if (events++ == 0) {
+            firstEventNanos = System.nanoTime();
+        }
+        delegate.onEvent(eventSource, id, type, data);
+    }
+
+    @Override
+    public void onClosed(@NotNull EventSource eventSource) {
+        finish(ChatMetrics.INCOMPLETE);
+        delegate.onClosed(eventSource);
+    }
+
+    @Override
+    public void onFailure(@NotNull EventSource eventSource, @Nullable Throwable t, @Nullable Response response) {
+        finish(isCancelled(t) ? ChatMetrics.CANCELLED : ChatMetrics.ERROR);
+        delegate.onFailure(eventSource, t, response);
+    }
+
+    private void finish(String outcome) {
+        if (recorded) {
+            return;
+        }
+        recorded = true;
+        long now = System.nanoTime();
+        ChatMetrics.counter(ChatMetrics.PROVIDER_REQUESTS,
+            "model", model, "provider", provider, "type", "stream", "outcome", outcome).increment();
+        ChatMetrics.timer(ChatMetrics.STREAM_DURATION, "model", model, "provider", provider, "outcome", outcome)
+            .record(now - startNanos, TimeUnit.NANOSECONDS);
+        if (events == 0) {
+            return;
+        }
+        ChatMetrics.timer(ChatMetrics.STREAM_FIRST_TOKEN, "model", model, "provider", provider)
+            .record(firstEventNanos - startNanos, TimeUnit.NANOSECONDS);
+        // 只统计完整的回复, 中途断开的回复速度没有参考意义
+        if (ChatMetrics.SUCCESS.equals(outcome) && events > 1 && now > firstEventNanos) {
+            double seconds = (now - firstEventNanos) / 1_000_000_000D;
+            ChatMetrics.summary(ChatMetrics.STREAM_TOKENS_PER_SECOND,
+                "model", model, "provider", provider).record((events - 1) / seconds);
+        }
+    }
+
+    /**
+     * 调用 EventSource.cancel() 后 OkHttp 以 IOException 回调 onFailure
+     */
+    private static boolean isCancelled(Throwable t) {
+        return t instanceof IOException && ("Canceled".equals(t.getMessage()) || "Socket closed".equals(t.getMessage()));
+    }
+}
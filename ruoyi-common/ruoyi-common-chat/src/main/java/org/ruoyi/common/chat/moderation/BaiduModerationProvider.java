@@ -0,0 +1,138 @@
+package org.ruoyi.common.chat.moderation;
+
+import cn.hutool.core.lang.Dict;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.ruoyi.common.chat.config.OkHttpClientRegistry;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.json.utils.JsonUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * 百度文本审核
+ * access token 有效期30天, 缓存到过期前一小时再刷新, 不再每次审核都重新获取
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BaiduModerationProvider implements ModerationProvider {
+
+    private static final String HOST = "https://aip.baidubce.com";
+
+    private static final String TOKEN_URL = HOST + "/oauth/2.0/token";
+
+    private static final String CENSOR_URL = HOST + "/rest/2.0/solution/v1/text_censor/v2/user_defined";
+
+    /**
+     * 审核结论: 1 合规
+     */
+    private static final String CONCLUSION_COMPLIANT = "1";
+
+    /**
+     * 审核结论: 4 审核失败
+     */
+    private static final String CONCLUSION_FAILED = "4";
+
+    /**
+     * token 提前刷新时间(毫秒)
+     */
+    private static final long REFRESH_AHEAD_MILLIS = 3600_000L;
+
+    private final ConfigService configService;
+
+    private final OkHttpClientRegistry okHttpClientRegistry;
+
+    private volatile AccessToken accessToken;
+
+    @Override
+    public String getName() {
+        return "baidu";
+    }
+
+    @Override
+    public ModerationResult review(String text) {
+        try {
+            Request request = new Request.Builder()
+                .url(CENSOR_URL + "?access_token=" + getAccessToken())
+                .post(new FormBody.Builder().add("text", text).build())
+                .addHeader("Accept", "application/json")
+                .build();
+            Dict result = execute(request);
+            if (result.containsKey("error_code")) {
+                // token 失效时清除缓存, 下次重新获取
+                accessToken = null;
+                log.warn("百度文本审核失败: {}", result.getStr("error_msg"));
+                return ModerationResult.unreviewed();
+            }
+            String conclusionType = result.getStr("conclusionType");
+            // 没有审核结论或审核失败时放行, 但不是审核结论, 不能缓存
+            if (StringUtils.isEmpty(conclusionType) || CONCLUSION_FAILED.equals(conclusionType)) {
+                log.warn("百度文本审核没有结论: {}", result.getStr("conclusion"));
+                return ModerationResult.unreviewed();
+            }
+            if (CONCLUSION_COMPLIANT.equals(conclusionType)) {
+                return ModerationResult.pass();
+            }
+            return ModerationResult.reject(result.getStr("conclusion"));
+        } catch (IOException e) {
+            log.warn("百度文本审核请求失败: {}", e.getMessage());
+            return ModerationResult.unreviewed();
+        }
+    }
+
+    /**
+     * 获取缓存的 access token, 过期或 apiKey 变更时重新获取
+     */
+    private String getAccessToken() throws IOException {
+        String apiKey = configService.getConfigValue("review", "apiKey");
+        AccessToken token = accessToken;
+        if (token != null && token.apiKey().equals(apiKey) && token.expireAt() > System.currentTimeMillis()) {
+            return token.value();
+        }
+        synchronized (this) {
+            token = accessToken;
+            if (token != null && token.apiKey().equals(apiKey) && token.expireAt() > System.currentTimeMillis()) {
+                return token.value();
+            }
+            Request request = new Request.Builder()
+                .url(TOKEN_URL)
+                .post(new FormBody.Builder()
+                    .add("grant_type", "client_credentials")
+                    .add("client_id", apiKey)
+                    .add("client_secret", configService.getConfigValue("review", "secretKey"))
+                    .build())
+                .build();
+            Dict result = execute(request);
+            String value = result.getStr("access_token");
+            if (StringUtils.isEmpty(value)) {
+                throw new IOException("获取百度access token失败: " + result.getStr("error_description"));
+            }
+            Long expiresIn = result.getLong("expires_in");
+            long ttl = Math.max((expiresIn == null ? 0 : expiresIn * 1000) - REFRESH_AHEAD_MILLIS, 0);
+            accessToken = new AccessToken(apiKey, value, System.currentTimeMillis() + ttl);
+            return value;
+        }
+    }
+
+    private Dict execute(Request request) throws IOException {
+        OkHttpClient client = okHttpClientRegistry.getClient(HOST, OkHttpClientRegistry.TimeoutProfile.DEFAULT);
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            Dict result = body == null ? null : JsonUtils.parseMap(body.string());
+            return result == null ? Dict.create() : result;
+        }
+    }
+
+    private record AccessToken(String apiKey, String value, long expireAt) {
+    }
+}
@@ -0,0 +1,86 @@
+package org.ruoyi.common.chat.moderation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 本地关键词/正则审核
+ * 关键词配置在 review/keywords, 按换行或逗号分隔; 正则配置在 review/patterns, 按换行分隔.
+ * 配置未变化时复用已编译的规则
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KeywordModerationProvider implements ModerationProvider {
+
+    private final ConfigService configService;
+
+    private volatile Rules rules;
+
+    @Override
+    public String getName() {
+        return "keyword";
+    }
+
+    @Override
+    public ModerationResult review(String text) {
+        Rules current = getRules();
+        for (String keyword : current.keywords()) {
+            if (text.contains(keyword)) {
+                return ModerationResult.reject("包含敏感词: " + keyword);
+            }
+        }
+        for (Pattern pattern : current.patterns()) {
+            if (pattern.matcher(text).find()) {
+                return ModerationResult.reject("匹配敏感规则: " + pattern.pattern());
+            }
+        }
+        return ModerationResult.pass();
+    }
+
+    private Rules getRules() {
+        String keywords = configService.getConfigValue("review", "keywords");
+        String patterns = configService.getConfigValue("review", "patterns");
+        Rules current = rules;
+        if (current != null && Objects.equals(current.keywordConfig(), keywords)
+            && Objects.equals(current.patternConfig(), patterns)) {
+            return current;
+        }
+        List<Pattern> compiled = new ArrayList<>();
+        for (String regex : split(patterns, "[\\r\\n]+")) {
+            try {
+                compiled.add(Pattern.compile(regex));
+            } catch (PatternSyntaxException e) {
+                log.warn("敏感规则 {} 格式错误: {}", regex, e.getMessage());
+            }
+        }
+        current = new Rules(keywords, patterns, split(keywords, "[\\r\\n,]+"), compiled);
+        rules = current;
+        return current;
+    }
+
+    private static List<String> split(String config, String separator) {
+        if (StringUtils.isBlank(config)) {
+            return List.of();
+        }
+        return Arrays.stream(config.split(separator))
+            .map(String::trim)
+            .filter(StringUtils::isNotEmpty)
+            .toList();
+    }
+
+    private record Rules(String keywordConfig, String patternConfig, List<String> keywords, List<Pattern> patterns) {
+    }
+}
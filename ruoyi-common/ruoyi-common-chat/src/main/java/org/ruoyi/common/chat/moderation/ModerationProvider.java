@@ -0,0 +1,22 @@
+package org.ruoyi.common.chat.moderation;
+
+/**
+ * 文本审核服务商
+ *
+ * @date 2026/10/19
+ */
+public interface ModerationProvider {
+
+    /**
+     * 服务商名称, 对应配置 review/provider
+     */
+    String getName();
+
+    /**
+     * 审核文本
+     *
+     * @param text 文本内容
+     * @return 审核结果
+     */
+    ModerationResult review(String text);
+}
@@ -0,0 +1,31 @@
+package org.ruoyi.common.chat.moderation;
+
+/**
+ * 文本审核结果
+ *
+ * @param compliant 是否合规
+ * @param reviewed  是否完成审核, 审核接口异常时为 false, 按合规放行但不缓存
+ * @param reason    不合规原因
+ * @date 2026/10/19
+ */
+public record ModerationResult(boolean compliant, boolean reviewed, String reason) {
+
+    private static final ModerationResult PASS = new ModerationResult(true, true, null);
+
+    private static final ModerationResult UNREVIEWED = new ModerationResult(true, false, null);
+
+    public static ModerationResult pass() {
+        return PASS;
+    }
+
+    public static ModerationResult reject(String reason) {
+        return new ModerationResult(false, true, reason);
+    }
+
+    /**
+     * 审核接口不可用或审核失败, 放行但不作为审核结论
+     */
+    public static ModerationResult unreviewed() {
+        return UNREVIEWED;
+    }
+}
@@ -0,0 +1,112 @@
+package org.ruoyi.common.chat.moderation;
+
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.core.lang.hash.MurmurHash;
+import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 文本审核
+ * 按 review/provider 配置的服务商依次审核(逗号分隔, 如 keyword,baidu), 任一不合规即拒绝.
+ * 审核结果按服务商、关键词/正则配置和文本哈希缓存, 重复提问不再请求审核接口, 规则变更后重新审核;
+ * 审核接口异常时放行但不缓存, 接口恢复后重新审核.
+ * review/mode 为 optimistic 时审核与生成同时进行, 不合规再中断输出; 默认 block 先审核后生成
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+public class ModerationService {
+
+    private static final String DEFAULT_PROVIDER = "baidu";
+
+    private static final String MODE_OPTIMISTIC = "optimistic";
+
+    /**
+     * 审核结果缓存10分钟
+     */
+    private final Cache<ResultKey, ModerationResult> resultCache = CacheUtil.newLRUCache(5000, 600_000L);
+
+    private final ConfigService configService;
+
+    private final Map<String, ModerationProvider> providers;
+
+    public ModerationService(ConfigService configService, List<ModerationProvider> providers) {
+        this.configService = configService;
+        this.providers = providers.stream()
+            .collect(Collectors.toMap(ModerationProvider::getName, Function.identity()));
+    }
+
+    /**
+     * 是否开启文本审核
+     */
+    public boolean isEnabled() {
+        return Boolean.parseBoolean(configService.getConfigValue("review", "enabled"));
+    }
+
+    /**
+     * 是否先输出后审核
+     */
+    public boolean isOptimistic() {
+        return MODE_OPTIMISTIC.equalsIgnoreCase(configService.getConfigValue("review", "mode"));
+    }
+
+    /**
+     * 审核文本
+     *
+     * @param text 文本内容
+     * @return 审核结果
+     */
+    public ModerationResult review(String text) {
+        if (StringUtils.isBlank(text)) {
+            return ModerationResult.pass();
+        }
+        String providerNames = StringUtils.blankToDefault(configService.getConfigValue("review", "provider"), DEFAULT_PROVIDER);
+        ResultKey key = new ResultKey(providerNames, rulesVersion(), text.length(), MurmurHash.hash64(text));
+        ModerationResult cached = resultCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ModerationResult result = ModerationResult.pass();
+        for (String name : StringUtils.splitList(providerNames)) {
+            ModerationProvider provider = providers.get(name.trim());
+            if (provider == null) {
+                log.warn("文本审核服务商 {} 不存在", name);
+                continue;
+            }
+            ModerationResult providerResult = provider.review(text);
+            if (!providerResult.compliant()) {
+                result = providerResult;
+                break;
+            }
+            if (!providerResult.reviewed()) {
+                result = providerResult;
+            }
+        }
+        // 有服务商未完成审核且其他服务商都合规时, 结果不可信, 不缓存
+        if (result.reviewed()) {
+            resultCache.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * 关键词和正则配置的版本, 规则变更后缓存的结果不再命中
+     */
+    private long rulesVersion() {
+        String keywords = StringUtils.blankToDefault(configService.getConfigValue("review", "keywords"), "");
+        String patterns = StringUtils.blankToDefault(configService.getConfigValue("review", "patterns"), "");
+        return MurmurHash.hash64(keywords + '\0' + patterns);
+    }
+
+    private record ResultKey(String providers, long rulesVersion, int length, long hash) {
+    }
+}
@@ -162,6 +162,15 @@ public interface OpenAiApi {
     Single<UploadFileResponse> uploadFile(@Part MultipartBody.Part file,
                                           @Part("purpose") RequestBody purpose);
 
+    /**
+     * 上传文件, 请求体由调用方构建(如流式上传)
+     *
+     * @param body multipart 请求体
+     * @return Single UploadFileResponse
+     */
+    @POST("v1/files")
+    Single<UploadFileResponse> uploadFile(@Body RequestBody body);
+
 
     /**
      * 检索文件
@@ -292,6 +301,15 @@ public interface OpenAiApi {
     Single<WhisperResponse> speechToTextTranscriptions(@Part MultipartBody.Part file,
                                                        @PartMap() Map<String, RequestBody> requestBodyMap);
 
+    /**
+     * 语音转文字, 请求体由调用方构建(如流式上传)
+     *
+     * @param body multipart 请求体
+     * @return 文本
+     */
+    @POST("v1/audio/transcriptions")
+    Single<WhisperResponse> speechToTextTranscriptions(@Body RequestBody body);
+
     /**
      * 语音翻译：目前仅支持翻译为英文
      *
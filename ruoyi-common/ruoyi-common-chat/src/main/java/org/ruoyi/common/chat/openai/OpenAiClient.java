@@ -732,7 +732,7 @@ public class OpenAiClient {
         ChatChoice chatChoice = functionCallChatCompletionResponse.getChoices().get(0);
         log.debug("构造的方法值：{}", chatChoice.getMessage().getFunctionCall());
 
-        R realFunctionParam = (R) JSONUtil.toBean(chatChoice.getMessage().getFunctionCall().getArguments(), plugin.getR());
+        R realFunctionParam = plugin.parseArgs(chatChoice.getMessage().getFunctionCall().getArguments());
         T tq = plugin.func(realFunctionParam);
 
         FunctionCall functionCall = FunctionCall.builder()
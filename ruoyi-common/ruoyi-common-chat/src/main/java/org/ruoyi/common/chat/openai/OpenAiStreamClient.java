@@ -7,7 +7,6 @@ import cn.hutool.json.JSONUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.reactivex.Single;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import okhttp3.sse.EventSource;
@@ -29,6 +28,7 @@ import org.ruoyi.common.chat.entity.models.ModelResponse;
 import org.ruoyi.common.chat.entity.whisper.Transcriptions;
 import org.ruoyi.common.chat.entity.whisper.Translations;
 import org.ruoyi.common.chat.entity.whisper.WhisperResponse;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
 import org.ruoyi.common.chat.openai.exception.CommonError;
 import org.ruoyi.common.chat.openai.function.KeyRandomStrategy;
 import org.ruoyi.common.chat.openai.function.KeyStrategyFunction;
@@ -41,6 +41,7 @@ import org.ruoyi.common.chat.sse.DefaultPluginListener;
 import org.ruoyi.common.chat.sse.PluginListener;
 import org.ruoyi.common.core.exception.base.BaseException;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.core.io.InputStreamSource;
 import retrofit2.Call;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
@@ -61,7 +62,6 @@ import java.util.concurrent.TimeUnit;
 
 @Getter
 @Slf4j
-@Setter
 public class OpenAiStreamClient {
 
     @NotNull
@@ -183,7 +183,7 @@ public class OpenAiStreamClient {
                 .url(this.apiHost + "v1/chat/completions")
                 .post(RequestBody.create(MediaType.parse(ContentType.JSON.getValue()), requestBody))
                 .build();
-            factory.newEventSource(request, eventSourceListener);
+            factory.newEventSource(request, ChatMetrics.instrument(eventSourceListener, chatCompletion.getModel(), apiHost));
         } catch (Exception e) {
             log.error("请求参数解析异常：{}", e.getMessage());
         }
@@ -295,12 +295,23 @@ public class OpenAiStreamClient {
      * @return 答案
      */
     public <T extends BaseChatCompletion> ChatCompletionResponse chatCompletion(T chatCompletion) {
-        if (chatCompletion instanceof ChatCompletion) {
-            Single<ChatCompletionResponse> chatCompletionResponse = this.openAiApi.chatCompletion((ChatCompletion) chatCompletion);
-            return chatCompletionResponse.blockingGet();
+        String model = ChatMetrics.modelTag(chatCompletion.getModel());
+        String provider = ChatMetrics.provider(apiHost);
+        String outcome = ChatMetrics.ERROR;
+        long start = System.nanoTime();
+        try {
+            Single<ChatCompletionResponse> chatCompletionResponse = chatCompletion instanceof ChatCompletion
+                ? this.openAiApi.chatCompletion((ChatCompletion) chatCompletion)
+                : this.openAiApi.chatCompletionWithPicture((ChatCompletionWithPicture) chatCompletion);
+            ChatCompletionResponse response = chatCompletionResponse.blockingGet();
+            outcome = ChatMetrics.SUCCESS;
+            return response;
+        } finally {
+            ChatMetrics.counter(ChatMetrics.PROVIDER_REQUESTS,
+                "model", model, "provider", provider, "type", "completion", "outcome", outcome).increment();
+            ChatMetrics.record(ChatMetrics.timer(ChatMetrics.COMPLETION_DURATION,
+                "model", model, "provider", provider, "outcome", outcome), start);
         }
-        Single<ChatCompletionResponse> chatCompletionResponse = this.openAiApi.chatCompletionWithPicture((ChatCompletionWithPicture) chatCompletion);
-        return chatCompletionResponse.blockingGet();
     }
 
     /**
@@ -320,6 +331,25 @@ public class OpenAiStreamClient {
         return uploadFileResponse.blockingGet();
     }
 
+    /**
+     * 上传文件, 从输入流直接写入请求, 不落临时文件
+     *
+     * @param purpose       purpose
+     * @param source        文件内容(如 MultipartFile)
+     * @param fileName      文件名
+     * @param contentLength 文件大小, 未知时为 -1
+     * @return UploadFileResponse
+     */
+    public UploadFileResponse uploadFile(String purpose, InputStreamSource source, String fileName, long contentLength) {
+        MultipartBody body = new MultipartBody.Builder()
+            .setType(MultipartBody.FORM)
+            .addFormDataPart("file", fileName,
+                new StreamingRequestBody(source, contentLength, MediaType.parse("application/octet-stream")))
+            .addFormDataPart("purpose", purpose)
+            .build();
+        return this.openAiApi.uploadFile(StreamingRequestBody.oneShot(body)).blockingGet();
+    }
+
     /**
      * 获取openKey账户信息(近90天)
      *
@@ -437,6 +467,39 @@ public class OpenAiStreamClient {
         return whisperResponse.blockingGet();
     }
 
+    /**
+     * 语音转文字, 从输入流直接写入请求, 不落临时文件
+     *
+     * @param source         语音内容(如 MultipartFile) 最大支持25MB mp3, mp4, mpeg, mpga, m4a, wav, webm
+     * @param fileName       文件名, 服务端按扩展名识别格式
+     * @param contentLength  文件大小, 未知时为 -1
+     * @param transcriptions 参数
+     * @return 语音文本
+     */
+    public WhisperResponse speechToTextTranscriptions(InputStreamSource source, String fileName, long contentLength,
+                                                      Transcriptions transcriptions) {
+        MultipartBody.Builder builder = new MultipartBody.Builder()
+            .setType(MultipartBody.FORM)
+            .addFormDataPart("file", fileName,
+                new StreamingRequestBody(source, contentLength, MediaType.parse("application/octet-stream")));
+        if (StrUtil.isNotBlank(transcriptions.getLanguage())) {
+            builder.addFormDataPart(Transcriptions.Fields.language, transcriptions.getLanguage());
+        }
+        if (StrUtil.isNotBlank(transcriptions.getModel())) {
+            builder.addFormDataPart(Transcriptions.Fields.model, transcriptions.getModel());
+        }
+        if (StrUtil.isNotBlank(transcriptions.getPrompt())) {
+            builder.addFormDataPart(Transcriptions.Fields.prompt, transcriptions.getPrompt());
+        }
+        if (StrUtil.isNotBlank(transcriptions.getResponseFormat())) {
+            builder.addFormDataPart(Transcriptions.Fields.responseFormat, transcriptions.getResponseFormat());
+        }
+        if (Objects.nonNull(transcriptions.getTemperature())) {
+            builder.addFormDataPart(Transcriptions.Fields.temperature, String.valueOf(transcriptions.getTemperature()));
+        }
+        return this.openAiApi.speechToTextTranscriptions(StreamingRequestBody.oneShot(builder.build())).blockingGet();
+    }
+
     /**
      * 简易版 语音转文字
      *
@@ -543,7 +606,7 @@ public class OpenAiStreamClient {
         ChatChoice chatChoice = functionCallChatCompletionResponse.getChoices().get(0);
         log.debug("构造的方法值：{}", chatChoice.getMessage().getFunctionCall());
 
-        R realFunctionParam = (R) JSONUtil.toBean(chatChoice.getMessage().getFunctionCall().getArguments(), plugin.getR());
+        R realFunctionParam = plugin.parseArgs(chatChoice.getMessage().getFunctionCall().getArguments());
         T tq = plugin.func(realFunctionParam);
 
         FunctionCall functionCall = FunctionCall.builder()
@@ -0,0 +1,90 @@
+package org.ruoyi.common.chat.openai;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+
+/**
+ * 描述：从输入流直接写入请求的请求体
+ * 上传的文件(如 MultipartFile)不再先复制到临时文件, 发送请求时才打开输入流, 按 okio 的段(8KB)边读边写,
+ * 内存占用与文件大小无关.
+ * 请求体只能发送一次: 日志拦截器不会把整个请求体读入内存打印, 连接失败时也不会自动重发
+ *
+ * @date 2026/10/19
+ */
+public class StreamingRequestBody extends RequestBody {
+
+    private final InputStreamSource source;
+
+    private final long contentLength;
+
+    private final MediaType contentType;
+
+    /**
+     * @param source        输入流来源, 发送时打开并在发送后关闭
+     * @param contentLength 长度, 未知时为 -1
+     * @param contentType   内容类型
+     */
+    public StreamingRequestBody(InputStreamSource source, long contentLength, MediaType contentType) {
+        this.source = source;
+        this.contentLength = contentLength;
+        this.contentType = contentType;
+    }
+
+    /**
+     * 包装为只能发送一次的请求体
+     * MultipartBody 不会继承其中文件部分的 isOneShot, 需要在外层再标记一次
+     */
+    public static RequestBody oneShot(RequestBody body) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return body.contentType();
+            }
+
+            @Override
+            public long contentLength() throws IOException {
+                return body.contentLength();
+            }
+
+            @Override
+            public void writeTo(@NotNull BufferedSink sink) throws IOException {
+                body.writeTo(sink);
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        // 关闭 Source 时一并关闭输入流
+        try (Source in = Okio.source(source.getInputStream())) {
+            sink.writeAll(in);
+        }
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+}
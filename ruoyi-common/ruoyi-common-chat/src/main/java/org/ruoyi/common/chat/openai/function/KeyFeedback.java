@@ -0,0 +1,34 @@
+package org.ruoyi.common.chat.openai.function;
+
+/**
+ * 描述：key 的调用结果反馈
+ * key 策略同时实现该接口时, 鉴权拦截器会在每次请求前后回调, 策略据此统计各个 key 的健康状况
+ *
+ * @date 2026/10/19
+ */
+public interface KeyFeedback {
+
+    /**
+     * 使用 key 发起请求
+     *
+     * @param key api key
+     */
+    void onStart(String key);
+
+    /**
+     * 收到响应头或请求失败
+     *
+     * @param key              api key
+     * @param statusCode       响应状态码, 网络异常时为 -1
+     * @param latencyMillis    从发起请求到收到响应头的耗时
+     * @param retryAfterMillis 服务商要求的重试等待时间, 没有时为 0
+     */
+    void onFinish(String key, int statusCode, long latencyMillis, long retryAfterMillis);
+
+    /**
+     * 请求结束(流式响应读取完毕或关闭)
+     *
+     * @param key api key
+     */
+    void onRelease(String key);
+}
@@ -0,0 +1,180 @@
+package org.ruoyi.common.chat.openai.function;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.core.utils.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 描述：按健康状况选择 key 的策略
+ * 1. 统计每个 key 的进行中请求数、响应耗时(EWMA)和 5xx/网络异常错误率;
+ * 2. 429 按服务商返回的 retry-after 摘除, 没有时指数退避; 连续 5xx 或网络异常达到阈值后退避摘除;
+ *    401/403 说明 key 失效或被封禁, 长时间摘除; 摘除到期后自动恢复参与选择.
+ *    错误率只在成功时衰减, 因此 429/401/403 只以摘除作为惩罚, 不计入错误率; 5xx 摘除时清零错误率,
+ *    否则恢复后的 key 得分一直偏高, 选不上也就无法恢复;
+ * 3. 从可用 key 中随机取两个, 选择 (耗时 x 进行中请求数 x 错误率惩罚) 较小的一个,
+ *    请求分散到各个 key, 慢的、忙的、出错多的 key 分到的流量更少;
+ * 4. 所有 key 都被摘除时选择最早恢复的 key, 不直接拒绝请求.
+ * 统计按 key 保存, 同一个策略实例可在多个客户端之间共享
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+public class KeyHealthStrategy implements KeyStrategyFunction<List<String>, String>, KeyFeedback {
+
+    /**
+     * EWMA 平滑系数
+     */
+    private static final double ALPHA = 0.2;
+
+    /**
+     * 错误率惩罚倍数, 错误率 100% 时得分放大 (1 + 该值) 倍
+     */
+    private static final double ERROR_PENALTY = 4;
+
+    /**
+     * 连续失败多少次后摘除
+     */
+    private static final int FAILURE_THRESHOLD = 3;
+
+    private static final long BASE_BACKOFF_MILLIS = 1000;
+
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    /**
+     * key 失效时的摘除时间
+     */
+    private static final long REVOKED_BACKOFF_MILLIS = 10 * 60_000;
+
+    private final Map<String, KeyStats> stats = new ConcurrentHashMap<>();
+
+    @Override
+    public String apply(List<String> apiKeys) {
+        if (apiKeys.size() == 1) {
+            return apiKeys.get(0);
+        }
+        long now = System.currentTimeMillis();
+        List<String> available = new ArrayList<>(apiKeys.size());
+        String earliest = null;
+        long earliestUntil = Long.MAX_VALUE;
+        for (String key : apiKeys) {
+            long ejectedUntil = getStats(key).ejectedUntil;
+            if (ejectedUntil <= now) {
+                available.add(key);
+            } else if (ejectedUntil < earliestUntil) {
+                earliest = key;
+                earliestUntil = ejectedUntil;
+            }
+        }
+        if (available.isEmpty()) {
+            return earliest;
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        String a = available.get(first);
+        String b = available.get(second);
+        return getStats(a).score() <= getStats(b).score() ? a : b;
+    }
+
+    @Override
+    public void onStart(String key) {
+        getStats(key).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onFinish(String key, int statusCode, long latencyMillis, long retryAfterMillis) {
+        KeyStats keyStats = getStats(key);
+        synchronized (keyStats) {
+            long now = System.currentTimeMillis();
+            if (statusCode == 429) {
+                keyStats.consecutiveFailures++;
+                long backoff = retryAfterMillis > 0 ? retryAfterMillis : keyStats.backoff();
+                keyStats.ejectedUntil = now + backoff;
+                log.warn("api key {} 触发限流, 摘除 {} ms", mask(key), backoff);
+            } else if (statusCode == 401 || statusCode == 403) {
+                keyStats.consecutiveFailures++;
+                keyStats.ejectedUntil = now + REVOKED_BACKOFF_MILLIS;
+                log.error("api key {} 鉴权失败({}), 摘除 {} ms", mask(key), statusCode, REVOKED_BACKOFF_MILLIS);
+            } else if (statusCode < 0 || statusCode >= 500) {
+                keyStats.failed();
+                if (keyStats.consecutiveFailures >= FAILURE_THRESHOLD) {
+                    long backoff = keyStats.backoff();
+                    keyStats.ejectedUntil = now + backoff;
+                    // 到期后重新试用, 连续失败次数保留, 再失败一次即按更长的退避摘除
+                    keyStats.errorRate = 0;
+                    log.warn("api key {} 连续失败 {} 次, 摘除 {} ms", mask(key), keyStats.consecutiveFailures, backoff);
+                }
+            } else {
+                // 其余 4xx 是请求本身的问题, 不影响 key 的健康状况
+                keyStats.succeeded(latencyMillis);
+            }
+        }
+    }
+
+    @Override
+    public void onRelease(String key) {
+        getStats(key).inFlight.decrementAndGet();
+    }
+
+    private KeyStats getStats(String key) {
+        return stats.computeIfAbsent(key, k -> new KeyStats());
+    }
+
+    private static String mask(String key) {
+        return StringUtils.isEmpty(key) || key.length() <= 8 ? "****" : key.substring(0, 4) + "****" + key.substring(key.length() - 4);
+    }
+
+    private static class KeyStats {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * 响应耗时 EWMA, 0 表示还没有样本
+         */
+        private volatile double latency;
+
+        /**
+         * 5xx/网络异常错误率 EWMA
+         */
+        private volatile double errorRate;
+
+        private int consecutiveFailures;
+
+        private volatile long ejectedUntil;
+
+        /**
+         * 得分越小越优先, 没有耗时样本的 key 优先被试用
+         */
+        double score() {
+            return (latency + 1) * (inFlight.get() + 1) * (1 + ERROR_PENALTY * errorRate);
+        }
+
+        void succeeded(long latencyMillis) {
+            consecutiveFailures = 0;
+            errorRate = errorRate * (1 - ALPHA);
+            latency = latency == 0 ? latencyMillis : latency * (1 - ALPHA) + latencyMillis * ALPHA;
+        }
+
+        void failed() {
+            consecutiveFailures++;
+            errorRate = errorRate * (1 - ALPHA) + ALPHA;
+        }
+
+        long backoff() {
+            int exponent = Math.min(Math.max(consecutiveFailures - 1, 0), 16);
+            return Math.min(BASE_BACKOFF_MILLIS << exponent, MAX_BACKOFF_MILLIS);
+        }
+    }
+}
@@ -42,7 +42,8 @@ public class DefaultOpenAiAuthInterceptor extends OpenAiAuthInterceptor {
     @Override
     public Response intercept(Chain chain) throws IOException {
         Request original = chain.request();
-        return chain.proceed(auth(super.getKey(), original));
+        String key = super.getKey();
+        return proceed(chain, key, auth(key, original));
     }
 
     /**
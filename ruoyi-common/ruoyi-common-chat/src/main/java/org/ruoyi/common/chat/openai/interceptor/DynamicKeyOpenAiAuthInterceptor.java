@@ -55,7 +55,7 @@ public class DynamicKeyOpenAiAuthInterceptor extends OpenAiAuthInterceptor {
         String key = getKey();
         Request original = chain.request();
         Request request = this.auth(key, original);
-        Response response = chain.proceed(request);
+        Response response = proceed(chain, key, request);
         if (!response.isSuccessful()) {
             String errorMsg = response.body().string();
             if (response.code() == CommonError.OPENAI_AUTHENTICATION_ERROR.code()
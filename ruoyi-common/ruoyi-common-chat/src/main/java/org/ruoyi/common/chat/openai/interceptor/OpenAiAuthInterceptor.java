@@ -7,13 +7,24 @@ import cn.hutool.http.Header;
 import lombok.Getter;
 import lombok.Setter;
 import okhttp3.Interceptor;
+import okhttp3.MediaType;
 import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
 import org.ruoyi.common.chat.openai.exception.CommonError;
+import org.ruoyi.common.chat.openai.function.KeyFeedback;
 import org.ruoyi.common.chat.openai.function.KeyStrategyFunction;
 import org.ruoyi.common.core.exception.base.BaseException;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class OpenAiAuthInterceptor implements Interceptor {
 
@@ -81,4 +92,102 @@ public abstract class OpenAiAuthInterceptor implements Interceptor {
                 .build();
         return request;
     }
+
+    /**
+     * 发起请求, key 策略实现了 {@link KeyFeedback} 时回调请求结果
+     * 流式响应在响应体关闭时才算请求结束
+     *
+     * @param chain   Chain
+     * @param key     本次使用的 api key
+     * @param request 已鉴权的请求
+     * @return 响应
+     */
+    protected Response proceed(Chain chain, String key, Request request) throws IOException {
+        if (!(keyStrategy instanceof KeyFeedback feedback)) {
+            return chain.proceed(request);
+        }
+        feedback.onStart(key);
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            // 客户端主动取消不计入 key 的失败
+            if (!chain.call().isCanceled()) {
+                feedback.onFinish(key, -1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), 0);
+            }
+            feedback.onRelease(key);
+            throw e;
+        }
+        feedback.onFinish(key, response.code(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            retryAfterMillis(response));
+        ResponseBody body = response.body();
+        if (body == null) {
+            feedback.onRelease(key);
+            return response;
+        }
+        return response.newBuilder().body(new ReleasingResponseBody(body, () -> feedback.onRelease(key))).build();
+    }
+
+    /**
+     * 服务商返回的重试等待时间, 支持 retry-after-ms 和以秒为单位的 retry-after
+     */
+    private static long retryAfterMillis(Response response) {
+        try {
+            String millis = response.header("retry-after-ms");
+            if (millis != null) {
+                return (long) Double.parseDouble(millis.trim());
+            }
+            String seconds = response.header("retry-after");
+            if (seconds != null) {
+                return (long) (Double.parseDouble(seconds.trim()) * 1000);
+            }
+        } catch (NumberFormatException e) {
+            // HTTP 日期格式等无法解析的值按没有处理
+        }
+        return 0;
+    }
+
+    /**
+     * 关闭时回调一次的响应体
+     */
+    private static class ReleasingResponseBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+
+        private final BufferedSource source;
+
+        ReleasingResponseBody(ResponseBody delegate, Runnable release) {
+            this.delegate = delegate;
+            AtomicBoolean released = new AtomicBoolean();
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        if (released.compareAndSet(false, true)) {
+                            release.run();
+                        }
+                    }
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @NotNull
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+    }
 }
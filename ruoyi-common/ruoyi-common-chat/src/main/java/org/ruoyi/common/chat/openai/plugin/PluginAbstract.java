@@ -2,19 +2,36 @@ package org.ruoyi.common.chat.openai.plugin;
 
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.json.JSONObject;
+import cn.hutool.core.util.StrUtil;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.ruoyi.common.chat.entity.chat.Parameters;
+import org.ruoyi.common.chat.entity.chat.tool.Tools;
+import org.ruoyi.common.chat.entity.chat.tool.ToolsFunction;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Data
 @AllArgsConstructor
 public abstract class PluginAbstract<R extends PluginParam, T> {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * 各参数类型的反序列化器, 首次使用时创建
+     */
+    private static final Map<Class<?>, ObjectReader> ARGS_READERS = new ConcurrentHashMap<>();
+
     private Class<?> R;
 
     private String name;
@@ -82,6 +99,35 @@ public abstract class PluginAbstract<R extends PluginParam, T> {
         private boolean required;
     }
 
+    /**
+     * 解析模型生成的函数参数
+     *
+     * @param arguments 参数 JSON
+     * @return 参数对象
+     */
+    public R parseArgs(String arguments) {
+        ObjectReader reader = ARGS_READERS.computeIfAbsent(getR(), MAPPER::readerFor);
+        try {
+            return reader.readValue(StrUtil.isBlank(arguments) ? "{}" : arguments);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("插件参数解析失败: " + arguments, e);
+        }
+    }
+
+    /**
+     * 构建工具调用(tools)的函数描述
+     */
+    public Tools toTool() {
+        return Tools.builder()
+                .type(Tools.Type.FUNCTION.getName())
+                .function(ToolsFunction.builder()
+                        .name(function)
+                        .description(description)
+                        .parameters(parameters)
+                        .build())
+                .build();
+    }
+
     public abstract T func(R args);
 
     public abstract String content(T t);
@@ -3,13 +3,40 @@ package org.ruoyi.common.chat.plugin;
 import org.ruoyi.common.chat.openai.plugin.PluginAbstract;
 
 import java.io.IOException;
+import java.util.Collections;
 
 public class CmdPlugin extends PluginAbstract<CmdReq, CmdResp> {
 
+    public static final String FUNCTION = "openCmd";
+
     public CmdPlugin(Class<?> r) {
         super(r);
     }
 
+    /**
+     * 创建命令行插件
+     */
+    public static CmdPlugin create() {
+        CmdPlugin plugin = new CmdPlugin(CmdReq.class);
+        // 插件名称
+        plugin.setName("命令行工具");
+        // 方法名称
+        plugin.setFunction(FUNCTION);
+        // 方法说明
+        plugin.setDescription("提供一个命令行指令,比如<记事本>,指令使用中文");
+
+        Arg arg = new Arg();
+        // 参数名称
+        arg.setName("cmd");
+        // 参数说明
+        arg.setDescription("命令行指令");
+        // 参数类型
+        arg.setType("string");
+        arg.setRequired(true);
+        plugin.setArgs(Collections.singletonList(arg));
+        return plugin;
+    }
+
     @Override
     public CmdResp func(CmdReq args) {
         try {
@@ -0,0 +1,209 @@
+package org.ruoyi.common.chat.plugin;
+
+import cn.hutool.core.collection.CollUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ruoyi.common.chat.entity.chat.ChatCompletion;
+import org.ruoyi.common.chat.entity.chat.ChatCompletionResponse;
+import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.entity.chat.tool.ToolCalls;
+import org.ruoyi.common.chat.entity.chat.tool.Tools;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
+import org.ruoyi.common.chat.openai.OpenAiStreamClient;
+import org.ruoyi.common.chat.openai.plugin.PluginAbstract;
+import org.ruoyi.common.chat.openai.plugin.PluginParam;
+import org.ruoyi.common.core.exception.ServiceException;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.core.utils.Threads;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 插件注册表
+ * 插件注册时生成一次函数描述(tools), 之后每次对话直接使用, 不再每次请求都重新构建插件.
+ * 模型返回的函数调用在有界线程池中执行, 同一次回复中的多个调用并行执行, 整体超过 chat/pluginTimeoutSeconds 的调用
+ * 被中断并以超时结果返回给模型; 线程数由 chat/pluginThreads 配置. 按插件记录调用结果和执行耗时(见 ChatMetrics)
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PluginRegistry {
+
+    private static final int DEFAULT_THREADS = 8;
+
+    private static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private final ConfigService configService;
+
+    private final Map<String, RegisteredPlugin> plugins = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        String threadsValue = configService.getConfigValue("chat", "pluginThreads");
+        int threads = StringUtils.isBlank(threadsValue) ? DEFAULT_THREADS : Integer.parseInt(threadsValue.trim());
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(threads * 16),
+            new BasicThreadFactory.Builder().namingPattern("chat-plugin-%d").daemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        register(CmdPlugin.create());
+        register(SqlPlugin.create());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        Threads.shutdownAndAwaitTermination(executor);
+    }
+
+    /**
+     * 注册插件, 函数名相同时替换
+     *
+     * @param plugin 插件, 名称、方法名、说明和参数需已设置
+     */
+    public void register(PluginAbstract<?, ?> plugin) {
+        plugins.put(plugin.getFunction(), new RegisteredPlugin(plugin, plugin.toTool()));
+    }
+
+    /**
+     * 调用插件问答: 第一次请求由模型决定调用哪些插件, 执行后把结果交给模型生成最终回复
+     *
+     * @param client     OpenAiStreamClient
+     * @param completion 对话请求, 消息列表会追加函数调用和结果
+     * @param functions  可用插件的方法名
+     * @return 最终回复, 模型没有调用插件时为第一次请求的回复
+     */
+    public ChatCompletionResponse chatCompletion(OpenAiStreamClient client, ChatCompletion completion, String... functions) {
+        List<Tools> tools = new ArrayList<>(functions.length);
+        for (String function : functions) {
+            RegisteredPlugin plugin = plugins.get(function);
+            if (plugin == null) {
+                throw new ServiceException("插件不存在: " + function);
+            }
+            tools.add(plugin.tool());
+        }
+        completion.setFunctions(null);
+        completion.setFunctionCall(null);
+        completion.setTools(tools);
+        completion.setToolChoice("auto");
+        ChatCompletionResponse response = client.chatCompletion(completion);
+        Message reply = response.getChoices().get(0).getMessage();
+        List<ToolCalls> toolCalls = reply.getToolCalls();
+        if (CollUtil.isEmpty(toolCalls)) {
+            return response;
+        }
+        List<Message> messages = completion.getMessages();
+        messages.add(Message.builder().role(Message.Role.ASSISTANT).toolCalls(toolCalls).build());
+        List<String> results = invokeAll(toolCalls);
+        for (int i = 0; i < toolCalls.size(); i++) {
+            ToolCalls toolCall = toolCalls.get(i);
+            messages.add(Message.builder()
+                .role(Message.Role.TOOL)
+                .toolCallId(toolCall.getId())
+                .name(toolCall.getFunction().getName())
+                .content(results.get(i))
+                .build());
+        }
+        // 第二次请求不再提供插件
+        completion.setTools(null);
+        completion.setToolChoice(null);
+        return client.chatCompletion(completion);
+    }
+
+    /**
+     * 并行执行函数调用, 等待时间合计不超过超时时间
+     *
+     * @param toolCalls 函数调用
+     * @return 各调用的结果, 顺序与调用一致; 失败或超时时为说明文字, 由模型转告用户
+     */
+    public List<String> invokeAll(List<ToolCalls> toolCalls) {
+        // 不存在或被拒绝的调用直接填入说明文字, 不提交执行
+        String[] results = new String[toolCalls.size()];
+        List<Future<String>> futures = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            ToolCalls toolCall = toolCalls.get(i);
+            String function = toolCall.getFunction().getName();
+            RegisteredPlugin plugin = plugins.get(function);
+            Future<String> future = null;
+            if (plugin == null) {
+                results[i] = "插件不存在: " + function;
+            } else {
+                try {
+                    future = executor.submit(() -> invoke(plugin.plugin(), toolCall.getFunction().getArguments()));
+                } catch (RejectedExecutionException e) {
+                    log.warn("插件线程池已满, 拒绝执行插件 {}", function);
+                    countRequest(function, ChatMetrics.REJECTED);
+                    results[i] = "插件繁忙, 请稍后再试";
+                }
+            }
+            futures.add(future);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(getTimeoutSeconds());
+        for (int i = 0; i < futures.size(); i++) {
+            Future<String> future = futures.get(i);
+            if (future == null) {
+                continue;
+            }
+            String function = toolCalls.get(i).getFunction().getName();
+            try {
+                results[i] = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                countRequest(function, ChatMetrics.SUCCESS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                log.warn("插件 {} 执行超时", function);
+                countRequest(function, ChatMetrics.TIMEOUT);
+                results[i] = "插件执行超时";
+            } catch (ExecutionException e) {
+                log.error("插件 {} 执行失败", function, e.getCause());
+                countRequest(function, ChatMetrics.ERROR);
+                results[i] = "插件执行失败: " + e.getCause().getMessage();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                countRequest(function, ChatMetrics.CANCELLED);
+                results[i] = "插件执行被中断";
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 执行插件并记录耗时, 超时被中断的执行按实际结束时间记录
+     */
+    private <R extends PluginParam, T> String invoke(PluginAbstract<R, T> plugin, String arguments) {
+        long start = System.nanoTime();
+        String outcome = ChatMetrics.ERROR;
+        try {
+            String result = plugin.content(plugin.func(plugin.parseArgs(arguments)));
+            outcome = ChatMetrics.SUCCESS;
+            return result;
+        } finally {
+            ChatMetrics.record(ChatMetrics.timer(ChatMetrics.PLUGIN_DURATION,
+                "plugin", plugin.getFunction(), "outcome", outcome), start);
+        }
+    }
+
+    /**
+     * 记录插件调用结果, 只记录已注册的插件, 模型生成的未知函数名不作为标签, 避免标签值无限增长
+     */
+    private static void countRequest(String function, String outcome) {
+        ChatMetrics.counter(ChatMetrics.PLUGIN_REQUESTS, "plugin", function, "outcome", outcome).increment();
+    }
+
+    private long getTimeoutSeconds() {
+        String value = configService.getConfigValue("chat", "pluginTimeoutSeconds");
+        return StringUtils.isBlank(value) ? DEFAULT_TIMEOUT_SECONDS : Long.parseLong(value.trim());
+    }
+
+    private record RegisteredPlugin(PluginAbstract<?, ?> plugin, Tools tool) {
+    }
+}
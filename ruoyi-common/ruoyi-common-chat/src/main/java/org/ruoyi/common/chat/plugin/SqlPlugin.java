@@ -3,16 +3,43 @@ package org.ruoyi.common.chat.plugin;
 import org.ruoyi.common.chat.openai.plugin.PluginAbstract;
 
 import java.sql.*;
+import java.util.Collections;
 
 /**
  * @author ageer
  */
 public class SqlPlugin extends PluginAbstract<SqlReq, SqlResp> {
 
+    public static final String FUNCTION = "sqlPlugin";
+
     public SqlPlugin(Class<?> r) {
         super(r);
     }
 
+    /**
+     * 创建数据库查询插件
+     */
+    public static SqlPlugin create() {
+        SqlPlugin plugin = new SqlPlugin(SqlReq.class);
+        // 插件名称
+        plugin.setName("数据库查询插件");
+        // 方法名称
+        plugin.setFunction(FUNCTION);
+        // 方法说明
+        plugin.setDescription("提供一个用户名称查询余额信息");
+
+        Arg arg = new Arg();
+        // 参数名称
+        arg.setName("username");
+        // 参数说明
+        arg.setDescription("用户名称");
+        // 参数类型
+        arg.setType("string");
+        arg.setRequired(true);
+        plugin.setArgs(Collections.singletonList(arg));
+        return plugin;
+    }
+
 
 
     @Override
@@ -0,0 +1,100 @@
+package org.ruoyi.common.chat.sse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * 流式对话增量解析
+ * 每个 token 都对应一条 SSE 事件, 这里用流式 JSON 解析只读取 model、choices[0].delta 的
+ * content/reasoning_content 和 finish_reason, 其余字段直接跳过, 不构建 ChatCompletionResponse 对象树.
+ * JsonFactory 线程安全, 全局共享一个实例
+ *
+ * @date: 2026/10/19
+ */
+public final class ChatDeltaParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private ChatDeltaParser() {
+    }
+
+    /**
+     * 解析一条流式响应数据
+     *
+     * @param data SSE 事件的 data 部分
+     * @return 增量内容, 字段缺失时为 null
+     */
+    public static ChatDelta parse(String data) throws IOException {
+        String model = null;
+        String content = null;
+        String reasoningContent = null;
+        String finishReason = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new ChatDelta(null, null, null, null);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("model".equals(field) && token == JsonToken.VALUE_STRING) {
+                    model = parser.getText();
+                } else if ("choices".equals(field) && token == JsonToken.START_ARRAY) {
+                    boolean first = true;
+                    while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                        if (!first || token != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            continue;
+                        }
+                        first = false;
+                        // 只取第一个 choice
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String choiceField = parser.getCurrentName();
+                            JsonToken choiceToken = parser.nextToken();
+                            if ("delta".equals(choiceField) && choiceToken == JsonToken.START_OBJECT) {
+                                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                    String deltaField = parser.getCurrentName();
+                                    JsonToken deltaToken = parser.nextToken();
+                                    if ("content".equals(deltaField) && deltaToken == JsonToken.VALUE_STRING) {
+                                        content = parser.getText();
+                                    } else if ("reasoning_content".equals(deltaField) && deltaToken == JsonToken.VALUE_STRING) {
+                                        reasoningContent = parser.getText();
+                                    } else {
+                                        parser.skipChildren();
+                                    }
+                                }
+                            } else if ("finish_reason".equals(choiceField) && choiceToken == JsonToken.VALUE_STRING) {
+                                finishReason = parser.getText();
+                            } else {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new ChatDelta(model, content, reasoningContent, finishReason);
+    }
+
+    /**
+     * 增量内容
+     *
+     * @param model            模型名称
+     * @param content          回复内容
+     * @param reasoningContent 推理内容
+     * @param finishReason     结束原因
+     */
+    public record ChatDelta(String model, String content, String reasoningContent, String finishReason) {
+
+        /**
+         * 回复内容, 没有时取推理内容
+         */
+        public String text() {
+            return content != null ? content : reasoningContent;
+        }
+    }
+}
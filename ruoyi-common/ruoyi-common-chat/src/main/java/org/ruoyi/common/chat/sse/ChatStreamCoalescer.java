@@ -0,0 +1,400 @@
+package org.ruoyi.common.chat.sse;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Response;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import org.jetbrains.annotations.NotNull;
+import org.ruoyi.common.chat.sse.ChatStreamManager.ChatStream;
+import org.ruoyi.common.core.service.ConfigService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 相同请求合并
+ * 首页推荐问题、同一段文本的翻译等经常被很多用户同时触发, 输出确定(temperature 为 0)的相同请求同一时刻只向模型发起一次:
+ * 1. 流式对话: 第一个请求发起上游请求, 之后到达的相同请求订阅同一个上游, 先补发已输出的内容再接收后续输出;
+ *    每个订阅方有独立的有界队列, 由线程池推送, 慢的客户端不拖慢其他订阅方, 积压超过上限时断开该客户端;
+ *    所有订阅方都断开后取消上游请求;
+ * 2. 阻塞调用: 相同请求等待第一个请求的结果.
+ * 通过 chat/coalesce 开启, 请求key由调用方计算(见 CompletionCache#digest)
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatStreamCoalescer {
+
+    /**
+     * 每个订阅方最多积压的事件数(不含加入时补发的内容)
+     */
+    private static final int MAX_PENDING_EVENTS = 2048;
+
+    private final ChatStreamManager chatStreamManager;
+
+    private final ConfigService configService;
+
+    private final Map<String, SharedStream> streams = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<String>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * 实际发起的上游请求数
+     */
+    private final LongAdder upstreamRequests = new LongAdder();
+
+    /**
+     * 合并到进行中请求的请求数
+     */
+    private final LongAdder coalescedRequests = new LongAdder();
+
+    public boolean isEnabled() {
+        return Boolean.parseBoolean(configService.getConfigValue("chat", "coalesce"));
+    }
+
+    /**
+     * 订阅相同流式请求的输出
+     *
+     * @param key        请求key
+     * @param stream     订阅方的对话句柄, 关闭时退订
+     * @param emitter    订阅方的 SseEmitter, 输出结束后由本类关闭
+     * @param onComplete 回复完整结束后执行(如计费), 参数为回复内容, 回复包含思考过程时同样执行
+     * @return 没有进行中的相同请求时返回上游监听, 调用方用它发起请求; 已合并到进行中的请求时返回 null
+     */
+    public SharedStream subscribe(String key, ChatStream stream, SseEmitter emitter, Consumer<String> onComplete) {
+        Subscriber subscriber = new Subscriber(stream, emitter, onComplete);
+        while (true) {
+            SharedStream existing = streams.get(key);
+            if (existing != null && existing.attach(subscriber)) {
+                coalescedRequests.increment();
+                return null;
+            }
+            // 已结束的请求可能还没有移除, 直接替换
+            SharedStream created = new SharedStream(key);
+            if (existing == null ? streams.putIfAbsent(key, created) == null : streams.replace(key, existing, created)) {
+                // 上游请求还没有发起, 一定能加入
+                created.attach(subscriber);
+                upstreamRequests.increment();
+                return created;
+            }
+        }
+    }
+
+    /**
+     * 合并相同的阻塞调用, 同一时刻只有第一个请求真正执行
+     *
+     * @param key      请求key
+     * @param supplier 实际调用
+     * @return 调用结果
+     */
+    public String call(String key, Supplier<String> supplier) {
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> existing = calls.putIfAbsent(key, own);
+        if (existing != null) {
+            coalescedRequests.increment();
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待相同请求的结果被中断", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+            }
+        }
+        upstreamRequests.increment();
+        try {
+            String result = supplier.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, own);
+        }
+    }
+
+    /**
+     * 实际发起的上游请求数
+     */
+    public long getUpstreamRequests() {
+        return upstreamRequests.sum();
+    }
+
+    /**
+     * 合并到进行中请求的请求数
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    private enum State {
+        RUNNING, DONE, FAILED, CANCELED
+    }
+
+    /**
+     * 一个上游流式请求, 输出分发给所有订阅方
+     */
+    public final class SharedStream extends EventSourceListener {
+
+        private final String key;
+
+        /**
+         * 已输出的事件, 补发给后加入的订阅方
+         */
+        private final List<String> events = new ArrayList<>();
+
+        private final List<Subscriber> subscribers = new ArrayList<>();
+
+        private final StringBuilder content = new StringBuilder();
+
+        private boolean reasoning;
+
+        private volatile State state = State.RUNNING;
+
+        private EventSource eventSource;
+
+        private volatile Consumer<String> onComplete;
+
+        private SharedStream(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 回复完整结束后执行一次(如写入对话缓存), 回复包含思考过程时不执行
+         *
+         * @param action 参数为回复内容
+         */
+        public void onComplete(Consumer<String> action) {
+            this.onComplete = action;
+        }
+
+        @Override
+        public void onOpen(@NotNull EventSource eventSource, @NotNull Response response) {
+            synchronized (this) {
+                this.eventSource = eventSource;
+                if (state != State.CANCELED) {
+                    return;
+                }
+            }
+            eventSource.cancel();
+        }
+
+        @Override
+        public void onEvent(@NotNull EventSource eventSource, String id, String type, @NotNull String data) {
+            if (StreamFrames.DONE.equals(data)) {
+                finish(State.DONE);
+                return;
+            }
+            ChatDeltaParser.ChatDelta delta;
+            try {
+                delta = ChatDeltaParser.parse(data);
+            } catch (Exception e) {
+                log.error("解析模型响应失败: {}", data);
+                return;
+            }
+            if (delta.text() == null) {
+                return;
+            }
+            List<Subscriber> overflow = new ArrayList<>();
+            List<Subscriber> targets;
+            synchronized (this) {
+                if (delta.reasoningContent() != null) {
+                    reasoning = true;
+                }
+                content.append(delta.text());
+                events.add(data);
+                for (Subscriber subscriber : subscribers) {
+                    if (!subscriber.queue.offer(data)) {
+                        overflow.add(subscriber);
+                    }
+                }
+                targets = new ArrayList<>(subscribers);
+            }
+            for (Subscriber subscriber : overflow) {
+                log.warn("客户端接收过慢, 积压超过 {} 条, 断开连接", MAX_PENDING_EVENTS);
+                subscriber.drop();
+            }
+            for (Subscriber subscriber : targets) {
+                subscriber.schedule();
+            }
+        }
+
+        @Override
+        public void onClosed(@NotNull EventSource eventSource) {
+            // 没有收到 [DONE] 就结束视为失败
+            finish(State.FAILED);
+        }
+
+        @Override
+        public void onFailure(@NotNull EventSource eventSource, Throwable t, Response response) {
+            log.error("合并的流式请求失败: {}", t == null ? response : t.getMessage());
+            finish(State.FAILED);
+        }
+
+        /**
+         * 发起上游请求失败时调用, 结束所有订阅方
+         */
+        public void fail(Throwable t) {
+            log.error("发起合并的流式请求失败: {}", t.getMessage());
+            finish(State.FAILED);
+        }
+
+        private boolean attach(Subscriber subscriber) {
+            synchronized (this) {
+                if (state != State.RUNNING) {
+                    return false;
+                }
+                subscriber.shared = this;
+                subscriber.queue = new LinkedBlockingQueue<>(events.size() + MAX_PENDING_EVENTS);
+                subscriber.queue.addAll(events);
+                subscribers.add(subscriber);
+            }
+            subscriber.stream.onClose(subscriber::detach);
+            subscriber.schedule();
+            return true;
+        }
+
+        private void detach(Subscriber subscriber) {
+            EventSource cancel;
+            synchronized (this) {
+                if (!subscribers.remove(subscriber) || !subscribers.isEmpty() || state != State.RUNNING) {
+                    return;
+                }
+                // 所有订阅方都已断开, 取消上游请求, 之后的相同请求重新发起
+                state = State.CANCELED;
+                cancel = eventSource;
+            }
+            streams.remove(key, this);
+            if (cancel != null) {
+                cancel.cancel();
+            }
+        }
+
+        private void finish(State result) {
+            List<Subscriber> targets;
+            String reply;
+            boolean complete;
+            synchronized (this) {
+                if (state != State.RUNNING) {
+                    return;
+                }
+                state = result;
+                targets = new ArrayList<>(subscribers);
+                reply = content.toString();
+                complete = result == State.DONE && !reasoning;
+            }
+            streams.remove(key, this);
+            if (complete && onComplete != null) {
+                onComplete.accept(reply);
+            }
+            for (Subscriber subscriber : targets) {
+                subscriber.schedule();
+            }
+        }
+
+        private synchronized String getContent() {
+            return content.toString();
+        }
+    }
+
+    /**
+     * 订阅方, 按顺序推送队列中的事件, 同一时刻只有一个线程推送
+     */
+    private final class Subscriber {
+
+        private final ChatStream stream;
+
+        private final SseEmitter emitter;
+
+        private final Consumer<String> onComplete;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private SharedStream shared;
+
+        private BlockingQueue<String> queue;
+
+        private Subscriber(ChatStream stream, SseEmitter emitter, Consumer<String> onComplete) {
+            this.stream = stream;
+            this.emitter = emitter;
+            this.onComplete = onComplete;
+        }
+
+        private void schedule() {
+            if (finished.get() || !draining.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                chatStreamManager.dispatch(this::drain);
+            } catch (RejectedExecutionException e) {
+                draining.set(false);
+                log.warn("推送线程池已满, 断开连接");
+                drop();
+            }
+        }
+
+        private void drain() {
+            try {
+                String data;
+                while (!finished.get() && (data = queue.poll()) != null) {
+                    emitter.send(data);
+                }
+                if (queue.isEmpty() && shared.state != State.RUNNING && finished.compareAndSet(false, true)) {
+                    complete(shared.state);
+                }
+            } catch (Exception e) {
+                log.warn("推送合并的回复失败: {}", e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+            }
+            // 推送期间有新事件或上游已结束
+            if (!finished.get() && (!queue.isEmpty() || shared.state != State.RUNNING)) {
+                schedule();
+            }
+        }
+
+        /**
+         * 结束帧与直接请求一致, 见 {@link StreamFrames}
+         */
+        private void complete(State result) {
+            if (result == State.DONE) {
+                StreamFrames.done(emitter);
+                onComplete.accept(shared.getContent());
+            } else {
+                StreamFrames.error(emitter, StreamFrames.UPSTREAM_ERROR);
+            }
+        }
+
+        private void drop() {
+            if (finished.compareAndSet(false, true)) {
+                close();
+            }
+        }
+
+        private void close() {
+            finished.set(true);
+            shared.detach(this);
+            emitter.complete();
+        }
+
+        private void detach() {
+            finished.set(true);
+            shared.detach(this);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.ruoyi.common.chat.sse;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ruoyi.common.core.constant.TenantConstants;
+import org.ruoyi.common.core.exception.ServiceException;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.core.utils.Threads;
+import org.ruoyi.common.satoken.utils.LoginHelper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流式对话执行管理
+ * 1. 按租户限制同时进行的流式对话数量, 对话结束(完成、超时、客户端断开)时归还名额;
+ * 2. 客户端断开时取消上游的模型请求, 不再继续消耗 token;
+ * 3. 插件调用、联网搜索、ollama 等阻塞调用放到专用线程池执行, 不占用 servlet 线程和公共 ForkJoin 池.
+ * 项目运行在 JDK 17 上没有虚拟线程, 模型流式输出本身走 OkHttp 的异步回调, 不占用线程
+ *
+ * @date: 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChatStreamManager {
+
+    /**
+     * 每个租户默认允许同时进行的流式对话数
+     */
+    private static final int DEFAULT_TENANT_MAX_STREAMS = 200;
+
+    /**
+     * 阻塞调用线程池默认线程数
+     */
+    private static final int DEFAULT_STREAM_THREADS = 64;
+
+    private final ConfigService configService;
+
+    private final Map<String, Semaphore> tenantPermits = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * 开始一次流式对话, 当前租户名额用完时拒绝
+     *
+     * @param emitter 对话的 SseEmitter, 由本类注册完成、超时和异常回调, 调用方不要再注册
+     * @return 对话句柄
+     */
+    public ChatStream open(SseEmitter emitter) {
+        String tenantId = StringUtils.blankToDefault(LoginHelper.getTenantId(), TenantConstants.DEFAULT_TENANT_ID);
+        Semaphore permits = tenantPermits.computeIfAbsent(tenantId,
+            k -> new Semaphore(getIntConfig("tenantMaxStreams", DEFAULT_TENANT_MAX_STREAMS)));
+        if (!permits.tryAcquire()) {
+            log.warn("租户 {} 同时进行的对话数已达上限", tenantId);
+            throw new ServiceException("当前对话人数过多, 请稍后再试");
+        }
+        activeStreams.incrementAndGet();
+        ChatStream stream = new ChatStream(() -> {
+            permits.release();
+            activeStreams.decrementAndGet();
+        });
+        emitter.onCompletion(stream::close);
+        emitter.onTimeout(stream::close);
+        emitter.onError(e -> stream.close());
+        return stream;
+    }
+
+    /**
+     * 在专用线程池中执行对话中的阻塞调用, 对话关闭时中断执行
+     */
+    public void execute(ChatStream stream, Runnable task) {
+        Future<?> future;
+        try {
+            future = getExecutor().submit(() -> {
+                if (!stream.isClosed()) {
+                    task.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            stream.close();
+            throw new ServiceException("当前对话人数过多, 请稍后再试");
+        }
+        stream.onClose(() -> future.cancel(true));
+    }
+
+    /**
+     * 在专用线程池中执行短任务(如向客户端推送已缓冲的内容), 不绑定对话句柄
+     *
+     * @throws RejectedExecutionException 线程池已满
+     */
+    void dispatch(Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    /**
+     * 当前进行中的流式对话数
+     */
+    public int getActiveStreams() {
+        return activeStreams.get();
+    }
+
+    private ThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    int threads = getIntConfig("streamThreads", DEFAULT_STREAM_THREADS);
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(threads * 16),
+                        new BasicThreadFactory.Builder().namingPattern("chat-stream-%d").daemon(true).build(),
+                        new ThreadPoolExecutor.AbortPolicy());
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private int getIntConfig(String configKey, int defaultValue) {
+        String value = configService.getConfigValue("chat", configKey);
+        return StringUtils.isBlank(value) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            Threads.shutdownAndAwaitTermination(executor);
+        }
+    }
+
+    /**
+     * 一次流式对话的句柄, 关闭时归还名额并执行注册的取消动作
+     */
+    public static class ChatStream {
+
+        private final Runnable release;
+
+        private final List<Runnable> closeActions = new ArrayList<>();
+
+        private boolean closed;
+
+        ChatStream(Runnable release) {
+            this.release = release;
+        }
+
+        /**
+         * 注册关闭时执行的动作(如取消上游请求), 已关闭时立即执行
+         */
+        public void onClose(Runnable action) {
+            synchronized (this) {
+                if (!closed) {
+                    closeActions.add(action);
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        public synchronized boolean isClosed() {
+            return closed;
+        }
+
+        public void close() {
+            List<Runnable> actions;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                actions = new ArrayList<>(closeActions);
+                closeActions.clear();
+            }
+            release.run();
+            for (Runnable action : actions) {
+                try {
+                    action.run();
+                } catch (Exception e) {
+                    log.warn("关闭流式对话失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -67,7 +67,7 @@ public abstract class PluginListener<R extends PluginParam, T> extends EventSour
     public void onClosedAfter() {
         log.debug("构造的方法值：{}", getArguments());
 
-        R realFunctionParam = (R) JSONUtil.toBean(getArguments(), plugin.getR());
+        R realFunctionParam = plugin.parseArgs(getArguments());
         T tq = plugin.func(realFunctionParam);
 
         FunctionCall functionCall = FunctionCall.builder()
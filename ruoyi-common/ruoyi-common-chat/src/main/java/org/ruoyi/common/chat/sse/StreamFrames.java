@@ -0,0 +1,62 @@
+package org.ruoyi.common.chat.sse;
+
+import cn.hutool.json.JSONUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.Map;
+
+/**
+ * 流式对话的结束帧
+ * 直接请求、合并请求和缓存回放使用相同的结束方式, 前端无需区分:
+ * 正常结束时发送 [DONE] 后关闭连接; 上游失败或没有收到结束标记时发送与 OpenAI 格式一致的错误帧后关闭连接.
+ * 客户端已断开时发送失败只记录日志, 不影响调用方后续的计费等处理
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+public final class StreamFrames {
+
+    public static final String DONE = "[DONE]";
+
+    /**
+     * 上游失败时返回给客户端的提示, 不透出上游的错误详情
+     */
+    public static final String UPSTREAM_ERROR = "模型服务响应中断, 请稍后重试";
+
+    private StreamFrames() {
+    }
+
+    /**
+     * 正常结束
+     */
+    public static void done(ResponseBodyEmitter emitter) {
+        try {
+            emitter.send(DONE);
+        } catch (Exception e) {
+            log.warn("推送结束标记失败: {}", e.getMessage());
+        }
+        emitter.complete();
+    }
+
+    /**
+     * 异常结束
+     *
+     * @param message 返回给客户端的错误信息
+     */
+    public static void error(ResponseBodyEmitter emitter, String message) {
+        try {
+            emitter.send(errorFrame(message));
+        } catch (Exception e) {
+            log.warn("推送错误信息失败: {}", e.getMessage());
+        }
+        emitter.complete();
+    }
+
+    /**
+     * 错误帧, 格式为 {"error":{"message":"..."}}
+     */
+    public static String errorFrame(String message) {
+        return JSONUtil.toJsonStr(Map.of("error", Map.of("message", message)));
+    }
+}
@@ -1,5 +1,8 @@
 package org.ruoyi.common.chat.utils;
 
+import cn.hutool.cache.Cache;
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.core.lang.hash.MurmurHash;
 import cn.hutool.core.util.StrUtil;
 import com.knuddels.jtokkit.Encodings;
 import com.knuddels.jtokkit.api.Encoding;
@@ -30,6 +33,14 @@ public class TikTokensUtil {
      * registry实例
      */
     private static final EncodingRegistry registry = Encodings.newDefaultEncodingRegistry();
+    /**
+     * 长文本的token数缓存, 多轮对话中历史消息每轮都会重新计算, 命中缓存后只需计算哈希
+     */
+    private static final Cache<TokenKey, Integer> tokenCache = CacheUtil.newLRUCache(10000);
+    /**
+     * 超过该长度的文本才缓存, 短文本直接计算更快
+     */
+    private static final int CACHE_MIN_LENGTH = 256;
 
     static {
         for (ModelType modelType : ModelType.values()) {
@@ -66,7 +77,59 @@ public class TikTokensUtil {
      * @return tokens数量
      */
     public static int tokens(@NotNull Encoding enc, String text) {
-        return encode(enc, text).size();
+        if (StrUtil.isEmpty(text)) {
+            return 0;
+        }
+        if (text.length() < CACHE_MIN_LENGTH) {
+            return enc.countTokens(text);
+        }
+        // 只计数不生成编码数组, 长文本按哈希缓存结果
+        TokenKey key = new TokenKey(enc.getName(), text.length(), MurmurHash.hash64(text));
+        Integer count = tokenCache.get(key);
+        if (count == null) {
+            count = enc.countTokens(text);
+            tokenCache.put(key, count);
+        }
+        return count;
+    }
+
+    /**
+     * 估算text信息的tokens, 不做编码, 用于发送请求前的预算检查
+     * 英文等ASCII字符约4个字符一个token, 中文等其他字符约一个字符一个token
+     *
+     * @param text 文本信息
+     * @return 估算的tokens数量
+     */
+    public static int estimateTokens(String text) {
+        if (StrUtil.isEmpty(text)) {
+            return 0;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 128) {
+                ascii++;
+            } else {
+                other++;
+            }
+        }
+        return (ascii + 3) / 4 + other;
+    }
+
+    /**
+     * 估算messages的tokens, 不做编码, 用于发送请求前的预算检查
+     *
+     * @param messages 消息体
+     * @return 估算的tokens数量
+     */
+    public static int estimateTokens(@NotNull List<Message> messages) {
+        int sum = 3;
+        for (Message msg : messages) {
+            sum += 3 + estimateTokens(Objects.toString(msg.getContent(), null)) + estimateTokens(msg.getName());
+            // 角色名称固定为一个token
+            sum += 1;
+        }
+        return sum;
     }
 
 
@@ -113,7 +176,7 @@ public class TikTokensUtil {
      * @return tokens数量
      */
     public static int tokens(@NotNull EncodingType encodingType, String text) {
-        return encode(encodingType, text).size();
+        return tokens(getEncoding(encodingType), text);
     }
 
 
@@ -166,7 +229,15 @@ public class TikTokensUtil {
      * @return tokens数量
      */
     public static int tokens(@NotNull String modelName, String text) {
-        return encode(modelName, text).size();
+        if (StrUtil.isEmpty(text)) {
+            return 0;
+        }
+        Encoding enc = getEncoding(modelName);
+        if (Objects.isNull(enc)) {
+            log.warn("[{}]模型不存在或者暂不支持计算tokens，直接返回tokens==0",modelName);
+            return 0;
+        }
+        return tokens(enc, text);
     }
 
 
@@ -234,4 +305,9 @@ public class TikTokensUtil {
         return enc.decode(encoded);
     }
 
+    /**
+     * token数缓存键: 编码名称 + 文本长度 + 文本哈希
+     */
+    private record TokenKey(String encodingName, int length, long hash) {
+    }
 }
@@ -0,0 +1,86 @@
+package org.ruoyi.common.chat.cache;
+
+import cn.hutool.extra.spring.SpringUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.entity.chat.ChatCompletion;
+import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.openai.OpenAiStreamClient;
+import org.ruoyi.common.chat.sse.ChatStreamManager;
+import org.ruoyi.common.core.service.ConfigService;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 对话结果缓存key测试
+ * 同一服务上相同的确定性请求key相同; 服务地址或 key 不同的客户端不共用缓存, 也不合并请求
+ *
+ * @date 2026/10/19
+ */
+class CompletionCacheTest {
+
+    private final CompletionCache completionCache = new CompletionCache(mock(ConfigService.class), mock(ChatStreamManager.class));
+
+    @BeforeAll
+    static void initJson() {
+        // JsonUtils 从 Spring 容器获取 ObjectMapper
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("objectMapper", new ObjectMapper());
+        context.refresh();
+        new SpringUtil().setApplicationContext(context);
+    }
+
+    @Test
+    void sameClientAndRequestShareDigest() {
+        assertEquals(completionCache.digest(client("https://a.example.com/", "sk-1", "sk-2"), completion(0)),
+            completionCache.digest(client("https://a.example.com/", "sk-2", "sk-1"), completion(0)));
+    }
+
+    @Test
+    void differentHostDoesNotShareDigest() {
+        assertNotEquals(completionCache.digest(client("https://a.example.com/", "sk-1"), completion(0)),
+            completionCache.digest(client("https://b.example.com/", "sk-1"), completion(0)));
+    }
+
+    @Test
+    void differentKeyDoesNotShareDigest() {
+        assertNotEquals(completionCache.digest(client("https://a.example.com/", "sk-1"), completion(0)),
+            completionCache.digest(client("https://a.example.com/", "sk-2"), completion(0)));
+    }
+
+    @Test
+    void nonDeterministicRequestHasNoDigest() {
+        assertNull(completionCache.digest(client("https://a.example.com/", "sk-1"), completion(0.7)));
+    }
+
+    @Test
+    void cacheKeyRequiresCacheEnabled() {
+        assertNull(completionCache.getKey(client("https://a.example.com/", "sk-1"), completion(0)));
+    }
+
+    @Test
+    void digestDoesNotContainApiKey() {
+        String digest = completionCache.digest(client("https://a.example.com/", "sk-secret"), completion(0));
+        assertFalse(digest.contains("sk-secret"));
+    }
+
+    private static OpenAiStreamClient client(String apiHost, String... apiKeys) {
+        return OpenAiStreamClient.builder().apiHost(apiHost).apiKey(List.of(apiKeys)).build();
+    }
+
+    private static ChatCompletion completion(double temperature) {
+        return ChatCompletion.builder()
+            .model("gpt-4o-mini")
+            .temperature(temperature)
+            .messages(List.of(Message.builder().role(Message.Role.USER).content("你好").build()))
+            .build();
+    }
+}
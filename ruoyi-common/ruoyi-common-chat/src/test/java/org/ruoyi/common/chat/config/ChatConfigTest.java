@@ -0,0 +1,152 @@
+package org.ruoyi.common.chat.config;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.entity.chat.ChatCompletion;
+import org.ruoyi.common.chat.entity.chat.ChatCompletionResponse;
+import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.openai.OpenAiStreamClient;
+import org.ruoyi.common.core.service.ConfigService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 按请求获取客户端测试
+ * 两个本地 HTTP 服务模拟不同的模型服务, 并发请求交替使用两组 (apiHost, apiKey), 每个请求都必须发往自己的服务并带上自己的 key
+ *
+ * @date 2026/10/19
+ */
+class ChatConfigTest {
+
+    private static final int THREADS = 16;
+
+    private static final int REQUESTS_PER_THREAD = 50;
+
+    private final List<Upstream> upstreams = new ArrayList<>();
+
+    private OkHttpClientRegistry okHttpClientRegistry;
+
+    private ChatConfig chatConfig;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstreams.add(new Upstream("a", "sk-a"));
+        upstreams.add(new Upstream("b", "sk-b"));
+        ConfigService configService = mock(ConfigService.class);
+        okHttpClientRegistry = new OkHttpClientRegistry(configService);
+        okHttpClientRegistry.init();
+        chatConfig = new ChatConfig(configService, okHttpClientRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstreams.forEach(upstream -> upstream.server.stop(0));
+        okHttpClientRegistry.destroy();
+    }
+
+    @Test
+    void sameHostAndKeyShareOneClient() {
+        Upstream upstream = upstreams.get(0);
+        assertSame(chatConfig.getOpenAiStreamClient(upstream.apiHost, upstream.apiKey),
+            chatConfig.getOpenAiStreamClient(upstream.apiHost, upstream.apiKey));
+    }
+
+    @Test
+    void concurrentRequestsReachTheirOwnHostWithTheirOwnKey() throws Exception {
+        AtomicInteger wrongReplies = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < REQUESTS_PER_THREAD; j++) {
+                    Upstream upstream = upstreams.get(ThreadLocalRandom.current().nextInt(upstreams.size()));
+                    // 与业务代码一样, 每个请求按所选模型解析客户端并只作为局部变量使用
+                    OpenAiStreamClient client = chatConfig.getOpenAiStreamClient(upstream.apiHost, upstream.apiKey);
+                    ChatCompletionResponse response = client.chatCompletion(ChatCompletion.builder()
+                        .messages(List.of(Message.builder().role(Message.Role.USER).content("hi").build()))
+                        .build());
+                    if (!upstream.name.equals(response.getChoices().get(0).getMessage().getContent())) {
+                        wrongReplies.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, wrongReplies.get());
+        int total = 0;
+        for (Upstream upstream : upstreams) {
+            assertEquals(0, upstream.wrongKeys.get(), "服务 " + upstream.name + " 收到了其他服务的 key");
+            assertTrue(upstream.requests.get() > 0);
+            total += upstream.requests.get();
+        }
+        assertEquals(THREADS * REQUESTS_PER_THREAD, total);
+    }
+
+    /**
+     * 模拟的模型服务, 只接受自己的 key, 回复内容为服务名称
+     */
+    private static class Upstream {
+
+        private final String name;
+
+        private final String apiKey;
+
+        private final String apiHost;
+
+        private final HttpServer server;
+
+        private final AtomicInteger requests = new AtomicInteger();
+
+        private final AtomicInteger wrongKeys = new AtomicInteger();
+
+        Upstream(String name, String apiKey) throws IOException {
+            this.name = name;
+            this.apiKey = apiKey;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/v1/chat/completions", exchange -> {
+                requests.incrementAndGet();
+                if (!("Bearer " + apiKey).equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                    wrongKeys.incrementAndGet();
+                }
+                byte[] body = ("{\"id\":\"chatcmpl-" + name + "\",\"object\":\"chat.completion\",\"created\":1,"
+                    + "\"model\":\"gpt-3.5-turbo\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                    + "\"content\":\"" + name + "\"},\"finish_reason\":\"stop\"}]}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+            apiHost = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package org.ruoyi.common.chat.holder;
+
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.utils.TikTokensUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WebSocket 对话上下文测试
+ * 按 token 预算从最新消息向前截取, 最新一条消息总是保留; 不同用户的相同对话ID互不影响
+ *
+ * @date 2026/10/19
+ */
+class ConversationHolderTest {
+
+    private static final String MODEL = "gpt-3.5-turbo";
+
+    @Test
+    void contextKeepsNewestMessagesWithinBudget() {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            messages.add(message("message " + i));
+        }
+        int perMessage = 4 + TikTokensUtil.tokens(MODEL, "message 0");
+
+        List<Message> context = ConversationHolder.truncate(messages, MODEL, perMessage * 3);
+
+        assertEquals(messages.subList(7, 10), context);
+    }
+
+    @Test
+    void contextStopsAtFirstMessageOverBudget() {
+        List<Message> messages = List.of(message("short"), message("long ".repeat(100)), message("newest"));
+        int budget = 4 + TikTokensUtil.tokens(MODEL, "newest") + 4 + TikTokensUtil.tokens(MODEL, "short");
+
+        // 中间的长消息超出预算后停止, 不跳过它去取更早的短消息, 保证上下文连续
+        assertEquals(List.of(messages.get(2)), ConversationHolder.truncate(messages, MODEL, budget));
+    }
+
+    @Test
+    void newestMessageIsKeptEvenOverBudget() {
+        Message newest = message("long ".repeat(500));
+        List<Message> context = ConversationHolder.truncate(List.of(message("old"), newest), MODEL, 10);
+
+        assertEquals(1, context.size());
+        assertSame(newest, context.get(0));
+    }
+
+    @Test
+    void wholeHistoryFitsLargeBudget() {
+        List<Message> messages = List.of(message("a"), message("b"), message("c"));
+
+        assertEquals(messages, ConversationHolder.truncate(messages, MODEL, 10_000));
+        assertTrue(ConversationHolder.truncate(List.of(), MODEL, 10_000).isEmpty());
+    }
+
+    @Test
+    void sameConversationIdIsScopedByUser() {
+        assertEquals("1:abc", ConversationHolder.userConversationId(1L, "abc"));
+        assertNotEquals(ConversationHolder.userConversationId(1L, "abc"),
+            ConversationHolder.userConversationId(2L, "abc"));
+    }
+
+    private static Message message(String content) {
+        return Message.builder().role(Message.Role.USER).content(content).build();
+    }
+}
@@ -0,0 +1,92 @@
+package org.ruoyi.common.chat.interceptor;
+
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.core.domain.model.LoginUser;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.ruoyi.common.chat.constant.WebSocketConstants.CONVERSATION_ID_KEY;
+import static org.ruoyi.common.chat.constant.WebSocketConstants.LOGIN_USER_KEY;
+
+/**
+ * WebSocket 握手测试
+ * 客户端指定的对话ID按登录用户隔离, 未登录时不允许指定对话ID
+ *
+ * @date 2026/10/19
+ */
+class PlusWebSocketInterceptorTest {
+
+    @Test
+    void loggedInConversationIdIsScopedByUser() {
+        LoginUser loginUser = new LoginUser();
+        loginUser.setUserId(7L);
+        Map<String, Object> attributes = new HashMap<>();
+        ServerHttpResponse response = mock(ServerHttpResponse.class);
+
+        assertTrue(interceptor(loginUser).beforeHandshake(request("/resource/websocket?conversationId=abc"),
+            response, null, attributes));
+
+        assertEquals("7:abc", attributes.get(CONVERSATION_ID_KEY));
+        assertEquals(loginUser, attributes.get(LOGIN_USER_KEY));
+        verify(response, never()).setStatusCode(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void anonymousConversationIdIsRejected() {
+        Map<String, Object> attributes = new HashMap<>();
+        ServerHttpResponse response = mock(ServerHttpResponse.class);
+
+        assertFalse(interceptor(null).beforeHandshake(request("/resource/websocket?conversationId=abc"),
+            response, null, attributes));
+
+        verify(response).setStatusCode(HttpStatus.UNAUTHORIZED);
+        assertTrue(attributes.isEmpty());
+    }
+
+    @Test
+    void anonymousWithoutConversationIdIsAccepted() {
+        Map<String, Object> attributes = new HashMap<>();
+
+        assertTrue(interceptor(null).beforeHandshake(request("/resource/websocket"),
+            mock(ServerHttpResponse.class), null, attributes));
+        assertTrue(attributes.isEmpty());
+    }
+
+    @Test
+    void malformedConversationIdIsRejected() {
+        LoginUser loginUser = new LoginUser();
+        loginUser.setUserId(7L);
+        ServerHttpResponse response = mock(ServerHttpResponse.class);
+
+        assertFalse(interceptor(loginUser).beforeHandshake(request("/resource/websocket?conversationId=a:b"),
+            response, null, new HashMap<>()));
+        verify(response).setStatusCode(HttpStatus.BAD_REQUEST);
+    }
+
+    private static PlusWebSocketInterceptor interceptor(LoginUser loginUser) {
+        return new PlusWebSocketInterceptor() {
+            @Override
+            protected LoginUser getLoginUser() {
+                return loginUser;
+            }
+        };
+    }
+
+    private static ServerHttpRequest request(String path) {
+        ServerHttpRequest request = mock(ServerHttpRequest.class);
+        when(request.getURI()).thenReturn(URI.create("ws://127.0.0.1:6039" + path));
+        return request;
+    }
+}
@@ -0,0 +1,107 @@
+package org.ruoyi.common.chat.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 对话监控指标测试
+ * 客户端传入的模型名称只有已配置的模型作为标签, 其余归为 other; 按知识库统计的耗时不发布直方图
+ *
+ * @date 2026/10/19
+ */
+class ChatMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    /**
+     * 各指标注册时的分布统计配置, SimpleMeterRegistry 不输出直方图桶, 按配置判断是否发布直方图
+     */
+    private final Map<String, DistributionStatisticConfig> distributions = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                distributions.put(id.getName(), config);
+                return config;
+            }
+        });
+        Metrics.addRegistry(meterRegistry);
+        ChatMetrics.setModels(List.of("gpt-4o-mini", "deepseek-chat", " "));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(meterRegistry);
+        ChatMetrics.setModels(List.of());
+    }
+
+    @Test
+    void modelTagKeepsOnlyConfiguredModels() {
+        assertEquals("gpt-4o-mini", ChatMetrics.modelTag("gpt-4o-mini"));
+        assertEquals("other", ChatMetrics.modelTag("gpt-4o-mini-" + System.nanoTime()));
+        assertEquals("unknown", ChatMetrics.modelTag(null));
+        assertEquals("unknown", ChatMetrics.modelTag(" "));
+
+        ChatMetrics.setModels(List.of("deepseek-chat"));
+        assertEquals("other", ChatMetrics.modelTag("gpt-4o-mini"));
+    }
+
+    @Test
+    void arbitraryModelNamesShareOneSeries() {
+        for (int i = 0; i < 50; i++) {
+            stream("client-model-" + i);
+        }
+        stream("deepseek-chat");
+
+        Set<String> models = meterRegistry.find(ChatMetrics.STREAM_DURATION).timers().stream()
+            .map(timer -> timer.getId().getTag("model")).collect(Collectors.toSet());
+        assertEquals(Set.of("other", "deepseek-chat"), models);
+        assertEquals(50, meterRegistry.get(ChatMetrics.PROVIDER_REQUESTS).tag("model", "other").counter().count());
+    }
+
+    @Test
+    void perKidTimerHasNoHistogram() {
+        ChatMetrics.timer(ChatMetrics.VECTOR_DURATION, "backend", "milvus", "operation", "search")
+            .record(5, TimeUnit.MILLISECONDS);
+        ChatMetrics.simpleTimer(ChatMetrics.VECTOR_KID_DURATION, "backend", "milvus", "operation", "search", "kid", "42")
+            .record(5, TimeUnit.MILLISECONDS);
+
+        assertTrue(Boolean.TRUE.equals(distributions.get(ChatMetrics.VECTOR_DURATION).isPercentileHistogram()));
+        assertFalse(Boolean.TRUE.equals(distributions.get(ChatMetrics.VECTOR_KID_DURATION).isPercentileHistogram()));
+        assertEquals(1, meterRegistry.get(ChatMetrics.VECTOR_KID_DURATION).tag("kid", "42").timer().count());
+    }
+
+    /**
+     * 模拟一次完整的流式对话
+     */
+    private static void stream(String model) {
+        EventSourceListener listener = ChatMetrics.instrument(mock(EventSourceListener.class), model, "https://api.example.com/");
+        EventSource eventSource = mock(EventSource.class);
+        listener.onEvent(eventSource, null, null, "{\"choices\":[]}");
+        listener.onEvent(eventSource, null, null, "{\"choices\":[]}");
+        listener.onEvent(eventSource, null, null, "[DONE]");
+    }
+}
@@ -0,0 +1,122 @@
+package org.ruoyi.common.chat.metrics;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Request;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式对话监控开销基准, 不随单元测试执行, 需要时直接运行 main 方法.
+ * 对同一段模拟流式输出, 对比直接回调原监听器和经 {@link ChatMetrics#instrument} 包装后回调的耗时,
+ * 包装的开销包括每个请求的标签处理、结束时的指标记录和每个分片的计数, 按请求和按分片分别输出
+ *
+ * @date 2026/10/19
+ */
+public class MeteredEventSourceListenerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int MEASURE_ROUNDS = 10;
+
+    /**
+     * 每轮模拟的请求数
+     */
+    private static final int STREAMS = 20_000;
+
+    /**
+     * 每个请求的输出分片数
+     */
+    private static final int TOKENS = 200;
+
+    private static final String API_HOST = "https://api.openai.com/";
+
+    private static final EventSource EVENT_SOURCE = new EventSource() {
+        @NotNull
+        @Override
+        public Request request() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    /**
+     * 防止回调被 JIT 消除
+     */
+    private static long sink;
+
+    public static void main(String[] args) {
+        Metrics.addRegistry(new SimpleMeterRegistry());
+        ChatMetrics.setModels(List.of("gpt-4o-mini", "deepseek-chat"));
+        List<String> stream = stream(TOKENS);
+        EventSourceListener listener = new EventSourceListener() {
+            @Override
+            public void onEvent(@NotNull EventSource eventSource, @Nullable String id, @Nullable String type, @NotNull String data) {
+                sink += data.length();
+            }
+        };
+        double raw = bench("raw listener", stream, () -> listener);
+        double known = bench("instrumented, known model", stream, () -> ChatMetrics.instrument(listener, "gpt-4o-mini", API_HOST));
+        double other = bench("instrumented, other model", stream, () -> ChatMetrics.instrument(listener, "client-model", API_HOST));
+        System.out.printf("overhead known model: %8.1f ns/request, %6.2f ns/event%n", known - raw, (known - raw) / (TOKENS + 1));
+        System.out.printf("overhead other model: %8.1f ns/request, %6.2f ns/event%n", other - raw, (other - raw) / (TOKENS + 1));
+        System.out.println("sink=" + sink);
+    }
+
+    /**
+     * @return 平均每个请求的耗时(纳秒)
+     */
+    private static double bench(String name, List<String> stream, ListenerFactory factory) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(stream, factory);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            long elapsed = run(stream, factory);
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        double avg = (double) total / MEASURE_ROUNDS / STREAMS;
+        System.out.printf("%-28s avg %10.1f ns/request, best %10.1f ns/request%n", name, avg, (double) best / STREAMS);
+        return avg;
+    }
+
+    private static long run(List<String> stream, ListenerFactory factory) {
+        long start = System.nanoTime();
+        for (int i = 0; i < STREAMS; i++) {
+            EventSourceListener listener = factory.create();
+            for (String data : stream) {
+                listener.onEvent(EVENT_SOURCE, null, null, data);
+            }
+            listener.onClosed(EVENT_SOURCE);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * 模拟的流式输出, tokens 个内容分片和结束标记
+     */
+    private static List<String> stream(int tokens) {
+        List<String> stream = new ArrayList<>();
+        for (int i = 0; i < tokens; i++) {
+            stream.add("{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion.chunk\",\"model\":\"gpt-4o-mini\","
+                + "\"choices\":[{\"index\":0,\"delta\":{\"content\":\"token" + i + "\"},\"finish_reason\":null}]}");
+        }
+        stream.add("[DONE]");
+        return stream;
+    }
+
+    @FunctionalInterface
+    private interface ListenerFactory {
+        EventSourceListener create();
+    }
+}
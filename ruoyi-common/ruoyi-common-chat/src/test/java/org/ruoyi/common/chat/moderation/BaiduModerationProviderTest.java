@@ -0,0 +1,124 @@
+package org.ruoyi.common.chat.moderation;
+
+import cn.hutool.extra.spring.SpringUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.config.OkHttpClientRegistry;
+import org.ruoyi.common.core.service.ConfigService;
+import org.springframework.context.support.StaticApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 百度文本审核测试
+ * 用拦截器模拟百度接口: 请求失败、返回 error_code、没有审核结论或审核失败时返回未审核, 不当作合规结论
+ *
+ * @date 2026/10/19
+ */
+class BaiduModerationProviderTest {
+
+    private static final String TOKEN = "{\"access_token\":\"token\",\"expires_in\":2592000}";
+
+    /**
+     * 审核接口的响应, 为 null 时模拟网络异常
+     */
+    private volatile String censorResponse;
+
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+
+    private BaiduModerationProvider provider;
+
+    @BeforeAll
+    static void initJson() {
+        // JsonUtils 从 Spring 容器获取 ObjectMapper
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("objectMapper", new ObjectMapper());
+        context.refresh();
+        new SpringUtil().setApplicationContext(context);
+    }
+
+    @BeforeEach
+    void setUp() {
+        OkHttpClient client = new OkHttpClient.Builder().addInterceptor(chain -> {
+            String url = chain.request().url().toString();
+            String body;
+            if (url.contains("/oauth/2.0/token")) {
+                tokenRequests.incrementAndGet();
+                body = TOKEN;
+            } else if (censorResponse == null) {
+                throw new IOException("connect timed out");
+            } else {
+                body = censorResponse;
+            }
+            return new Response.Builder()
+                .request(chain.request())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, MediaType.get("application/json")))
+                .build();
+        }).build();
+        OkHttpClientRegistry registry = mock(OkHttpClientRegistry.class);
+        when(registry.getClient(anyString(), any(OkHttpClientRegistry.TimeoutProfile.class))).thenReturn(client);
+        ConfigService configService = mock(ConfigService.class);
+        when(configService.getConfigValue("review", "apiKey")).thenReturn("ak");
+        when(configService.getConfigValue("review", "secretKey")).thenReturn("sk");
+        provider = new BaiduModerationProvider(configService, registry);
+    }
+
+    @Test
+    void compliantAndRejected() {
+        censorResponse = "{\"conclusion\":\"合规\",\"conclusionType\":1}";
+        assertSame(ModerationResult.pass(), provider.review("你好"));
+
+        censorResponse = "{\"conclusion\":\"不合规\",\"conclusionType\":2}";
+        ModerationResult result = provider.review("你好");
+        assertFalse(result.compliant());
+        assertTrue(result.reviewed());
+        assertEquals("不合规", result.reason());
+        // access token 被缓存
+        assertEquals(1, tokenRequests.get());
+    }
+
+    @Test
+    void requestFailureIsUnreviewed() {
+        censorResponse = null;
+        assertSame(ModerationResult.unreviewed(), provider.review("你好"));
+    }
+
+    @Test
+    void errorCodeIsUnreviewedAndRefreshesToken() {
+        censorResponse = "{\"error_code\":110,\"error_msg\":\"Access token invalid or no longer valid\"}";
+        assertSame(ModerationResult.unreviewed(), provider.review("你好"));
+
+        censorResponse = "{\"conclusion\":\"合规\",\"conclusionType\":1}";
+        assertSame(ModerationResult.pass(), provider.review("你好"));
+        assertEquals(2, tokenRequests.get());
+    }
+
+    @Test
+    void missingOrFailedConclusionIsUnreviewed() {
+        censorResponse = "{\"log_id\":1}";
+        assertSame(ModerationResult.unreviewed(), provider.review("你好"));
+
+        censorResponse = "{\"conclusion\":\"审核失败\",\"conclusionType\":4}";
+        assertSame(ModerationResult.unreviewed(), provider.review("你好"));
+    }
+}
@@ -0,0 +1,95 @@
+package org.ruoyi.common.chat.moderation;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.core.service.ConfigService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 文本审核测试
+ * 审核接口异常的放行结果不缓存; 关键词/正则配置变更后缓存的结果不再命中
+ *
+ * @date 2026/10/19
+ */
+class ModerationServiceTest {
+
+    private final Map<String, String> config = new HashMap<>();
+
+    private ModerationProvider remote;
+
+    private ModerationService moderationService;
+
+    @BeforeEach
+    void setUp() {
+        ConfigService configService = mock(ConfigService.class);
+        when(configService.getConfigValue(anyString(), anyString())).thenAnswer(invocation ->
+            config.get(invocation.getArgument(0) + "/" + invocation.getArgument(1)));
+        remote = mock(ModerationProvider.class);
+        when(remote.getName()).thenReturn("remote");
+        when(remote.review(anyString())).thenReturn(ModerationResult.pass());
+        config.put("review/provider", "keyword,remote");
+        moderationService = new ModerationService(configService,
+            List.of(new KeywordModerationProvider(configService), remote));
+    }
+
+    @Test
+    void reviewedResultIsCached() {
+        assertSame(ModerationResult.pass(), moderationService.review("你好"));
+        assertSame(ModerationResult.pass(), moderationService.review("你好"));
+
+        verify(remote, times(1)).review("你好");
+    }
+
+    @Test
+    void unreviewedResultIsNotCached() {
+        when(remote.review(anyString())).thenReturn(ModerationResult.unreviewed());
+
+        ModerationResult result = moderationService.review("你好");
+        assertTrue(result.compliant());
+        assertFalse(result.reviewed());
+
+        // 审核接口恢复后重新审核, 结论被缓存
+        when(remote.review(anyString())).thenReturn(ModerationResult.reject("违规"));
+        assertFalse(moderationService.review("你好").compliant());
+        assertFalse(moderationService.review("你好").compliant());
+        verify(remote, times(2)).review("你好");
+    }
+
+    @Test
+    void rejectionIsCachedEvenIfAnotherProviderIsUnavailable() {
+        config.put("review/keywords", "违禁");
+        when(remote.review(anyString())).thenReturn(ModerationResult.unreviewed());
+
+        assertFalse(moderationService.review("一段违禁内容").compliant());
+        assertFalse(moderationService.review("一段违禁内容").compliant());
+        // 关键词已拒绝, 不再请求远程审核
+        verify(remote, times(0)).review(anyString());
+    }
+
+    @Test
+    void changedKeywordsInvalidateCachedResult() {
+        assertTrue(moderationService.review("一段违禁内容").compliant());
+
+        config.put("review/keywords", "违禁");
+        ModerationResult result = moderationService.review("一段违禁内容");
+        assertFalse(result.compliant());
+        assertEquals("包含敏感词: 违禁", result.reason());
+
+        config.put("review/keywords", "");
+        config.put("review/patterns", "违.内容");
+        assertEquals("匹配敏感规则: 违.内容", moderationService.review("一段违禁内容").reason());
+    }
+}
@@ -0,0 +1,231 @@
+package org.ruoyi.common.chat.openai;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.entity.files.UploadFileResponse;
+import org.ruoyi.common.chat.entity.whisper.Transcriptions;
+import org.ruoyi.common.chat.entity.whisper.WhisperResponse;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 文件流式上传测试
+ * 本地 HTTP 服务模拟文件上传和语音转文字接口, 统计收到的文件字节数并记录其余 multipart 内容.
+ * 文件内容全部为 0x01, 由输入流边生成边计数, 不占内存; 服务端收到第一个文件字节时记录输入流已被读取的字节数,
+ * 先把文件整个读入内存(或临时文件)再发送时该值等于文件大小, 边读边写时只比 socket 缓冲区略多
+ *
+ * @date 2026/10/19
+ */
+class StreamingUploadTest {
+
+    private static final byte FILE_BYTE = 0x01;
+
+    /**
+     * 大文件上传的文件大小
+     */
+    private static final long LARGE_FILE_BYTES = 256L * 1024 * 1024;
+
+    private static final String API_KEY = "sk-upload";
+
+    private HttpServer server;
+
+    private OpenAiStreamClient client;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * 服务端收到的文件字节数
+     */
+    private final AtomicLong receivedFileBytes = new AtomicLong(-1);
+
+    /**
+     * 服务端收到第一个文件字节时, 输入流已被读取的字节数
+     */
+    private final AtomicLong readWhenFirstByteArrived = new AtomicLong(-1);
+
+    /**
+     * 请求体中文件以外的内容: multipart 分隔符、各部分的头和表单字段
+     */
+    private volatile String formText;
+
+    private volatile String authorization;
+
+    private CountingSource source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/files", exchange -> {
+            long bytes = receive(exchange);
+            respond(exchange, "{\"id\":\"file-1\",\"object\":\"file\",\"bytes\":" + bytes
+                + ",\"filename\":\"train.jsonl\",\"purpose\":\"fine-tune\"}");
+        });
+        server.createContext("/v1/audio/transcriptions", exchange -> {
+            long bytes = receive(exchange);
+            respond(exchange, "{\"text\":\"received " + bytes + " bytes\"}");
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        client = OpenAiStreamClient.builder()
+            .apiHost("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+            .apiKey(List.of(API_KEY))
+            .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void uploadFileSendsFileAndPurpose() {
+        source = new CountingSource(1024);
+        UploadFileResponse response = client.uploadFile("fine-tune", source, "train.jsonl", 1024);
+
+        assertEquals(1024, response.getBytes());
+        assertEquals(1024, receivedFileBytes.get());
+        assertEquals("Bearer " + API_KEY, authorization);
+        assertTrue(formText.contains("name=\"file\"; filename=\"train.jsonl\""), formText);
+        assertTrue(formText.contains("name=\"purpose\""), formText);
+        assertTrue(formText.contains("fine-tune"), formText);
+        // 发送时才打开输入流, 发送完成后关闭
+        assertEquals(1, source.opened.get());
+        assertEquals(1, source.closed.get());
+    }
+
+    @Test
+    void transcriptionSendsFileAndParameters() {
+        source = new CountingSource(4096);
+        Transcriptions transcriptions = Transcriptions.builder()
+            .model("whisper-1")
+            .language("zh")
+            .responseFormat("json")
+            .build();
+        WhisperResponse response = client.speechToTextTranscriptions(source, "speech.mp3", -1, transcriptions);
+
+        assertEquals("received 4096 bytes", response.getText());
+        assertEquals(1, requests.get());
+        assertTrue(formText.contains("filename=\"speech.mp3\""), formText);
+        assertTrue(formText.contains("whisper-1"), formText);
+        assertTrue(formText.contains("name=\"language\""), formText);
+        assertEquals(1, source.closed.get());
+    }
+
+    @Test
+    void largeFileIsStreamedWithoutBuffering() {
+        source = new CountingSource(LARGE_FILE_BYTES);
+        WhisperResponse response = client.speechToTextTranscriptions(source, "large.wav", LARGE_FILE_BYTES,
+            Transcriptions.builder().model("whisper-1").build());
+
+        assertEquals("received " + LARGE_FILE_BYTES + " bytes", response.getText());
+        assertEquals(LARGE_FILE_BYTES, source.read.get());
+        // 服务端开始收到文件时, 客户端只读了很少一部分, 说明没有先把文件整个读入内存
+        long readAhead = readWhenFirstByteArrived.get();
+        assertTrue(readAhead >= 0 && readAhead < LARGE_FILE_BYTES / 16,
+            "服务端收到第一个文件字节时输入流已读取 " + readAhead + " 字节");
+    }
+
+    /**
+     * 边读边统计请求体, 文件字节只计数, 其余内容作为文本保存
+     */
+    private long receive(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        long fileBytes = 0;
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = exchange.getRequestBody()) {
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buf[i] == FILE_BYTE) {
+                        if (fileBytes++ == 0) {
+                            readWhenFirstByteArrived.set(source.read.get());
+                        }
+                    } else {
+                        text.write(buf[i]);
+                    }
+                }
+            }
+        }
+        receivedFileBytes.set(fileBytes);
+        formText = text.toString(StandardCharsets.UTF_8);
+        return fileBytes;
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * 生成指定大小的文件内容, 统计打开、关闭次数和已读取的字节数
+     */
+    private static class CountingSource implements InputStreamSource {
+
+        private final long size;
+
+        private final AtomicInteger opened = new AtomicInteger();
+
+        private final AtomicInteger closed = new AtomicInteger();
+
+        private final AtomicLong read = new AtomicLong();
+
+        CountingSource(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            opened.incrementAndGet();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    if (read.get() >= size) {
+                        return -1;
+                    }
+                    read.incrementAndGet();
+                    return FILE_BYTE;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    long remaining = size - read.get();
+                    if (remaining <= 0) {
+                        return -1;
+                    }
+                    int n = (int) Math.min(len, remaining);
+                    Arrays.fill(b, off, off + n, FILE_BYTE);
+                    read.addAndGet(n);
+                    return n;
+                }
+
+                @Override
+                public void close() {
+                    closed.incrementAndGet();
+                }
+            };
+        }
+    }
+}
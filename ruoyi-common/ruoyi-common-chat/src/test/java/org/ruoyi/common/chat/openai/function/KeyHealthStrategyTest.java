@@ -0,0 +1,171 @@
+package org.ruoyi.common.chat.openai.function;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 按健康状况选择 key 的策略测试
+ * 模拟多个 key 的响应耗时和限流, 校验摘除、retry-after 到期恢复和流量分配
+ *
+ * @date 2026/10/19
+ */
+class KeyHealthStrategyTest {
+
+    private static final String FAST = "sk-fast-0000000001";
+
+    private static final String SLOW = "sk-slow-0000000002";
+
+    private static final String THROTTLED = "sk-throttled-00003";
+
+    private static final List<String> KEYS = List.of(FAST, SLOW, THROTTLED);
+
+    private final KeyHealthStrategy strategy = new KeyHealthStrategy();
+
+    @Test
+    void throttledKeyIsEjectedAndLoadFavorsFastKey() {
+        // 快 key 10ms, 慢 key 100ms, 限流 key 每次返回 429 并要求 60 秒后重试
+        Map<String, Integer> counts = simulate(3000, Map.of(FAST, 10, SLOW, 100), 60_000);
+
+        // 限流 key 最多在摘除前被选中一次
+        assertTrue(counts.getOrDefault(THROTTLED, 0) <= 1, "限流 key 被选中 " + counts.get(THROTTLED) + " 次");
+        assertTrue(counts.get(FAST) > counts.get(SLOW) * 3,
+            "快 key " + counts.get(FAST) + " 次, 慢 key " + counts.get(SLOW) + " 次");
+        // 两选一仍会把少量请求分给慢 key, 持续更新其耗时
+        assertTrue(counts.get(SLOW) > 0);
+    }
+
+    @Test
+    void throttledKeyReturnsAfterRetryAfter() throws InterruptedException {
+        warmUp(50, 50, 50);
+        strategy.onFinish(THROTTLED, 429, 0, 200);
+        Map<String, Integer> during = select(500);
+        assertFalse(during.containsKey(THROTTLED));
+
+        Thread.sleep(250);
+        Map<String, Integer> after = select(500);
+        assertTrue(after.getOrDefault(THROTTLED, 0) > 0);
+    }
+
+    @Test
+    void revokedKeyIsEjected() {
+        strategy.onFinish(SLOW, 401, 0, 0);
+        strategy.onFinish(THROTTLED, 403, 0, 0);
+
+        assertEquals(Map.of(FAST, 200), select(200));
+    }
+
+    @Test
+    void serverErrorsEjectOnlyAfterThreshold() {
+        warmUp(50, 50, 500);
+        strategy.onFinish(SLOW, 500, 0, 0);
+        strategy.onFinish(SLOW, 503, 0, 0);
+        // 出错的 key 得分变差, 但未摘除, 仍优于更慢的 key
+        assertTrue(select(500).containsKey(SLOW));
+
+        // 网络异常也算失败, 连续第三次后摘除
+        strategy.onFinish(SLOW, -1, 0, 0);
+        assertFalse(select(500).containsKey(SLOW));
+    }
+
+    @Test
+    void keyEjectedForServerErrorsIsRetriedAfterBackoff() throws InterruptedException {
+        warmUp(50, 50, 50);
+        for (int i = 0; i < 3; i++) {
+            strategy.onFinish(SLOW, 500, 0, 0);
+        }
+        assertFalse(select(500).containsKey(SLOW));
+
+        // 第三次失败退避 4 秒
+        Thread.sleep(4100);
+        assertTrue(select(500).getOrDefault(SLOW, 0) > 100);
+        // 再失败一次立即摘除
+        strategy.onFinish(SLOW, 502, 0, 0);
+        assertFalse(select(500).containsKey(SLOW));
+    }
+
+    @Test
+    void otherClientErrorsDoNotAffectHealth() {
+        warmUp(50, 50, 500);
+        for (int i = 0; i < 10; i++) {
+            strategy.onFinish(SLOW, 400, 50, 0);
+        }
+        Map<String, Integer> counts = select(900);
+        assertTrue(counts.get(SLOW) > 200, "请求错误后 key 被选中 " + counts.get(SLOW) + " 次");
+    }
+
+    @Test
+    void allEjectedChoosesEarliestRecovery() {
+        strategy.onFinish(FAST, 429, 0, 30_000);
+        strategy.onFinish(SLOW, 429, 0, 5_000);
+        strategy.onFinish(THROTTLED, 401, 0, 0);
+
+        assertEquals(Map.of(SLOW, 100), select(100));
+    }
+
+    @Test
+    void busyKeyGetsLessTraffic() {
+        // 同样的耗时, 一个 key 有 20 个请求在进行
+        strategy.onFinish(FAST, 200, 10, 0);
+        strategy.onFinish(SLOW, 200, 10, 0);
+        strategy.onFinish(THROTTLED, 429, 0, 60_000);
+        for (int i = 0; i < 20; i++) {
+            strategy.onStart(SLOW);
+        }
+        Map<String, Integer> counts = select(1000);
+        assertTrue(counts.get(FAST) > counts.getOrDefault(SLOW, 0) * 3);
+
+        for (int i = 0; i < 20; i++) {
+            strategy.onRelease(SLOW);
+        }
+        counts = select(1000);
+        assertTrue(counts.get(SLOW) > 300, "空闲后慢 key 被选中 " + counts.get(SLOW) + " 次");
+    }
+
+    /**
+     * 每个 key 先有一个成功请求的耗时样本
+     */
+    private void warmUp(long fast, long slow, long throttled) {
+        strategy.onFinish(FAST, 200, fast, 0);
+        strategy.onFinish(SLOW, 200, slow, 0);
+        strategy.onFinish(THROTTLED, 200, throttled, 0);
+    }
+
+    /**
+     * 按策略选择 key 并回报结果, 模拟客户端的调用流程
+     *
+     * @param latencies        各 key 的响应耗时, 不在其中的 key 返回 429
+     * @param retryAfterMillis 429 的 retry-after
+     * @return 各 key 被选中的次数
+     */
+    private Map<String, Integer> simulate(int requests, Map<String, Integer> latencies, long retryAfterMillis) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < requests; i++) {
+            String key = strategy.apply(KEYS);
+            counts.merge(key, 1, Integer::sum);
+            strategy.onStart(key);
+            Integer latency = latencies.get(key);
+            if (latency == null) {
+                strategy.onFinish(key, 429, 5, retryAfterMillis);
+            } else {
+                strategy.onFinish(key, 200, latency, 0);
+            }
+            strategy.onRelease(key);
+        }
+        return counts;
+    }
+
+    private Map<String, Integer> select(int requests) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < requests; i++) {
+            counts.merge(strategy.apply(KEYS), 1, Integer::sum);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,294 @@
+package org.ruoyi.common.chat.plugin;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.entity.chat.ChatCompletion;
+import org.ruoyi.common.chat.entity.chat.ChatCompletionResponse;
+import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.entity.chat.tool.ToolCallFunction;
+import org.ruoyi.common.chat.entity.chat.tool.ToolCalls;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
+import org.ruoyi.common.chat.openai.OpenAiStreamClient;
+import org.ruoyi.common.chat.openai.plugin.PluginAbstract;
+import org.ruoyi.common.chat.openai.plugin.PluginParam;
+import org.ruoyi.common.core.service.ConfigService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 插件调用测试
+ * 用本地 HTTP 服务模拟模型: 第一次请求返回函数调用, 第二次请求返回最终回复. 函数调用并行执行, 结果按调用顺序交给模型,
+ * 按插件记录调用结果和执行耗时
+ *
+ * @date 2026/10/19
+ */
+class PluginRegistryTest {
+
+    private static final String ECHO = "echo";
+
+    private static final String FAIL = "fail";
+
+    private static final String SLOW = "slow";
+
+    private static final String FINAL_ANSWER = "final answer";
+
+    private HttpServer server;
+
+    /**
+     * 模型收到的请求体
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    /**
+     * 第一次请求返回的函数调用
+     */
+    private volatile List<ToolCalls> toolCalls;
+
+    /**
+     * 两个 echo 调用在此会合, 串行执行时等待超时失败
+     */
+    private final CyclicBarrier echoBarrier = new CyclicBarrier(2);
+
+    private ConfigService configService;
+
+    private PluginRegistry registry;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.add(body);
+            byte[] response = (requests.size() == 1 ? toolCallsResponse() : answerResponse())
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        Metrics.addRegistry(meterRegistry);
+
+        configService = mock(ConfigService.class);
+        registry = new PluginRegistry(configService);
+        registry.init();
+        registry.register(new TestPlugin(ECHO));
+        registry.register(new TestPlugin(FAIL));
+        registry.register(new TestPlugin(SLOW));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        registry.destroy();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void toolCallsRunInParallelAndResultsGoBackInOrder() {
+        when(configService.getConfigValue("chat", "pluginTimeoutSeconds")).thenReturn("5");
+        toolCalls = List.of(
+            toolCall("call_1", ECHO, "{\"text\":\"a\",\"barrier\":true}"),
+            toolCall("call_2", FAIL, "{\"text\":\"boom\"}"),
+            toolCall("call_3", ECHO, "{\"text\":\"b\",\"barrier\":true}"),
+            toolCall("call_4", "missing", "{}"));
+        ChatCompletion completion = ChatCompletion.builder()
+            .messages(new ArrayList<>(List.of(Message.builder().role(Message.Role.USER).content("hi").build())))
+            .build();
+
+        ChatCompletionResponse response = registry.chatCompletion(client(), completion, ECHO, FAIL);
+
+        assertEquals(FINAL_ANSWER, response.getChoices().get(0).getMessage().getContent());
+        assertEquals(2, requests.size());
+        JSONObject first = JSONUtil.parseObj(requests.get(0));
+        assertEquals(2, first.getJSONArray("tools").size());
+        assertEquals("auto", first.getStr("tool_choice"));
+
+        // 第二次请求: 用户消息、函数调用、按调用顺序排列的结果, 不再提供插件
+        JSONObject second = JSONUtil.parseObj(requests.get(1));
+        assertNull(second.get("tools"));
+        JSONArray messages = second.getJSONArray("messages");
+        assertEquals(6, messages.size());
+        assertEquals("assistant", messages.getJSONObject(1).getStr("role"));
+        assertEquals(4, messages.getJSONObject(1).getJSONArray("tool_calls").size());
+        List<String> ids = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        for (int i = 2; i < messages.size(); i++) {
+            JSONObject message = messages.getJSONObject(i);
+            assertEquals("tool", message.getStr("role"));
+            ids.add(message.getStr("tool_call_id"));
+            contents.add(message.getStr("content"));
+        }
+        assertEquals(List.of("call_1", "call_2", "call_3", "call_4"), ids);
+        assertEquals(List.of("echo:a", "插件执行失败: boom", "echo:b", "插件不存在: missing"), contents);
+
+        assertEquals(2, requests(ECHO, ChatMetrics.SUCCESS));
+        assertEquals(1, requests(FAIL, ChatMetrics.ERROR));
+        assertEquals(2, duration(ECHO, ChatMetrics.SUCCESS).count());
+        assertEquals(1, duration(FAIL, ChatMetrics.ERROR).count());
+        // 未注册的函数名不作为标签
+        assertTrue(meterRegistry.find(ChatMetrics.PLUGIN_REQUESTS).tag("plugin", "missing").meters().isEmpty());
+    }
+
+    @Test
+    void slowToolCallTimesOutAndIsInterrupted() throws InterruptedException {
+        when(configService.getConfigValue("chat", "pluginTimeoutSeconds")).thenReturn("1");
+
+        long start = System.nanoTime();
+        List<String> results = registry.invokeAll(List.of(
+            toolCall("call_1", SLOW, "{\"text\":\"a\",\"sleepMillis\":10000}"),
+            toolCall("call_2", ECHO, "{\"text\":\"b\"}")));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(List.of("插件执行超时", "echo:b"), results);
+        assertTrue(elapsed < 5000, "等待时间 " + elapsed + "ms");
+        assertEquals(1, requests(SLOW, ChatMetrics.TIMEOUT));
+        assertEquals(1, requests(ECHO, ChatMetrics.SUCCESS));
+
+        // 超时的调用被中断, 按实际结束时间记录为失败
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.find(ChatMetrics.PLUGIN_DURATION).tags("plugin", SLOW, "outcome", ChatMetrics.ERROR)
+            .timer() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Timer slow = duration(SLOW, ChatMetrics.ERROR);
+        assertEquals(1, slow.count());
+        assertTrue(slow.totalTime(TimeUnit.MILLISECONDS) < 5000);
+    }
+
+    private OpenAiStreamClient client() {
+        return OpenAiStreamClient.builder()
+            .apiKey(List.of("sk-test"))
+            .apiHost("http://127.0.0.1:" + server.getAddress().getPort() + "/")
+            .build();
+    }
+
+    private double requests(String plugin, String outcome) {
+        Counter counter = meterRegistry.find(ChatMetrics.PLUGIN_REQUESTS)
+            .tags("plugin", plugin, "outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private Timer duration(String plugin, String outcome) {
+        return meterRegistry.get(ChatMetrics.PLUGIN_DURATION).tags("plugin", plugin, "outcome", outcome).timer();
+    }
+
+    private static ToolCalls toolCall(String id, String function, String arguments) {
+        ToolCallFunction toolCallFunction = new ToolCallFunction();
+        toolCallFunction.setName(function);
+        toolCallFunction.setArguments(arguments);
+        ToolCalls toolCall = new ToolCalls();
+        toolCall.setId(id);
+        toolCall.setType(ToolCalls.Type.FUNCTION.getName());
+        toolCall.setFunction(toolCallFunction);
+        return toolCall;
+    }
+
+    private String toolCallsResponse() {
+        List<Map<String, Object>> calls = new ArrayList<>();
+        for (ToolCalls toolCall : toolCalls) {
+            calls.add(Map.of("id", toolCall.getId(), "type", toolCall.getType(),
+                "function", Map.of("name", toolCall.getFunction().getName(),
+                    "arguments", toolCall.getFunction().getArguments())));
+        }
+        return response(Map.of("role", "assistant", "tool_calls", calls), "tool_calls");
+    }
+
+    private static String answerResponse() {
+        return response(Map.of("role", "assistant", "content", FINAL_ANSWER), "stop");
+    }
+
+    private static String response(Map<String, Object> message, String finishReason) {
+        return JSONUtil.toJsonStr(Map.of("id", "chatcmpl-test", "object", "chat.completion", "created", 0,
+            "model", "gpt-3.5-turbo",
+            "choices", List.of(Map.of("index", 0, "message", message, "finish_reason", finishReason))));
+    }
+
+    /**
+     * 测试插件参数
+     */
+    @Getter
+    @Setter
+    public static class TestReq extends PluginParam {
+
+        private String text;
+
+        private long sleepMillis;
+
+        private boolean barrier;
+    }
+
+    /**
+     * 测试插件: fail 抛出异常, 其它插件按参数等待后返回 "方法名:text"
+     */
+    private class TestPlugin extends PluginAbstract<TestReq, String> {
+
+        TestPlugin(String function) {
+            super(TestReq.class);
+            setName(function);
+            setFunction(function);
+            setDescription(function);
+            PluginAbstract.Arg arg = new PluginAbstract.Arg();
+            arg.setName("text");
+            arg.setType("string");
+            arg.setDescription("text");
+            arg.setRequired(true);
+            setArgs(Collections.singletonList(arg));
+        }
+
+        @Override
+        public String func(TestReq args) {
+            if (FAIL.equals(getFunction())) {
+                throw new IllegalStateException(args.getText());
+            }
+            try {
+                if (args.isBarrier()) {
+                    echoBarrier.await(2, TimeUnit.SECONDS);
+                }
+                Thread.sleep(args.getSleepMillis());
+            } catch (Exception e) {
+                throw new IllegalStateException("插件被中断", e);
+            }
+            return getFunction() + ":" + args.getText();
+        }
+
+        @Override
+        public String content(String result) {
+            return result;
+        }
+    }
+}
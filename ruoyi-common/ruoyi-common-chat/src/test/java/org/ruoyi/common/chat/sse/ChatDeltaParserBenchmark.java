@@ -0,0 +1,71 @@
+package org.ruoyi.common.chat.sse;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.ruoyi.common.chat.entity.chat.ChatCompletionResponse;
+
+import java.util.List;
+
+/**
+ * 流式增量解析基准, 不随单元测试执行, 需要时直接运行 main 方法.
+ * 对比三种方式解析同一段模拟流式输出的耗时:
+ * 每条事件新建 ObjectMapper 绑定(改造前的 SSE 监听)、共享 ObjectMapper 绑定、{@link ChatDeltaParser} 流式解析
+ *
+ * @date 2026/10/19
+ */
+public class ChatDeltaParserBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+
+    private static final int MEASURE_ROUNDS = 10;
+
+    private static final ObjectMapper SHARED_MAPPER = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * 防止解析结果被 JIT 消除
+     */
+    private static long sink;
+
+    public static void main(String[] args) throws Exception {
+        List<String> stream = ChatDeltaParserTest.recordedStream(1000);
+        bench("new ObjectMapper per event", stream, 20, data -> new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readValue(data, ChatCompletionResponse.class).hashCode());
+        bench("shared ObjectMapper", stream, 200, data ->
+            SHARED_MAPPER.readValue(data, ChatCompletionResponse.class).hashCode());
+        bench("ChatDeltaParser", stream, 200, data -> ChatDeltaParser.parse(data).hashCode());
+        System.out.println("sink=" + sink);
+    }
+
+    private static void bench(String name, List<String> stream, int passes, Parse parse) throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            run(stream, passes, parse);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURE_ROUNDS; i++) {
+            long elapsed = run(stream, passes, parse);
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        long events = (long) stream.size() * passes;
+        System.out.printf("%-28s avg %8.1f ns/event, best %8.1f ns/event%n", name,
+            (double) total / MEASURE_ROUNDS / events, (double) best / events);
+    }
+
+    private static long run(List<String> stream, int passes, Parse parse) throws Exception {
+        long start = System.nanoTime();
+        for (int pass = 0; pass < passes; pass++) {
+            for (String data : stream) {
+                sink += parse.apply(data);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    @FunctionalInterface
+    private interface Parse {
+        int apply(String data) throws Exception;
+    }
+}
@@ -0,0 +1,132 @@
+package org.ruoyi.common.chat.sse;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.entity.chat.ChatCompletionResponse;
+import org.ruoyi.common.chat.entity.chat.Message;
+import org.ruoyi.common.chat.sse.ChatDeltaParser.ChatDelta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 流式对话增量解析测试
+ * 使用各模型服务实际返回的增量格式: 普通内容、推理内容、content 为 null、只有结束原因、choices 为空;
+ * 并与按 ChatCompletionResponse 整体绑定的结果逐条比对
+ *
+ * @date 2026/10/19
+ */
+class ChatDeltaParserTest {
+
+    static final String CONTENT = "{\"id\":\"chatcmpl-9x\",\"object\":\"chat.completion.chunk\",\"created\":1729300000,"
+        + "\"model\":\"gpt-4o-mini\",\"system_fingerprint\":\"fp_0ba0d124f1\",\"choices\":[{\"index\":0,"
+        + "\"delta\":{\"content\":\"你好\"},\"logprobs\":null,\"finish_reason\":null}]}";
+
+    static final String REASONING = "{\"id\":\"b1\",\"object\":\"chat.completion.chunk\",\"created\":1729300000,"
+        + "\"model\":\"deepseek-reasoner\",\"choices\":[{\"index\":0,\"delta\":{\"content\":null,"
+        + "\"reasoning_content\":\"先分析\"},\"logprobs\":null,\"finish_reason\":null}]}";
+
+    static final String NULL_CONTENT = "{\"id\":\"chatcmpl-9x\",\"object\":\"chat.completion.chunk\",\"created\":1729300000,"
+        + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":null,"
+        + "\"tool_calls\":[{\"index\":0,\"id\":\"call_1\",\"type\":\"function\",\"function\":{\"name\":\"search\","
+        + "\"arguments\":\"\"}}]},\"logprobs\":null,\"finish_reason\":null}]}";
+
+    static final String FINISH_ONLY = "{\"id\":\"chatcmpl-9x\",\"object\":\"chat.completion.chunk\",\"created\":1729300000,"
+        + "\"model\":\"gpt-4o-mini\",\"choices\":[{\"index\":0,\"delta\":{},\"logprobs\":null,\"finish_reason\":\"stop\"}]}";
+
+    static final String EMPTY_CHOICES = "{\"id\":\"chatcmpl-9x\",\"object\":\"chat.completion.chunk\",\"created\":1729300000,"
+        + "\"model\":\"gpt-4o-mini\",\"choices\":[],\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":30,"
+        + "\"total_tokens\":42}}";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Test
+    void contentChunk() throws Exception {
+        ChatDelta delta = ChatDeltaParser.parse(CONTENT);
+        assertEquals("gpt-4o-mini", delta.model());
+        assertEquals("你好", delta.content());
+        assertEquals("你好", delta.text());
+        assertNull(delta.reasoningContent());
+        assertNull(delta.finishReason());
+    }
+
+    @Test
+    void reasoningChunk() throws Exception {
+        ChatDelta delta = ChatDeltaParser.parse(REASONING);
+        assertNull(delta.content());
+        assertEquals("先分析", delta.reasoningContent());
+        assertEquals("先分析", delta.text());
+    }
+
+    @Test
+    void nullContentChunkSkipsToolCalls() throws Exception {
+        ChatDelta delta = ChatDeltaParser.parse(NULL_CONTENT);
+        assertEquals("gpt-4o-mini", delta.model());
+        assertNull(delta.text());
+        assertNull(delta.finishReason());
+    }
+
+    @Test
+    void finishOnlyChunk() throws Exception {
+        ChatDelta delta = ChatDeltaParser.parse(FINISH_ONLY);
+        assertNull(delta.text());
+        assertEquals("stop", delta.finishReason());
+    }
+
+    @Test
+    void emptyChoicesChunk() throws Exception {
+        ChatDelta delta = ChatDeltaParser.parse(EMPTY_CHOICES);
+        assertEquals("gpt-4o-mini", delta.model());
+        assertNull(delta.text());
+        assertNull(delta.finishReason());
+    }
+
+    @Test
+    void onlyFirstChoiceIsRead() throws Exception {
+        ChatDelta delta = ChatDeltaParser.parse("{\"choices\":[{\"delta\":{\"content\":\"a\"}},"
+            + "{\"delta\":{\"content\":\"b\"},\"finish_reason\":\"stop\"}]}");
+        assertEquals("a", delta.content());
+        assertNull(delta.finishReason());
+    }
+
+    @Test
+    void nonObjectDataIsEmpty() throws Exception {
+        assertEquals(new ChatDelta(null, null, null, null), ChatDeltaParser.parse("[]"));
+    }
+
+    @Test
+    void recordedStreamMatchesFullBinding() throws Exception {
+        for (String data : recordedStream(200)) {
+            ChatDelta delta = ChatDeltaParser.parse(data);
+            ChatCompletionResponse response = OBJECT_MAPPER.readValue(data, ChatCompletionResponse.class);
+            assertEquals(response.getModel(), delta.model());
+            if (response.getChoices() == null || response.getChoices().isEmpty()) {
+                assertNull(delta.text());
+                continue;
+            }
+            Message message = response.getChoices().get(0).getDelta();
+            assertEquals(message == null ? null : message.getContent(), delta.content());
+            assertEquals(message == null ? null : message.getReasoningContent(), delta.reasoningContent());
+            assertEquals(response.getChoices().get(0).getFinishReason(), delta.finishReason());
+        }
+    }
+
+    /**
+     * 模拟一次完整的流式输出: 首条角色和工具调用, 若干推理与内容增量, 结束原因, 最后是用量
+     */
+    static List<String> recordedStream(int tokens) {
+        List<String> stream = new ArrayList<>();
+        stream.add(NULL_CONTENT);
+        for (int i = 0; i < tokens; i++) {
+            stream.add(i % 10 == 0 ? REASONING : CONTENT.replace("你好", "token" + i));
+        }
+        stream.add(FINISH_ONLY);
+        stream.add(EMPTY_CHOICES);
+        return stream;
+    }
+}
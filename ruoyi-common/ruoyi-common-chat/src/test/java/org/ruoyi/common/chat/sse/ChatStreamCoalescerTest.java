@@ -0,0 +1,210 @@
+package org.ruoyi.common.chat.sse;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.sse.EventSources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.sse.ChatStreamCoalescer.SharedStream;
+import org.ruoyi.common.chat.sse.ChatStreamManager.ChatStream;
+import org.ruoyi.common.core.service.ConfigService;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 相同请求合并测试
+ * 用本地 HTTP 服务模拟模型的流式输出, 多个并发的相同请求只发起一次上游请求, 每个订阅方收到完整且相同的输出和结束帧
+ *
+ * @date 2026/10/19
+ */
+class ChatStreamCoalescerTest {
+
+    private static final String KEY = "chat:completion:test";
+
+    private static final int CHUNKS = 20;
+
+    private static final int SUBSCRIBERS = 32;
+
+    private HttpServer server;
+
+    private final AtomicInteger upstreamRequests = new AtomicInteger();
+
+    /**
+     * 所有订阅方加入后才开始输出, 保证都合并到同一个上游请求
+     */
+    private final CountDownLatch subscribed = new CountDownLatch(1);
+
+    private volatile boolean sendDone;
+
+    private ChatStreamManager chatStreamManager;
+
+    private ChatStreamCoalescer coalescer;
+
+    private final OkHttpClient okHttpClient = new OkHttpClient();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            upstreamRequests.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                subscribed.await(10, TimeUnit.SECONDS);
+                for (int i = 0; i < CHUNKS; i++) {
+                    write(out, chunk(i));
+                    Thread.sleep(2);
+                }
+                if (sendDone) {
+                    write(out, StreamFrames.DONE);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+
+        ConfigService configService = mock(ConfigService.class);
+        chatStreamManager = new ChatStreamManager(configService);
+        coalescer = new ChatStreamCoalescer(chatStreamManager, configService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        chatStreamManager.destroy();
+    }
+
+    @Test
+    void concurrentRequestsShareOneUpstreamAndEndWithDone() throws Exception {
+        sendDone = true;
+        List<Client> clients = subscribeConcurrently();
+
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < CHUNKS; i++) {
+            expected.add(chunk(i));
+            content.append("t").append(i);
+        }
+        expected.add(StreamFrames.DONE);
+        for (Client client : clients) {
+            assertTrue(client.emitter.completed.await(10, TimeUnit.SECONDS));
+            assertEquals(expected, client.emitter.frames);
+            assertEquals(content.toString(), client.reply.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, upstreamRequests.get());
+        assertEquals(1, coalescer.getUpstreamRequests());
+        assertEquals(SUBSCRIBERS - 1, coalescer.getCoalescedRequests());
+    }
+
+    @Test
+    void upstreamClosedWithoutDoneSendsErrorFrame() throws Exception {
+        sendDone = false;
+        List<Client> clients = subscribeConcurrently();
+
+        for (Client client : clients) {
+            assertTrue(client.emitter.completed.await(10, TimeUnit.SECONDS));
+            List<String> frames = client.emitter.frames;
+            assertEquals(CHUNKS + 1, frames.size());
+            assertEquals(StreamFrames.errorFrame(StreamFrames.UPSTREAM_ERROR), frames.get(CHUNKS));
+            // 失败的回复不计费
+            assertFalse(client.reply.isDone());
+        }
+        assertEquals(1, upstreamRequests.get());
+    }
+
+    /**
+     * 并发发起相同请求, 返回上游监听的请求负责发起上游请求
+     */
+    private List<Client> subscribeConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(SUBSCRIBERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Client>> futures = new ArrayList<>();
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                Client client = new Client();
+                SharedStream shared = coalescer.subscribe(KEY, client.stream, client.emitter, client.reply::complete);
+                if (shared != null) {
+                    Request request = new Request.Builder()
+                        .url("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions")
+                        .build();
+                    EventSources.createFactory(okHttpClient).newEventSource(request, shared);
+                }
+                return client;
+            }));
+        }
+        start.countDown();
+        List<Client> clients = new ArrayList<>();
+        for (Future<Client> future : futures) {
+            clients.add(future.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        subscribed.countDown();
+        return clients;
+    }
+
+    private static String chunk(int i) {
+        return "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"t" + i + "\"}}]}";
+    }
+
+    private static void write(OutputStream out, String data) throws IOException {
+        out.write(("data: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * 一个订阅方
+     */
+    private static class Client {
+
+        private final RecordingEmitter emitter = new RecordingEmitter();
+
+        private final ChatStream stream = new ChatStream(() -> {
+        });
+
+        private final CompletableFuture<String> reply = new CompletableFuture<>();
+    }
+
+    /**
+     * 记录推送内容的 SseEmitter
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> frames = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(Object object) {
+            frames.add(String.valueOf(object));
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
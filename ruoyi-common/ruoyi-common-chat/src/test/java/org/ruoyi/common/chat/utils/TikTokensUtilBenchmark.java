@@ -0,0 +1,81 @@
+package org.ruoyi.common.chat.utils;
+
+import com.knuddels.jtokkit.api.Encoding;
+import org.ruoyi.common.chat.entity.chat.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 长对话历史的 token 计算基准, 不随单元测试执行, 需要时直接运行 main 方法.
+ * 模拟多轮对话每轮都重新计算整个历史: 编码后取数组长度(改造前)、{@link TikTokensUtil#tokens(String, List)}(计数 + 缓存)、
+ * {@link TikTokensUtil#estimateTokens(List)}(不编码的估算)
+ *
+ * @date 2026/10/19
+ */
+public class TikTokensUtilBenchmark {
+
+    private static final String MODEL = "gpt-3.5-turbo";
+
+    private static final int ROUNDS = 50;
+
+    private static final int WARMUP = 3;
+
+    private static final int MEASURE = 10;
+
+    /**
+     * 防止计算结果被 JIT 消除
+     */
+    private static long sink;
+
+    public static void main(String[] args) {
+        Encoding encoding = TikTokensUtil.getEncoding(MODEL);
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < ROUNDS; i++) {
+            messages.add(Message.builder().role(i % 2 == 0 ? Message.Role.USER : Message.Role.ASSISTANT)
+                .content(TikTokensUtilTest.longMessage(i)).build());
+        }
+        bench("encode().size()", messages, history -> {
+            int sum = 3;
+            for (Message message : history) {
+                sum += 3 + encoding.encode(message.getContent().toString()).size()
+                    + encoding.encode(message.getRole()).size();
+            }
+            return sum;
+        });
+        bench("tokens(model, messages)", messages, history -> TikTokensUtil.tokens(MODEL, history));
+        bench("estimateTokens(messages)", messages, TikTokensUtil::estimateTokens);
+        System.out.println("sink=" + sink);
+    }
+
+    /**
+     * 每次执行模拟一次完整对话: 第 n 轮计算前 n 条消息
+     */
+    private static void bench(String name, List<Message> messages, Count count) {
+        for (int i = 0; i < WARMUP; i++) {
+            conversation(messages, count);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int i = 0; i < MEASURE; i++) {
+            long start = System.nanoTime();
+            conversation(messages, count);
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        System.out.printf("%-26s avg %8.2f ms/conversation, best %8.2f ms/conversation (%d rounds)%n", name,
+            total / 1e6 / MEASURE, best / 1e6, messages.size());
+    }
+
+    private static void conversation(List<Message> messages, Count count) {
+        for (int round = 1; round <= messages.size(); round++) {
+            sink += count.apply(messages.subList(0, round));
+        }
+    }
+
+    @FunctionalInterface
+    private interface Count {
+        int apply(List<Message> history);
+    }
+}
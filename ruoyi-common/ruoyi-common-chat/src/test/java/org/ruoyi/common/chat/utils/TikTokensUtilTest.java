@@ -0,0 +1,76 @@
+package org.ruoyi.common.chat.utils;
+
+import com.knuddels.jtokkit.api.Encoding;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.chat.entity.chat.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * token 计算测试
+ * 只计数和缓存的结果必须与编码后取数组长度一致, 只有空白字符的文本也要计数
+ *
+ * @date 2026/10/19
+ */
+class TikTokensUtilTest {
+
+    private static final String MODEL = "gpt-3.5-turbo";
+
+    @Test
+    void whitespaceOnlyTextIsCounted() {
+        Encoding encoding = TikTokensUtil.getEncoding(MODEL);
+        String text = "  \n\n\t ";
+
+        assertTrue(TikTokensUtil.tokens(encoding, text) > 0);
+        assertEquals(encoding.encode(text).size(), TikTokensUtil.tokens(encoding, text));
+        assertEquals(encoding.encode(text).size(), TikTokensUtil.tokens(MODEL, text));
+        assertEquals(0, TikTokensUtil.tokens(MODEL, ""));
+        assertEquals(0, TikTokensUtil.tokens(MODEL, (String) null));
+    }
+
+    @Test
+    void cachedCountMatchesEncoding() {
+        Encoding encoding = TikTokensUtil.getEncoding(MODEL);
+        String text = longMessage(0);
+
+        int expected = encoding.encode(text).size();
+        assertEquals(expected, TikTokensUtil.tokens(encoding, text));
+        // 第二次命中缓存
+        assertEquals(expected, TikTokensUtil.tokens(encoding, text));
+        // 长度相同内容不同的文本不能命中同一条缓存
+        String other = longMessage(1);
+        assertEquals(text.length(), other.length());
+        assertEquals(encoding.encode(other).size(), TikTokensUtil.tokens(encoding, other));
+    }
+
+    @Test
+    void historyCountMatchesEncodingEveryRound() {
+        Encoding encoding = TikTokensUtil.getEncoding(MODEL);
+        List<Message> history = new ArrayList<>();
+        for (int round = 0; round < 20; round++) {
+            history.add(Message.builder().role(round % 2 == 0 ? Message.Role.USER : Message.Role.ASSISTANT)
+                .content(longMessage(round)).build());
+            int expected = 3;
+            for (Message message : history) {
+                expected += 3 + encoding.encode(message.getContent().toString()).size()
+                    + encoding.encode(message.getRole()).size();
+            }
+            assertEquals(expected, TikTokensUtil.tokens(MODEL, history));
+        }
+    }
+
+    /**
+     * 中英混合的长消息, 长度超过缓存阈值
+     */
+    static String longMessage(int seed) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            sb.append("第").append((seed + i) % 10).append("段: The quick brown fox jumps over the lazy dog. ");
+        }
+        return sb.toString();
+    }
+}
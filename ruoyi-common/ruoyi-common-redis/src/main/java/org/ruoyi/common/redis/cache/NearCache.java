@@ -0,0 +1,83 @@
+package org.ruoyi.common.redis.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.redis.utils.RedisUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 进程内近端缓存
+ * 读多写少的数据(模型、对话配置)缓存在本地内存, 数据修改后通过 Redis 发布订阅通知所有节点清空本地缓存.
+ * 条目另有过期时间兜底, 避免订阅断开期间漏掉通知导致长期读到旧数据
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ * @date 2026/10/19
+ */
+@Slf4j
+public class NearCache<K, V> {
+
+    private static final String CLEAR_MESSAGE = "clear";
+
+    private final String channel;
+
+    private final long ttlMillis;
+
+    private final Map<K, Entry<V>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 每次清空加一, 清空前开始加载的旧数据不再写入缓存
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param channel 失效通知通道
+     * @param ttl     条目过期时间
+     */
+    public NearCache(String channel, Duration ttl) {
+        this.channel = channel;
+        this.ttlMillis = ttl.toMillis();
+        RedisUtils.subscribe(channel, String.class, msg -> clearLocal());
+    }
+
+    /**
+     * 获取缓存, 未命中或已过期时通过 loader 加载, loader 返回 null 时同样缓存
+     */
+    public V get(K key, Function<K, V> loader) {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = cache.get(key);
+        if (entry == null || entry.expireAt < now) {
+            long loadGeneration = generation.get();
+            entry = new Entry<>(Optional.ofNullable(loader.apply(key)), now + ttlMillis);
+            if (loadGeneration == generation.get()) {
+                cache.put(key, entry);
+            }
+        }
+        return entry.value.orElse(null);
+    }
+
+    /**
+     * 清空本节点缓存并通知其他节点
+     */
+    public void invalidateAll() {
+        clearLocal();
+        try {
+            RedisUtils.publish(channel, CLEAR_MESSAGE);
+        } catch (Exception e) {
+            log.warn("发布缓存失效通知失败 {}: {}", channel, e.getMessage());
+        }
+    }
+
+    private void clearLocal() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private record Entry<V>(Optional<V> value, long expireAt) {
+    }
+}
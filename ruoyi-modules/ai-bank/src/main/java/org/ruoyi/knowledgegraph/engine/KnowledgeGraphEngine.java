@@ -1,5 +1,7 @@
 package org.ruoyi.knowledgegraph.engine;
 
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Result;
@@ -24,11 +26,17 @@ import java.util.regex.Pattern;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class KnowledgeGraphEngine {
     private static final Logger logger = LoggerFactory.getLogger(KnowledgeGraphEngine.class);
 
+    /**
+     * 各步骤耗时指标, 标签 step(intent、solution、query、next_step)、outcome
+     */
+    private static final String STEP_TIMER = "kg.step.duration";
+
     private final Driver neo4jDriver;
 
     @Autowired(required = false)
@@ -52,6 +60,8 @@ public class KnowledgeGraphEngine {
      * @return 问题ID或null
      */
     public String findProblemByIntent(String intent) {
+        long start = System.nanoTime();
+        String outcome = "error";
         try (Session session = neo4jDriver.session()) {
             Result result = session.run(
                     "MATCH (p:Problem {problem_type: $problem_type}) " +
@@ -61,12 +71,16 @@ public class KnowledgeGraphEngine {
 
             if (result.hasNext()) {
                 Record record = result.next();
+                outcome = "found";
                 return record.get("problem_id").asString();
             }
+            outcome = "not_found";
             return null;
         } catch (Exception e) {
             logger.error("查找问题ID失败", e);
             return null;
+        } finally {
+            recordStep("intent", outcome, start);
         }
     }
 
@@ -78,7 +92,10 @@ public class KnowledgeGraphEngine {
      * @return 返回解决方案的回复内容和更新后的上下文
      */
     public SimpleEntry<String, Map<String, Object>> executeSolution(String problemId, Map<String, Object> context) {
+        long start = System.nanoTime();
+        String outcome = "error";
         try (Session session = neo4jDriver.session()) {
+            outcome = "failed";
             // 1. 找到问题的第一个步骤
             Result firstStepResult = session.run(
                     "MATCH (p:Problem {problem_id: $problem_id})-[:FIRST_STEP]->(s:Step) " +
@@ -136,6 +153,7 @@ public class KnowledgeGraphEngine {
                             mergedContext.putAll(resultValues);
                             String reply = formatTemplate(replyTemplate, mergedContext);
                             logger.info("生成回复: {}", reply);
+                            outcome = "success";
                             return new SimpleEntry<>(reply, mergedContext);
                         } catch (Exception e) {
                             String errorMsg = "回复生成失败，缺少参数: " + e.getMessage();
@@ -158,8 +176,11 @@ public class KnowledgeGraphEngine {
 
             return new SimpleEntry<>("抱歉，处理过程异常终止。", context);
         } catch (Exception e) {
+            outcome = "error";
             logger.error("执行解决方案失败", e);
             return new SimpleEntry<>("抱歉，系统处理出错。", context);
+        } finally {
+            recordStep("solution", outcome, start);
         }
     }
 
@@ -203,7 +224,10 @@ public class KnowledgeGraphEngine {
             try {
                 String formattedCondition = formatTemplate(conditionSql, context);
                 logger.info("条件: {}", formattedCondition);
-                return querySystem(tableName, field, formattedCondition, system);
+                long start = System.nanoTime();
+                Object value = querySystem(tableName, field, formattedCondition, system);
+                recordStep("query", value == null ? "not_found" : "found", start);
+                return value;
             } catch (Exception e) {
                 logger.error("条件格式化失败，缺少参数: {}", e.getMessage());
                 return null;
@@ -244,6 +268,20 @@ public class KnowledgeGraphEngine {
                                              Map<String, Object> context,
                                              Map<String, Object> resultValues,
                                              Session session) {
+        long start = System.nanoTime();
+        Map<String, Object> nextStep = null;
+        try {
+            nextStep = doFindNextStep(problemId, currentStepId, context, resultValues, session);
+            return nextStep;
+        } finally {
+            recordStep("next_step", nextStep == null ? "not_found" : "found", start);
+        }
+    }
+
+    private Map<String, Object> doFindNextStep(String problemId, String currentStepId,
+                                               Map<String, Object> context,
+                                               Map<String, Object> resultValues,
+                                               Session session) {
         // 合并上下文和查询结果
         Map<String, Object> mergedContext = new HashMap<>(context);
         mergedContext.putAll(resultValues);
@@ -305,6 +343,18 @@ public class KnowledgeGraphEngine {
         return null;
     }
 
+    /**
+     * 记录步骤耗时, 指标注册到 Micrometer 全局注册表, 由 Prometheus 端点输出百分位直方图
+     */
+    private static void recordStep(String step, String outcome, long start) {
+        Timer.builder(STEP_TIMER)
+                .tag("step", step)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
     /**
      * 评估条件表达式（简化版）
      */
@@ -126,7 +126,8 @@ public class SolutionService {
 
             // 设置请求参数
             Map<String, Object> params = new HashMap<>();
-            params.put("temperature", 0.3);
+            // 意图分析要求输出稳定, temperature 为 0, 相同查询可命中对话结果缓存
+            params.put("temperature", 0.0);
             params.put("topP", 0.95);
             params.put("stream", false);
 
@@ -0,0 +1,60 @@
+package org.ruoyi.chat.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.ruoyi.common.chat.domain.request.Dall3Request;
+import org.ruoyi.common.core.domain.R;
+import org.ruoyi.common.mybatis.core.page.PageQuery;
+import org.ruoyi.common.mybatis.core.page.TableDataInfo;
+import org.ruoyi.system.domain.vo.ChatTaskVo;
+import org.ruoyi.system.domain.vo.ppt.PptGeneratePptxDto;
+import org.ruoyi.system.service.IChatTaskService;
+import org.ruoyi.system.task.Dall3TaskHandler;
+import org.ruoyi.system.task.PptTaskHandler;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 描述：异步任务
+ * 提交后立即返回任务ID, 结果通过 WebSocket 推送(消息类型 task), 也可以按ID查询
+ *
+ * @date 2026/10/19
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/chat/task")
+public class ChatTaskController {
+
+    private final IChatTaskService chatTaskService;
+
+    /**
+     * 提交 dall-e-3 绘图任务
+     */
+    @PostMapping("/dall3")
+    public R<Long> dall3(@RequestBody @Valid Dall3Request request) {
+        return R.ok(chatTaskService.submit(Dall3TaskHandler.TYPE, request.getPrompt(), request));
+    }
+
+    /**
+     * 提交 PPT 生成任务, 成功后自动扣费
+     */
+    @PostMapping("/ppt")
+    public R<Long> ppt(@RequestBody PptGeneratePptxDto request) {
+        return R.ok(chatTaskService.submit(PptTaskHandler.TYPE, "AI-PPT", request));
+    }
+
+    /**
+     * 查询任务
+     */
+    @GetMapping("/{id}")
+    public R<ChatTaskVo> getInfo(@PathVariable Long id) {
+        return R.ok(chatTaskService.queryById(id));
+    }
+
+    /**
+     * 查询任务列表
+     */
+    @GetMapping("/list")
+    public TableDataInfo<ChatTaskVo> list(String taskType, PageQuery pageQuery) {
+        return chatTaskService.queryPageList(taskType, pageQuery);
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.jetbrains.annotations.NotNull;
 import org.ruoyi.common.core.service.ConfigService;
 import org.ruoyi.system.domain.bo.SysModelBo;
 import org.ruoyi.system.domain.vo.SysModelVo;
@@ -12,6 +13,7 @@ import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -32,12 +34,28 @@ public class MjOkHttpUtil {
 
     private String apiHost;
 
+    /**
+     * 单次请求(含上传图片)的最长时间
+     */
+    public static final long CALL_TIMEOUT_SECONDS = 120;
+
+    /**
+     * 代理在同一主机上, 连接复用, 并发请求数限制在代理能承受的范围
+     */
     private final OkHttpClient client = new OkHttpClient.Builder()
-        .connectTimeout(300, TimeUnit.SECONDS)
-        .writeTimeout(300, TimeUnit.SECONDS)
-        .readTimeout(300, TimeUnit.SECONDS)
+        .connectTimeout(10, TimeUnit.SECONDS)
+        .callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        .connectionPool(new ConnectionPool(32, 5, TimeUnit.MINUTES))
+        .dispatcher(createDispatcher())
         .build();
 
+    private static Dispatcher createDispatcher() {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(128);
+        dispatcher.setMaxRequestsPerHost(64);
+        return dispatcher;
+    }
+
     public String executeRequest(Request request) {
         try (Response response = client.newCall(request).execute()) {
             if (!response.isSuccessful()) {
@@ -51,6 +69,38 @@ public class MjOkHttpUtil {
         }
     }
 
+    /**
+     * 异步执行请求, 等待响应时不占用线程
+     *
+     * @return 响应内容, 请求失败时为 null
+     */
+    public CompletableFuture<String> executeRequestAsync(Request request) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                log.error("请求失败: {}", e.getMessage());
+                future.complete(null);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        log.error("请求失败: Unexpected code {}", response);
+                        future.complete(null);
+                        return;
+                    }
+                    future.complete(response.body() != null ? response.body().string() : null);
+                } catch (IOException e) {
+                    log.error("请求失败: {}", e.getMessage());
+                    future.complete(null);
+                }
+            }
+        });
+        return future;
+    }
+
     public Request createPostRequest(String url, String json) {
         MediaType JSON = MediaType.get("application/json; charset=utf-8");
         RequestBody body = RequestBody.create(json, JSON);
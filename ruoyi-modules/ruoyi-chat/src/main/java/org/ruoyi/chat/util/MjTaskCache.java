@@ -0,0 +1,341 @@
+package org.ruoyi.chat.util;
+
+import cn.hutool.core.util.IdUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Request;
+import org.redisson.api.RBucket;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.json.utils.JsonUtils;
+import org.ruoyi.common.redis.utils.RedisUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Midjourney 任务状态缓存
+ * 前端提交任务后每隔几秒轮询任务状态, 原来每次轮询都转发到代理. 现在:
+ * 1. 提交任务异步请求代理, 等待响应时不占用请求线程, 提交成功后开始跟踪任务;
+ * 2. 跟踪中的任务由后台按批(list-by-condition)定时刷新, 结果写入 Redis, 任务结束(成功、失败、取消)后停止刷新;
+ *    每个任务在集群中只有一个实例刷新(Redis 租约), 实例宕机租约过期后由下一个查询该任务的实例接管;
+ * 3. 查询任务直接读取 Redis, 未缓存的任务才请求代理, 同一实例同时的相同查询只请求一次.
+ * 刷新间隔和缓存时间由 mj/taskPollSeconds、mj/taskCacheMinutes 配置
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MjTaskCache {
+
+    private static final String TASK_KEY = "mj:task:";
+
+    private static final String POLLER_KEY = "mj:task:poller:";
+
+    private static final String SEED_KEY = "mj:task:seed:";
+
+    /**
+     * 任务结束的状态
+     */
+    private static final Set<String> FINAL_STATUS = Set.of("SUCCESS", "FAILURE", "CANCEL");
+
+    /**
+     * 提交成功(1)和排队中(22)的任务会执行
+     */
+    private static final Set<Integer> SUBMITTED_CODES = Set.of(1, 22);
+
+    private static final long DEFAULT_POLL_SECONDS = 3;
+
+    private static final long DEFAULT_CACHE_MINUTES = 1440;
+
+    /**
+     * 每次批量查询的任务数
+     */
+    private static final int POLL_BATCH_SIZE = 100;
+
+    /**
+     * 刷新任务的租约时长, 每次刷新后续期
+     */
+    private static final long POLLER_LEASE_SECONDS = 60;
+
+    /**
+     * 跟踪超过该时间仍未结束的任务不再刷新
+     */
+    private static final long MAX_TRACK_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final MjOkHttpUtil mjOkHttpUtil;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final String instanceId = IdUtil.fastSimpleUUID();
+
+    /**
+     * 本实例刷新的任务及开始跟踪的时间
+     */
+    private final Map<String, Long> tracked = new ConcurrentHashMap<>();
+
+    private final Map<String, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    private Duration cacheTtl;
+
+    @PostConstruct
+    public void init() {
+        String pollSeconds = mjOkHttpUtil.getKey("taskPollSeconds");
+        String cacheMinutes = mjOkHttpUtil.getKey("taskCacheMinutes");
+        long interval = StringUtils.isBlank(pollSeconds) ? DEFAULT_POLL_SECONDS : Long.parseLong(pollSeconds.trim());
+        cacheTtl = Duration.ofMinutes(StringUtils.isBlank(cacheMinutes) ? DEFAULT_CACHE_MINUTES : Long.parseLong(cacheMinutes.trim()));
+        scheduledExecutorService.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 异步提交任务, 提交成功后开始跟踪任务状态
+     *
+     * @param url  提交地址
+     * @param json 请求内容
+     * @return 代理的响应, 请求失败时为 null
+     */
+    public DeferredResult<String> submit(String url, String json) {
+        DeferredResult<String> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(MjOkHttpUtil.CALL_TIMEOUT_SECONDS + 5));
+        mjOkHttpUtil.executeRequestAsync(mjOkHttpUtil.createPostRequest(url, json)).thenAccept(body -> {
+            String taskId = getSubmittedTaskId(body);
+            if (taskId != null) {
+                track(taskId);
+            }
+            result.setResult(body);
+        });
+        return result;
+    }
+
+    /**
+     * 查询任务
+     *
+     * @param id 任务ID
+     * @return 任务 JSON, 请求失败时为 null
+     */
+    public String fetch(String id) {
+        String cached = RedisUtils.getCacheObject(TASK_KEY + id);
+        if (cached != null) {
+            if (!isFinal(parse(cached))) {
+                track(id);
+            }
+            return cached;
+        }
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> existing = loading.putIfAbsent(id, own);
+        if (existing != null) {
+            return existing.join();
+        }
+        try {
+            String body = mjOkHttpUtil.executeRequest(mjOkHttpUtil.createGetRequest("mj/task/" + id + "/fetch"));
+            JsonNode task = parse(body);
+            if (task != null && task.hasNonNull("id")) {
+                save(id, body, task);
+            }
+            own.complete(body);
+            return body;
+        } finally {
+            own.complete(null);
+            loading.remove(id, own);
+        }
+    }
+
+    /**
+     * 按ID列表查询任务, 未缓存的任务合并为一次请求
+     *
+     * @param ids 任务ID列表
+     * @return 任务 JSON 数组, 按 ids 顺序, 不包含查询不到的任务
+     */
+    public String listByIds(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return "[]";
+        }
+        Map<String, String> tasks = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : new LinkedHashSet<>(ids)) {
+            String cached = RedisUtils.getCacheObject(TASK_KEY + id);
+            if (cached == null) {
+                missing.add(id);
+                continue;
+            }
+            if (!isFinal(parse(cached))) {
+                track(id);
+            }
+            tasks.put(id, cached);
+        }
+        if (!missing.isEmpty()) {
+            tasks.putAll(load(missing));
+        }
+        StringJoiner joiner = new StringJoiner(",", "[", "]");
+        for (String id : new LinkedHashSet<>(ids)) {
+            String task = tasks.get(id);
+            if (task != null) {
+                joiner.add(task);
+            }
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * 查询任务图片的seed, 成功获取后缓存
+     *
+     * @param id 任务ID
+     * @return 代理的响应
+     */
+    public String getSeed(String id) {
+        String cached = RedisUtils.getCacheObject(SEED_KEY + id);
+        if (cached != null) {
+            return cached;
+        }
+        String body = mjOkHttpUtil.executeRequest(mjOkHttpUtil.createGetRequest("mj/task/" + id + "/image-seed"));
+        JsonNode result = parse(body);
+        if (result != null && result.path("code").asInt() == 1) {
+            RedisUtils.setCacheObject(SEED_KEY + id, body, cacheTtl);
+        }
+        return body;
+    }
+
+    /**
+     * 开始跟踪任务, 集群中已有实例在刷新该任务时忽略
+     */
+    private void track(String id) {
+        if (tracked.containsKey(id)) {
+            return;
+        }
+        try {
+            RBucket<String> lease = RedisUtils.getClient().getBucket(POLLER_KEY + id);
+            if (lease.trySet(instanceId, POLLER_LEASE_SECONDS, TimeUnit.SECONDS) || instanceId.equals(lease.get())) {
+                tracked.putIfAbsent(id, System.currentTimeMillis());
+            }
+        } catch (Exception e) {
+            log.warn("跟踪 Midjourney 任务 {} 失败: {}", id, e.getMessage());
+        }
+    }
+
+    private void untrack(String id) {
+        tracked.remove(id);
+        RedisUtils.deleteObject(POLLER_KEY + id);
+    }
+
+    /**
+     * 批量刷新跟踪中的任务, 上一轮未结束时跳过
+     */
+    private void poll() {
+        if (tracked.isEmpty() || !polling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<String> ids = new ArrayList<>();
+            tracked.forEach((id, since) -> {
+                if (now - since > MAX_TRACK_MILLIS) {
+                    log.warn("Midjourney 任务 {} 超过 {} 分钟未结束, 停止刷新", id, TimeUnit.MILLISECONDS.toMinutes(MAX_TRACK_MILLIS));
+                    untrack(id);
+                } else {
+                    ids.add(id);
+                }
+            });
+            List<CompletableFuture<Void>> batches = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i += POLL_BATCH_SIZE) {
+                List<String> batch = ids.subList(i, Math.min(ids.size(), i + POLL_BATCH_SIZE));
+                batches.add(mjOkHttpUtil.executeRequestAsync(createListRequest(batch))
+                    .thenAccept(body -> refresh(batch, body)));
+            }
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]))
+                .whenComplete((v, e) -> polling.set(false));
+        } catch (Exception e) {
+            polling.set(false);
+            log.error("刷新 Midjourney 任务失败", e);
+        }
+    }
+
+    private void refresh(List<String> ids, String body) {
+        JsonNode tasks = parse(body);
+        if (tasks == null || !tasks.isArray()) {
+            return;
+        }
+        try {
+            for (JsonNode task : tasks) {
+                String id = task.path("id").asText(null);
+                if (id == null || !tracked.containsKey(id)) {
+                    continue;
+                }
+                save(id, task.toString(), task);
+                if (!isFinal(task)) {
+                    RedisUtils.expire(POLLER_KEY + id, Duration.ofSeconds(POLLER_LEASE_SECONDS));
+                }
+            }
+        } catch (Exception e) {
+            log.error("刷新 Midjourney 任务 {} 失败: {}", ids, e.getMessage());
+        }
+    }
+
+    /**
+     * 请求代理查询未缓存的任务
+     */
+    private Map<String, String> load(List<String> ids) {
+        Map<String, String> result = new HashMap<>();
+        JsonNode tasks = parse(mjOkHttpUtil.executeRequest(createListRequest(ids)));
+        if (tasks == null || !tasks.isArray()) {
+            return result;
+        }
+        for (JsonNode task : tasks) {
+            String id = task.path("id").asText(null);
+            if (id != null) {
+                String json = task.toString();
+                save(id, json, task);
+                result.put(id, json);
+            }
+        }
+        return result;
+    }
+
+    private void save(String id, String json, JsonNode task) {
+        RedisUtils.setCacheObject(TASK_KEY + id, json, cacheTtl);
+        if (isFinal(task)) {
+            if (tracked.containsKey(id)) {
+                untrack(id);
+            }
+        } else {
+            track(id);
+        }
+    }
+
+    private Request createListRequest(List<String> ids) {
+        return mjOkHttpUtil.createPostRequest("mj/task/list-by-condition", JsonUtils.toJsonString(Map.of("ids", ids)));
+    }
+
+    private static String getSubmittedTaskId(String body) {
+        JsonNode result = parse(body);
+        if (result == null || !SUBMITTED_CODES.contains(result.path("code").asInt())) {
+            return null;
+        }
+        return StringUtils.trimToNull(result.path("result").asText(null));
+    }
+
+    private static boolean isFinal(JsonNode task) {
+        return task != null && FINAL_STATUS.contains(task.path("status").asText());
+    }
+
+    private static JsonNode parse(String json) {
+        if (StringUtils.isBlank(json)) {
+            return null;
+        }
+        try {
+            return JsonUtils.getObjectMapper().readTree(json);
+        } catch (Exception e) {
+            log.warn("解析 Midjourney 响应失败: {}", json);
+            return null;
+        }
+    }
+}
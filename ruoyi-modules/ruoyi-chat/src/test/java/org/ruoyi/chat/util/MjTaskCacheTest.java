@@ -0,0 +1,316 @@
+package org.ruoyi.chat.util;
+
+import cn.hutool.extra.spring.SpringUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucket;
+import org.redisson.api.RBucketAsync;
+import org.redisson.api.RedissonClient;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.system.domain.vo.SysModelVo;
+import org.ruoyi.system.service.ISysModelService;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Midjourney 任务状态缓存测试
+ * 本地 HTTP 服务模拟 Midjourney 代理并统计请求, Redis 由内存中的 RedissonClient 模拟, 多个实例共用:
+ * 批量刷新跟踪中的任务、任务结束后停止刷新、刷新租约只归一个实例及实例宕机后接管、未缓存任务的查询合并
+ *
+ * @date 2026/10/19
+ */
+class MjTaskCacheTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 模拟的 Redis, 所有实例共用
+     */
+    private static final Map<String, Object> REDIS = new ConcurrentHashMap<>();
+
+    private HttpServer proxy;
+
+    /**
+     * 代理中的任务状态
+     */
+    private final Map<String, String> proxyTasks = new ConcurrentHashMap<>();
+
+    private final AtomicInteger fetchRequests = new AtomicInteger();
+
+    /**
+     * 每次批量查询请求的任务ID
+     */
+    private final List<List<String>> listRequests = new CopyOnWriteArrayList<>();
+
+    /**
+     * 不为 null 时单个查询等待放行后才响应
+     */
+    private volatile CountDownLatch fetchGate;
+
+    @BeforeAll
+    static void initRedis() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getBucket(anyString())).thenAnswer(invocation -> bucket(invocation.getArgument(0)));
+        when(redissonClient.createBatch()).thenAnswer(invocation -> {
+            RBatch batch = mock(RBatch.class);
+            when(batch.getBucket(anyString())).thenAnswer(bucketInvocation -> {
+                String key = bucketInvocation.getArgument(0);
+                RBucketAsync<Object> bucket = mock(RBucketAsync.class);
+                when(bucket.setAsync(any())).thenAnswer(setInvocation -> {
+                    REDIS.put(key, setInvocation.getArgument(0));
+                    return null;
+                });
+                return bucket;
+            });
+            return batch;
+        });
+        // JsonUtils 和 RedisUtils 从 Spring 容器获取依赖
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("objectMapper", OBJECT_MAPPER);
+        context.getBeanFactory().registerSingleton("redissonClient", redissonClient);
+        context.refresh();
+        new SpringUtil().setApplicationContext(context);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RBucket<Object> bucket(String key) {
+        RBucket<Object> bucket = mock(RBucket.class);
+        when(bucket.get()).thenAnswer(invocation -> REDIS.get(key));
+        when(bucket.trySet(any(), anyLong(), any(TimeUnit.class)))
+            .thenAnswer(invocation -> REDIS.putIfAbsent(key, invocation.getArgument(0)) == null);
+        when(bucket.expire(any(Duration.class))).thenAnswer(invocation -> REDIS.containsKey(key));
+        when(bucket.delete()).thenAnswer(invocation -> REDIS.remove(key) != null);
+        return bucket;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        REDIS.clear();
+        proxy = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        proxy.createContext("/mj/task/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.endsWith("/list-by-condition")) {
+                JsonNode request = OBJECT_MAPPER.readTree(exchange.getRequestBody());
+                List<String> ids = new ArrayList<>();
+                request.path("ids").forEach(id -> ids.add(id.asText()));
+                listRequests.add(ids);
+                List<String> tasks = ids.stream().filter(proxyTasks::containsKey).map(this::task).toList();
+                respond(exchange, "[" + String.join(",", tasks) + "]");
+            } else if (path.endsWith("/fetch")) {
+                fetchRequests.incrementAndGet();
+                CountDownLatch gate = fetchGate;
+                if (gate != null) {
+                    try {
+                        gate.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                String id = path.substring("/mj/task/".length(), path.length() - "/fetch".length());
+                respond(exchange, proxyTasks.containsKey(id) ? task(id) : "");
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+            }
+        });
+        proxy.setExecutor(Executors.newCachedThreadPool());
+        proxy.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        proxy.stop(0);
+    }
+
+    /**
+     * 创建一个实例, 与其他实例共用代理和 Redis
+     */
+    private MjTaskCache startNode() {
+        SysModelVo model = new SysModelVo();
+        model.setApiHost("http://127.0.0.1:" + proxy.getAddress().getPort() + "/");
+        model.setApiKey("secret");
+        ISysModelService sysModelService = mock(ISysModelService.class);
+        when(sysModelService.queryList(any())).thenReturn(List.of(model));
+        MjOkHttpUtil mjOkHttpUtil = new MjOkHttpUtil(sysModelService, mock(ConfigService.class));
+        mjOkHttpUtil.init();
+        MjTaskCache node = new MjTaskCache(mjOkHttpUtil, mock(ScheduledExecutorService.class));
+        node.init();
+        return node;
+    }
+
+    @Test
+    void trackedTasksAreRefreshedInOneBatchUntilFinished() throws Exception {
+        MjTaskCache node = startNode();
+        for (String id : List.of("t1", "t2", "t3")) {
+            proxyTasks.put(id, "IN_PROGRESS");
+            node.fetch(id);
+        }
+        assertEquals(3, fetchRequests.get());
+
+        proxyTasks.put("t1", "SUCCESS");
+        poll(node);
+        assertEquals(1, listRequests.size());
+        assertEquals(List.of("t1", "t2", "t3"), sorted(listRequests.get(0)));
+        // 结束的任务更新缓存并释放租约, 下一轮不再刷新
+        assertEquals("SUCCESS", status(node.fetch("t1")));
+        assertNull(REDIS.get("mj:task:poller:t1"));
+
+        poll(node);
+        assertEquals(2, listRequests.size());
+        assertEquals(List.of("t2", "t3"), sorted(listRequests.get(1)));
+        // 查询都由缓存返回, 不再请求代理
+        node.fetch("t2");
+        assertEquals(3, fetchRequests.get());
+    }
+
+    @Test
+    void refreshIsSplitIntoBatchesOfOneHundred() throws Exception {
+        MjTaskCache node = startNode();
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            proxyTasks.put("t" + i, "IN_PROGRESS");
+            ids.add("t" + i);
+        }
+        node.listByIds(ids);
+        assertEquals(1, listRequests.size());
+
+        poll(node);
+
+        assertEquals(3, listRequests.size());
+        assertEquals(150, listRequests.get(1).size() + listRequests.get(2).size());
+    }
+
+    @Test
+    void onlyLeaseHolderRefreshesAndAnotherNodeTakesOver() throws Exception {
+        MjTaskCache first = startNode();
+        MjTaskCache second = startNode();
+        proxyTasks.put("t1", "IN_PROGRESS");
+        first.fetch("t1");
+        // 第二个实例从缓存读到未结束的任务, 租约在第一个实例, 不刷新
+        second.fetch("t1");
+        assertEquals(1, fetchRequests.get());
+        poll(second);
+        assertTrue(listRequests.isEmpty());
+        poll(first);
+        assertEquals(1, listRequests.size());
+
+        // 第一个实例宕机, 租约过期后由下一个查询该任务的实例接管
+        REDIS.remove("mj:task:poller:t1");
+        proxyTasks.put("t1", "SUCCESS");
+        second.fetch("t1");
+        poll(second);
+        assertEquals(2, listRequests.size());
+        assertEquals("SUCCESS", status(second.fetch("t1")));
+    }
+
+    @Test
+    void concurrentMissesJoinOneProxyRequest() throws Exception {
+        MjTaskCache node = startNode();
+        proxyTasks.put("t1", "IN_PROGRESS");
+        fetchGate = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> node.fetch("t1")));
+        }
+        // 第一个查询到达代理后, 其余查询等待它的结果
+        long deadline = System.currentTimeMillis() + 5000;
+        while (fetchRequests.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(200);
+        fetchGate.countDown();
+        for (Future<String> future : futures) {
+            assertEquals("IN_PROGRESS", status(future.get(10, TimeUnit.SECONDS)));
+        }
+        executor.shutdown();
+
+        assertEquals(1, fetchRequests.get());
+    }
+
+    @Test
+    void listByIdsLoadsOnlyMissingTasksInOneRequest() throws Exception {
+        MjTaskCache node = startNode();
+        for (String id : List.of("t1", "t2", "t3")) {
+            proxyTasks.put(id, "SUCCESS");
+        }
+        node.fetch("t1");
+
+        JsonNode tasks = OBJECT_MAPPER.readTree(node.listByIds(List.of("t1", "t2", "t3", "t2")));
+
+        assertEquals(3, tasks.size());
+        assertEquals(List.of("t1", "t2", "t3"), List.of(tasks.get(0).path("id").asText(),
+            tasks.get(1).path("id").asText(), tasks.get(2).path("id").asText()));
+        assertEquals(1, listRequests.size());
+        assertEquals(List.of("t2", "t3"), sorted(listRequests.get(0)));
+    }
+
+    /**
+     * 执行一轮刷新并等待批量请求完成
+     */
+    private static void poll(MjTaskCache node) throws InterruptedException {
+        ReflectionTestUtils.invokeMethod(node, "poll");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((AtomicBoolean) ReflectionTestUtils.getField(node, "polling")).get()) {
+            assertTrue(System.currentTimeMillis() < deadline, "刷新超时");
+            Thread.sleep(5);
+        }
+    }
+
+    private String task(String id) {
+        return "{\"id\":\"" + id + "\",\"action\":\"IMAGINE\",\"status\":\"" + proxyTasks.get(id) + "\",\"progress\":\"50%\"}";
+    }
+
+    private static String status(String json) throws IOException {
+        return OBJECT_MAPPER.readTree(json).path("status").asText();
+    }
+
+    private static List<String> sorted(List<String> ids) {
+        return ids.stream().sorted().toList();
+    }
+
+    private static void respond(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -1,16 +1,68 @@
 package org.ruoyi.knowledge.chain.loader;
 
-import java.io.InputStream;
+import org.ruoyi.knowledge.constant.FileType;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
 
-public class FolderLoader implements ResourceLoader{
-    @Override
-    public String getContent(InputStream inputStream) {
-        return null;
+/**
+ * 目录载入: 遍历目录, 列出可以载入知识库的文件, 文件内容再按类型交给对应的 ResourceLoader 处理
+ */
+public class FolderLoader {
+
+    /**
+     * 列出目录下所有支持的文件
+     *
+     * @param root 根目录
+     * @return 文件路径列表
+     */
+    public List<Path> listFiles(Path root) throws IOException {
+        List<Path> fileList = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(root) && skipDirectory(dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && FileType.isSupported(getFileType(file))) {
+                    fileList.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // 无权限等无法读取的文件直接跳过
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return fileList;
+    }
+
+    /**
+     * 是否跳过该目录
+     */
+    protected boolean skipDirectory(Path dir) {
+        return false;
     }
 
-    @Override
-    public List<String> getChunkList(String content, String kid) {
-        return null;
+    /**
+     * 获取文件类型(扩展名)
+     */
+    public static String getFileType(Path file) {
+        String fileName = file.getFileName().toString();
+        int index = fileName.lastIndexOf(".");
+        return index < 0 ? "" : fileName.substring(index + 1);
     }
 }
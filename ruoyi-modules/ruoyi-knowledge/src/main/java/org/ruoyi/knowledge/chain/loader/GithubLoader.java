@@ -1,16 +1,17 @@
 package org.ruoyi.knowledge.chain.loader;
 
-import java.io.InputStream;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.Set;
 
-public class GithubLoader implements ResourceLoader{
-    @Override
-    public String getContent(InputStream inputStream) {
-        return null;
-    }
+/**
+ * 代码仓库载入: 遍历本地 git 仓库的工作区, 跳过版本库元数据和依赖、构建产物目录
+ */
+public class GithubLoader extends FolderLoader {
+
+    private static final Set<String> SKIP_DIRS = Set.of(".git", ".svn", ".idea", "node_modules", "target", "build", "dist");
 
     @Override
-    public List<String> getChunkList(String content, String kid) {
-        return null;
+    protected boolean skipDirectory(Path dir) {
+        return SKIP_DIRS.contains(dir.getFileName().toString());
     }
 }
@@ -1,33 +1,55 @@
 package org.ruoyi.knowledge.chain.loader;
 
-import lombok.AllArgsConstructor;
 import org.ruoyi.knowledge.chain.split.CharacterTextSplitter;
 import org.ruoyi.knowledge.chain.split.CodeTextSplitter;
 import org.ruoyi.knowledge.chain.split.MarkdownTextSplitter;
-import org.ruoyi.knowledge.chain.split.TokenTextSplitter;
 import org.ruoyi.knowledge.constant.FileType;
 import org.springframework.stereotype.Component;
 
-@AllArgsConstructor
+/**
+ * 资源载入工厂
+ * 各载入器都是无状态的, 创建一次后复用, 批量导入时不再为每个文件创建新对象
+ */
 @Component
 public class ResourceLoaderFactory {
-    private final CharacterTextSplitter characterTextSplitter;
-    private final CodeTextSplitter codeTextSplitter;
-    private final MarkdownTextSplitter markdownTextSplitter;
-    private final TokenTextSplitter tokenTextSplitter;
+    private final TextFileLoader textFileLoader;
+    private final WordLoader wordLoader;
+    private final PdfFileLoader pdfFileLoader;
+    private final MarkDownFileLoader markDownFileLoader;
+    private final CodeFileLoader codeFileLoader;
+    private final FolderLoader folderLoader = new FolderLoader();
+    private final GithubLoader githubLoader = new GithubLoader();
+
+    public ResourceLoaderFactory(CharacterTextSplitter characterTextSplitter, CodeTextSplitter codeTextSplitter,
+                                 MarkdownTextSplitter markdownTextSplitter) {
+        this.textFileLoader = new TextFileLoader(characterTextSplitter);
+        this.wordLoader = new WordLoader(characterTextSplitter);
+        this.pdfFileLoader = new PdfFileLoader(characterTextSplitter);
+        this.markDownFileLoader = new MarkDownFileLoader(markdownTextSplitter);
+        this.codeFileLoader = new CodeFileLoader(codeTextSplitter);
+    }
+
     public ResourceLoader getLoaderByFileType(String fileType){
         if (FileType.isTextFile(fileType)){
-            return new TextFileLoader(characterTextSplitter);
+            return textFileLoader;
         } else if (FileType.isWord(fileType)) {
-            return new WordLoader(characterTextSplitter);
+            return wordLoader;
         } else if (FileType.isPdf(fileType)) {
-            return new PdfFileLoader(characterTextSplitter);
+            return pdfFileLoader;
         } else if (FileType.isMdFile(fileType)) {
-            return new MarkDownFileLoader(markdownTextSplitter);
+            return markDownFileLoader;
         }else if (FileType.isCodeFile(fileType)) {
-            return new CodeFileLoader(codeTextSplitter);
+            return codeFileLoader;
         }else {
-            return new TextFileLoader(characterTextSplitter);
+            return textFileLoader;
         }
     }
+
+    public FolderLoader getFolderLoader() {
+        return folderLoader;
+    }
+
+    public GithubLoader getGithubLoader() {
+        return githubLoader;
+    }
 }
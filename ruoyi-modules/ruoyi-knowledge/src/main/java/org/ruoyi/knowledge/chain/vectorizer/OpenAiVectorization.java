@@ -1,7 +1,6 @@
 package org.ruoyi.knowledge.chain.vectorizer;
 
 import jakarta.annotation.Resource;
-import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.ruoyi.common.chat.config.ChatConfig;
@@ -37,9 +36,6 @@ public class OpenAiVectorization implements Vectorization {
     @Resource
     private ISysModelService sysModelService;
 
-    @Getter
-    private OpenAiStreamClient openAiStreamClient;
-
     private final ChatConfig chatConfig;
 
     @Override
@@ -56,7 +52,7 @@ public class OpenAiVectorization implements Vectorization {
         SysModel sysModel = sysModelService.selectModelByName(knowledgeInfoVo.getVectorModel());
         String apiHost= sysModel.getApiHost();
         String apiKey= sysModel.getApiKey();
-        openAiStreamClient = chatConfig.createOpenAiStreamClient(apiHost,apiKey);
+        OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient(apiHost,apiKey);
 
         Embedding embedding = buildEmbedding(chunkList, knowledgeInfoVo);
         EmbeddingResponse embeddings = openAiStreamClient.embeddings(embedding);
@@ -3,13 +3,17 @@ package org.ruoyi.knowledge.chain.vectorizer;
 import jakarta.annotation.Resource;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
+import org.ruoyi.common.core.utils.StringUtils;
 import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
 import org.ruoyi.knowledge.service.IKnowledgeInfoService;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Slf4j
@@ -21,12 +25,43 @@ public class VectorizationWrapper implements Vectorization{
     @Override
     public List<List<Double>> batchVectorization(List<String> chunkList, String kid) {
         Vectorization embedding = vectorizationFactory.getEmbedding(kid);
-        return embedding.batchVectorization(chunkList, kid);
+        String provider = provider(embedding);
+        ChatMetrics.summary(ChatMetrics.EMBEDDING_BATCH_SIZE, "provider", provider).record(chunkList.size());
+        long start = System.nanoTime();
+        try {
+            return embedding.batchVectorization(chunkList, kid);
+        } finally {
+            record(provider, kid, start);
+        }
     }
 
     @Override
     public List<Double> singleVectorization(String chunk, String kid) {
         Vectorization embedding = vectorizationFactory.getEmbedding(kid);
-        return embedding.singleVectorization(chunk, kid);
+        String provider = provider(embedding);
+        ChatMetrics.summary(ChatMetrics.EMBEDDING_BATCH_SIZE, "provider", provider).record(1);
+        long start = System.nanoTime();
+        try {
+            return embedding.singleVectorization(chunk, kid);
+        } finally {
+            record(provider, kid, start);
+        }
+    }
+
+    /**
+     * 记录向量化耗时, 按知识库的耗时不发布直方图
+     */
+    private static void record(String provider, String kid, long start) {
+        long elapsed = System.nanoTime() - start;
+        ChatMetrics.timer(ChatMetrics.EMBEDDING_DURATION, "provider", provider).record(elapsed, TimeUnit.NANOSECONDS);
+        ChatMetrics.simpleTimer(ChatMetrics.EMBEDDING_KID_DURATION, "provider", provider, "kid", ChatMetrics.tagValue(kid))
+            .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 监控指标的 provider 标签, 如 OpenAiVectorization 为 openai
+     */
+    private static String provider(Vectorization embedding) {
+        return StringUtils.removeEnd(ClassUtils.getUserClass(embedding).getSimpleName(), "Vectorization").toLowerCase();
     }
 }
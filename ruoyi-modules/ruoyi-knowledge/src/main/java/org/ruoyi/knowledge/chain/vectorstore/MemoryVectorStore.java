@@ -0,0 +1,164 @@
+package org.ruoyi.knowledge.chain.vectorstore;
+
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.ruoyi.knowledge.chain.vectorizer.Vectorization;
+import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
+import org.ruoyi.knowledge.service.IKnowledgeInfoService;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 内存向量库(知识库 vector 为 memory)
+ * 向量保存在本进程内存中, 按余弦相似度逐条比较, 重启后数据丢失.
+ * 不依赖 Weaviate、Milvus 等外部服务, 用于压测和本地开发, 不要用于生产知识库
+ *
+ * @date 2026/10/19
+ */
+@Service
+@Slf4j
+public class MemoryVectorStore implements VectorStore {
+
+    private static final int DEFAULT_LIMIT = 3;
+
+    private final Map<String, List<Chunk>> store = new ConcurrentHashMap<>();
+
+    @Lazy
+    @Resource
+    private IKnowledgeInfoService knowledgeInfoService;
+
+    /**
+     * 按文本检索时先向量化, 使用知识库配置的向量模型
+     */
+    @Lazy
+    @Resource
+    private Vectorization vectorization;
+
+    @Override
+    public void storeEmbeddings(List<String> chunkList, List<List<Double>> vectorList, String kid, String docId, List<String> fidList) {
+        int size = Math.min(chunkList.size(), vectorList.size());
+        List<Chunk> chunks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            chunks.add(new Chunk(docId, fidList.get(i), chunkList.get(i), normalize(vectorList.get(i))));
+        }
+        // 整批写入, 写时复制只复制一次
+        store.computeIfAbsent(kid, k -> new CopyOnWriteArrayList<>()).addAll(chunks);
+    }
+
+    @Override
+    public void removeByDocId(String kid, String docId) {
+        List<Chunk> chunks = store.get(kid);
+        if (chunks != null) {
+            chunks.removeIf(chunk -> Objects.equals(chunk.docId(), docId));
+        }
+    }
+
+    @Override
+    public void removeByKid(String kid) {
+        store.remove(kid);
+    }
+
+    @Override
+    public List<String> nearest(List<Double> queryVector, String kid) {
+        if (StringUtils.isBlank(kid)) {
+            return new ArrayList<>();
+        }
+        List<Chunk> chunks = store.get(kid);
+        if (chunks == null || chunks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        float[] query = normalize(queryVector);
+        int limit = getRetrieveLimit(kid);
+        // 小顶堆保留相似度最高的 limit 条
+        PriorityQueue<Map.Entry<Float, String>> top = new PriorityQueue<>(limit + 1, Map.Entry.comparingByKey());
+        for (Chunk chunk : chunks) {
+            if (chunk.vector().length != query.length) {
+                continue;
+            }
+            top.offer(Map.entry(dot(query, chunk.vector()), chunk.content()));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<String> resultList = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            resultList.add(top.poll().getValue());
+        }
+        Collections.reverse(resultList);
+        return resultList;
+    }
+
+    @Override
+    public List<String> nearest(String query, String kid) {
+        if (StringUtils.isBlank(kid)) {
+            return new ArrayList<>();
+        }
+        return nearest(vectorization.singleVectorization(query, kid), kid);
+    }
+
+    @Override
+    public void newSchema(String kid) {
+        store.computeIfAbsent(kid, k -> new CopyOnWriteArrayList<>());
+    }
+
+    @Override
+    public void removeByKidAndFid(String kid, String fid) {
+        List<Chunk> chunks = store.get(kid);
+        if (chunks != null) {
+            chunks.removeIf(chunk -> Objects.equals(chunk.fid(), fid));
+        }
+    }
+
+    @Override
+    public void removeByKidAndFids(String kid, List<String> fids) {
+        List<Chunk> chunks = store.get(kid);
+        if (chunks != null) {
+            Set<String> fidSet = new HashSet<>(fids);
+            chunks.removeIf(chunk -> fidSet.contains(chunk.fid()));
+        }
+    }
+
+    private int getRetrieveLimit(String kid) {
+        KnowledgeInfoVo knowledgeInfoVo = knowledgeInfoService.queryById(Long.valueOf(kid));
+        if (knowledgeInfoVo == null || knowledgeInfoVo.getRetrieveLimit() == null || knowledgeInfoVo.getRetrieveLimit() <= 0) {
+            return DEFAULT_LIMIT;
+        }
+        return knowledgeInfoVo.getRetrieveLimit();
+    }
+
+    /**
+     * 转为单位向量, 检索时点积即余弦相似度
+     */
+    private static float[] normalize(List<Double> vector) {
+        float[] result = new float[vector.size()];
+        double norm = 0;
+        for (int i = 0; i < result.length; i++) {
+            double value = vector.get(i);
+            result[i] = (float) value;
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < result.length; i++) {
+                result[i] *= scale;
+            }
+        }
+        return result;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record Chunk(String docId, String fid, String content, float[] vector) {
+    }
+}
@@ -0,0 +1,368 @@
+package org.ruoyi.knowledge.chain.vectorstore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.milvus.client.MilvusClient;
+import io.milvus.grpc.GetCollectionStatisticsResponse;
+import io.milvus.grpc.ShowCollectionsResponse;
+import io.milvus.grpc.ShowType;
+import io.milvus.param.R;
+import io.milvus.param.RpcStatus;
+import io.milvus.param.collection.GetCollectionStatisticsParam;
+import io.milvus.param.collection.LoadCollectionParam;
+import io.milvus.param.collection.ReleaseCollectionParam;
+import io.milvus.param.collection.ShowCollectionsParam;
+import io.milvus.response.GetCollStatResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Milvus 集合装载管理
+ * 记录每个知识库集合的最近访问时间和估算内存, 空闲超时或超出内存预算时释放最久未访问的集合.
+ * 检索期间集合被 pin 住, 释放时跳过仍有检索在进行的集合.
+ * <p>
+ * 只管理名称以知识库集合前缀开头的集合, 同一 Milvus 中其他应用的集合不会被登记和释放.
+ * 多个节点共用一个 Milvus 时, pin 只在本节点有效, 因此各节点通过 {@link AccessLog}(Redis)共享各自对集合的最近访问时间:
+ * 空闲释放要求其他节点在空闲时间内也没有访问过该集合, 预算淘汰跳过其他节点在 {@link #SHARED_GUARD_MILLIS} 内访问过的集合.
+ * 共享访问时间按秒更新, 仍可能在极短的间隔内释放其他节点刚开始检索的集合, 检索失败时由调用方 {@link #forget(String)} 后重新装载
+ */
+@Slf4j
+public class MilvusCollectionManager {
+
+    /**
+     * 预算淘汰时, 其他节点在此时间内访问过的集合视为可能正在检索, 不淘汰
+     */
+    static final long SHARED_GUARD_MILLIS = 60_000;
+
+    /**
+     * 同一集合的共享访问时间最多每秒写一次
+     */
+    private static final long TOUCH_INTERVAL_MILLIS = 1000;
+
+    private final MilvusClient milvusClient;
+
+    /**
+     * 已装载集合的内存预算(字节)
+     */
+    private final long memoryBudget;
+
+    /**
+     * 集合空闲多久后释放(毫秒)
+     */
+    private final long idleMillis;
+
+    /**
+     * 集合中每个向量分量的估算字节数, 取决于集合实际的索引(量化索引小于 4)
+     */
+    private final ToIntFunction<String> bytesPerDimension;
+
+    private final int dimension;
+
+    /**
+     * 知识库集合名称前缀(milvus/collection)
+     */
+    private final String collectionPrefix;
+
+    private final AccessLog accessLog;
+
+    private final Map<String, LoadedCollection> loaded = new ConcurrentHashMap<>();
+
+    private final Counter loadCounter;
+    private final Counter idleReleaseCounter;
+    private final Counter budgetReleaseCounter;
+
+    public MilvusCollectionManager(MilvusClient milvusClient, String collectionPrefix, AccessLog accessLog,
+                                   long memoryBudget, long idleMillis, int dimension,
+                                   ToIntFunction<String> bytesPerDimension, MeterRegistry meterRegistry) {
+        this.milvusClient = milvusClient;
+        this.collectionPrefix = collectionPrefix;
+        this.accessLog = accessLog;
+        this.memoryBudget = memoryBudget;
+        this.idleMillis = idleMillis;
+        this.dimension = dimension;
+        this.bytesPerDimension = bytesPerDimension;
+        this.loadCounter = meterRegistry.counter("milvus.collection.load");
+        this.idleReleaseCounter = meterRegistry.counter("milvus.collection.release", "reason", "idle");
+        this.budgetReleaseCounter = meterRegistry.counter("milvus.collection.release", "reason", "budget");
+        Gauge.builder("milvus.collection.loaded", loaded, Map::size).register(meterRegistry);
+        Gauge.builder("milvus.collection.memory", this, MilvusCollectionManager::usedMemory)
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 登记服务端已经在内存中的知识库集合(应用重启后或由其他节点装载的集合)
+     */
+    public void registerLoadedCollections() {
+        R<ShowCollectionsResponse> response = milvusClient.showCollections(
+            ShowCollectionsParam.newBuilder().withShowType(ShowType.InMemory).build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            log.warn("查询已装载集合失败: {}", response.getMessage());
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (String name : response.getData().getCollectionNamesList()) {
+            if (!name.startsWith(collectionPrefix)) {
+                continue;
+            }
+            loaded.computeIfAbsent(name, k -> new LoadedCollection(estimateMemory(k), now));
+        }
+    }
+
+    /**
+     * 预装载集合, 超出内存预算的部分不再装载
+     */
+    public void preload(List<String> collectionNames) {
+        for (String name : collectionNames) {
+            if (loaded.containsKey(name)) {
+                continue;
+            }
+            if (usedMemory() + estimateMemory(name) > memoryBudget) {
+                log.info("预装载集合 {} 超出内存预算, 停止预装载", name);
+                return;
+            }
+            load(name);
+        }
+    }
+
+    /**
+     * 访问集合前调用, 未装载时装载并按预算淘汰其他集合
+     */
+    public void ensureLoaded(String collectionName) {
+        LoadedCollection collection = loaded.get(collectionName);
+        if (collection != null) {
+            collection.lastAccess = System.currentTimeMillis();
+            return;
+        }
+        synchronized (this) {
+            if (loaded.containsKey(collectionName)) {
+                return;
+            }
+            releaseOverBudget(estimateMemory(collectionName));
+            load(collectionName);
+        }
+    }
+
+    /**
+     * 检索前调用, 装载集合并标记为使用中, 检索结束后必须调用 {@link #unpin(String)}
+     *
+     * @return 集合是否已装载, 装载失败时返回 false 且不需要 unpin
+     */
+    public boolean pin(String collectionName) {
+        if (pinIfLoaded(collectionName)) {
+            return true;
+        }
+        synchronized (this) {
+            if (pinIfLoaded(collectionName)) {
+                return true;
+            }
+            releaseOverBudget(estimateMemory(collectionName));
+            load(collectionName);
+            return pinIfLoaded(collectionName);
+        }
+    }
+
+    /**
+     * 检索结束, 解除使用中标记
+     */
+    public void unpin(String collectionName) {
+        loaded.computeIfPresent(collectionName, (name, collection) -> {
+            collection.inUse = Math.max(0, collection.inUse - 1);
+            collection.lastAccess = System.currentTimeMillis();
+            return collection;
+        });
+    }
+
+    /**
+     * 数据写入后集合大小变化, 重新估算内存
+     */
+    public void refresh(String collectionName) {
+        LoadedCollection collection = loaded.get(collectionName);
+        if (collection != null) {
+            collection.memory = estimateMemory(collectionName);
+            collection.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 集合被删除后移除记录
+     */
+    public void forget(String collectionName) {
+        loaded.remove(collectionName);
+    }
+
+    /**
+     * 释放所有节点都空闲超时的集合, 由定时任务调用
+     */
+    public synchronized void releaseIdle() {
+        long expireBefore = System.currentTimeMillis() - idleMillis;
+        loaded.entrySet().stream()
+            .filter(entry -> entry.getValue().lastAccess < expireBefore)
+            .map(Map.Entry::getKey)
+            .toList()
+            .forEach(name -> {
+                if (release(name, expireBefore)) {
+                    idleReleaseCounter.increment();
+                }
+            });
+    }
+
+    public long usedMemory() {
+        return loaded.values().stream().mapToLong(collection -> collection.memory).sum();
+    }
+
+    public boolean isLoaded(String collectionName) {
+        return loaded.containsKey(collectionName);
+    }
+
+    /**
+     * 按最久未访问顺序释放集合, 直到能容纳新的集合
+     */
+    private void releaseOverBudget(long required) {
+        List<String> lruList = loaded.entrySet().stream()
+            .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+            .map(Map.Entry::getKey)
+            .toList();
+        long guardBefore = System.currentTimeMillis() - SHARED_GUARD_MILLIS;
+        for (String name : lruList) {
+            if (usedMemory() + required <= memoryBudget) {
+                return;
+            }
+            if (release(name, guardBefore)) {
+                budgetReleaseCounter.increment();
+            }
+        }
+    }
+
+    /**
+     * 集合已装载时原子地增加使用计数, 与 release 的移除互斥
+     */
+    private boolean pinIfLoaded(String collectionName) {
+        long now = System.currentTimeMillis();
+        boolean[] touch = new boolean[1];
+        boolean pinned = loaded.computeIfPresent(collectionName, (name, collection) -> {
+            collection.inUse++;
+            collection.lastAccess = now;
+            if (now - collection.lastTouch >= TOUCH_INTERVAL_MILLIS) {
+                collection.lastTouch = now;
+                touch[0] = true;
+            }
+            return collection;
+        }) != null;
+        if (touch[0]) {
+            accessLog.touch(collectionName, now);
+        }
+        return pinned;
+    }
+
+    private void load(String collectionName) {
+        R<RpcStatus> response = milvusClient.loadCollection(
+            LoadCollectionParam.newBuilder().withCollectionName(collectionName).build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            log.error("加载集合 {} 到内存时出错: {}", collectionName, response.getMessage());
+            return;
+        }
+        long now = System.currentTimeMillis();
+        LoadedCollection collection = new LoadedCollection(estimateMemory(collectionName), now);
+        collection.lastTouch = now;
+        loaded.put(collectionName, collection);
+        accessLog.touch(collectionName, now);
+        loadCounter.increment();
+        log.info("加载集合 {} 到内存, 当前已装载 {} 个集合", collectionName, loaded.size());
+    }
+
+    /**
+     * 释放集合, 本节点有检索在进行、或其他节点在 accessedBefore 之后访问过的集合不释放.
+     * 调用方持有当前对象的锁, 释放期间 pin 的装载分支会等待, 不会与释放交错
+     */
+    private boolean release(String collectionName, long accessedBefore) {
+        long otherAccess = accessLog.lastAccessByOtherNodes(collectionName);
+        if (otherAccess >= accessedBefore) {
+            // 其他节点仍在使用, 以其访问时间作为本节点的访问时间, 下次按它判断空闲
+            loaded.computeIfPresent(collectionName, (name, collection) -> {
+                collection.lastAccess = Math.max(collection.lastAccess, otherAccess);
+                return collection;
+            });
+            log.debug("集合 {} 最近被其他节点访问, 跳过释放", collectionName);
+            return false;
+        }
+        LoadedCollection[] removed = new LoadedCollection[1];
+        loaded.computeIfPresent(collectionName, (name, collection) -> {
+            if (collection.inUse > 0) {
+                return collection;
+            }
+            removed[0] = collection;
+            return null;
+        });
+        if (removed[0] == null) {
+            log.debug("集合 {} 正在检索, 跳过释放", collectionName);
+            return false;
+        }
+        R<RpcStatus> response = milvusClient.releaseCollection(
+            ReleaseCollectionParam.newBuilder().withCollectionName(collectionName).build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            log.error("释放集合 {} 时出错: {}", collectionName, response.getMessage());
+            loaded.putIfAbsent(collectionName, removed[0]);
+            return false;
+        }
+        log.info("释放集合 {}, 当前已装载 {} 个集合", collectionName, loaded.size());
+        return true;
+    }
+
+    /**
+     * 按行数 * 维度 * 分量字节数估算集合占用的内存
+     */
+    private long estimateMemory(String collectionName) {
+        R<GetCollectionStatisticsResponse> response = milvusClient.getCollectionStatistics(
+            GetCollectionStatisticsParam.newBuilder().withCollectionName(collectionName).build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            return 0;
+        }
+        long rowCount = new GetCollStatResponseWrapper(response.getData()).getRowCount();
+        return rowCount * dimension * bytesPerDimension.applyAsInt(collectionName);
+    }
+
+    /**
+     * 多个节点共享的集合最近访问时间, 按节点分别记录
+     */
+    public interface AccessLog {
+
+        /**
+         * 记录本节点访问集合的时间
+         */
+        void touch(String collectionName, long accessTime);
+
+        /**
+         * 其他节点最近一次访问集合的时间, 没有记录时返回 0
+         */
+        long lastAccessByOtherNodes(String collectionName);
+    }
+
+    private static class LoadedCollection {
+
+        private volatile long memory;
+
+        private volatile long lastAccess;
+
+        /**
+         * 最近一次写入共享访问时间的时间, 只在 loaded 的 compute 中读写
+         */
+        private long lastTouch;
+
+        /**
+         * 正在进行的检索数, 只在 loaded 的 compute 中读写
+         */
+        private int inUse;
+
+        LoadedCollection(long memory, long lastAccess) {
+            this.memory = memory;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -1,8 +1,12 @@
 package org.ruoyi.knowledge.chain.vectorstore;
 
+import cn.hutool.core.util.IdUtil;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.milvus.client.MilvusServiceClient;
 import io.milvus.grpc.DataType;
 import io.milvus.grpc.DescribeIndexResponse;
+import io.milvus.grpc.IndexDescription;
+import io.milvus.grpc.KeyValuePair;
 import io.milvus.grpc.MutationResult;
 import io.milvus.grpc.SearchResults;
 import io.milvus.param.*;
@@ -19,33 +23,213 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.ruoyi.common.core.exception.ServiceException;
 import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.redis.utils.RedisUtils;
+import org.redisson.api.RMap;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class MilvusVectorStore implements VectorStore {
 
+    /**
+     * 返回给调用方的检索条数
+     */
+    private static final int TOP_K = 10;
+
+    /**
+     * 量化索引下的候选放大倍数, 候选集再用原始向量重新打分
+     */
+    private static final int RESCORE_FACTOR = 4;
+
+    /**
+     * 集合访问次数统计, 启动时按访问次数预装载
+     */
+    private static final String COLLECTION_HITS_KEY = "milvus:collection:hits";
+
+    /**
+     * 集合在各节点的最近访问时间, Hash: 节点ID -> 访问时间, 用于多节点协调集合释放
+     */
+    private static final String COLLECTION_ACCESS_KEY = "milvus:collection:access:";
+
+    /**
+     * 批量删除时单个 in 表达式包含的片段数
+     */
+    private static final int REMOVE_BATCH_SIZE = 500;
+
+    /**
+     * milvus/index 可配置的索引类型
+     */
+    private static final List<IndexType> INDEX_TYPES = List.of(IndexType.IVF_FLAT, IndexType.IVF_SQ8, IndexType.IVF_PQ);
+
     private volatile Integer dimension;
     private volatile String collectionName;
+    /**
+     * 新建集合使用的索引类型, 已有集合按实际索引检索, 见 {@link #indexTypeOf(String)}
+     */
+    private volatile IndexType indexType;
+    /**
+     * 各集合实际的向量索引类型, 首次检索时通过 describeIndex 读取
+     */
+    private final Map<String, IndexType> collectionIndexTypes = new ConcurrentHashMap<>();
     private MilvusServiceClient milvusServiceClient;
+    private MilvusCollectionManager collectionManager;
 
     @Resource
     private ConfigService configService;
 
-    @PostConstruct
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ScheduledExecutorService scheduledExecutorService;
+
     public void loadConfig() {
         this.dimension = Integer.parseInt(configService.getConfigValue("milvus", "dimension"));
         this.collectionName = configService.getConfigValue("milvus", "collection");
+        // 新建知识库集合的向量索引类型: IVF_FLAT(默认,不量化) / IVF_SQ8(int8标量量化) / IVF_PQ(乘积量化)
+        String index = configService.getConfigValue("milvus", "index");
+        IndexType configured = StringUtils.isBlank(index) ? IndexType.IVF_FLAT : parseIndexType(index);
+        if (!INDEX_TYPES.contains(configured)) {
+            log.warn("milvus/index 配置的索引类型 {} 无效, 可选 {}, 使用 IVF_FLAT", index, INDEX_TYPES);
+            configured = IndexType.IVF_FLAT;
+        }
+        this.indexType = configured;
+    }
+
+    /**
+     * 解析索引类型名称, 无法识别时返回 null
+     */
+    private static IndexType parseIndexType(String name) {
+        try {
+            return IndexType.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 集合向量字段的实际索引类型, 修改 milvus/index 配置不影响已建索引的集合.
+     * 读取失败时不缓存, 按不量化处理(不重新打分)
+     */
+    private IndexType indexTypeOf(String fullCollectionName) {
+        IndexType type = collectionIndexTypes.computeIfAbsent(fullCollectionName, this::describeIndexType);
+        return type == null ? IndexType.IVF_FLAT : type;
+    }
+
+    private IndexType describeIndexType(String fullCollectionName) {
+        R<DescribeIndexResponse> response = milvusServiceClient.describeIndex(
+                DescribeIndexParam.newBuilder().withCollectionName(fullCollectionName).build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            log.warn("获取集合 {} 的索引失败: {}", fullCollectionName, response.getMessage());
+            return null;
+        }
+        for (IndexDescription description : response.getData().getIndexDescriptionsList()) {
+            if (!"fv".equals(description.getFieldName())) {
+                continue;
+            }
+            for (KeyValuePair param : description.getParamsList()) {
+                if ("index_type".equals(param.getKey())) {
+                    return parseIndexType(param.getValue());
+                }
+            }
+        }
+        log.warn("集合 {} 没有向量索引", fullCollectionName);
+        return null;
+    }
+
+    /**
+     * 构建向量字段索引参数
+     *
+     * @param fullCollectionName 集合名称
+     * @param dim                向量维度
+     */
+    private CreateIndexParam buildIndexParam(String fullCollectionName, int dim) {
+        String extraParam = switch (indexType) {
+            case IVF_SQ8 -> "{\"nlist\":1024}";
+            case IVF_PQ -> "{\"nlist\":1024,\"m\":" + pqSegments(dim) + ",\"nbits\":8}";
+            default -> "{\"nlist\":1024}";
+        };
+        return CreateIndexParam.newBuilder()
+                .withCollectionName(fullCollectionName)
+                .withFieldName("fv")
+                .withIndexType(indexType)
+                .withMetricType(MetricType.IP)
+                .withExtraParam(extraParam)
+                .withSyncMode(Boolean.FALSE)
+                .build();
+    }
+
+    /**
+     * PQ 子空间数量必须整除维度, 取不超过 dim/8 的最大约数
+     */
+    private static int pqSegments(int dim) {
+        for (int m = Math.max(dim / 8, 1); m > 1; m--) {
+            if (dim % m == 0) {
+                return m;
+            }
+        }
+        return 1;
+    }
+
+    private static boolean isQuantized(IndexType type) {
+        return type == IndexType.IVF_SQ8 || type == IndexType.IVF_PQ;
+    }
+
+    /**
+     * 查询向量与检索结果中原始向量的内积, 结果中没有原始向量时排在最后
+     */
+    private static double innerProduct(List<Double> queryVector, Object vector) {
+        if (!(vector instanceof List<?> values)) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double score = 0;
+        for (int i = 0; i < Math.min(queryVector.size(), values.size()); i++) {
+            score += queryVector.get(i) * ((Number) values.get(i)).doubleValue();
+        }
+        return score;
+    }
+
+    /**
+     * 量化索引的距离是近似值, 用原始向量重新计算内积后取前 TOP_K, 每个候选只计算一次
+     */
+    private static List<QueryResultsWrapper.RowRecord> rescore(List<Double> queryVector,
+                                                               List<QueryResultsWrapper.RowRecord> rowRecords) {
+        return rowRecords.stream()
+                .map(rowRecord -> new ScoredRecord(rowRecord, innerProduct(queryVector, rowRecord.get("fv"))))
+                .sorted(Comparator.comparingDouble(ScoredRecord::score).reversed())
+                .limit(TOP_K)
+                .map(ScoredRecord::rowRecord)
+                .toList();
+    }
+
+    private record ScoredRecord(QueryResultsWrapper.RowRecord rowRecord, double score) {
+    }
+
+    /**
+     * 读取整数配置, 未配置时使用默认值
+     */
+    private int getIntConfig(String configKey, int defaultValue) {
+        String value = configService.getConfigValue("milvus", configKey);
+        return StringUtils.isBlank(value) ? defaultValue : Integer.parseInt(value.trim());
     }
 
     @PostConstruct
     public void init() {
+        loadConfig();
         String milvusHost = configService.getConfigValue("milvus", "host");
         String milvausPort = configService.getConfigValue("milvus", "port");
         milvusServiceClient = new MilvusServiceClient(
@@ -55,6 +239,29 @@ public class MilvusVectorStore implements VectorStore {
                         .withDatabaseName("default")
                         .build()
         );
+
+        // 集合装载管理: 内存预算(MB)、空闲释放时间(分钟)、启动预装载数量
+        long memoryBudget = getIntConfig("memoryBudget", 4096) * 1024L * 1024L;
+        long idleMillis = TimeUnit.MINUTES.toMillis(getIntConfig("idleMinutes", 30));
+        // 按集合实际的索引估算内存, 量化索引每个分量约 1 字节
+        collectionManager = new MilvusCollectionManager(milvusServiceClient, collectionName,
+                new RedisAccessLog(Math.max(idleMillis, MilvusCollectionManager.SHARED_GUARD_MILLIS) * 2),
+                memoryBudget, idleMillis, dimension, name -> isQuantized(indexTypeOf(name)) ? 1 : 4, meterRegistry);
+        int preloadCount = getIntConfig("preload", 10);
+        scheduledExecutorService.execute(() -> {
+            try {
+                collectionManager.registerLoadedCollections();
+                List<String> hotCollections = RedisUtils.getClient()
+                        .<String>getScoredSortedSet(COLLECTION_HITS_KEY)
+                        .valueRangeReversed(0, preloadCount - 1)
+                        .stream()
+                        .toList();
+                collectionManager.preload(hotCollections);
+            } catch (Exception e) {
+                log.error("预装载 Milvus 集合失败", e);
+            }
+        });
+        scheduledExecutorService.scheduleWithFixedDelay(collectionManager::releaseIdle, 1, 1, TimeUnit.MINUTES);
     }
 
     private void createSchema(String kid) {
@@ -102,18 +309,8 @@ public class MilvusVectorStore implements VectorStore {
         milvusServiceClient.createCollection(createCollectionReq);
 
         // 创建向量的索引
-        IndexType INDEX_TYPE = IndexType.IVF_FLAT;
-        String INDEX_PARAM = "{\"nlist\":1024}";
-        milvusServiceClient.createIndex(
-                CreateIndexParam.newBuilder()
-                        .withCollectionName(collectionName + kid)
-                        .withFieldName("fv")
-                        .withIndexType(INDEX_TYPE)
-                        .withMetricType(MetricType.IP)
-                        .withExtraParam(INDEX_PARAM)
-                        .withSyncMode(Boolean.FALSE)
-                        .build()
-        );
+        milvusServiceClient.createIndex(buildIndexParam(collectionName + kid, dimension));
+        collectionIndexTypes.put(collectionName + kid, indexType);
 
     }
 
@@ -127,11 +324,32 @@ public class MilvusVectorStore implements VectorStore {
         milvusServiceClient.delete(
                 DeleteParam.newBuilder()
                         .withCollectionName(collectionName + kid)
-                        .withExpr("fid == " + fid)
+                        .withExpr("fid == \"" + fid + "\"")
                         .build()
         );
     }
 
+    /**
+     * 按片段ID批量删除, 每批一个 fid in [...] 表达式
+     */
+    @Override
+    public void removeByKidAndFids(String kid, List<String> fids) {
+        for (int from = 0; from < fids.size(); from += REMOVE_BATCH_SIZE) {
+            List<String> batch = fids.subList(from, Math.min(fids.size(), from + REMOVE_BATCH_SIZE));
+            String expr = batch.stream().map(fid -> "\"" + fid + "\"")
+                    .collect(Collectors.joining(",", "fid in [", "]"));
+            R<MutationResult> result = milvusServiceClient.delete(
+                    DeleteParam.newBuilder()
+                            .withCollectionName(collectionName + kid)
+                            .withExpr(expr)
+                            .build()
+            );
+            if (result.getStatus() != R.Status.Success.getCode()) {
+                throw new ServiceException("删除向量失败: " + result.getMessage());
+            }
+        }
+    }
+
     @Override
     public void storeEmbeddings(List<String> chunkList, List<List<Double>> vectorList, String kid, String docId, List<String> fidList) {
         String fullCollectionName = collectionName + kid;
@@ -203,16 +421,11 @@ public class MilvusVectorStore implements VectorStore {
                     System.out.println("集合 " + fullCollectionName + " 创建成功");
 
                     // 创建索引
-                    CreateIndexParam createIndexParam = CreateIndexParam.newBuilder()
-                            .withCollectionName(fullCollectionName)
-                            .withFieldName("fv") // 向量字段名
-                            .withIndexType(IndexType.IVF_FLAT) // 索引类型
-                            .withMetricType(MetricType.IP)
-                            .withExtraParam("{\"nlist\":1024}") // 索引参数
-                            .build();
+                    CreateIndexParam createIndexParam = buildIndexParam(fullCollectionName, vectorList.get(0).size());
                     R<RpcStatus> indexResponse = milvusServiceClient.createIndex(createIndexParam);
                     if (indexResponse.getStatus() == R.Status.Success.getCode()) {
                         System.out.println("索引创建成功");
+                        collectionIndexTypes.put(fullCollectionName, indexType);
                     } else {
                         System.err.println("索引创建失败: " + indexResponse.getMessage());
                         return;
@@ -269,17 +482,12 @@ public class MilvusVectorStore implements VectorStore {
             System.out.println("插入成功，插入的行数: " + insert.getData().getInsertCnt());
         } else {
             System.err.println("插入失败: " + insert.getMessage());
+            throw new ServiceException("向量写入失败: " + insert.getMessage());
         }
         System.out.println("=========================");
         // milvus在将数据装载到内存后才能进行向量计算.
-        LoadCollectionParam loadCollectionParam = LoadCollectionParam.newBuilder()
-                .withCollectionName(fullCollectionName)
-                .build();
-        R<RpcStatus> loadResponse = milvusServiceClient.loadCollection(loadCollectionParam);
-        if (loadResponse.getStatus() != R.Status.Success.getCode()) {
-            System.err.println("加载集合 " + fullCollectionName + " 到内存时出错：" + loadResponse.getMessage());
-        }
-//        milvusServiceClient.loadCollection(LoadCollectionParam.newBuilder().withCollectionName(fullCollectionName).build());
+        collectionManager.ensureLoaded(fullCollectionName);
+        collectionManager.refresh(fullCollectionName);
     }
 
 
@@ -296,6 +504,8 @@ public class MilvusVectorStore implements VectorStore {
 
     @Override
     public void removeByKid(String kid) {
+        collectionManager.forget(collectionName + kid);
+        collectionIndexTypes.remove(collectionName + kid);
         milvusServiceClient.dropCollection(
                 DropCollectionParam.newBuilder()
                         .withCollectionName(collectionName + kid)
@@ -317,27 +527,39 @@ public class MilvusVectorStore implements VectorStore {
             return new ArrayList<>();
         }
 
-        DescribeIndexParam describeIndexParam = DescribeIndexParam.newBuilder().withCollectionName(fullCollectionName).build();
+        // 是否重新打分取决于该集合实际的索引, 而不是当前的 milvus/index 配置
+        boolean quantized = isQuantized(indexTypeOf(fullCollectionName));
 
-        R<DescribeIndexResponse> describeIndexResponseR = milvusServiceClient.describeIndex(describeIndexParam);
+        List<String> resultList = pinAndSearch(queryVector, kid, fullCollectionName, quantized);
+        if (resultList == null) {
+            // 集合可能已被其他节点释放, 本节点的装载记录已过期, 重新装载后再检索一次
+            collectionManager.forget(fullCollectionName);
+            resultList = pinAndSearch(queryVector, kid, fullCollectionName, quantized);
+        }
+        return resultList == null ? new ArrayList<>() : resultList;
+    }
 
-        if (describeIndexResponseR.getStatus() == R.Status.Success.getCode()) {
-            System.out.println("索引信息: " + describeIndexResponseR.getData().getIndexDescriptionsCount());
-        } else {
-            System.err.println("获取索引失败: " + describeIndexResponseR.getMessage());
+    /**
+     * 加载集合到内存并在检索期间 pin 住, 避免被空闲或预算淘汰释放
+     *
+     * @return 检索结果, 检索请求失败时返回 null
+     */
+    private List<String> pinAndSearch(List<Double> queryVector, String kid, String fullCollectionName, boolean quantized) {
+        if (!collectionManager.pin(fullCollectionName)) {
+            return new ArrayList<>();
         }
+        try {
+            return search(queryVector, kid, fullCollectionName, quantized);
+        } finally {
+            collectionManager.unpin(fullCollectionName);
+        }
+    }
+
+    private List<String> search(List<Double> queryVector, String kid, String fullCollectionName, boolean quantized) {
+        RedisUtils.getClient().getScoredSortedSet(COLLECTION_HITS_KEY).addScoreAsync(fullCollectionName, 1);
 
-//        // 加载集合到内存
-//        LoadCollectionParam loadCollectionParam = LoadCollectionParam.newBuilder()
-//                .withCollectionName(fullCollectionName)
-//                .build();
-//        R<RpcStatus> loadResponse = milvusServiceClient.loadCollection(loadCollectionParam);
-//        if (loadResponse.getStatus() != R.Status.Success.getCode()) {
-//            System.err.println("加载集合 " + fullCollectionName + " 到内存时出错：" + loadResponse.getMessage());
-//            return new ArrayList<>();
-//        }
-
-        List<String> search_output_fields = Arrays.asList("content", "fv");
+        // 原始向量只在量化索引重新打分时需要, 非量化索引不返回以减少传输
+        List<String> search_output_fields = quantized ? Arrays.asList("content", "fv") : List.of("content");
         List<Float> fv = new ArrayList<>();
         for (int i = 0; i < queryVector.size(); i++) {
             fv.add(queryVector.get(i).floatValue());
@@ -349,7 +571,7 @@ public class MilvusVectorStore implements VectorStore {
                 .withCollectionName(collectionName + kid)
                 .withMetricType(MetricType.IP)
                 .withOutFields(search_output_fields)
-                .withTopK(10)
+                .withTopK(quantized ? TOP_K * RESCORE_FACTOR : TOP_K)
                 .withVectors(vectors)
                 .withVectorFieldName("fv")
                 .withParams(search_param)
@@ -365,6 +587,9 @@ public class MilvusVectorStore implements VectorStore {
 
                 List<String> resultList = new ArrayList<>();
                 if (rowRecords != null && !rowRecords.isEmpty()) {
+                    if (quantized) {
+                        rowRecords = rescore(queryVector, rowRecords);
+                    }
                     for (QueryResultsWrapper.RowRecord rowRecord : rowRecords) {
                         String content = rowRecord.get("content").toString();
                         resultList.add(content);
@@ -376,11 +601,49 @@ public class MilvusVectorStore implements VectorStore {
             }
         } else {
             System.err.println("搜索操作失败: " + respSearch.getMessage());
+            return null;
         }
         return new ArrayList<>();
 
     }
 
+    /**
+     * 用 Redis 记录各节点访问集合的时间, 每个集合一个 Hash, 超过 ttl 没有访问时自动删除
+     */
+    private static class RedisAccessLog implements MilvusCollectionManager.AccessLog {
+
+        private final String nodeId = IdUtil.fastSimpleUUID();
+
+        private final Duration ttl;
+
+        RedisAccessLog(long ttlMillis) {
+            this.ttl = Duration.ofMillis(ttlMillis);
+        }
+
+        @Override
+        public void touch(String collectionName, long accessTime) {
+            RMap<String, Long> accessMap = RedisUtils.getClient().getMap(COLLECTION_ACCESS_KEY + collectionName);
+            accessMap.fastPutAsync(nodeId, accessTime);
+            accessMap.expireAsync(ttl);
+        }
+
+        @Override
+        public long lastAccessByOtherNodes(String collectionName) {
+            try {
+                RMap<String, Long> accessMap = RedisUtils.getClient().getMap(COLLECTION_ACCESS_KEY + collectionName);
+                return accessMap.readAllMap().entrySet().stream()
+                        .filter(entry -> !nodeId.equals(entry.getKey()))
+                        .mapToLong(Map.Entry::getValue)
+                        .max()
+                        .orElse(0);
+            } catch (Exception e) {
+                // Redis 不可用时按单节点处理
+                log.warn("读取集合 {} 的访问记录失败: {}", collectionName, e.getMessage());
+                return 0;
+            }
+        }
+    }
+
     /**
      * milvus 不支持通过文本检索相似性
      *
@@ -20,4 +20,9 @@ public interface VectorStore {
     void newSchema(String kid);
 
     void removeByKidAndFid(String kid, String fid);
+
+    /**
+     * 按片段ID批量删除, 一次请求删除多个片段
+     */
+    void removeByKidAndFids(String kid, List<String> fids);
 }
@@ -15,12 +15,16 @@ public class VectorStoreFactory {
 
     private final MilvusVectorStore milvusVectorStore;
 
+    private final MemoryVectorStore memoryVectorStore;
+
     @Resource
     private KnowledgeInfoMapper knowledgeInfoMapper;
 
-    public VectorStoreFactory(WeaviateVectorStore weaviateVectorStore, MilvusVectorStore milvusVectorStore) {
+    public VectorStoreFactory(WeaviateVectorStore weaviateVectorStore, MilvusVectorStore milvusVectorStore,
+                              MemoryVectorStore memoryVectorStore) {
         this.weaviateVectorStore = weaviateVectorStore;
         this.milvusVectorStore = milvusVectorStore;
+        this.memoryVectorStore = memoryVectorStore;
     }
 
     public VectorStore getVectorStore(String kid){
@@ -35,6 +39,8 @@ public class VectorStoreFactory {
             return weaviateVectorStore;
         }else if ("milvus".equals(vectorModel)){
             return milvusVectorStore;
+        }else if ("memory".equals(vectorModel)){
+            return memoryVectorStore;
         }
         return null;
     }
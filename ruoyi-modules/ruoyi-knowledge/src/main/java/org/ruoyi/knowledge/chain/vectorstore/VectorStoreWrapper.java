@@ -2,10 +2,14 @@ package org.ruoyi.knowledge.chain.vectorstore;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
+import org.ruoyi.common.core.utils.StringUtils;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Slf4j
@@ -18,7 +22,12 @@ public class VectorStoreWrapper implements VectorStore {
     @Override
     public void storeEmbeddings(List<String> chunkList, List<List<Double>> vectorList, String kid, String docId, List<String> fidList) {
         VectorStore vectorStore = vectorStoreFactory.getVectorStore(kid);
-        vectorStore.storeEmbeddings(chunkList, vectorList, kid, docId, fidList);
+        long start = System.nanoTime();
+        try {
+            vectorStore.storeEmbeddings(chunkList, vectorList, kid, docId, fidList);
+        } finally {
+            record(vectorStore, "store", kid, start);
+        }
     }
 
     @Override
@@ -36,13 +45,23 @@ public class VectorStoreWrapper implements VectorStore {
     @Override
     public List<String> nearest(List<Double> queryVector, String kid) {
         VectorStore vectorStore = vectorStoreFactory.getVectorStore(kid);
-        return vectorStore.nearest(queryVector, kid);
+        long start = System.nanoTime();
+        try {
+            return vectorStore.nearest(queryVector, kid);
+        } finally {
+            record(vectorStore, "search", kid, start);
+        }
     }
 
     @Override
     public List<String> nearest(String query, String kid) {
         VectorStore vectorStore = vectorStoreFactory.getVectorStore(kid);
-        return vectorStore.nearest(query, kid);
+        long start = System.nanoTime();
+        try {
+            return vectorStore.nearest(query, kid);
+        } finally {
+            record(vectorStore, "search", kid, start);
+        }
     }
 
     @Override
@@ -56,4 +75,27 @@ public class VectorStoreWrapper implements VectorStore {
         VectorStore vectorStore = vectorStoreFactory.getVectorStore(kid);
         vectorStore.removeByKidAndFid(kid, fid);
     }
+
+    @Override
+    public void removeByKidAndFids(String kid, List<String> fids) {
+        VectorStore vectorStore = vectorStoreFactory.getVectorStore(kid);
+        long start = System.nanoTime();
+        try {
+            vectorStore.removeByKidAndFids(kid, fids);
+        } finally {
+            record(vectorStore, "remove", kid, start);
+        }
+    }
+
+    /**
+     * 记录向量库操作耗时, backend 标签如 WeaviateVectorStore 为 weaviate, 按知识库的耗时不发布直方图
+     */
+    private static void record(VectorStore vectorStore, String operation, String kid, long start) {
+        long elapsed = System.nanoTime() - start;
+        String backend = StringUtils.removeEnd(ClassUtils.getUserClass(vectorStore).getSimpleName(), "VectorStore").toLowerCase();
+        ChatMetrics.timer(ChatMetrics.VECTOR_DURATION, "backend", backend, "operation", operation)
+            .record(elapsed, TimeUnit.NANOSECONDS);
+        ChatMetrics.simpleTimer(ChatMetrics.VECTOR_KID_DURATION,
+            "backend", backend, "operation", operation, "kid", ChatMetrics.tagValue(kid)).record(elapsed, TimeUnit.NANOSECONDS);
+    }
 }
@@ -6,6 +6,7 @@ import com.google.gson.internal.LinkedTreeMap;
 import io.weaviate.client.Config;
 import io.weaviate.client.WeaviateClient;
 import io.weaviate.client.base.Result;
+import io.weaviate.client.v1.batch.model.BatchDeleteResponse;
 import io.weaviate.client.v1.data.model.WeaviateObject;
 import io.weaviate.client.v1.data.replication.model.ConsistencyLevel;
 import io.weaviate.client.v1.filters.Operator;
@@ -26,6 +27,7 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.ruoyi.common.core.exception.ServiceException;
 import org.ruoyi.common.core.service.ConfigService;
 import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
 import org.ruoyi.knowledge.service.IKnowledgeInfoService;
@@ -42,6 +44,11 @@ import java.util.Map;
 @Slf4j
 public class WeaviateVectorStore implements VectorStore {
 
+    /**
+     * 批量删除时单个 Or 条件包含的片段数
+     */
+    private static final int REMOVE_BATCH_SIZE = 100;
+
     private volatile String protocol;
     private volatile String host;
     private volatile String className;
@@ -247,6 +254,33 @@ public class WeaviateVectorStore implements VectorStore {
         }
     }
 
+    /**
+     * 按片段ID批量删除, 每批一次 Or 条件的批量删除请求
+     */
+    @Override
+    public void removeByKidAndFids(String kid, List<String> fids) {
+        WeaviateClient client = getClient();
+        for (int from = 0; from < fids.size(); from += REMOVE_BATCH_SIZE) {
+            WhereFilter[] operands = fids.subList(from, Math.min(fids.size(), from + REMOVE_BATCH_SIZE)).stream()
+                    .map(fid -> WhereFilter.builder()
+                            .path(new String[]{"fid"})
+                            .operator(Operator.Equal)
+                            .valueString(fid)
+                            .build())
+                    .toArray(WhereFilter[]::new);
+            WhereFilter where = operands.length == 1 ? operands[0]
+                    : WhereFilter.builder().operator(Operator.Or).operands(operands).build();
+            Result<BatchDeleteResponse> result = client.batch().objectsBatchDeleter()
+                    .withClassName(className + kid)
+                    .withWhere(where)
+                    .withConsistencyLevel(ConsistencyLevel.ALL)
+                    .run();
+            if (result.hasErrors()) {
+                throw new ServiceException("删除向量失败: " + result.getError());
+            }
+        }
+    }
+
     @Override
     public void storeEmbeddings(List<String> chunkList, List<List<Double>> vectorList, String kid, String docId, List<String> fidList) {
         WeaviateClient client = getClient();
@@ -269,6 +303,9 @@ public class WeaviateVectorStore implements VectorStore {
                     .withVector(vf)
                     .withProperties(dataSchema)
                     .run();
+            if (result.hasErrors()) {
+                throw new ServiceException("向量写入失败: " + result.getError());
+            }
         }
 
     }
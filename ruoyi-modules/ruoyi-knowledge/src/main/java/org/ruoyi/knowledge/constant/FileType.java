@@ -88,4 +88,11 @@ public class FileType {
         }
     }
 
+    /**
+     * 是否为可以载入知识库的文件类型(批量导入时过滤图片、压缩包等二进制文件)
+     */
+    public static boolean isSupported(String type){
+        return isTextFile(type) || isCodeFile(type) || isMdFile(type) || isWord(type) || isPdf(type);
+    }
+
 }
@@ -8,6 +8,11 @@ public class KnowledgeInfoUploadRequest {
 
     private String kid;
 
+    /**
+     * 文档ID(重新上传已有附件时传入)
+     */
+    private String docId;
+
     private MultipartFile file;
 
 }
@@ -0,0 +1,88 @@
+package org.ruoyi.knowledge.domain.vo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 知识库批量导入进度
+ */
+@Data
+public class KnowledgeImportProgressVo implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 任务ID
+     */
+    private String taskId;
+
+    /**
+     * 知识库ID
+     */
+    private String kid;
+
+    /**
+     * 提交任务的用户ID
+     */
+    private Long userId;
+
+    /**
+     * 导入来源(压缩包名称或目录)
+     */
+    private String source;
+
+    /**
+     * 任务状态(waiting/running/finished/failed)
+     */
+    private String status;
+
+    /**
+     * 文件总数
+     */
+    private int total;
+
+    /**
+     * 已处理文件数
+     */
+    private int finished;
+
+    /**
+     * 新增文件数
+     */
+    private int created;
+
+    /**
+     * 内容变更后增量更新的文件数
+     */
+    private int updated;
+
+    /**
+     * 未变更而跳过的文件数
+     */
+    private int skipped;
+
+    /**
+     * 处理失败的文件数
+     */
+    private int failed;
+
+    /**
+     * 失败信息
+     */
+    private String message;
+
+    /**
+     * 开始时间
+     */
+    private Date startTime;
+
+    /**
+     * 结束时间
+     */
+    private Date endTime;
+
+}
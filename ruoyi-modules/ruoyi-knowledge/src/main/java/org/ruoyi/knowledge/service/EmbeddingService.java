@@ -16,5 +16,7 @@ public interface EmbeddingService {
 
     void removeByKidAndFid(String kid, String fid);
 
+    void removeByKidAndFids(String kid, List<String> fids);
+
     void saveFragment(String kid, String docId, String fid, String content);
 }
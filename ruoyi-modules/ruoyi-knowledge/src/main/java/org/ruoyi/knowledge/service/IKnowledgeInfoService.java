@@ -6,6 +6,7 @@ import org.ruoyi.knowledge.domain.bo.KnowledgeInfoBo;
 import org.ruoyi.knowledge.domain.req.KnowledgeInfoUploadRequest;
 import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
 
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -47,6 +48,25 @@ public interface IKnowledgeInfoService {
      */
     void upload(KnowledgeInfoUploadRequest request);
 
+    /**
+     * 重新上传附件(按片段增量更新)
+     */
+    void reUpload(KnowledgeInfoUploadRequest request);
+
+    /**
+     * 保存附件内容(切分、入库并向量化)
+     *
+     * @return 文档ID
+     */
+    String storeContent(String kid, String fileName, InputStream inputStream);
+
+    /**
+     * 按片段增量更新附件内容, 附件不存在时按新附件保存
+     *
+     * @return 文档ID
+     */
+    String reUpload(String kid, String docId, String fileName, InputStream inputStream);
+
     /**
      * 删除知识库
      */
@@ -0,0 +1,44 @@
+package org.ruoyi.knowledge.service;
+
+import org.ruoyi.knowledge.domain.vo.KnowledgeImportProgressVo;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * 知识库批量导入
+ */
+public interface KnowledgeImportService {
+
+    /**
+     * 导入 zip/tar/tar.gz 压缩包
+     *
+     * @param kid  知识库ID
+     * @param file 压缩包
+     * @return 任务ID
+     */
+    String importArchive(String kid, MultipartFile file);
+
+    /**
+     * 导入服务器目录(相对于配置的导入根目录)
+     *
+     * @param kid  知识库ID
+     * @param path 目录
+     * @return 任务ID
+     */
+    String importFolder(String kid, String path);
+
+    /**
+     * 导入服务器上的本地 git 仓库(相对于配置的导入根目录)
+     *
+     * @param kid  知识库ID
+     * @param path 仓库目录
+     * @return 任务ID
+     */
+    String importRepository(String kid, String path);
+
+    /**
+     * 查询导入进度, 只能查询当前用户提交的任务
+     *
+     * @param taskId 任务ID
+     */
+    KnowledgeImportProgressVo getProgress(String taskId);
+}
@@ -0,0 +1,30 @@
+package org.ruoyi.knowledge.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 多知识库联合检索
+ */
+public interface KnowledgeSearchService {
+
+    /**
+     * 在多个知识库中并行检索, 按归一化得分合并结果
+     *
+     * @param query 查询文本
+     * @param kids  知识库ID集合, 最多 10 个
+     * @return 合并后的片段内容
+     */
+    List<String> nearest(String query, Collection<String> kids);
+
+    /**
+     * 在多个知识库中并行检索, 超过截止时间仍未返回的知识库结果会被丢弃
+     *
+     * @param query         查询文本
+     * @param kids          知识库ID集合, 最多 10 个
+     * @param timeoutMillis 整体截止时间(毫秒)
+     * @param limit         返回条数
+     * @return 合并后的片段内容
+     */
+    List<String> nearest(String query, Collection<String> kids, long timeoutMillis, int limit);
+}
@@ -53,6 +53,11 @@ public class EmbeddingServiceImpl implements EmbeddingService {
         vectorStore.removeByKidAndFid(kid,fid);
     }
 
+    @Override
+    public void removeByKidAndFids(String kid, List<String> fids) {
+        vectorStore.removeByKidAndFids(kid,fids);
+    }
+
     @Override
     public void saveFragment(String kid, String docId, String fid, String content) {
         List<String> chunkList = new ArrayList<>();
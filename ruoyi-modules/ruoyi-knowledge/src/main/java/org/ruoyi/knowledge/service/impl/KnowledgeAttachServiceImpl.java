@@ -44,6 +44,8 @@ public class KnowledgeAttachServiceImpl implements IKnowledgeAttachService {
 
     private final IKnowledgeInfoService knowledgeInfoService;
 
+    private final KnowledgeImportManifest importManifest;
+
 
     /**
      * 查询知识库附件
@@ -122,14 +124,20 @@ public class KnowledgeAttachServiceImpl implements IKnowledgeAttachService {
         if(isValid){
             //TODO 做一些业务上的校验,判断是否需要校验
         }
-        return baseMapper.deleteBatchIds(ids) > 0;
+        List<KnowledgeAttach> attachList = baseMapper.selectBatchIds(ids);
+        boolean deleted = baseMapper.deleteBatchIds(ids) > 0;
+        attachList.forEach(attach -> importManifest.removeDocument(attach.getKid(), attach.getDocId()));
+        return deleted;
     }
 
     @Override
     public void removeKnowledgeAttach(String docId) {
         Map<String,Object> map = new HashMap<>();
         map.put("doc_id",docId);
+        List<KnowledgeAttach> attachList = baseMapper.selectByMap(map);
         baseMapper.deleteByMap(map);
         fragmentMapper.deleteByMap(map);
+        // 删除导入清单中的条目, 再次导入时重新新增该文件
+        attachList.forEach(attach -> importManifest.removeDocument(attach.getKid(), docId));
     }
 }
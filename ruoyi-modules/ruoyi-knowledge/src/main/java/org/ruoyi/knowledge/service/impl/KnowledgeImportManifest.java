@@ -0,0 +1,76 @@
+package org.ruoyi.knowledge.service.impl;
+
+import org.ruoyi.common.redis.utils.RedisUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 知识库导入清单
+ * 每个知识库在 Redis 中保存一个 Hash: 相对路径 -> 大小:摘要:文档ID, 再次导入时跳过未变更的文件.
+ * 附件被删除、重新上传或知识库被删除时同步清理对应条目, 下次导入时重新导入这些文件
+ *
+ * @date 2026/10/19
+ */
+@Component
+public class KnowledgeImportManifest {
+
+    private static final String MANIFEST_KEY = "knowledge:import:manifest:";
+
+    /**
+     * 读取知识库的全部清单条目
+     */
+    public Map<String, String> get(String kid) {
+        return RedisUtils.getCacheMap(MANIFEST_KEY + kid);
+    }
+
+    /**
+     * 记录导入成功的文件
+     */
+    public void put(String kid, String path, long size, String md5, String docId) {
+        RedisUtils.setCacheMapValue(MANIFEST_KEY + kid, path, size + ":" + md5 + ":" + docId);
+    }
+
+    /**
+     * 附件被重新上传, 清除指向该文档的条目的大小和摘要, 保留文档ID, 下次导入时用导入的文件更新该文档
+     */
+    public void invalidateDocument(String kid, String docId) {
+        String key = MANIFEST_KEY + kid;
+        Map<String, String> manifest = RedisUtils.getCacheMap(key);
+        manifest.forEach((path, entry) -> {
+            if (docId.equals(parse(entry)[2])) {
+                RedisUtils.setCacheMapValue(key, path, "::" + docId);
+            }
+        });
+    }
+
+    /**
+     * 附件被删除, 删除指向该文档的条目, 下次导入时重新新增
+     */
+    public void removeDocument(String kid, String docId) {
+        String key = MANIFEST_KEY + kid;
+        Map<String, String> manifest = RedisUtils.getCacheMap(key);
+        manifest.forEach((path, entry) -> {
+            if (docId.equals(parse(entry)[2])) {
+                RedisUtils.delCacheMapValue(key, path);
+            }
+        });
+    }
+
+    /**
+     * 删除知识库的清单
+     */
+    public void remove(String kid) {
+        RedisUtils.deleteObject(MANIFEST_KEY + kid);
+    }
+
+    /**
+     * 解析清单条目
+     *
+     * @return [大小, 摘要, 文档ID], 格式错误时各项为空字符串
+     */
+    public static String[] parse(String entry) {
+        String[] parts = entry == null ? new String[0] : entry.split(":", 3);
+        return parts.length == 3 ? parts : new String[]{"", "", ""};
+    }
+}
@@ -0,0 +1,372 @@
+package org.ruoyi.knowledge.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ruoyi.common.core.exception.ServiceException;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.core.utils.Threads;
+import org.ruoyi.common.redis.utils.RedisUtils;
+import org.ruoyi.common.satoken.utils.LoginHelper;
+import org.ruoyi.knowledge.chain.loader.FolderLoader;
+import org.ruoyi.knowledge.chain.loader.ResourceLoaderFactory;
+import org.ruoyi.knowledge.constant.FileType;
+import org.ruoyi.knowledge.domain.vo.KnowledgeImportProgressVo;
+import org.ruoyi.knowledge.service.IKnowledgeInfoService;
+import org.ruoyi.knowledge.service.KnowledgeImportService;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+
+/**
+ * 知识库批量导入
+ * 压缩包解压到临时目录后与服务器目录、git 仓库走同一流程: 遍历目录, 按有界并发逐个文件切分、向量化.
+ * 每个知识库在 Redis 中保存导入清单(相对路径 -> 大小:摘要:文档ID), 再次导入时跳过未变更的文件,
+ * 变更的文件按片段增量更新. 压缩包解压时限制文件数、单个文件大小和解压后总大小, 超出时终止并删除临时目录
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeImportServiceImpl implements KnowledgeImportService {
+
+    private static final String PROGRESS_KEY = "knowledge:import:progress:";
+
+    private static final Duration PROGRESS_EXPIRE = Duration.ofDays(1);
+
+    /**
+     * 每处理多少个文件刷新一次进度
+     */
+    private static final int PROGRESS_INTERVAL = 100;
+
+    /**
+     * 默认并发数
+     */
+    private static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * 压缩包默认最多文件数
+     */
+    private static final long DEFAULT_MAX_ENTRIES = 10000;
+
+    /**
+     * 压缩包内单个文件默认最大值(MB)
+     */
+    private static final long DEFAULT_MAX_FILE_SIZE = 50;
+
+    /**
+     * 压缩包解压后默认最大总大小(MB)
+     */
+    private static final long DEFAULT_MAX_TOTAL_SIZE = 1024;
+
+    private static final String STATUS_WAITING = "waiting";
+    private static final String STATUS_RUNNING = "running";
+    private static final String STATUS_FINISHED = "finished";
+    private static final String STATUS_FAILED = "failed";
+
+    private final IKnowledgeInfoService knowledgeInfoService;
+
+    private final ResourceLoaderFactory resourceLoaderFactory;
+
+    private final ConfigService configService;
+
+    private final KnowledgeImportManifest importManifest;
+
+    /**
+     * 导入任务依次执行, 任务内的文件再并行处理
+     */
+    private final ExecutorService taskExecutor = new ThreadPoolExecutor(
+        1, 1, 0L, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<>(16),
+        new BasicThreadFactory.Builder().namingPattern("knowledge-import-task-%d").daemon(true).build(),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    @Override
+    public String importArchive(String kid, MultipartFile file) {
+        String fileName = file.getOriginalFilename();
+        if (StringUtils.isBlank(fileName)) {
+            throw new ServiceException("压缩包名称不能为空");
+        }
+        Path dir;
+        try {
+            dir = Files.createTempDirectory("knowledge-import-");
+        } catch (IOException e) {
+            throw new ServiceException("创建临时目录失败: " + e.getMessage());
+        }
+        // 上传的临时文件在请求结束后会被删除, 先同步解压再异步导入
+        try (InputStream inputStream = new BufferedInputStream(file.getInputStream());
+             ArchiveInputStream archive = openArchive(fileName, inputStream)) {
+            extract(archive, dir);
+        } catch (IOException | RuntimeException e) {
+            FileUtil.del(dir.toFile());
+            if (e instanceof ServiceException serviceException) {
+                throw serviceException;
+            }
+            throw new ServiceException("解压失败: " + e.getMessage());
+        }
+        return submit(kid, fileName, dir, resourceLoaderFactory.getFolderLoader(), true);
+    }
+
+    @Override
+    public String importFolder(String kid, String path) {
+        Path root = resolveImportPath(path);
+        return submit(kid, path, root, resourceLoaderFactory.getFolderLoader(), false);
+    }
+
+    @Override
+    public String importRepository(String kid, String path) {
+        Path root = resolveImportPath(path);
+        if (!Files.isDirectory(root.resolve(".git"))) {
+            throw new ServiceException("目录不是 git 仓库: " + path);
+        }
+        return submit(kid, path, root, resourceLoaderFactory.getGithubLoader(), false);
+    }
+
+    @Override
+    public KnowledgeImportProgressVo getProgress(String taskId) {
+        KnowledgeImportProgressVo progress = RedisUtils.getCacheObject(PROGRESS_KEY + taskId);
+        if (progress == null || !Objects.equals(progress.getUserId(), LoginHelper.getUserId())) {
+            return null;
+        }
+        return progress;
+    }
+
+    /**
+     * 服务器目录只允许导入配置的根目录(knowledge/importRoot)下的内容
+     */
+    private Path resolveImportPath(String path) {
+        String importRoot = configService.getConfigValue("knowledge", "importRoot");
+        if (StringUtils.isBlank(importRoot)) {
+            throw new ServiceException("未配置服务器导入根目录");
+        }
+        Path root = Paths.get(importRoot).toAbsolutePath().normalize();
+        Path target = root.resolve(StringUtils.blankToDefault(path, "")).normalize();
+        if (!target.startsWith(root) || !Files.isDirectory(target)) {
+            throw new ServiceException("导入目录不存在: " + path);
+        }
+        return target;
+    }
+
+    private ArchiveInputStream openArchive(String fileName, InputStream inputStream) throws IOException {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".zip")) {
+            return new ZipArchiveInputStream(inputStream);
+        } else if (name.endsWith(".tar")) {
+            return new TarArchiveInputStream(inputStream);
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return new TarArchiveInputStream(new GzipCompressorInputStream(inputStream));
+        }
+        throw new ServiceException("不支持的压缩包格式: " + fileName);
+    }
+
+    /**
+     * 解压支持的文件到目录, 拒绝指向目录外的条目
+     * 条目声明的大小不可信, 按实际写出的字节数限制单个文件和总大小
+     */
+    private void extract(ArchiveInputStream archive, Path dir) throws IOException {
+        long maxEntries = getConfigLong("importMaxEntries", DEFAULT_MAX_ENTRIES);
+        long maxFileBytes = getConfigLong("importMaxFileSize", DEFAULT_MAX_FILE_SIZE) * 1024 * 1024;
+        long maxTotalBytes = getConfigLong("importMaxTotalSize", DEFAULT_MAX_TOTAL_SIZE) * 1024 * 1024;
+        long entries = 0;
+        long totalBytes = 0;
+        byte[] buffer = new byte[8192];
+        ArchiveEntry entry;
+        while ((entry = archive.getNextEntry()) != null) {
+            if (++entries > maxEntries) {
+                throw new ServiceException("压缩包文件数超过限制: " + maxEntries);
+            }
+            if (entry.isDirectory()) {
+                continue;
+            }
+            Path target = dir.resolve(entry.getName()).normalize();
+            if (!target.startsWith(dir)) {
+                throw new ServiceException("压缩包包含非法路径: " + entry.getName());
+            }
+            if (!FileType.isSupported(FolderLoader.getFileType(target))) {
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            long fileBytes = 0;
+            try (OutputStream outputStream = Files.newOutputStream(target)) {
+                int read;
+                while ((read = archive.read(buffer)) != -1) {
+                    fileBytes += read;
+                    totalBytes += read;
+                    if (fileBytes > maxFileBytes) {
+                        throw new ServiceException("压缩包内文件超过大小限制: " + entry.getName());
+                    }
+                    if (totalBytes > maxTotalBytes) {
+                        throw new ServiceException("压缩包解压后超过大小限制: " + maxTotalBytes / 1024 / 1024 + "MB");
+                    }
+                    outputStream.write(buffer, 0, read);
+                }
+            }
+        }
+    }
+
+    private String submit(String kid, String source, Path root, FolderLoader folderLoader, boolean tempDir) {
+        KnowledgeImportProgressVo progress = new KnowledgeImportProgressVo();
+        progress.setTaskId(IdUtil.fastSimpleUUID());
+        progress.setKid(kid);
+        progress.setUserId(LoginHelper.getUserId());
+        progress.setSource(source);
+        progress.setStatus(STATUS_WAITING);
+        saveProgress(progress);
+        try {
+            taskExecutor.execute(() -> {
+                try {
+                    runImport(progress, root, folderLoader);
+                } finally {
+                    if (tempDir) {
+                        FileUtil.del(root.toFile());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (tempDir) {
+                FileUtil.del(root.toFile());
+            }
+            RedisUtils.deleteObject(PROGRESS_KEY + progress.getTaskId());
+            throw new ServiceException("导入任务过多, 请稍后再试");
+        }
+        return progress.getTaskId();
+    }
+
+    private void runImport(KnowledgeImportProgressVo progress, Path root, FolderLoader folderLoader) {
+        progress.setStatus(STATUS_RUNNING);
+        progress.setStartTime(new Date());
+        List<Path> fileList;
+        try {
+            fileList = folderLoader.listFiles(root);
+        } catch (IOException e) {
+            log.error("遍历导入目录失败: {}", root, e);
+            finish(progress, STATUS_FAILED, e.getMessage());
+            return;
+        }
+        progress.setTotal(fileList.size());
+        saveProgress(progress);
+
+        Map<String, String> manifest = importManifest.get(progress.getKid());
+        int parallelism = getParallelism();
+        // 队列满时由遍历线程自己处理文件, 控制同时在途的文件数量
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(parallelism * 2),
+            new BasicThreadFactory.Builder().namingPattern("knowledge-import-%d").daemon(true).build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            for (Path file : fileList) {
+                workers.execute(() -> importFile(progress, root, file, manifest));
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            finish(progress, STATUS_FINISHED, null);
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+            finish(progress, STATUS_FAILED, "导入任务被中断");
+        }
+    }
+
+    private void importFile(KnowledgeImportProgressVo progress, Path root, Path file,
+                            Map<String, String> manifest) {
+        // 相对路径作为清单键和文档名称, 不同目录下的同名文件互不影响
+        String path = FileUtil.normalize(root.relativize(file).toString());
+        try {
+            long size = Files.size(file);
+            String md5 = DigestUtil.md5Hex(file.toFile());
+            String oldDocId = null;
+            String entry = manifest.get(path);
+            if (entry != null) {
+                String[] parts = KnowledgeImportManifest.parse(entry);
+                if (parts[0].equals(String.valueOf(size)) && parts[1].equals(md5)) {
+                    onFileDone(progress, ImportResult.SKIPPED);
+                    return;
+                }
+                oldDocId = StringUtils.isBlank(parts[2]) ? null : parts[2];
+            }
+            String docId;
+            try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(file))) {
+                docId = oldDocId == null
+                    ? knowledgeInfoService.storeContent(progress.getKid(), path, inputStream)
+                    : knowledgeInfoService.reUpload(progress.getKid(), oldDocId, path, inputStream);
+            }
+            importManifest.put(progress.getKid(), path, size, md5, docId);
+            onFileDone(progress, oldDocId == null ? ImportResult.CREATED : ImportResult.UPDATED);
+        } catch (Exception e) {
+            log.error("导入文件失败: {}", path, e);
+            onFileDone(progress, ImportResult.FAILED);
+        }
+    }
+
+    private void onFileDone(KnowledgeImportProgressVo progress, ImportResult result) {
+        synchronized (progress) {
+            switch (result) {
+                case CREATED -> progress.setCreated(progress.getCreated() + 1);
+                case UPDATED -> progress.setUpdated(progress.getUpdated() + 1);
+                case SKIPPED -> progress.setSkipped(progress.getSkipped() + 1);
+                case FAILED -> progress.setFailed(progress.getFailed() + 1);
+            }
+            progress.setFinished(progress.getFinished() + 1);
+            if (progress.getFinished() % PROGRESS_INTERVAL == 0) {
+                saveProgress(progress);
+            }
+        }
+    }
+
+    private void finish(KnowledgeImportProgressVo progress, String status, String message) {
+        synchronized (progress) {
+            progress.setStatus(status);
+            progress.setMessage(message);
+            progress.setEndTime(new Date());
+            saveProgress(progress);
+        }
+        log.info("知识库 {} 导入 {} 结束: 共 {} 个文件, 新增 {}, 更新 {}, 跳过 {}, 失败 {}",
+            progress.getKid(), progress.getSource(), progress.getTotal(), progress.getCreated(),
+            progress.getUpdated(), progress.getSkipped(), progress.getFailed());
+    }
+
+    private void saveProgress(KnowledgeImportProgressVo progress) {
+        RedisUtils.setCacheObject(PROGRESS_KEY + progress.getTaskId(), progress, PROGRESS_EXPIRE);
+    }
+
+    private int getParallelism() {
+        return (int) Math.max(1, getConfigLong("importParallelism", DEFAULT_PARALLELISM));
+    }
+
+    private long getConfigLong(String name, long defaultValue) {
+        String value = configService.getConfigValue("knowledge", name);
+        return StringUtils.isBlank(value) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    @PreDestroy
+    public void destroy() {
+        Threads.shutdownAndAwaitTermination(taskExecutor);
+    }
+
+    private enum ImportResult {
+        CREATED, UPDATED, SKIPPED, FAILED
+    }
+}
@@ -2,11 +2,14 @@ package org.ruoyi.knowledge.service.impl;
 
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.ruoyi.common.core.domain.model.LoginUser;
+import org.ruoyi.common.core.exception.ServiceException;
 import org.ruoyi.common.core.utils.MapstructUtils;
 import org.ruoyi.common.core.utils.StringUtils;
 import org.ruoyi.common.mybatis.core.page.PageQuery;
@@ -27,9 +30,12 @@ import org.ruoyi.knowledge.service.EmbeddingService;
 import org.ruoyi.knowledge.service.IKnowledgeInfoService;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 /**
@@ -38,6 +44,7 @@ import java.util.*;
  * @author Lion Li
  * @date 2024-10-21
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class KnowledgeInfoServiceImpl implements IKnowledgeInfoService {
@@ -52,6 +59,8 @@ public class KnowledgeInfoServiceImpl implements IKnowledgeInfoService {
 
     private final KnowledgeAttachMapper attachMapper;
 
+    private final KnowledgeImportManifest importManifest;
+
     /**
      * 查询知识库
      */
@@ -130,44 +139,182 @@ public class KnowledgeInfoServiceImpl implements IKnowledgeInfoService {
     }
 
     public void storeContent(MultipartFile file, String kid) {
-        String fileName = file.getOriginalFilename();
-        List<String> chunkList = new ArrayList<>();
+        try (InputStream inputStream = file.getInputStream()) {
+            storeContent(kid, file.getOriginalFilename(), inputStream);
+        } catch (IOException e) {
+            throw new ServiceException("读取附件内容失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String storeContent(String kid, String fileName, InputStream inputStream) {
+        List<String> chunkList;
         KnowledgeAttach knowledgeAttach = new KnowledgeAttach();
         knowledgeAttach.setKid(kid);
         String docId = RandomUtil.randomString(10);
         knowledgeAttach.setDocId(docId);
         knowledgeAttach.setDocName(fileName);
         knowledgeAttach.setDocType(fileName.substring(fileName.lastIndexOf(".")+1));
-        String content = "";
         ResourceLoader resourceLoader = resourceLoaderFactory.getLoaderByFileType(knowledgeAttach.getDocType());
         List<String> fids = new ArrayList<>();
-        try {
-            content = resourceLoader.getContent(file.getInputStream());
-            chunkList = resourceLoader.getChunkList(content, kid);
-            List<KnowledgeFragment> knowledgeFragmentList = new ArrayList<>();
-            if (CollUtil.isNotEmpty(chunkList)) {
-                for (int i = 0; i < chunkList.size(); i++) {
-                    String fid = RandomUtil.randomString(16);
-                    fids.add(fid);
-                    KnowledgeFragment knowledgeFragment = new KnowledgeFragment();
-                    knowledgeFragment.setKid(kid);
-                    knowledgeFragment.setDocId(docId);
-                    knowledgeFragment.setFid(fid);
-                    knowledgeFragment.setIdx(i);
-                    // String text = convertTextBlockToPretrainData(chunkList.get(i));
-                    knowledgeFragment.setContent(chunkList.get(i));
-                    knowledgeFragment.setCreateTime(new Date());
-                    knowledgeFragmentList.add(knowledgeFragment);
-                }
+        String content = resourceLoader.getContent(inputStream);
+        chunkList = resourceLoader.getChunkList(content, kid);
+        List<KnowledgeFragment> knowledgeFragmentList = new ArrayList<>();
+        if (CollUtil.isNotEmpty(chunkList)) {
+            for (int i = 0; i < chunkList.size(); i++) {
+                String fid = RandomUtil.randomString(16);
+                fids.add(fid);
+                KnowledgeFragment knowledgeFragment = new KnowledgeFragment();
+                knowledgeFragment.setKid(kid);
+                knowledgeFragment.setDocId(docId);
+                knowledgeFragment.setFid(fid);
+                knowledgeFragment.setIdx(i);
+                // String text = convertTextBlockToPretrainData(chunkList.get(i));
+                knowledgeFragment.setContent(chunkList.get(i));
+                knowledgeFragment.setCreateTime(new Date());
+                knowledgeFragmentList.add(knowledgeFragment);
             }
-            fragmentMapper.insertBatch(knowledgeFragmentList);
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        fragmentMapper.insertBatch(knowledgeFragmentList);
         knowledgeAttach.setContent(content);
         knowledgeAttach.setCreateTime(new Date());
         attachMapper.insert(knowledgeAttach);
         embeddingService.storeEmbeddings(chunkList,kid,docId,fids);
+        return docId;
+    }
+
+    /**
+     * 重新上传附件: 重新切分后按片段内容摘要与已有片段比对,
+     * 只对新增/变更的片段做向量化, 只删除已不存在的片段
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void reUpload(KnowledgeInfoUploadRequest request) {
+        MultipartFile file = request.getFile();
+        try (InputStream inputStream = file.getInputStream()) {
+            reUpload(request.getKid(), request.getDocId(), file.getOriginalFilename(), inputStream);
+        } catch (IOException e) {
+            throw new ServiceException("读取附件内容失败: " + e.getMessage());
+        }
+        // 附件内容已不是导入时的文件, 下次批量导入时不再跳过
+        if (StringUtils.isNotBlank(request.getDocId())) {
+            importManifest.invalidateDocument(request.getKid(), request.getDocId());
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public String reUpload(String kid, String docId, String fileName, InputStream inputStream) {
+        KnowledgeAttach knowledgeAttach = StringUtils.isBlank(docId) ? null : attachMapper.selectOne(
+                Wrappers.<KnowledgeAttach>lambdaQuery()
+                        .eq(KnowledgeAttach::getKid, kid)
+                        .eq(KnowledgeAttach::getDocId, docId));
+        if (knowledgeAttach == null) {
+            // 附件不存在时按新附件处理
+            return storeContent(kid, fileName, inputStream);
+        }
+        String docType = fileName.substring(fileName.lastIndexOf(".") + 1);
+        ResourceLoader resourceLoader = resourceLoaderFactory.getLoaderByFileType(docType);
+        String content = resourceLoader.getContent(inputStream);
+        List<String> chunkList = resourceLoader.getChunkList(content, kid);
+        if (chunkList == null) {
+            chunkList = new ArrayList<>();
+        }
+
+        // 已有片段按内容摘要分组, 内容相同的片段直接复用原有向量
+        List<KnowledgeFragment> oldFragmentList = fragmentMapper.selectList(
+                Wrappers.<KnowledgeFragment>lambdaQuery()
+                        .eq(KnowledgeFragment::getKid, kid)
+                        .eq(KnowledgeFragment::getDocId, docId)
+                        .orderByAsc(KnowledgeFragment::getIdx));
+        Map<String, Deque<KnowledgeFragment>> oldFragmentMap = new HashMap<>();
+        for (KnowledgeFragment fragment : oldFragmentList) {
+            oldFragmentMap.computeIfAbsent(DigestUtil.md5Hex(fragment.getContent()), k -> new ArrayDeque<>()).add(fragment);
+        }
+
+        List<KnowledgeFragment> addList = new ArrayList<>();
+        List<KnowledgeFragment> moveList = new ArrayList<>();
+        for (int i = 0; i < chunkList.size(); i++) {
+            String chunk = chunkList.get(i);
+            Deque<KnowledgeFragment> sameList = oldFragmentMap.get(DigestUtil.md5Hex(chunk));
+            KnowledgeFragment kept = sameList == null ? null : sameList.poll();
+            if (kept != null) {
+                if (!Objects.equals(kept.getIdx(), i)) {
+                    kept.setIdx(i);
+                    moveList.add(kept);
+                }
+                continue;
+            }
+            KnowledgeFragment knowledgeFragment = new KnowledgeFragment();
+            knowledgeFragment.setKid(kid);
+            knowledgeFragment.setDocId(docId);
+            knowledgeFragment.setFid(RandomUtil.randomString(16));
+            knowledgeFragment.setIdx(i);
+            knowledgeFragment.setContent(chunk);
+            knowledgeFragment.setCreateTime(new Date());
+            addList.add(knowledgeFragment);
+        }
+        List<KnowledgeFragment> removeList = new ArrayList<>();
+        oldFragmentMap.values().forEach(removeList::addAll);
+
+        // 片段和附件的变更在同一事务内提交, 向量库不参与事务, 由 syncVectors 在事务结束时补偿
+        if (CollUtil.isNotEmpty(removeList)) {
+            fragmentMapper.deleteBatchIds(removeList.stream().map(KnowledgeFragment::getId).toList());
+        }
+        if (CollUtil.isNotEmpty(moveList)) {
+            fragmentMapper.updateBatchById(moveList);
+        }
+        if (CollUtil.isNotEmpty(addList)) {
+            fragmentMapper.insertBatch(addList);
+        }
+        knowledgeAttach.setDocName(fileName);
+        knowledgeAttach.setDocType(docType);
+        knowledgeAttach.setContent(content);
+        knowledgeAttach.setUpdateTime(new Date());
+        attachMapper.updateById(knowledgeAttach);
+
+        syncVectors(kid, docId, addList, removeList.stream().map(KnowledgeFragment::getFid).toList());
+        return docId;
+    }
+
+    /**
+     * 同步重新上传后的向量
+     * 新增片段的向量在事务内写入, 写入失败时抛出异常回滚片段变更, 事务回滚时删除已写入的新向量;
+     * 被删除片段的向量在事务提交后一次性删除, 提交前旧向量仍与库中片段对应
+     */
+    private void syncVectors(String kid, String docId, List<KnowledgeFragment> addList, List<String> removeFids) {
+        List<String> addFids = addList.stream().map(KnowledgeFragment::getFid).toList();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        removeVectors(kid, removeFids);
+                    } else {
+                        removeVectors(kid, addFids);
+                    }
+                }
+            });
+        }
+        if (CollUtil.isNotEmpty(addList)) {
+            embeddingService.storeEmbeddings(
+                    addList.stream().map(KnowledgeFragment::getContent).toList(),
+                    kid, docId, addFids);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            removeVectors(kid, removeFids);
+        }
+    }
+
+    private void removeVectors(String kid, List<String> fids) {
+        if (CollUtil.isEmpty(fids)) {
+            return;
+        }
+        try {
+            embeddingService.removeByKidAndFids(kid, fids);
+        } catch (Exception e) {
+            log.error("删除知识库{}的向量失败, 片段: {}", kid, fids, e);
+        }
     }
 
     @Override
@@ -180,6 +327,8 @@ public class KnowledgeInfoServiceImpl implements IKnowledgeInfoService {
         // 删除向量库信息
         knowledgeInfoList.forEach(knowledgeInfoVo -> {
             embeddingService.removeByKid(String.valueOf(knowledgeInfoVo.getId()));
+            // 导入清单按知识库主键保存
+            importManifest.remove(String.valueOf(knowledgeInfoVo.getId()));
         });
         // 删除附件和知识片段
         fragmentMapper.deleteByMap(map);
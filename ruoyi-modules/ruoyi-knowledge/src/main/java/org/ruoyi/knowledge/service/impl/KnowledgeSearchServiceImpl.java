@@ -0,0 +1,146 @@
+package org.ruoyi.knowledge.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ruoyi.common.core.exception.ServiceException;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.core.utils.Threads;
+import org.ruoyi.knowledge.chain.vectorizer.Vectorization;
+import org.ruoyi.knowledge.chain.vectorstore.VectorStore;
+import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
+import org.ruoyi.knowledge.mapper.KnowledgeInfoMapper;
+import org.ruoyi.knowledge.service.KnowledgeSearchService;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 多知识库联合检索
+ * 按向量库和向量模型分组, 同组只做一次查询向量化, 各知识库并行检索后按倒数排名融合(RRF)得分合并.
+ * 检索线程池已满时不在调用线程上执行, 被拒绝的知识库按超时处理, 整体截止时间始终有效
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KnowledgeSearchServiceImpl implements KnowledgeSearchService {
+
+    /**
+     * 默认整体截止时间(毫秒)
+     */
+    private static final long DEFAULT_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * 默认返回条数
+     */
+    private static final int DEFAULT_LIMIT = 10;
+
+    /**
+     * RRF 平滑常数
+     */
+    private static final int RRF_K = 60;
+
+    /**
+     * 单次最多检索的知识库数量
+     */
+    public static final int MAX_KNOWLEDGE_BASES = 10;
+
+    private final KnowledgeInfoMapper knowledgeInfoMapper;
+
+    private final Vectorization vectorization;
+
+    private final VectorStore vectorStore;
+
+    private final ExecutorService executor = new ThreadPoolExecutor(
+        Runtime.getRuntime().availableProcessors() + 1,
+        (Runtime.getRuntime().availableProcessors() + 1) * 2,
+        60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(256),
+        new BasicThreadFactory.Builder().namingPattern("knowledge-search-%d").daemon(true).build(),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    @Override
+    public List<String> nearest(String query, Collection<String> kids) {
+        return nearest(query, kids, DEFAULT_TIMEOUT_MILLIS, DEFAULT_LIMIT);
+    }
+
+    @Override
+    public List<String> nearest(String query, Collection<String> kids, long timeoutMillis, int limit) {
+        if (StringUtils.isBlank(query) || CollUtil.isEmpty(kids)) {
+            return new ArrayList<>();
+        }
+        Set<String> distinctKids = new LinkedHashSet<>(kids);
+        if (distinctKids.size() > MAX_KNOWLEDGE_BASES) {
+            throw new ServiceException("单次最多检索" + MAX_KNOWLEDGE_BASES + "个知识库");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        // 同一向量库 + 向量模型的知识库共用一次查询向量化
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String kid : distinctKids) {
+            KnowledgeInfoVo knowledgeInfoVo = knowledgeInfoMapper.selectVoById(Long.valueOf(kid));
+            if (knowledgeInfoVo == null) {
+                log.warn("知识库不存在:请查检ID {}", kid);
+                continue;
+            }
+            String groupKey = knowledgeInfoVo.getVector() + "|" + knowledgeInfoVo.getVectorModel();
+            groups.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(kid);
+        }
+
+        Map<String, CompletableFuture<List<String>>> futures = new LinkedHashMap<>();
+        for (List<String> groupKids : groups.values()) {
+            CompletableFuture<List<Double>> queryVector;
+            try {
+                queryVector = CompletableFuture.supplyAsync(
+                    () -> vectorization.singleVectorization(query, groupKids.get(0)), executor);
+            } catch (RejectedExecutionException e) {
+                log.warn("知识库检索线程池已满, 跳过知识库 {}", groupKids);
+                continue;
+            }
+            // 检索任务被拒绝时 future 以异常结束, 与超时一样丢弃
+            for (String kid : groupKids) {
+                futures.put(kid, queryVector.thenApplyAsync(vector -> vectorStore.nearest(vector, kid), executor));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+                .get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn("多知识库检索超时({}ms), 返回已完成部分的结果", timeoutMillis);
+        } catch (ExecutionException e) {
+            log.warn("多知识库检索部分失败: {}", e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 各知识库的相似度量纲不同, 按排名融合得分
+        Map<String, Double> scores = new LinkedHashMap<>();
+        futures.forEach((kid, future) -> {
+            if (!future.isDone() || future.isCompletedExceptionally()) {
+                future.cancel(true);
+                return;
+            }
+            List<String> resultList = future.join();
+            if (resultList == null) {
+                return;
+            }
+            for (int rank = 0; rank < resultList.size(); rank++) {
+                scores.merge(resultList.get(rank), 1.0 / (RRF_K + rank + 1), Double::sum);
+            }
+        });
+        return scores.entrySet().stream()
+            .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+            .limit(limit)
+            .map(Map.Entry::getKey)
+            .toList();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        Threads.shutdownAndAwaitTermination(executor);
+    }
+}
@@ -0,0 +1,279 @@
+package org.ruoyi.knowledge.chain.vectorstore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.milvus.client.MilvusClient;
+import io.milvus.grpc.GetCollectionStatisticsResponse;
+import io.milvus.grpc.KeyValuePair;
+import io.milvus.grpc.ShowCollectionsResponse;
+import io.milvus.param.R;
+import io.milvus.param.RpcStatus;
+import io.milvus.param.collection.GetCollectionStatisticsParam;
+import io.milvus.param.collection.LoadCollectionParam;
+import io.milvus.param.collection.ReleaseCollectionParam;
+import io.milvus.param.collection.ShowCollectionsParam;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Milvus 集合装载管理测试
+ * 用内存中的假 Milvus 记录服务端装载状态, 检索期间集合不能被空闲或预算淘汰释放;
+ * 多个管理器共用同一个内存访问记录模拟多节点, 其他节点最近访问过的集合不能被释放
+ *
+ * @date 2026/10/19
+ */
+class MilvusCollectionManagerTest {
+
+    private static final int DIMENSION = 4;
+
+    private static final int BYTES_PER_DIMENSION = 4;
+
+    private static final long ROW_COUNT = 1000;
+
+    /**
+     * 单个集合的估算内存
+     */
+    private static final long COLLECTION_MEMORY = ROW_COUNT * DIMENSION * BYTES_PER_DIMENSION;
+
+    /**
+     * 服务端已装载的集合
+     */
+    private final Set<String> serverLoaded = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger releaseCount = new AtomicInteger();
+
+    /**
+     * 各节点共享的访问记录: 集合 -> (节点 -> 访问时间)
+     */
+    private final Map<String, Map<Object, Long>> sharedAccess = new ConcurrentHashMap<>();
+
+    private MilvusClient milvusClient;
+
+    @BeforeEach
+    void setUp() {
+        serverLoaded.clear();
+        sharedAccess.clear();
+        releaseCount.set(0);
+        milvusClient = mock(MilvusClient.class);
+        when(milvusClient.loadCollection(any(LoadCollectionParam.class))).thenAnswer(invocation -> {
+            LoadCollectionParam param = invocation.getArgument(0);
+            serverLoaded.add(param.getCollectionName());
+            return R.success(new RpcStatus(RpcStatus.SUCCESS_MSG));
+        });
+        when(milvusClient.releaseCollection(any(ReleaseCollectionParam.class))).thenAnswer(invocation -> {
+            ReleaseCollectionParam param = invocation.getArgument(0);
+            serverLoaded.remove(param.getCollectionName());
+            releaseCount.incrementAndGet();
+            return R.success(new RpcStatus(RpcStatus.SUCCESS_MSG));
+        });
+        when(milvusClient.getCollectionStatistics(any(GetCollectionStatisticsParam.class))).thenAnswer(invocation ->
+            R.success(GetCollectionStatisticsResponse.newBuilder()
+                .addStats(KeyValuePair.newBuilder().setKey("row_count").setValue(String.valueOf(ROW_COUNT)))
+                .build()));
+    }
+
+    @Test
+    void pinnedCollectionIsNotReleasedForBudget() {
+        MilvusCollectionManager manager = manager(COLLECTION_MEMORY, TimeUnit.MINUTES.toMillis(10));
+
+        assertTrue(manager.pin("c1"));
+        assertTrue(manager.pin("c2"));
+        // c1 仍在检索, 超出预算也不能释放
+        assertTrue(serverLoaded.contains("c1"));
+        assertTrue(serverLoaded.contains("c2"));
+        manager.unpin("c1");
+        manager.unpin("c2");
+
+        assertTrue(manager.pin("c3"));
+        manager.unpin("c3");
+        assertEquals(Set.of("c3"), serverLoaded);
+    }
+
+    @Test
+    void pinnedCollectionIsNotReleasedWhenIdle() throws InterruptedException {
+        MilvusCollectionManager manager = manager(COLLECTION_MEMORY, 0);
+
+        assertTrue(manager.pin("c1"));
+        Thread.sleep(2);
+        manager.releaseIdle();
+        assertTrue(serverLoaded.contains("c1"));
+        assertTrue(manager.isLoaded("c1"));
+
+        manager.unpin("c1");
+        Thread.sleep(2);
+        manager.releaseIdle();
+        assertFalse(serverLoaded.contains("c1"));
+        assertFalse(manager.isLoaded("c1"));
+    }
+
+    @Test
+    void concurrentSearchesNeverSeeReleasedCollection() throws Exception {
+        // 预算只够一个集合, 空闲立即过期, 释放线程持续淘汰
+        MilvusCollectionManager manager = manager(COLLECTION_MEMORY, 0);
+        List<String> collections = List.of("c1", "c2", "c3");
+        int threads = 8;
+        int searchesPerThread = 500;
+        AtomicInteger notLoaded = new AtomicInteger();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        CountDownLatch start = new CountDownLatch(1);
+
+        Future<?> releaser = executor.submit(() -> {
+            start.await();
+            while (running.get()) {
+                manager.releaseIdle();
+            }
+            return null;
+        });
+        List<Future<?>> searches = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            searches.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < searchesPerThread; j++) {
+                    String name = collections.get(ThreadLocalRandom.current().nextInt(collections.size()));
+                    assertTrue(manager.pin(name));
+                    try {
+                        // 模拟检索请求, 检索期间服务端必须处于装载状态
+                        if (!serverLoaded.contains(name)) {
+                            notLoaded.incrementAndGet();
+                        }
+                        Thread.yield();
+                        if (!serverLoaded.contains(name)) {
+                            notLoaded.incrementAndGet();
+                        }
+                    } finally {
+                        manager.unpin(name);
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> search : searches) {
+            search.get(30, TimeUnit.SECONDS);
+        }
+        running.set(false);
+        releaser.get(30, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(0, notLoaded.get());
+        assertTrue(releaseCount.get() > 0, "释放线程应当淘汰过空闲集合");
+    }
+
+    @Test
+    void onlyCollectionsWithPrefixAreRegistered() throws InterruptedException {
+        serverLoaded.addAll(List.of("c1", "other_app"));
+        when(milvusClient.showCollections(any(ShowCollectionsParam.class))).thenAnswer(invocation ->
+            R.success(ShowCollectionsResponse.newBuilder().addAllCollectionNames(List.copyOf(serverLoaded)).build()));
+        MilvusCollectionManager manager = manager(COLLECTION_MEMORY, 0);
+
+        manager.registerLoadedCollections();
+        assertTrue(manager.isLoaded("c1"));
+        assertFalse(manager.isLoaded("other_app"));
+
+        Thread.sleep(2);
+        manager.releaseIdle();
+        assertEquals(Set.of("other_app"), serverLoaded);
+    }
+
+    @Test
+    void idleCollectionIsKeptWhileOtherNodeSearches() throws InterruptedException {
+        MilvusCollectionManager nodeA = manager(COLLECTION_MEMORY * 2, 50);
+        MilvusCollectionManager nodeB = manager(COLLECTION_MEMORY * 2, 50);
+
+        assertTrue(nodeA.pin("c1"));
+        nodeA.unpin("c1");
+        // 节点 B 在节点 A 空闲之后开始检索
+        Thread.sleep(30);
+        assertTrue(nodeB.pin("c1"));
+        Thread.sleep(30);
+
+        // 节点 A 本地已空闲超时, 但节点 B 仍在使用
+        nodeA.releaseIdle();
+        assertTrue(serverLoaded.contains("c1"));
+        assertTrue(nodeA.isLoaded("c1"));
+        nodeB.unpin("c1");
+
+        // 两个节点都空闲超时后才释放
+        Thread.sleep(60);
+        nodeA.releaseIdle();
+        assertFalse(serverLoaded.contains("c1"));
+        assertEquals(1, releaseCount.get());
+    }
+
+    @Test
+    void budgetEvictionSkipsCollectionOtherNodeUsesRecently() {
+        MilvusCollectionManager nodeA = manager(COLLECTION_MEMORY, TimeUnit.MINUTES.toMillis(10));
+        MilvusCollectionManager nodeB = manager(COLLECTION_MEMORY, TimeUnit.MINUTES.toMillis(10));
+
+        assertTrue(nodeB.pin("c1"));
+        assertTrue(nodeA.pin("c1"));
+        nodeA.unpin("c1");
+
+        // 节点 A 预算不足, 但 c1 仍在节点 B 检索中, 只能超出预算装载 c2
+        assertTrue(nodeA.pin("c2"));
+        nodeA.unpin("c2");
+        assertEquals(Set.of("c1", "c2"), serverLoaded);
+        nodeB.unpin("c1");
+    }
+
+    @Test
+    void budgetEvictionReleasesCollectionOnlyThisNodeUses() {
+        MilvusCollectionManager nodeA = manager(COLLECTION_MEMORY, TimeUnit.MINUTES.toMillis(10));
+        manager(COLLECTION_MEMORY, TimeUnit.MINUTES.toMillis(10));
+
+        assertTrue(nodeA.pin("c1"));
+        nodeA.unpin("c1");
+        assertTrue(nodeA.pin("c2"));
+        nodeA.unpin("c2");
+
+        assertEquals(Set.of("c2"), serverLoaded);
+    }
+
+    private MilvusCollectionManager manager(long memoryBudget, long idleMillis) {
+        return new MilvusCollectionManager(milvusClient, "c", accessLog(), memoryBudget, idleMillis,
+            DIMENSION, name -> BYTES_PER_DIMENSION, new SimpleMeterRegistry());
+    }
+
+    /**
+     * 一个节点的访问记录, 读写共享的 sharedAccess
+     */
+    private MilvusCollectionManager.AccessLog accessLog() {
+        Object node = new Object();
+        return new MilvusCollectionManager.AccessLog() {
+            @Override
+            public void touch(String collectionName, long accessTime) {
+                sharedAccess.computeIfAbsent(collectionName, k -> new ConcurrentHashMap<>()).put(node, accessTime);
+            }
+
+            @Override
+            public long lastAccessByOtherNodes(String collectionName) {
+                return sharedAccess.getOrDefault(collectionName, Map.of()).entrySet().stream()
+                    .filter(entry -> entry.getKey() != node)
+                    .mapToLong(Map.Entry::getValue)
+                    .max()
+                    .orElse(0);
+            }
+        };
+    }
+}
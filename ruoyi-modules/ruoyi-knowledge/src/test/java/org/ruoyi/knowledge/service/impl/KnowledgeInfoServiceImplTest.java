@@ -0,0 +1,192 @@
+package org.ruoyi.knowledge.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.ruoyi.knowledge.chain.loader.ResourceLoader;
+import org.ruoyi.knowledge.chain.loader.ResourceLoaderFactory;
+import org.ruoyi.knowledge.domain.KnowledgeAttach;
+import org.ruoyi.knowledge.domain.KnowledgeFragment;
+import org.ruoyi.knowledge.domain.KnowledgeInfo;
+import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
+import org.ruoyi.knowledge.mapper.KnowledgeAttachMapper;
+import org.ruoyi.knowledge.mapper.KnowledgeFragmentMapper;
+import org.ruoyi.knowledge.mapper.KnowledgeInfoMapper;
+import org.ruoyi.knowledge.service.EmbeddingService;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 知识库业务测试
+ * 重新上传附件时按片段内容比对: 内容未变的片段复用原有向量, 只向量化新增片段, 只删除已不存在的片段;
+ * 删除知识库时按知识库主键删除向量和导入清单
+ *
+ * @date 2026/10/19
+ */
+class KnowledgeInfoServiceImplTest {
+
+    private static final String KID = "42";
+
+    private static final String DOC_ID = "doc0000001";
+
+    private KnowledgeInfoMapper baseMapper;
+
+    private KnowledgeFragmentMapper fragmentMapper;
+
+    private KnowledgeAttachMapper attachMapper;
+
+    private EmbeddingService embeddingService;
+
+    private ResourceLoader resourceLoader;
+
+    private KnowledgeImportManifest importManifest;
+
+    private KnowledgeInfoServiceImpl knowledgeInfoService;
+
+    @BeforeAll
+    static void initTableInfo() {
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, KnowledgeInfo.class);
+        TableInfoHelper.initTableInfo(assistant, KnowledgeFragment.class);
+        TableInfoHelper.initTableInfo(assistant, KnowledgeAttach.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        baseMapper = mock(KnowledgeInfoMapper.class);
+        fragmentMapper = mock(KnowledgeFragmentMapper.class);
+        attachMapper = mock(KnowledgeAttachMapper.class);
+        embeddingService = mock(EmbeddingService.class);
+        resourceLoader = mock(ResourceLoader.class);
+        importManifest = mock(KnowledgeImportManifest.class);
+        ResourceLoaderFactory resourceLoaderFactory = mock(ResourceLoaderFactory.class);
+        when(resourceLoaderFactory.getLoaderByFileType(anyString())).thenReturn(resourceLoader);
+        when(resourceLoader.getContent(any())).thenReturn("content");
+
+        KnowledgeAttach attach = new KnowledgeAttach();
+        attach.setId(1L);
+        attach.setKid(KID);
+        attach.setDocId(DOC_ID);
+        when(attachMapper.selectOne(any())).thenReturn(attach);
+
+        knowledgeInfoService = new KnowledgeInfoServiceImpl(baseMapper, embeddingService, resourceLoaderFactory,
+            fragmentMapper, attachMapper, importManifest);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reUploadEmbedsOnlyAddedChunksAndRemovesOnlyDroppedOnes() {
+        // c 是没有 idx 的历史片段
+        KnowledgeFragment a = fragment(1L, "fa", 0, "a");
+        KnowledgeFragment b = fragment(2L, "fb", 1, "b");
+        KnowledgeFragment c = fragment(3L, "fc", null, "c");
+        KnowledgeFragment d = fragment(4L, "fd", 3, "d");
+        when(fragmentMapper.selectList(any())).thenReturn(List.of(a, b, c, d));
+        when(resourceLoader.getChunkList("content", KID)).thenReturn(List.of("b", "a", "c", "e"));
+
+        knowledgeInfoService.reUpload(KID, DOC_ID, "doc.txt", new ByteArrayInputStream(new byte[0]));
+
+        // d 被删除
+        ArgumentCaptor<List<Long>> removedIds = ArgumentCaptor.forClass(List.class);
+        verify(fragmentMapper).deleteBatchIds(removedIds.capture());
+        assertEquals(List.of(4L), removedIds.getValue());
+        verify(embeddingService).removeByKidAndFids(KID, List.of("fd"));
+
+        // a、b、c 保留原片段, 只更新位置
+        ArgumentCaptor<Collection<KnowledgeFragment>> moved = ArgumentCaptor.forClass(Collection.class);
+        verify(fragmentMapper).updateBatchById(moved.capture());
+        assertEquals(List.of("fb", "fa", "fc"), fids(moved.getValue()));
+        assertEquals(0, b.getIdx());
+        assertEquals(1, a.getIdx());
+        assertEquals(2, c.getIdx());
+
+        // 只有 e 需要向量化
+        ArgumentCaptor<Collection<KnowledgeFragment>> added = ArgumentCaptor.forClass(Collection.class);
+        verify(fragmentMapper).insertBatch(added.capture());
+        KnowledgeFragment e = added.getValue().iterator().next();
+        assertEquals(1, added.getValue().size());
+        assertEquals("e", e.getContent());
+        assertEquals(3, e.getIdx());
+        assertEquals(DOC_ID, e.getDocId());
+        verify(embeddingService).storeEmbeddings(List.of("e"), KID, DOC_ID, List.of(e.getFid()));
+    }
+
+    @Test
+    void reUploadOfUnchangedContentTouchesNoVectors() {
+        when(fragmentMapper.selectList(any())).thenReturn(List.of(fragment(1L, "fa", 0, "a"), fragment(2L, "fb", 1, "b")));
+        when(resourceLoader.getChunkList("content", KID)).thenReturn(List.of("a", "b"));
+
+        knowledgeInfoService.reUpload(KID, DOC_ID, "doc.txt", new ByteArrayInputStream(new byte[0]));
+
+        verify(fragmentMapper, never()).deleteBatchIds(anyList());
+        verify(fragmentMapper, never()).insertBatch(anyList());
+        verify(embeddingService, never()).storeEmbeddings(anyList(), anyString(), anyString(), anyList());
+        verify(embeddingService, never()).removeByKidAndFids(anyString(), anyList());
+        verify(attachMapper).updateById(any(KnowledgeAttach.class));
+    }
+
+    @Test
+    void reUploadOfUnknownDocumentStoresNewAttachment() {
+        when(attachMapper.selectOne(any())).thenReturn(null);
+        when(resourceLoader.getChunkList("content", KID)).thenReturn(List.of("a"));
+
+        String docId = knowledgeInfoService.reUpload(KID, DOC_ID, "doc.txt", new ByteArrayInputStream(new byte[0]));
+
+        verify(attachMapper).insert(any(KnowledgeAttach.class));
+        verify(embeddingService).storeEmbeddings(eq(List.of("a")), eq(KID), eq(docId), anyList());
+        verify(embeddingService, never()).removeByKidAndFids(anyString(), anyList());
+    }
+
+    @Test
+    void removeKnowledgeDropsVectorsAndManifestByPrimaryKey() {
+        KnowledgeInfoVo knowledgeInfoVo = new KnowledgeInfoVo();
+        knowledgeInfoVo.setId(Long.valueOf(KID));
+        knowledgeInfoVo.setKid("k8Xz3mQ1pA");
+        when(baseMapper.selectVoByMap(anyMap())).thenReturn(List.of(knowledgeInfoVo));
+        KnowledgeInfoServiceImpl service = spy(knowledgeInfoService);
+        doNothing().when(service).check(anyList());
+
+        service.removeKnowledge("k8Xz3mQ1pA");
+
+        verify(embeddingService).removeByKid(KID);
+        verify(importManifest).remove(KID);
+        verify(importManifest, never()).remove("k8Xz3mQ1pA");
+    }
+
+    private static KnowledgeFragment fragment(Long id, String fid, Integer idx, String content) {
+        KnowledgeFragment fragment = new KnowledgeFragment();
+        fragment.setId(id);
+        fragment.setKid(KID);
+        fragment.setDocId(DOC_ID);
+        fragment.setFid(fid);
+        fragment.setIdx(idx);
+        fragment.setContent(content);
+        return fragment;
+    }
+
+    private static List<String> fids(Collection<KnowledgeFragment> fragments) {
+        List<String> fids = new ArrayList<>();
+        fragments.forEach(fragment -> fids.add(fragment.getFid()));
+        return fids;
+    }
+}
@@ -0,0 +1,179 @@
+package org.ruoyi.knowledge.service.impl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.common.core.exception.ServiceException;
+import org.ruoyi.knowledge.chain.vectorizer.Vectorization;
+import org.ruoyi.knowledge.chain.vectorstore.MemoryVectorStore;
+import org.ruoyi.knowledge.chain.vectorstore.VectorStore;
+import org.ruoyi.knowledge.domain.vo.KnowledgeInfoVo;
+import org.ruoyi.knowledge.mapper.KnowledgeInfoMapper;
+import org.ruoyi.knowledge.service.IKnowledgeInfoService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 多知识库联合检索测试
+ * 知识库数据保存在内存向量库中, 校验按排名融合的结果、同组只向量化一次、截止时间和线程池已满时的处理
+ *
+ * @date 2026/10/19
+ */
+class KnowledgeSearchServiceImplTest {
+
+    private static final String QUERY = "query";
+
+    private final MemoryVectorStore memoryVectorStore = new MemoryVectorStore();
+
+    private KnowledgeInfoMapper knowledgeInfoMapper;
+
+    private Vectorization vectorization;
+
+    private final AtomicInteger vectorizations = new AtomicInteger();
+
+    /**
+     * 执行过向量化的线程
+     */
+    private final Set<Thread> vectorizationThreads = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 未释放前向量化一直阻塞, 用于占满线程池
+     */
+    private volatile CountDownLatch vectorizationGate;
+
+    private KnowledgeSearchServiceImpl searchService;
+
+    @BeforeEach
+    void setUp() {
+        knowledgeInfoMapper = mock(KnowledgeInfoMapper.class);
+        when(knowledgeInfoMapper.selectVoById(anyLong())).thenAnswer(invocation -> {
+            Long id = invocation.getArgument(0);
+            return knowledgeInfo(id, id == 3L ? "model-b" : "model-a");
+        });
+        IKnowledgeInfoService knowledgeInfoService = mock(IKnowledgeInfoService.class);
+        when(knowledgeInfoService.queryById(anyLong())).thenAnswer(invocation ->
+            knowledgeInfo(invocation.getArgument(0), "model-a"));
+        ReflectionTestUtils.setField(memoryVectorStore, "knowledgeInfoService", knowledgeInfoService);
+
+        vectorization = mock(Vectorization.class);
+        when(vectorization.singleVectorization(anyString(), anyString())).thenAnswer(invocation -> {
+            vectorizations.incrementAndGet();
+            vectorizationThreads.add(Thread.currentThread());
+            CountDownLatch gate = vectorizationGate;
+            if (gate != null) {
+                gate.await(10, TimeUnit.SECONDS);
+            }
+            return List.of(1.0, 0.0);
+        });
+
+        store("1", "a", 1.0, 0.0);
+        store("1", "b", 0.9, 0.1);
+        store("1", "c", 0.0, 1.0);
+        store("2", "b", 1.0, 0.0);
+        store("2", "d", 0.8, 0.2);
+        store("3", "e", 1.0, 0.0);
+        searchService = new KnowledgeSearchServiceImpl(knowledgeInfoMapper, vectorization, memoryVectorStore);
+    }
+
+    @AfterEach
+    void tearDown() {
+        CountDownLatch gate = vectorizationGate;
+        if (gate != null) {
+            gate.countDown();
+        }
+        searchService.destroy();
+    }
+
+    @Test
+    void resultsAreMergedByReciprocalRank() {
+        List<String> result = searchService.nearest(QUERY, List.of("1", "2", "3", "2"));
+
+        // b 在两个知识库中都命中, 排在最前; a、e 各为所在知识库的第一名
+        assertEquals(List.of("b", "a", "e", "d", "c"), result);
+        // 知识库 1、2 使用同一向量模型, 只向量化一次
+        assertEquals(2, vectorizations.get());
+    }
+
+    @Test
+    void limitCutsMergedResults() {
+        assertEquals(List.of("b", "a"), searchService.nearest(QUERY, List.of("1", "2"), 3000, 2));
+    }
+
+    @Test
+    void slowKnowledgeBaseIsDroppedAtDeadline() {
+        VectorStore slowStore = mock(VectorStore.class);
+        when(slowStore.nearest(anyList(), anyString())).thenAnswer(invocation -> {
+            String kid = invocation.getArgument(1);
+            if ("3".equals(kid)) {
+                Thread.sleep(2000);
+            }
+            return memoryVectorStore.nearest(invocation.<List<Double>>getArgument(0), kid);
+        });
+        searchService.destroy();
+        searchService = new KnowledgeSearchServiceImpl(knowledgeInfoMapper, vectorization, slowStore);
+
+        long start = System.nanoTime();
+        List<String> result = searchService.nearest(QUERY, List.of("1", "3"), 300, 10);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(List.of("a", "b", "c"), result);
+        assertTrue(elapsed < 2000, "等待时间 " + elapsed + "ms");
+    }
+
+    @Test
+    void tooManyKnowledgeBasesAreRejected() {
+        List<String> kids = IntStream.rangeClosed(1, KnowledgeSearchServiceImpl.MAX_KNOWLEDGE_BASES + 1)
+            .mapToObj(String::valueOf).toList();
+
+        assertThrows(ServiceException.class, () -> searchService.nearest(QUERY, kids));
+        assertEquals(0, vectorizations.get());
+    }
+
+    @Test
+    void saturatedPoolNeverRunsSearchOnCallerThread() {
+        vectorizationGate = new CountDownLatch(1);
+        int processors = Runtime.getRuntime().availableProcessors();
+        // 最大线程数 + 队列容量, 再多提交一些保证被拒绝
+        int capacity = (processors + 1) * 2 + 256;
+
+        for (int i = 0; i < capacity + 10; i++) {
+            long start = System.nanoTime();
+            List<String> result = searchService.nearest(QUERY, List.of("1"), 1, 10);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(result.isEmpty());
+            assertTrue(elapsed < 1000, "第 " + i + " 次检索等待 " + elapsed + "ms");
+        }
+        assertFalse(vectorizationThreads.contains(Thread.currentThread()));
+    }
+
+    private void store(String kid, String content, double x, double y) {
+        memoryVectorStore.storeEmbeddings(List.of(content), List.of(List.of(x, y)), kid, "doc" + kid,
+            List.of(kid + content));
+    }
+
+    private static KnowledgeInfoVo knowledgeInfo(Long id, String vectorModel) {
+        KnowledgeInfoVo knowledgeInfoVo = new KnowledgeInfoVo();
+        knowledgeInfoVo.setId(id);
+        knowledgeInfoVo.setVector("memory");
+        knowledgeInfoVo.setVectorModel(vectorModel);
+        knowledgeInfoVo.setRetrieveLimit(3);
+        return knowledgeInfoVo;
+    }
+}
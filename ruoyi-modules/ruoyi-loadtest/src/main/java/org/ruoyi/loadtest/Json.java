@@ -0,0 +1,115 @@
+package org.ruoyi.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 压测用到的少量 JSON 处理, 模块只依赖 JDK, 不引入 JSON 库
+ *
+ * @date 2026/10/19
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    /**
+     * 转为 JSON 字符串(含引号)
+     */
+    static String quote(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 读取字符串字段的值, 不存在时返回 null
+     */
+    static String getString(String json, String field) {
+        Matcher matcher = Pattern.compile("\"" + Pattern.quote(field) + "\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(json);
+        return matcher.find() ? unescape(matcher.group(1)) : null;
+    }
+
+    /**
+     * 读取字段的字符串或字符串数组值, 如 embeddings 请求的 input
+     */
+    static List<String> getStrings(String json, String field) {
+        List<String> result = new ArrayList<>();
+        Matcher matcher = Pattern.compile("\"" + Pattern.quote(field) + "\"\\s*:\\s*").matcher(json);
+        if (!matcher.find()) {
+            return result;
+        }
+        int i = matcher.end();
+        boolean array = i < json.length() && json.charAt(i) == '[';
+        if (array) {
+            i++;
+        }
+        while (i < json.length()) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                int end = i + 1;
+                while (end < json.length() && json.charAt(end) != '"') {
+                    end += json.charAt(end) == '\\' ? 2 : 1;
+                }
+                result.add(unescape(json.substring(i + 1, Math.min(end, json.length()))));
+                if (!array) {
+                    break;
+                }
+                i = end + 1;
+            } else if (c == ']' || (!array && !Character.isWhitespace(c))) {
+                break;
+            } else {
+                i++;
+            }
+        }
+        return result;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\' || i + 1 >= value.length()) {
+                sb.append(c);
+                continue;
+            }
+            char next = value.charAt(++i);
+            switch (next) {
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'u' -> {
+                    if (i + 4 < value.length()) {
+                        sb.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                        i += 4;
+                    }
+                }
+                default -> sb.append(next);
+            }
+        }
+        return sb.toString();
+    }
+}
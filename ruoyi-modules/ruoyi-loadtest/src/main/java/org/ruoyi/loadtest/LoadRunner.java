@@ -0,0 +1,90 @@
+package org.ruoyi.loadtest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按固定并发用户数执行场景
+ * 每个用户一个线程, 循环发送请求直到结束时间; 预热期间的请求不计入结果, 用户在 rampUp 时间内逐个启动
+ *
+ * @date 2026/10/19
+ */
+public class LoadRunner {
+
+    private final int users;
+
+    private final long durationNanos;
+
+    private final long warmupNanos;
+
+    private final long rampUpNanos;
+
+    private final long thinkMillis;
+
+    /**
+     * @param options users(20)、duration(60 秒)、warmup(10 秒)、rampUp(5 秒)、thinkMillis(0, 每个用户两次请求的间隔)
+     */
+    public LoadRunner(Options options) {
+        this.users = options.getInt("users", 20);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(options.getLong("duration", 60));
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(options.getLong("warmup", 10));
+        this.rampUpNanos = TimeUnit.SECONDS.toNanos(options.getLong("rampUp", 5));
+        this.thinkMillis = options.getLong("thinkMillis", 0);
+    }
+
+    public Report run(String name, Scenario scenario) throws InterruptedException {
+        Report report = new Report(name);
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        AtomicLong lastFinish = new AtomicLong(measureStart);
+        CountDownLatch done = new CountDownLatch(users);
+        System.out.printf("%n开始场景 %s: %d 用户, 预热 %ds, 统计 %ds%n", name, users,
+            TimeUnit.NANOSECONDS.toSeconds(warmupNanos), TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+        for (int i = 0; i < users; i++) {
+            long delay = users <= 1 ? 0 : rampUpNanos * i / users;
+            Thread thread = new Thread(() -> {
+                try {
+                    sleep(delay);
+                    int iteration = 0;
+                    while (System.nanoTime() < end) {
+                        long requestStart = System.nanoTime();
+                        Report.Sample sample = scenario.execute(iteration++);
+                        if (requestStart >= measureStart) {
+                            report.add(sample);
+                            lastFinish.accumulateAndGet(System.nanoTime(), Math::max);
+                        }
+                        if (thinkMillis > 0) {
+                            sleep(TimeUnit.MILLISECONDS.toNanos(thinkMillis));
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "loadtest-user-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        long lastTotal = 0;
+        while (!done.await(10, TimeUnit.SECONDS)) {
+            long total = report.total();
+            if (System.nanoTime() > measureStart) {
+                System.out.printf("  已完成 %d 请求, 最近 10 秒 %.1f 请求/秒%n", total, (total - lastTotal) / 10.0);
+            } else {
+                System.out.println("  预热中...");
+            }
+            lastTotal = total;
+        }
+        System.out.print(report.format(Math.max(1, lastFinish.get() - measureStart)));
+        return report;
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.ruoyi.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 压测入口, 模型服务、向量化都使用本地模拟服务, 向量库使用内存向量库(知识库 vector 为 memory), 无需外网.
+ * <pre>
+ * 1. 启动模拟模型服务:
+ *    java -jar ruoyi-loadtest.jar mock --port=18080 --firstTokenMillis=300 --tokensPerSecond=50 --tokens=200
+ *         --embeddingMillis=50 --dimension=1536 --errorRate=0
+ * 2. 执行 script/sql/update/loadtest.sql(知识库ID 1904862904897019937), 添加指向模拟服务的模型和使用内存向量库的知识库, 关闭文本审核; 启动 ruoyi-admin
+ * 3. 执行压测场景(多个场景用逗号分隔, 依次执行):
+ *    java -jar ruoyi-loadtest.jar run --scenario=upload,knowledge,chat,kg --target=http://127.0.0.1:6039
+ *         --username=admin --password=admin123 (或 --token=xxx) --users=20 --duration=60 --warmup=10 --rampUp=5
+ *         --kid=知识库ID --fileKb=32 --model=loadtest-model
+ * 4. 压测工具和模拟服务自身的基准(同一进程内启动模拟服务并直接请求):
+ *    java -jar ruoyi-loadtest.jar bench --users=200 --duration=30
+ * 5. 向量量化基准(FLAT / SQ8 / PQ 的内存、recall@10 和检索耗时, 见 {@link QuantizationBench}):
+ *    java -jar ruoyi-loadtest.jar quant --vectors=50000 --dimension=768 --queries=200
+ * </pre>
+ * 每个场景输出请求数、失败数、吞吐量, 以及总耗时和首个内容时间的平均值、P50/P90/P95/P99/P99.9 和最大值
+ *
+ * @date 2026/10/19
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        Options options = new Options(args);
+        switch (args[0]) {
+            case "mock" -> mock(options);
+            case "run" -> run(options);
+            case "bench" -> bench(options);
+            case "quant" -> new QuantizationBench(options).run();
+            default -> usage();
+        }
+    }
+
+    private static void mock(Options options) throws Exception {
+        MockOpenAiServer server = new MockOpenAiServer(options);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(server.stats());
+            server.stop();
+        }));
+        while (true) {
+            Thread.sleep(10_000);
+            System.out.println(server.stats());
+        }
+    }
+
+    private static void bench(Options options) throws Exception {
+        MockOpenAiServer server = new MockOpenAiServer(options);
+        server.start();
+        try {
+            options.set("scenario", "llm");
+            options.set("target", "http://127.0.0.1:" + options.getInt("port", 18080));
+            run(options);
+            System.out.println(server.stats());
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(Options options) throws Exception {
+        List<String> scenarios = Arrays.stream(options.get("scenario", "chat").split(","))
+            .map(String::trim).filter(name -> !name.isEmpty()).toList();
+        AtomicInteger threadIndex = new AtomicInteger();
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "loadtest-http-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }))
+            .build();
+        String token = scenarios.equals(List.of("llm")) ? null : login(client, options);
+        LoadRunner runner = new LoadRunner(options);
+        for (String name : scenarios) {
+            runner.run(name, Scenario.create(name, client, options, token));
+        }
+    }
+
+    /**
+     * 获取登录令牌, 指定 --token 时直接使用
+     */
+    private static String login(HttpClient client, Options options) throws IOException, InterruptedException {
+        String token = options.get("token", null);
+        if (token != null) {
+            return token;
+        }
+        String username = options.get("username", "admin");
+        String password = options.get("password", "admin123");
+        String body = "{\"tenantId\":\"000000\",\"username\":" + Json.quote(username) + ",\"password\":" + Json.quote(password) + "}";
+        String target = options.get("target", "http://127.0.0.1:6039").replaceAll("/$", "");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/auth/login"))
+            .timeout(Duration.ofSeconds(30))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        String response = client.send(request, HttpResponse.BodyHandlers.ofString()).body();
+        token = Json.getString(response, "access_token");
+        if (token == null) {
+            token = Json.getString(response, "token");
+        }
+        if (token == null) {
+            throw new IllegalStateException("登录失败: " + response);
+        }
+        System.out.println("登录成功: " + username);
+        return token;
+    }
+
+    private static void usage() {
+        System.out.println("""
+            用法:
+              mock  启动模拟模型服务  --port=18080 --firstTokenMillis=300 --tokensPerSecond=50 --tokens=200
+                                     --embeddingMillis=50 --dimension=1536 --errorRate=0
+              run   执行压测场景      --scenario=chat,knowledge,upload,kg --target=http://127.0.0.1:6039
+                                     --username=admin --password=admin123 | --token=xxx
+                                     --users=20 --duration=60 --warmup=10 --rampUp=5 --thinkMillis=0
+                                     --kid=知识库ID --fileKb=32 --model=loadtest-model --unique=true
+              bench 压测工具和模拟服务自身的基准, 参数同 mock 和 run
+              quant 向量量化基准      --vectors=50000 --dimension=768 --queries=200 --topK=10 --rescore=4
+                                     --clusters=100 --noise=0.6 --train=5000 --iterations=8 --seed=42
+            """);
+    }
+}
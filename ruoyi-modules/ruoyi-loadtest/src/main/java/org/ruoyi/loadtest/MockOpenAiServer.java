@@ -0,0 +1,279 @@
+package org.ruoyi.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * 模拟 OpenAI 兼容的模型服务
+ * 1. /v1/chat/completions: 流式和非流式对话, 首个 token 延迟、输出速度和回复长度可配置;
+ *    知识图谱的意图识别请求返回固定的意图 JSON;
+ * 2. /v1/embeddings: 按文本生成确定的单位向量(相同文本向量相同), 维度和延迟可配置;
+ * 3. /v1/models: 模型列表.
+ * 按 errorRate 的比例返回 500, 用于观察错误处理. 每个连接占用一个线程, 并发流数即线程数
+ *
+ * @date 2026/10/19
+ */
+public class MockOpenAiServer {
+
+    private static final String REPLY = "这是压测模拟服务生成的回复内容，用于测量对话接口在不同并发下的吞吐量和延迟。";
+
+    private static final Pattern STREAM = Pattern.compile("\"stream\"\\s*:\\s*true");
+
+    private static final String INTENT_REPLY = "{\"intent\": \"balance_inquiry\", \"entities\": {\"customer_id\": \"C0001\"}, \"confidence\": 0.95}";
+
+    private final int port;
+
+    private final long firstTokenMillis;
+
+    private final double tokensPerSecond;
+
+    private final int tokens;
+
+    private final long embeddingMillis;
+
+    private final int dimension;
+
+    private final double errorRate;
+
+    private final AtomicLong chatRequests = new AtomicLong();
+
+    private final AtomicLong streamRequests = new AtomicLong();
+
+    private final AtomicLong embeddingRequests = new AtomicLong();
+
+    private final AtomicLong embeddingInputs = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private HttpServer server;
+
+    private ExecutorService executor;
+
+    /**
+     * @param options port(18080)、firstTokenMillis(300)、tokensPerSecond(50)、tokens(200)、
+     *                embeddingMillis(50)、dimension(1536)、errorRate(0)
+     */
+    public MockOpenAiServer(Options options) {
+        this.port = options.getInt("port", 18080);
+        this.firstTokenMillis = options.getLong("firstTokenMillis", 300);
+        this.tokensPerSecond = options.getDouble("tokensPerSecond", 50);
+        this.tokens = options.getInt("tokens", 200);
+        this.embeddingMillis = options.getLong("embeddingMillis", 50);
+        this.dimension = options.getInt("dimension", 1536);
+        this.errorRate = options.getDouble("errorRate", 0);
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "mock-openai-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, this::chat));
+        server.createContext("/v1/embeddings", exchange -> handle(exchange, this::embeddings));
+        server.createContext("/v1/models", exchange -> handle(exchange, this::models));
+        server.start();
+        System.out.printf("模拟模型服务已启动: http://127.0.0.1:%d/ (首个token %dms, %.0f token/s, 回复 %d token, 向量化 %dms, 维度 %d, 错误率 %.2f)%n",
+            port, firstTokenMillis, tokensPerSecond, tokens, embeddingMillis, dimension, errorRate);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 请求统计
+     */
+    public String stats() {
+        return String.format("对话请求 %d (流式 %d, 进行中 %d), 向量化请求 %d (文本 %d), 模拟错误 %d",
+            chatRequests.get(), streamRequests.get(), activeStreams.get(), embeddingRequests.get(), embeddingInputs.get(), errors.get());
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        try (exchange) {
+            String body = readBody(exchange.getRequestBody());
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                send(exchange, 500, "{\"error\":{\"message\":\"mock error\",\"type\":\"server_error\",\"code\":\"mock_error\"}}");
+                return;
+            }
+            handler.handle(exchange, body);
+        } catch (IOException e) {
+            // 客户端断开
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void chat(HttpExchange exchange, String body) throws IOException {
+        chatRequests.incrementAndGet();
+        String model = orDefault(Json.getString(body, "model"), "mock");
+        // 知识图谱意图识别: 返回意图 JSON, 之后的图谱查询失败时回退到普通对话
+        boolean intent = body.contains("意图识别");
+        if (STREAM.matcher(body).find()) {
+            streamRequests.incrementAndGet();
+            activeStreams.incrementAndGet();
+            try {
+                stream(exchange, model, intent);
+            } finally {
+                activeStreams.decrementAndGet();
+            }
+            return;
+        }
+        String content = intent ? INTENT_REPLY : reply(tokens);
+        sleep(TimeUnit.MILLISECONDS.toNanos(firstTokenMillis) + tokenNanos() * Math.max(0, tokens - 1));
+        send(exchange, 200, "{\"id\":\"chatcmpl-mock\",\"object\":\"chat.completion\",\"created\":" + now()
+            + ",\"model\":" + Json.quote(model)
+            + ",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":" + Json.quote(content)
+            + "},\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":" + Math.max(1, body.length() / 4)
+            + ",\"completion_tokens\":" + tokens + ",\"total_tokens\":" + (Math.max(1, body.length() / 4) + tokens) + "}}");
+    }
+
+    private void stream(HttpExchange exchange, String model, boolean intent) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String prefix = "data: {\"id\":\"chatcmpl-mock\",\"object\":\"chat.completion.chunk\",\"created\":" + now()
+            + ",\"model\":" + Json.quote(model) + ",\"choices\":[{\"index\":0,\"delta\":";
+        sleep(TimeUnit.MILLISECONDS.toNanos(firstTokenMillis));
+        write(out, prefix + "{\"role\":\"assistant\",\"content\":\"\"},\"finish_reason\":null}]}\n\n");
+        if (intent) {
+            write(out, prefix + "{\"content\":" + Json.quote(INTENT_REPLY) + "},\"finish_reason\":null}]}\n\n");
+        } else {
+            long interval = tokenNanos();
+            long next = System.nanoTime();
+            for (int i = 0; i < tokens; i++) {
+                if (i > 0) {
+                    next += interval;
+                    sleep(next - System.nanoTime());
+                }
+                String token = String.valueOf(REPLY.charAt(i % REPLY.length()));
+                write(out, prefix + "{\"content\":" + Json.quote(token) + "},\"finish_reason\":null}]}\n\n");
+            }
+        }
+        write(out, prefix + "{},\"finish_reason\":\"stop\"}]}\n\n");
+        write(out, "data: [DONE]\n\n");
+    }
+
+    private void embeddings(HttpExchange exchange, String body) throws IOException {
+        embeddingRequests.incrementAndGet();
+        List<String> inputs = Json.getStrings(body, "input");
+        embeddingInputs.addAndGet(inputs.size());
+        sleep(TimeUnit.MILLISECONDS.toNanos(embeddingMillis));
+        StringBuilder sb = new StringBuilder(inputs.size() * dimension * 12 + 128);
+        sb.append("{\"object\":\"list\",\"data\":[");
+        for (int i = 0; i < inputs.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"object\":\"embedding\",\"index\":").append(i).append(",\"embedding\":[");
+            double[] vector = vector(inputs.get(i));
+            for (int j = 0; j < vector.length; j++) {
+                if (j > 0) {
+                    sb.append(',');
+                }
+                sb.append((float) vector[j]);
+            }
+            sb.append("]}");
+        }
+        int promptTokens = inputs.stream().mapToInt(input -> Math.max(1, input.length() / 2)).sum();
+        sb.append("],\"model\":").append(Json.quote(orDefault(Json.getString(body, "model"), "mock")))
+            .append(",\"usage\":{\"prompt_tokens\":").append(promptTokens)
+            .append(",\"total_tokens\":").append(promptTokens).append("}}");
+        send(exchange, 200, sb.toString());
+    }
+
+    private void models(HttpExchange exchange, String body) throws IOException {
+        send(exchange, 200, "{\"object\":\"list\",\"data\":[{\"id\":\"mock\",\"object\":\"model\",\"owned_by\":\"loadtest\"}]}");
+    }
+
+    /**
+     * 按文本生成确定的单位向量, 相同文本的相似度为 1
+     */
+    private double[] vector(String text) {
+        Random random = new Random(text.hashCode());
+        double[] vector = new double[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = random.nextGaussian();
+            norm += vector[i] * vector[i];
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < dimension; i++) {
+            vector[i] /= norm;
+        }
+        return vector;
+    }
+
+    private String reply(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(REPLY.charAt(i % REPLY.length()));
+        }
+        return sb.toString();
+    }
+
+    private long tokenNanos() {
+        return tokensPerSecond <= 0 ? 0 : (long) (1_000_000_000L / tokensPerSecond);
+    }
+
+    private static void write(OutputStream out, String data) throws IOException {
+        out.write(data.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static void sleep(long nanos) {
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+    private static long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static String orDefault(String value, String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, String body) throws IOException;
+    }
+}
@@ -0,0 +1,53 @@
+package org.ruoyi.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 命令行参数, 格式为 --name=value
+ *
+ * @date 2026/10/19
+ */
+public class Options {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public Options(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+            int index = arg.indexOf('=');
+            if (index < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, index), arg.substring(index + 1));
+            }
+        }
+    }
+
+    public String get(String name, String defaultValue) {
+        String value = values.get(name);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    public void set(String name, String value) {
+        values.put(name, value);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return Integer.parseInt(get(name, String.valueOf(defaultValue)));
+    }
+
+    public long getLong(String name, long defaultValue) {
+        return Long.parseLong(get(name, String.valueOf(defaultValue)));
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        return Double.parseDouble(get(name, String.valueOf(defaultValue)));
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        return Boolean.parseBoolean(get(name, String.valueOf(defaultValue)));
+    }
+}
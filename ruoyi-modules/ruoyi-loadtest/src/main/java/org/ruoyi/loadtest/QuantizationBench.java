@@ -0,0 +1,500 @@
+package org.ruoyi.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向量量化基准: 对比不量化(FLAT)、int8 标量量化(SQ8)和乘积量化(PQ)每百万向量的索引内存、recall@10 和单次检索耗时.
+ * 编码方式与 Milvus 的 IVF_FLAT / IVF_SQ8 / IVF_PQ 一致(PQ 子空间数与 MilvusVectorStore 相同, 取不超过 dim/8 的最大约数, 每个子空间 256 个中心),
+ * 量化模式先按编码后的近似内积取 topK * rescore 个候选, 再用原始向量重新打分取前 topK, 与知识库检索的重新打分一致.
+ * 数据是固定种子生成的聚簇单位向量, 近似文本向量的分布; 以原始向量的精确检索结果计算 recall. 不含 IVF 分桶, 只衡量量化本身的影响
+ * <pre>
+ * java -jar ruoyi-loadtest.jar quant --vectors=50000 --dimension=768 --queries=200 --topK=10 --rescore=4
+ *      --clusters=100 --noise=0.6 --train=5000 --iterations=8 --seed=42
+ * </pre>
+ *
+ * @date 2026/10/19
+ */
+public class QuantizationBench {
+
+    private static final int CENTROIDS = 256;
+
+    private final int vectors;
+
+    private final int dimension;
+
+    private final int queries;
+
+    private final int topK;
+
+    private final int rescore;
+
+    private final int clusters;
+
+    private final double noise;
+
+    private final int train;
+
+    private final int iterations;
+
+    private final Random random;
+
+    private float[][] data;
+
+    private float[][] queryData;
+
+    /**
+     * 每个查询的精确 topK
+     */
+    private int[][] exact;
+
+    public QuantizationBench(Options options) {
+        this.vectors = options.getInt("vectors", 50_000);
+        this.dimension = options.getInt("dimension", 768);
+        this.queries = options.getInt("queries", 200);
+        this.topK = options.getInt("topK", 10);
+        this.rescore = options.getInt("rescore", 4);
+        this.clusters = options.getInt("clusters", 100);
+        this.noise = options.getDouble("noise", 0.6);
+        this.train = options.getInt("train", 5000);
+        this.iterations = options.getInt("iterations", 8);
+        this.random = new Random(options.getLong("seed", 42));
+    }
+
+    public void run() {
+        System.out.printf("向量 %d, 维度 %d, 查询 %d, topK %d, 候选放大 %d 倍%n", vectors, dimension, queries, topK, rescore);
+        generate();
+        int segments = pqSegments(dimension);
+        Index[] indexes = {new FlatIndex(), new Sq8Index(), new PqIndex(segments)};
+        System.out.printf("%-6s %10s %14s %12s %12s %10s %10s %10s%n",
+            "模式", "构建(ms)", "内存(MB/百万)", "recall(近似)", "recall(重排)", "平均(ms)", "P50(ms)", "P99(ms)");
+        for (Index index : indexes) {
+            long start = System.nanoTime();
+            index.build();
+            long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long[] latencies = new long[queries];
+            double approxRecall = 0;
+            double rescoredRecall = 0;
+            for (int q = 0; q < queries; q++) {
+                long begin = System.nanoTime();
+                int[] candidates = index.candidates(queryData[q], index.rescored() ? topK * rescore : topK);
+                int[] result = index.rescored() ? rescore(queryData[q], candidates) : candidates;
+                latencies[q] = System.nanoTime() - begin;
+                approxRecall += recall(Arrays.copyOf(candidates, Math.min(topK, candidates.length)), exact[q]);
+                rescoredRecall += recall(result, exact[q]);
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%-6s %10d %14.1f %12.4f %12.4f %10.3f %10.3f %10.3f%n",
+                index.name(), buildMillis, index.bytesPerVector() * 1_000_000 / 1024.0 / 1024.0,
+                approxRecall / queries, rescoredRecall / queries,
+                Arrays.stream(latencies).average().orElse(0) / 1e6,
+                latencies[queries / 2] / 1e6, latencies[Math.min(queries - 1, (int) (queries * 0.99))] / 1e6);
+        }
+        System.out.println("内存为索引本身的大小(PQ 含码本均摊); 量化模式重新打分时只读取候选的原始向量");
+    }
+
+    /**
+     * 生成聚簇数据和查询, 并用精确内积计算每个查询的 topK
+     */
+    private void generate() {
+        float[][] centers = new float[clusters][];
+        for (int i = 0; i < clusters; i++) {
+            centers[i] = gaussian(null, 1);
+        }
+        data = new float[vectors][];
+        for (int i = 0; i < vectors; i++) {
+            data[i] = gaussian(centers[random.nextInt(clusters)], noise);
+        }
+        queryData = new float[queries][];
+        exact = new int[queries][];
+        for (int q = 0; q < queries; q++) {
+            queryData[q] = gaussian(centers[random.nextInt(clusters)], noise);
+            exact[q] = new FlatIndex().candidates(queryData[q], topK);
+        }
+    }
+
+    /**
+     * center + 高斯噪声, 归一化为单位向量
+     */
+    private float[] gaussian(float[] center, double scale) {
+        float[] vector = new float[dimension];
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            double value = (center == null ? 0 : center[i]) + random.nextGaussian() * scale / Math.sqrt(dimension);
+            vector[i] = (float) value;
+            norm += value * value;
+        }
+        float inverse = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) {
+            vector[i] *= inverse;
+        }
+        return vector;
+    }
+
+    private int[] rescore(float[] query, int[] candidates) {
+        TopK top = new TopK(topK);
+        for (int id : candidates) {
+            top.offer(id, dot(query, data[id], 0, dimension));
+        }
+        return top.ids();
+    }
+
+    private double recall(int[] result, int[] expected) {
+        int hits = 0;
+        for (int id : result) {
+            for (int e : expected) {
+                if (id == e) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        return (double) hits / expected.length;
+    }
+
+    private static float dot(float[] a, float[] b, int from, int to) {
+        float sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 与 MilvusVectorStore 相同: PQ 子空间数量必须整除维度, 取不超过 dim/8 的最大约数
+     */
+    private static int pqSegments(int dim) {
+        for (int m = Math.max(dim / 8, 1); m > 1; m--) {
+            if (dim % m == 0) {
+                return m;
+            }
+        }
+        return 1;
+    }
+
+    private interface Index {
+
+        String name();
+
+        void build();
+
+        /**
+         * 按近似内积取前 count 个向量, 从高到低排列
+         */
+        int[] candidates(float[] query, int count);
+
+        double bytesPerVector();
+
+        default boolean rescored() {
+            return true;
+        }
+    }
+
+    /**
+     * 不量化, 保存原始 float 向量
+     */
+    private class FlatIndex implements Index {
+
+        @Override
+        public String name() {
+            return "FLAT";
+        }
+
+        @Override
+        public void build() {
+        }
+
+        @Override
+        public int[] candidates(float[] query, int count) {
+            TopK top = new TopK(count);
+            for (int i = 0; i < vectors; i++) {
+                top.offer(i, dot(query, data[i], 0, dimension));
+            }
+            return top.ids();
+        }
+
+        @Override
+        public double bytesPerVector() {
+            return dimension * 4;
+        }
+
+        @Override
+        public boolean rescored() {
+            return false;
+        }
+    }
+
+    /**
+     * int8 标量量化: 每个分量按该维度的最小值和范围线性映射到 0~255
+     */
+    private class Sq8Index implements Index {
+
+        private final float[] min = new float[dimension];
+
+        private final float[] step = new float[dimension];
+
+        private byte[][] codes;
+
+        @Override
+        public String name() {
+            return "SQ8";
+        }
+
+        @Override
+        public void build() {
+            float[] max = new float[dimension];
+            Arrays.fill(min, Float.MAX_VALUE);
+            Arrays.fill(max, -Float.MAX_VALUE);
+            for (float[] vector : data) {
+                for (int i = 0; i < dimension; i++) {
+                    min[i] = Math.min(min[i], vector[i]);
+                    max[i] = Math.max(max[i], vector[i]);
+                }
+            }
+            for (int i = 0; i < dimension; i++) {
+                step[i] = Math.max(max[i] - min[i], 1e-12f) / 255;
+            }
+            codes = new byte[vectors][dimension];
+            for (int v = 0; v < vectors; v++) {
+                for (int i = 0; i < dimension; i++) {
+                    codes[v][i] = (byte) Math.round((data[v][i] - min[i]) / step[i]);
+                }
+            }
+        }
+
+        @Override
+        public int[] candidates(float[] query, int count) {
+            // q·x ≈ Σ q_i * min_i + Σ (q_i * step_i) * code_i, 常数项不影响排序
+            float[] weights = new float[dimension];
+            for (int i = 0; i < dimension; i++) {
+                weights[i] = query[i] * step[i];
+            }
+            TopK top = new TopK(count);
+            for (int v = 0; v < vectors; v++) {
+                byte[] code = codes[v];
+                float score = 0;
+                for (int i = 0; i < dimension; i++) {
+                    score += weights[i] * (code[i] & 0xFF);
+                }
+                top.offer(v, score);
+            }
+            return top.ids();
+        }
+
+        @Override
+        public double bytesPerVector() {
+            return dimension;
+        }
+    }
+
+    /**
+     * 乘积量化: 向量切分为 segments 个子空间, 每个子空间用 k-means 训练 256 个中心, 向量保存为各子空间最近中心的编号
+     */
+    private class PqIndex implements Index {
+
+        private final int segments;
+
+        private final int width;
+
+        /**
+         * [子空间][中心][分量]
+         */
+        private float[][][] codebooks;
+
+        private byte[][] codes;
+
+        PqIndex(int segments) {
+            this.segments = segments;
+            this.width = dimension / segments;
+        }
+
+        @Override
+        public String name() {
+            return "PQ" + segments;
+        }
+
+        @Override
+        public void build() {
+            int samples = Math.min(train, vectors);
+            codebooks = new float[segments][][];
+            for (int s = 0; s < segments; s++) {
+                codebooks[s] = kmeans(s * width, samples);
+            }
+            codes = new byte[vectors][segments];
+            for (int v = 0; v < vectors; v++) {
+                for (int s = 0; s < segments; s++) {
+                    codes[v][s] = (byte) nearest(codebooks[s], data[v], s * width);
+                }
+            }
+        }
+
+        @Override
+        public int[] candidates(float[] query, int count) {
+            // 查询与每个子空间各中心的内积查表, 近似内积为各子空间查表值之和
+            float[][] table = new float[segments][CENTROIDS];
+            for (int s = 0; s < segments; s++) {
+                for (int c = 0; c < codebooks[s].length; c++) {
+                    float sum = 0;
+                    for (int i = 0; i < width; i++) {
+                        sum += query[s * width + i] * codebooks[s][c][i];
+                    }
+                    table[s][c] = sum;
+                }
+            }
+            TopK top = new TopK(count);
+            for (int v = 0; v < vectors; v++) {
+                byte[] code = codes[v];
+                float score = 0;
+                for (int s = 0; s < segments; s++) {
+                    score += table[s][code[s] & 0xFF];
+                }
+                top.offer(v, score);
+            }
+            return top.ids();
+        }
+
+        @Override
+        public double bytesPerVector() {
+            // 码本按百万向量均摊
+            return segments + (double) CENTROIDS * dimension * 4 / 1_000_000;
+        }
+
+        /**
+         * 用前 samples 个向量在子空间 [offset, offset + width) 上训练中心
+         */
+        private float[][] kmeans(int offset, int samples) {
+            int k = Math.min(CENTROIDS, samples);
+            float[][] centers = new float[k][];
+            for (int c = 0; c < k; c++) {
+                centers[c] = Arrays.copyOfRange(data[random.nextInt(samples)], offset, offset + width);
+            }
+            int[] assignment = new int[samples];
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                for (int v = 0; v < samples; v++) {
+                    assignment[v] = nearest(centers, data[v], offset);
+                }
+                float[][] sums = new float[k][width];
+                int[] counts = new int[k];
+                for (int v = 0; v < samples; v++) {
+                    counts[assignment[v]]++;
+                    for (int i = 0; i < width; i++) {
+                        sums[assignment[v]][i] += data[v][offset + i];
+                    }
+                }
+                for (int c = 0; c < k; c++) {
+                    if (counts[c] == 0) {
+                        // 空簇重新取一个样本
+                        centers[c] = Arrays.copyOfRange(data[random.nextInt(samples)], offset, offset + width);
+                        continue;
+                    }
+                    for (int i = 0; i < width; i++) {
+                        centers[c][i] = sums[c][i] / counts[c];
+                    }
+                }
+            }
+            return centers;
+        }
+
+        private int nearest(float[][] centers, float[] vector, int offset) {
+            int best = 0;
+            float bestDistance = Float.MAX_VALUE;
+            for (int c = 0; c < centers.length; c++) {
+                float distance = 0;
+                for (int i = 0; i < width; i++) {
+                    float diff = vector[offset + i] - centers[c][i];
+                    distance += diff * diff;
+                }
+                if (distance < bestDistance) {
+                    bestDistance = distance;
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * 保留得分最高的 size 个向量, 小顶堆
+     */
+    private static class TopK {
+
+        private final int[] ids;
+
+        private final float[] scores;
+
+        private int count;
+
+        TopK(int size) {
+            ids = new int[size];
+            scores = new float[size];
+        }
+
+        void offer(int id, float score) {
+            if (count < ids.length) {
+                ids[count] = id;
+                scores[count] = score;
+                siftUp(count++);
+            } else if (score > scores[0]) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * 按得分从高到低返回
+         */
+        int[] ids() {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+            int[] result = new int[count];
+            for (int i = 0; i < count; i++) {
+                result[i] = ids[order[i]];
+            }
+            return result;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (scores[parent] <= scores[index]) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index) {
+            while (true) {
+                int smallest = index;
+                int left = index * 2 + 1;
+                int right = left + 1;
+                if (left < count && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < count && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == index) {
+                    return;
+                }
+                swap(smallest, index);
+                index = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.ruoyi.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测结果: 吞吐量、成功率和延迟百分位
+ * 保存每个请求的耗时, 结束时排序计算百分位, 百万级请求内存占用约 16MB
+ *
+ * @date 2026/10/19
+ */
+public class Report {
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    private static final int MAX_ERROR_KINDS = 20;
+
+    private final String scenario;
+
+    private long[] latencies = new long[1024];
+
+    private long[] firstBytes = new long[1024];
+
+    private int count;
+
+    private int firstByteCount;
+
+    private long failures;
+
+    private final Map<String, Long> errors = new LinkedHashMap<>();
+
+    public Report(String scenario) {
+        this.scenario = scenario;
+    }
+
+    /**
+     * 请求结果
+     *
+     * @param success        是否成功
+     * @param latencyNanos   总耗时
+     * @param firstByteNanos 收到首个内容的时间, 非流式请求为 -1
+     * @param error          失败原因
+     */
+    public record Sample(boolean success, long latencyNanos, long firstByteNanos, String error) {
+
+        public static Sample ok(long latencyNanos, long firstByteNanos) {
+            return new Sample(true, latencyNanos, firstByteNanos, null);
+        }
+
+        public static Sample fail(long latencyNanos, String error) {
+            return new Sample(false, latencyNanos, -1, error);
+        }
+    }
+
+    public synchronized void add(Sample sample) {
+        if (!sample.success()) {
+            failures++;
+            String error = sample.error() == null ? "unknown" : sample.error();
+            if (errors.containsKey(error) || errors.size() < MAX_ERROR_KINDS) {
+                errors.merge(error, 1L, Long::sum);
+            }
+            return;
+        }
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = sample.latencyNanos();
+        if (sample.firstByteNanos() >= 0) {
+            if (firstByteCount == firstBytes.length) {
+                firstBytes = Arrays.copyOf(firstBytes, firstByteCount * 2);
+            }
+            firstBytes[firstByteCount++] = sample.firstByteNanos();
+        }
+    }
+
+    public synchronized long total() {
+        return count + failures;
+    }
+
+    /**
+     * 输出结果
+     *
+     * @param elapsedNanos 统计时长(不含预热)
+     */
+    public synchronized String format(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long total = count + failures;
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%n===== 场景 %s =====%n", scenario));
+        sb.append(String.format("时长 %.1fs, 请求 %d, 成功 %d, 失败 %d (%.2f%%)%n",
+            seconds, total, count, failures, total == 0 ? 0 : failures * 100.0 / total));
+        sb.append(String.format("吞吐量 %.1f 请求/秒 (成功 %.1f 请求/秒)%n", total / seconds, count / seconds));
+        sb.append(line("总耗时", latencies, count));
+        if (firstByteCount > 0) {
+            sb.append(line("首个内容", firstBytes, firstByteCount));
+        }
+        if (!errors.isEmpty()) {
+            sb.append("失败原因:").append(System.lineSeparator());
+            errors.forEach((error, times) -> sb.append(String.format("  %6d  %s%n", times, error)));
+        }
+        return sb.toString();
+    }
+
+    private static String line(String name, long[] values, int size) {
+        if (size == 0) {
+            return String.format("%-6s 无数据%n", name);
+        }
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (long value : sorted) {
+            sum += value;
+        }
+        StringBuilder sb = new StringBuilder(String.format("%-6s 平均 %s", name, millis((long) (sum / size))));
+        for (double percentile : PERCENTILES) {
+            int index = (int) Math.ceil(percentile / 100 * size) - 1;
+            sb.append(String.format("  P%s %s", formatPercentile(percentile), millis(sorted[Math.max(0, index)])));
+        }
+        sb.append("  最大 ").append(millis(sorted[size - 1])).append(System.lineSeparator());
+        return sb.toString();
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,293 @@
+package org.ruoyi.loadtest;
+
+import org.ruoyi.loadtest.Report.Sample;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * 压测场景, 每次调用 execute 发送一个请求并返回结果
+ * chat: /chat/send 流式对话;
+ * knowledge: /knowledge/send 知识库问答(向量化 + 向量检索 + 流式对话);
+ * upload: /knowledge/attach/upload 上传文档(解析、切分、向量化、写入向量库);
+ * kg: /chat/send 开启知识图谱, 意图识别后图谱查询, 图谱无结果时回退到普通对话;
+ * llm: 直接请求模拟服务的流式对话, 作为压测工具和模拟服务自身的基准
+ *
+ * @date 2026/10/19
+ */
+public abstract class Scenario {
+
+    public static final List<String> NAMES = List.of("chat", "knowledge", "upload", "kg", "llm");
+
+    private static final Pattern SUCCESS_CODE = Pattern.compile("\"code\"\\s*:\\s*200\\b");
+
+    private static final String[] QUESTIONS = {
+        "请介绍一下你自己",
+        "如何修改登录密码",
+        "转账限额是多少",
+        "银行卡如何激活",
+        "帮我总结一下这段内容的要点"
+    };
+
+    protected final HttpClient client;
+
+    protected final String target;
+
+    protected final String token;
+
+    protected final String model;
+
+    protected final Duration timeout;
+
+    /**
+     * 问题后追加随机后缀, 避免命中对话结果缓存和请求合并
+     */
+    protected final boolean unique;
+
+    protected Scenario(HttpClient client, Options options, String token) {
+        this.client = client;
+        this.target = stripEnd(options.get("target", "http://127.0.0.1:6039"));
+        this.token = token;
+        this.model = options.get("model", "loadtest-model");
+        this.timeout = Duration.ofSeconds(options.getLong("timeoutSeconds", 120));
+        this.unique = options.getBoolean("unique", true);
+    }
+
+    public static Scenario create(String name, HttpClient client, Options options, String token) {
+        return switch (name) {
+            case "chat" -> new ChatScenario(client, options, token, "/chat/send", false);
+            case "knowledge" -> new KnowledgeScenario(client, options, token);
+            case "upload" -> new UploadScenario(client, options, token);
+            case "kg" -> new ChatScenario(client, options, token, "/chat/send", true);
+            case "llm" -> new LlmScenario(client, options, token);
+            default -> throw new IllegalArgumentException("未知场景: " + name + ", 可选 " + NAMES);
+        };
+    }
+
+    /**
+     * 执行一次请求
+     *
+     * @param iteration 当前用户的第几次请求
+     */
+    public abstract Sample execute(int iteration);
+
+    protected String question(int iteration) {
+        String question = QUESTIONS[iteration % QUESTIONS.length];
+        return unique ? question + " #" + UUID.randomUUID() : question;
+    }
+
+    protected HttpRequest.Builder request(String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(target + path)).timeout(timeout);
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    /**
+     * 发送请求并读取 SSE 响应, 记录首个内容的时间
+     * 服务端以 error 事件返回错误, 正常结束时直接关闭连接(不一定发送 [DONE])
+     */
+    protected Sample stream(HttpRequest request) {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+                if (response.statusCode() != 200) {
+                    return Sample.fail(System.nanoTime() - start, "HTTP " + response.statusCode());
+                }
+                long firstByte = -1;
+                boolean errorEvent = false;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("event:") && "error".equals(line.substring(6).trim())) {
+                        errorEvent = true;
+                    } else if (line.startsWith("data:")) {
+                        String data = line.substring(5).trim();
+                        if (errorEvent) {
+                            return Sample.fail(System.nanoTime() - start, "error 事件: " + abbreviate(data));
+                        }
+                        if (firstByte < 0 && !data.isEmpty()) {
+                            firstByte = System.nanoTime() - start;
+                        }
+                        if ("[DONE]".equals(data)) {
+                            break;
+                        }
+                    }
+                }
+                if (firstByte < 0) {
+                    return Sample.fail(System.nanoTime() - start, "没有返回内容");
+                }
+                return Sample.ok(System.nanoTime() - start, firstByte);
+            }
+        } catch (IOException e) {
+            return Sample.fail(System.nanoTime() - start, e.getClass().getSimpleName() + ": " + abbreviate(e.getMessage()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Sample.fail(System.nanoTime() - start, "interrupted");
+        }
+    }
+
+    protected static String chatBody(String model, String question, String extra) {
+        return "{\"model\":" + Json.quote(model)
+            + ",\"messages\":[{\"role\":\"user\",\"content\":" + Json.quote(question) + "}]"
+            + extra + "}";
+    }
+
+    protected static String abbreviate(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.length() > 200 ? value.substring(0, 200) + "..." : value;
+    }
+
+    private static String stripEnd(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    /**
+     * 对话, 可开启知识图谱
+     */
+    static class ChatScenario extends Scenario {
+
+        private final String path;
+
+        private final boolean knowledgeGraph;
+
+        ChatScenario(HttpClient client, Options options, String token, String path, boolean knowledgeGraph) {
+            super(client, options, token);
+            this.path = path;
+            this.knowledgeGraph = knowledgeGraph;
+        }
+
+        @Override
+        public Sample execute(int iteration) {
+            String question = knowledgeGraph ? "客户号C0001的余额是多少" + (unique ? " #" + UUID.randomUUID() : "") : question(iteration);
+            String body = chatBody(model, question, knowledgeGraph ? ",\"enableKnowledgeGraph\":true" : "");
+            return stream(request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+        }
+    }
+
+    /**
+     * 知识库问答, kid 为知识库ID
+     */
+    static class KnowledgeScenario extends Scenario {
+
+        private final String kid;
+
+        KnowledgeScenario(HttpClient client, Options options, String token) {
+            super(client, options, token);
+            this.kid = required(options, "kid");
+        }
+
+        @Override
+        public Sample execute(int iteration) {
+            String body = chatBody(model, question(iteration), ",\"kid\":" + Json.quote(kid));
+            return stream(request("/knowledge/send")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+        }
+    }
+
+    /**
+     * 上传知识库文档, 文档内容按 fileKb 生成, 每次上传内容不同
+     */
+    static class UploadScenario extends Scenario {
+
+        private final String kid;
+
+        private final int fileKb;
+
+        UploadScenario(HttpClient client, Options options, String token) {
+            super(client, options, token);
+            this.kid = required(options, "kid");
+            this.fileKb = options.getInt("fileKb", 32);
+        }
+
+        @Override
+        public Sample execute(int iteration) {
+            String boundary = "----loadtest" + UUID.randomUUID().toString().replace("-", "");
+            String fileName = "loadtest-" + UUID.randomUUID() + ".txt";
+            List<byte[]> parts = new ArrayList<>();
+            parts.add(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"kid\"\r\n\r\n" + kid + "\r\n"
+                + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            parts.add(document(fileName));
+            parts.add(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            HttpRequest request = request("/knowledge/attach/upload")
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(parts))
+                .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                long latency = System.nanoTime() - start;
+                if (response.statusCode() != 200) {
+                    return Sample.fail(latency, "HTTP " + response.statusCode());
+                }
+                if (!SUCCESS_CODE.matcher(response.body()).find()) {
+                    return Sample.fail(latency, abbreviate(Json.getString(response.body(), "msg")));
+                }
+                return Sample.ok(latency, -1);
+            } catch (IOException e) {
+                return Sample.fail(System.nanoTime() - start, e.getClass().getSimpleName() + ": " + abbreviate(e.getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Sample.fail(System.nanoTime() - start, "interrupted");
+            }
+        }
+
+        private byte[] document(String fileName) {
+            StringBuilder sb = new StringBuilder(fileKb * 1024);
+            int paragraph = 0;
+            while (sb.length() < fileKb * 1024 / 3) {
+                sb.append("第").append(++paragraph).append("段 ").append(fileName)
+                    .append(" 压测文档内容, 用于测量文档解析、切分、向量化和写入向量库的耗时. ")
+                    .append(QUESTIONS[paragraph % QUESTIONS.length]).append("\n\n");
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 直接请求模拟服务, target 为模拟服务地址
+     */
+    static class LlmScenario extends Scenario {
+
+        LlmScenario(HttpClient client, Options options, String token) {
+            super(client, options, token);
+        }
+
+        @Override
+        public Sample execute(int iteration) {
+            return stream(request("/v1/chat/completions")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(chatBody(model, question(iteration), ",\"stream\":true")))
+                .build());
+        }
+    }
+
+    private static String required(Options options, String name) {
+        String value = options.get(name, null);
+        if (value == null) {
+            throw new IllegalArgumentException("缺少参数 --" + name);
+        }
+        return value;
+    }
+}
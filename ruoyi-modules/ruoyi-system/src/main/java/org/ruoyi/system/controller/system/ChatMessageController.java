@@ -18,10 +18,13 @@ import org.ruoyi.common.satoken.utils.LoginHelper;
 import org.ruoyi.common.web.core.BaseController;
 import org.ruoyi.system.domain.bo.ChatMessageBo;
 import org.ruoyi.system.domain.vo.ChatMessageVo;
+import org.ruoyi.system.domain.vo.ChatUsageDailyVo;
 import org.ruoyi.system.service.IChatMessageService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -55,11 +58,55 @@ public class ChatMessageController extends BaseController {
     @GetMapping("/listByUser")
     public R<TableDataInfo<ChatMessageVo>> listByUser(ChatMessageBo bo, PageQuery pageQuery) {
         bo.setUserId(LoginHelper.getUserId());
+        bo.setUserName(null);
         pageQuery.setOrderByColumn("createTime");
         pageQuery.setIsAsc("desc");
         return R.ok(chatMessageService.queryPageList(bo, pageQuery));
     }
 
+    /**
+     * 按游标查询聊天消息列表, 翻页时传入上一页最后一条消息的创建时间和ID
+     */
+    @SaCheckPermission("system:message:list")
+    @GetMapping("/cursor")
+    public TableDataInfo<ChatMessageVo> cursor(ChatMessageBo bo,
+                                               @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date lastCreateTime,
+                                               Long lastId, Integer pageSize) {
+        return chatMessageService.queryCursorList(bo, lastCreateTime, lastId, pageSize);
+    }
+
+    /**
+     * 按游标查询我的聊天消息列表
+     */
+    @GetMapping("/cursorByUser")
+    public R<TableDataInfo<ChatMessageVo>> cursorByUser(ChatMessageBo bo,
+                                                        @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date lastCreateTime,
+                                                        Long lastId, Integer pageSize) {
+        bo.setUserId(LoginHelper.getUserId());
+        bo.setUserName(null);
+        return R.ok(chatMessageService.queryCursorList(bo, lastCreateTime, lastId, pageSize));
+    }
+
+    /**
+     * 查询用户每日用量汇总
+     */
+    @SaCheckPermission("system:message:list")
+    @GetMapping("/usage")
+    public R<List<ChatUsageDailyVo>> usage(Long userId,
+                                           @DateTimeFormat(pattern = "yyyy-MM-dd") Date beginDate,
+                                           @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        return R.ok(chatMessageService.queryUsageList(userId, beginDate, endDate));
+    }
+
+    /**
+     * 查询我的每日用量汇总
+     */
+    @GetMapping("/usageByUser")
+    public R<List<ChatUsageDailyVo>> usageByUser(@DateTimeFormat(pattern = "yyyy-MM-dd") Date beginDate,
+                                                 @DateTimeFormat(pattern = "yyyy-MM-dd") Date endDate) {
+        return R.ok(chatMessageService.queryUsageList(LoginHelper.getUserId(), beginDate, endDate));
+    }
+
     /**
      * 导出聊天消息列表
      */
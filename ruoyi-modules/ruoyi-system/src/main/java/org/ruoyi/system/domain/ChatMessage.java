@@ -73,4 +73,9 @@ public class ChatMessage extends BaseEntity {
     @NotBlank(message = "备注不能为空", groups = { AddGroup.class, EditGroup.class })
     private String remark;
 
+    /**
+     * 用量ID, 计费账单结算的幂等键, 唯一索引
+     */
+    private String usageId;
+
 }
@@ -0,0 +1,98 @@
+package org.ruoyi.system.domain;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import org.ruoyi.common.mybatis.core.domain.BaseEntity;
+
+import java.io.Serial;
+import java.util.Date;
+
+/**
+ * 异步任务对象 chat_task
+ *
+ * @date 2026/10/19
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@TableName("chat_task")
+public class ChatTask extends BaseEntity {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 等待执行
+     */
+    public static final String STATUS_PENDING = "0";
+
+    /**
+     * 执行中
+     */
+    public static final String STATUS_RUNNING = "1";
+
+    /**
+     * 成功
+     */
+    public static final String STATUS_SUCCESS = "2";
+
+    /**
+     * 失败
+     */
+    public static final String STATUS_FAILED = "3";
+
+    /**
+     * 主键
+     */
+    private Long id;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 任务类型
+     */
+    private String taskType;
+
+    /**
+     * 状态(0等待 1执行中 2成功 3失败)
+     */
+    private String status;
+
+    /**
+     * 提示词
+     */
+    private String prompt;
+
+    /**
+     * 任务参数(JSON)
+     */
+    private String taskParams;
+
+    /**
+     * 任务结果(JSON)
+     */
+    private String taskResult;
+
+    /**
+     * 失败原因
+     */
+    private String errorMsg;
+
+    /**
+     * 重试次数
+     */
+    private Integer retryCount;
+
+    /**
+     * 提交时预扣的金额, 失败后退还
+     */
+    private Double cost;
+
+    /**
+     * 完成时间
+     */
+    private Date finishTime;
+}
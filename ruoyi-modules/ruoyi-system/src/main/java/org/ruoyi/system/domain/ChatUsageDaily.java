@@ -0,0 +1,57 @@
+package org.ruoyi.system.domain;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 用户每日用量汇总对象 chat_usage_daily
+ * 聊天消息写入时按 (用户, 日期, 模型) 增量累加, 用量统计直接查询该表, 不再扫描聊天消息
+ *
+ * @date 2026/10/19
+ */
+@Data
+@TableName("chat_usage_daily")
+public class ChatUsageDaily implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 日期
+     */
+    private Date usageDate;
+
+    /**
+     * 模型名称
+     */
+    private String modelName;
+
+    /**
+     * 消息数
+     */
+    private Integer messageCount;
+
+    /**
+     * 累计 Tokens
+     */
+    private Long totalTokens;
+
+    /**
+     * 累计扣除金额
+     */
+    private Double totalCost;
+
+    /**
+     * 更新时间
+     */
+    private Date updateTime;
+}
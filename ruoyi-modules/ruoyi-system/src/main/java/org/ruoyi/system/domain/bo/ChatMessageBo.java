@@ -68,4 +68,9 @@ public class ChatMessageBo extends BaseEntity {
      */
     private String remark;
 
+    /**
+     * 用量ID, 计费账单结算的幂等键, 唯一索引
+     */
+    private String usageId;
+
 }
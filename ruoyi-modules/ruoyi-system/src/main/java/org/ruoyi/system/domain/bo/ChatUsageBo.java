@@ -0,0 +1,45 @@
+package org.ruoyi.system.domain.bo;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 对话用量记录, 写入计费账单后异步结算
+ *
+ * @date 2026/10/19
+ */
+@Data
+public class ChatUsageBo implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 用量ID, 每次对话回复唯一, 作为结算的幂等键
+     */
+    private String usageId;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 模型名称
+     */
+    private String modelName;
+
+    /**
+     * 回复内容
+     */
+    private String content;
+
+    /**
+     * 回复时间
+     */
+    private Date createTime;
+
+}
@@ -0,0 +1,72 @@
+package org.ruoyi.system.domain.vo;
+
+import io.github.linpeilie.annotations.AutoMapper;
+import lombok.Data;
+import org.ruoyi.system.domain.ChatTask;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 异步任务视图对象 chat_task
+ *
+ * @date 2026/10/19
+ */
+@Data
+@AutoMapper(target = ChatTask.class)
+public class ChatTaskVo implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 任务ID
+     */
+    private Long id;
+
+    /**
+     * 任务类型
+     */
+    private String taskType;
+
+    /**
+     * 状态(0等待 1执行中 2成功 3失败)
+     */
+    private String status;
+
+    /**
+     * 提示词
+     */
+    private String prompt;
+
+    /**
+     * 任务结果(JSON)
+     */
+    private String taskResult;
+
+    /**
+     * 失败原因
+     */
+    private String errorMsg;
+
+    /**
+     * 重试次数
+     */
+    private Integer retryCount;
+
+    /**
+     * 提交时预扣的金额, 失败后退还
+     */
+    private Double cost;
+
+    /**
+     * 创建时间
+     */
+    private Date createTime;
+
+    /**
+     * 完成时间
+     */
+    private Date finishTime;
+}
@@ -0,0 +1,69 @@
+package org.ruoyi.system.domain.vo;
+
+import com.alibaba.excel.annotation.ExcelIgnoreUnannotated;
+import com.alibaba.excel.annotation.ExcelProperty;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.github.linpeilie.annotations.AutoMapper;
+import lombok.Data;
+import org.ruoyi.system.domain.ChatUsageDaily;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * 用户每日用量汇总视图对象 chat_usage_daily
+ *
+ * @date 2026/10/19
+ */
+@Data
+@ExcelIgnoreUnannotated
+@AutoMapper(target = ChatUsageDaily.class)
+public class ChatUsageDailyVo implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 用户ID
+     */
+    @ExcelProperty(value = "用户ID")
+    private Long userId;
+
+    /**
+     * 用户名称
+     */
+    @ExcelProperty(value = "用户名称")
+    private String userName;
+
+    /**
+     * 日期
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    @ExcelProperty(value = "日期")
+    private Date usageDate;
+
+    /**
+     * 模型名称
+     */
+    @ExcelProperty(value = "模型名称")
+    private String modelName;
+
+    /**
+     * 消息数
+     */
+    @ExcelProperty(value = "消息数")
+    private Integer messageCount;
+
+    /**
+     * 累计 Tokens
+     */
+    @ExcelProperty(value = "累计 Tokens")
+    private Long totalTokens;
+
+    /**
+     * 累计扣除金额
+     */
+    @ExcelProperty(value = "累计扣除金额")
+    private Double totalCost;
+}
@@ -1,33 +1,29 @@
 package org.ruoyi.system.listener;
 
 
-import cn.hutool.core.collection.CollectionUtil;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 import okhttp3.sse.EventSource;
 import okhttp3.sse.EventSourceListener;
-import org.ruoyi.common.chat.config.LocalCache;
-import org.ruoyi.common.chat.entity.chat.ChatCompletionResponse;
-import org.ruoyi.common.chat.utils.TikTokensUtil;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
+import org.ruoyi.common.chat.sse.ChatDeltaParser;
+import org.ruoyi.common.chat.sse.ChatStreamManager.ChatStream;
+import org.ruoyi.common.chat.sse.StreamFrames;
 import org.ruoyi.common.core.utils.SpringUtils;
 import org.ruoyi.common.core.utils.StringUtils;
-import org.ruoyi.system.domain.bo.ChatMessageBo;
-import org.ruoyi.system.domain.bo.SysModelBo;
-import org.ruoyi.system.domain.vo.SysModelVo;
-import org.ruoyi.system.service.IChatCostService;
-import org.ruoyi.system.service.IChatMessageService;
-import org.ruoyi.system.service.ISysModelService;
+import org.ruoyi.system.service.IChatBillingService;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
-import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
 
 /**
  * 描述：OpenAIEventSourceListener
@@ -42,20 +38,65 @@ public class SSEEventSourceListener extends EventSourceListener {
 
     private ResponseBodyEmitter emitter;
 
+    /**
+     * 对话句柄, 客户端断开时用于取消上游请求
+     */
+    private ChatStream stream;
+
     private StringBuilder stringBuffer = new StringBuilder();
 
+    /**
+     * 计费用户, 为空时不计费
+     */
+    @Getter
+    @Setter
+    private Long userId;
+
+    /**
+     * 回复完整结束后执行, 参数为回复内容(如写入对话缓存)
+     */
+    private Consumer<String> onComplete;
+
+    /**
+     * 回复中是否包含思考过程
+     */
+    private boolean reasoning;
+
+    /**
+     * 是否已向客户端发送结束帧
+     */
+    private volatile boolean finished;
+
     @Autowired(required = false)
     public SSEEventSourceListener(ResponseBodyEmitter emitter) {
         this.emitter = emitter;
     }
-    private static final ISysModelService sysModelService = SpringUtils.getBean(ISysModelService.class);
+
+    public SSEEventSourceListener(ResponseBodyEmitter emitter, ChatStream stream) {
+        this.emitter = emitter;
+        this.stream = stream;
+    }
     private String modelName;
+
+    /**
+     * 回复完整结束后执行, 回复包含思考过程时不执行
+     *
+     * @param action 参数为回复内容
+     */
+    public void onComplete(Consumer<String> action) {
+        this.onComplete = action;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void onOpen(EventSource eventSource, Response response) {
         log.info("OpenAI建立sse连接...");
+        if (stream != null) {
+            // 客户端断开或对话结束后取消上游请求
+            stream.onClose(eventSource::cancel);
+        }
     }
 
     /**
@@ -65,57 +106,36 @@ public class SSEEventSourceListener extends EventSourceListener {
     @Override
     public void onEvent(@NotNull EventSource eventSource, String id, String type, String data) {
         try {
-            if ("[DONE]".equals(data)) {
-                //成功响应
-                emitter.complete();
-                if(StringUtils.isNotEmpty(modelName)){
-                    IChatCostService IChatCostService = SpringUtils.context().getBean(IChatCostService.class);
-                    IChatMessageService chatMessageService = SpringUtils.context().getBean(IChatMessageService.class);
-                    ChatMessageBo chatMessageBo = new ChatMessageBo();
-                    chatMessageBo.setModelName(modelName);
-                    chatMessageBo.setContent(stringBuffer.toString());
-                    Long userId = (Long)LocalCache.CACHE.get("userId");
-                    if(userId == null){
-                        return;
-                    }
-                    chatMessageBo.setUserId(userId);
-                    //查询按次数扣费的模型
-                    SysModelBo sysModelBo = new SysModelBo();
-                    sysModelBo.setModelType("2");
-                    sysModelBo.setModelName(modelName);
-                    List<SysModelVo> sysModelList = sysModelService.queryList(sysModelBo);
-                    if (CollectionUtil.isNotEmpty(sysModelList)){
-                        chatMessageBo.setDeductCost(0d);
-                        chatMessageBo.setRemark("提问时扣费");
-                        // 保存消息记录
-                        chatMessageService.insertByBo(chatMessageBo);
-                    }else{
-                        int tokens = TikTokensUtil.tokens(modelName,stringBuffer.toString());
-                        chatMessageBo.setTotalTokens(tokens);
-                        // 按token扣费并且保存消息记录
-                        IChatCostService.deductToken(chatMessageBo);
-                    }
+            if (StreamFrames.DONE.equals(data)) {
+                //成功响应, 结束帧与合并请求、缓存回放一致
+                finished = true;
+                StreamFrames.done(emitter);
+                if (onComplete != null && !reasoning) {
+                    onComplete.accept(stringBuffer.toString());
+                }
+                if(StringUtils.isNotEmpty(modelName) && userId != null){
+                    // 写入计费账单, 由账单异步批量扣费并保存消息记录
+                    SpringUtils.getBean(IChatBillingService.class).record(userId, modelName, stringBuffer.toString());
                 }
                 return;
             }
             // 解析返回内容
-            ObjectMapper mapper = new ObjectMapper();
-            ChatCompletionResponse completionResponse = mapper.readValue(data, ChatCompletionResponse.class);
-            if(completionResponse == null || CollectionUtil.isEmpty(completionResponse.getChoices())){
-                return;
-            }
-            Object content = completionResponse.getChoices().get(0).getDelta().getContent();
+            ChatDeltaParser.ChatDelta delta = ChatDeltaParser.parse(data);
+            String content = delta.text();
             if(content == null){
-                content = completionResponse.getChoices().get(0).getDelta().getReasoningContent();
-                if(content == null) return;
+                return;
             }
             if(StringUtils.isEmpty(modelName)){
-                modelName = completionResponse.getModel();
+                modelName = delta.model();
+            }
+            if (delta.reasoningContent() != null) {
+                reasoning = true;
             }
             stringBuffer.append(content);
             emitter.send(data);
         } catch (Exception e) {
             log.error("sse信息推送失败{}内容：{}",e.getMessage(),data);
+            ChatMetrics.counter(ChatMetrics.STREAM_CLIENT_ERRORS, "model", ChatMetrics.modelTag(modelName)).increment();
             eventSource.cancel();
         }
     }
@@ -123,21 +143,32 @@ public class SSEEventSourceListener extends EventSourceListener {
     @Override
     public void onClosed(EventSource eventSource) {
         log.info("OpenAI关闭sse连接...");
+        if (!finished) {
+            // 没有收到 [DONE] 就结束视为失败
+            finished = true;
+            StreamFrames.error(emitter, StreamFrames.UPSTREAM_ERROR);
+        }
     }
 
     @SneakyThrows
     @Override
     public void onFailure(EventSource eventSource, Throwable t, Response response) {
         if (Objects.isNull(response)) {
-            return;
-        }
-        ResponseBody body = response.body();
-        if (Objects.nonNull(body)) {
-            log.error("OpenAI  sse连接异常data：{}，异常：{}", body.string(), t);
+            log.error("OpenAI  sse连接异常：{}", t == null ? null : t.getMessage());
         } else {
-            log.error("OpenAI  sse连接异常data：{}，异常：{}", response, t);
+            ResponseBody body = response.body();
+            if (Objects.nonNull(body)) {
+                log.error("OpenAI  sse连接异常data：{}，异常：{}", body.string(), t);
+            } else {
+                log.error("OpenAI  sse连接异常data：{}，异常：{}", response, t);
+            }
         }
         eventSource.cancel();
+        // 发送错误帧并结束客户端连接, 同时归还对话名额
+        if (!finished) {
+            finished = true;
+            StreamFrames.error(emitter, StreamFrames.UPSTREAM_ERROR);
+        }
     }
 
 }
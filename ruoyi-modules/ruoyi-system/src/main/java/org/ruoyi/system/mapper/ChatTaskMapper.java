@@ -0,0 +1,14 @@
+package org.ruoyi.system.mapper;
+
+import org.ruoyi.common.mybatis.core.mapper.BaseMapperPlus;
+import org.ruoyi.system.domain.ChatTask;
+import org.ruoyi.system.domain.vo.ChatTaskVo;
+
+/**
+ * 异步任务Mapper接口
+ *
+ * @date 2026/10/19
+ */
+public interface ChatTaskMapper extends BaseMapperPlus<ChatTask, ChatTaskVo> {
+
+}
@@ -0,0 +1,24 @@
+package org.ruoyi.system.mapper;
+
+import org.apache.ibatis.annotations.Param;
+import org.ruoyi.common.mybatis.core.mapper.BaseMapperPlus;
+import org.ruoyi.system.domain.ChatUsageDaily;
+import org.ruoyi.system.domain.vo.ChatUsageDailyVo;
+
+import java.util.Collection;
+
+/**
+ * 用户每日用量汇总Mapper接口
+ *
+ * @date 2026/10/19
+ */
+public interface ChatUsageDailyMapper extends BaseMapperPlus<ChatUsageDaily, ChatUsageDailyVo> {
+
+    /**
+     * 累加用量, 当天记录不存在时新增
+     *
+     * @param list 按 (用户, 日期, 模型) 合并后的增量
+     * @return 影响行数
+     */
+    int incrementBatch(@Param("list") Collection<ChatUsageDaily> list);
+}
@@ -0,0 +1,28 @@
+package org.ruoyi.system.service;
+
+/**
+ * 对话计费账单Service接口
+ *
+ * @date 2026/10/19
+ */
+public interface IChatBillingService {
+
+    /**
+     * 记录一次对话回复的用量, 由账单异步批量结算
+     *
+     * @param userId    用户ID
+     * @param modelName 模型名称
+     * @param content   回复内容
+     */
+    void record(Long userId, String modelName, String content);
+
+    /**
+     * 结算账单中未处理的用量
+     */
+    void flush();
+
+    /**
+     * 对账: 重新结算长时间未确认的用量(结算失败或实例宕机)
+     */
+    void reconcile();
+}
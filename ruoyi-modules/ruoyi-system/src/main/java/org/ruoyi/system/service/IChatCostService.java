@@ -2,6 +2,8 @@ package org.ruoyi.system.service;
 
 import org.ruoyi.system.domain.bo.ChatMessageBo;
 
+import java.util.List;
+
 public interface IChatCostService {
 
     /**
@@ -19,6 +21,31 @@ public interface IChatCostService {
      */
     void deductUserBalance(Long userId, Double numberCost);
 
+    /**
+     * 批量结算同一用户同一模型的消息, 原子扣减余额并保存消息记录
+     *
+     * @param userId    用户ID
+     * @param modelName 模型名称
+     * @param messages  消息记录(已计算token数)
+     */
+    void settleUsage(Long userId, String modelName, List<ChatMessageBo> messages);
+
+    /**
+     * 结算已发生的费用, 按实际金额扣减, 余额不足时记为欠费(余额为负)
+     *
+     * @param userId     用户ID
+     * @param numberCost 费用
+     */
+    void settleUserBalance(Long userId, double numberCost);
+
+    /**
+     * 退还预扣的费用
+     *
+     * @param userId     用户ID
+     * @param numberCost 退还金额
+     */
+    void refundUserBalance(Long userId, double numberCost);
+
 
     /**
      * 扣除任务费用并且保存记录
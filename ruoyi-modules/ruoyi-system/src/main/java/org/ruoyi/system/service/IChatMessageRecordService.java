@@ -0,0 +1,23 @@
+package org.ruoyi.system.service;
+
+import org.ruoyi.system.domain.bo.ChatMessageBo;
+
+/**
+ * 聊天消息异步记录Service接口
+ *
+ * @date 2026/10/19
+ */
+public interface IChatMessageRecordService {
+
+    /**
+     * 记录一条聊天消息, 放入缓冲区后立即返回, 由后台批量写入数据库
+     *
+     * @param bo 聊天消息
+     */
+    void record(ChatMessageBo bo);
+
+    /**
+     * 把缓冲区和 Redis 转存区中的消息批量写入数据库
+     */
+    void flush();
+}
@@ -4,8 +4,10 @@ import org.ruoyi.common.mybatis.core.page.PageQuery;
 import org.ruoyi.common.mybatis.core.page.TableDataInfo;
 import org.ruoyi.system.domain.bo.ChatMessageBo;
 import org.ruoyi.system.domain.vo.ChatMessageVo;
+import org.ruoyi.system.domain.vo.ChatUsageDailyVo;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -26,16 +28,41 @@ public interface IChatMessageService {
      */
     TableDataInfo<ChatMessageVo> queryPageList(ChatMessageBo bo, PageQuery pageQuery);
 
+    /**
+     * 按游标查询聊天消息列表, 按创建时间倒序
+     * 游标为上一页最后一条消息的创建时间和ID, 为空时查询第一页; 不统计总数, 翻页耗时与页码无关
+     *
+     * @param bo             查询条件
+     * @param lastCreateTime 上一页最后一条消息的创建时间
+     * @param lastId         上一页最后一条消息的ID
+     * @param pageSize       每页条数
+     */
+    TableDataInfo<ChatMessageVo> queryCursorList(ChatMessageBo bo, Date lastCreateTime, Long lastId, Integer pageSize);
+
     /**
      * 查询聊天消息列表
      */
     List<ChatMessageVo> queryList(ChatMessageBo bo);
 
+    /**
+     * 查询用户每日用量汇总
+     *
+     * @param userId    用户ID, 为空时查询所有用户
+     * @param beginDate 开始日期
+     * @param endDate   结束日期
+     */
+    List<ChatUsageDailyVo> queryUsageList(Long userId, Date beginDate, Date endDate);
+
     /**
      * 新增聊天消息
      */
     Boolean insertByBo(ChatMessageBo bo);
 
+    /**
+     * 批量新增聊天消息
+     */
+    Boolean insertBatchByBo(List<ChatMessageBo> boList);
+
     /**
      * 修改聊天消息
      */
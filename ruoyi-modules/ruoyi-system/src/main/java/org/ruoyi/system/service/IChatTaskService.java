@@ -0,0 +1,41 @@
+package org.ruoyi.system.service;
+
+import org.ruoyi.common.mybatis.core.page.PageQuery;
+import org.ruoyi.common.mybatis.core.page.TableDataInfo;
+import org.ruoyi.system.domain.vo.ChatTaskVo;
+
+/**
+ * 异步任务Service接口
+ *
+ * @date 2026/10/19
+ */
+public interface IChatTaskService {
+
+    /**
+     * 提交任务, 保存后立即返回任务ID, 由任务线程池执行
+     * 执行结果和状态变化通过 WebSocket 推送给当前用户, 也可按ID查询
+     *
+     * @param taskType 任务类型
+     * @param prompt   提示词, 用于消息记录
+     * @param params   任务参数
+     * @return 任务ID
+     */
+    Long submit(String taskType, String prompt, Object params);
+
+    /**
+     * 查询当前用户的任务
+     *
+     * @param id 任务ID
+     * @return 任务, 不存在或不属于当前用户时为 null
+     */
+    ChatTaskVo queryById(Long id);
+
+    /**
+     * 分页查询当前用户的任务
+     *
+     * @param taskType  任务类型, 为空时查询全部
+     * @param pageQuery 分页参数
+     * @return 任务列表
+     */
+    TableDataInfo<ChatTaskVo> queryPageList(String taskType, PageQuery pageQuery);
+}
@@ -22,4 +22,9 @@ public interface IChatTokenService {
 
     void editToken(ChatToken chatToken);
 
+    /**
+     * 在用户模型的待结算token锁内执行, 避免提问扣费和账单结算同时修改待结算token
+     */
+    void withTokenLock(Long userId, String modelName, Runnable runnable);
+
 }
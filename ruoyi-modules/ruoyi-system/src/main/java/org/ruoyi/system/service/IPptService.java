@@ -55,6 +55,13 @@ public interface IPptService {
      */
     String getApiToken();
 
+    /**
+     * 获取指定用户的API Token, 不依赖登录状态, 用于后台任务
+     * @param userId 用户ID
+     * @return 文多多Token
+     */
+    String getApiToken(Long userId);
+
     /**
      * 生成PPT成功回调接口
      */
@@ -0,0 +1,228 @@
+package org.ruoyi.system.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.PendingEntry;
+import org.redisson.api.RStream;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.ruoyi.common.chat.utils.TikTokensUtil;
+import org.ruoyi.common.redis.utils.RedisUtils;
+import org.ruoyi.common.tenant.helper.TenantHelper;
+import org.ruoyi.system.domain.bo.ChatMessageBo;
+import org.ruoyi.system.domain.bo.ChatUsageBo;
+import org.ruoyi.system.service.IChatBillingService;
+import org.ruoyi.system.service.IChatCostService;
+import org.ruoyi.system.service.IChatTokenService;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话计费账单
+ * 对话结束时只把用量追加到 Redis Stream, 由定时任务按批读取, 按用户和模型合并后结算:
+ * 待结算token读写一次、余额原子扣减一次、消息记录批量保存. 结算成功后才确认消息,
+ * 未确认的消息由对账任务重新认领结算. 用量ID随消息记录写入 chat_message 的唯一索引, 与扣费在同一事务中提交,
+ * 提交后确认前宕机导致的重复投递会在结算时被排除, 不会重复扣费
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatBillingServiceImpl implements IChatBillingService {
+
+    private static final String LEDGER_KEY = "chat:billing:ledger";
+
+    private static final String GROUP_NAME = "settle";
+
+    private static final String FAILED_KEY = "chat:billing:failed";
+
+    private static final String EVENT_FIELD = "usage";
+
+    /**
+     * 每批读取的用量数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 超过该时间未确认的用量由对账任务重新结算
+     */
+    private static final long RECLAIM_IDLE_MINUTES = 5;
+
+    /**
+     * 超过该投递次数仍失败的用量转入失败列表, 人工处理
+     */
+    private static final int MAX_DELIVERIES = 10;
+
+    private final IChatCostService chatCostService;
+
+    private final IChatTokenService chatTokenService;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    /**
+     * 每个应用实例一个消费者
+     */
+    private final String consumerName = "consumer-" + IdUtil.fastSimpleUUID();
+
+    @PostConstruct
+    public void init() {
+        try {
+            getLedger().createGroup(GROUP_NAME, StreamMessageId.ALL);
+        } catch (Exception e) {
+            // 消费组已存在
+            log.debug("账单消费组已存在: {}", e.getMessage());
+        }
+        scheduledExecutorService.scheduleWithFixedDelay(this::flush, 5, 5, TimeUnit.SECONDS);
+        scheduledExecutorService.scheduleWithFixedDelay(this::reconcile, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @Override
+    public void record(Long userId, String modelName, String content) {
+        ChatUsageBo usage = new ChatUsageBo();
+        usage.setUsageId(IdUtil.fastSimpleUUID());
+        usage.setUserId(userId);
+        usage.setModelName(modelName);
+        usage.setContent(content);
+        usage.setCreateTime(new Date());
+        try {
+            getLedger().add(StreamAddArgs.entry(EVENT_FIELD, usage));
+        } catch (Exception e) {
+            // 账单不可用时直接结算, 不丢失扣费
+            log.error("写入计费账单失败, 直接结算: {}", e.getMessage());
+            settleGroup(userId, modelName, List.of(usage));
+        }
+    }
+
+    @Override
+    public void flush() {
+        try {
+            RStream<String, ChatUsageBo> ledger = getLedger();
+            Map<StreamMessageId, Map<String, ChatUsageBo>> batch;
+            do {
+                batch = ledger.readGroup(GROUP_NAME, consumerName, StreamReadGroupArgs.neverDelivered().count(BATCH_SIZE));
+                settle(ledger, batch);
+            } while (batch.size() >= BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("结算计费账单失败", e);
+        }
+    }
+
+    @Override
+    public void reconcile() {
+        try {
+            RStream<String, ChatUsageBo> ledger = getLedger();
+            List<PendingEntry> pendingEntries = ledger.listPending(GROUP_NAME, StreamMessageId.MIN, StreamMessageId.MAX,
+                RECLAIM_IDLE_MINUTES, TimeUnit.MINUTES, BATCH_SIZE);
+            if (pendingEntries.isEmpty()) {
+                return;
+            }
+            List<StreamMessageId> retryIds = new ArrayList<>();
+            for (PendingEntry entry : pendingEntries) {
+                if (entry.getLastTimeDelivered() >= MAX_DELIVERIES) {
+                    moveToFailed(ledger, entry.getId());
+                } else {
+                    retryIds.add(entry.getId());
+                }
+            }
+            if (!retryIds.isEmpty()) {
+                log.info("对账重新结算 {} 条用量", retryIds.size());
+                Map<StreamMessageId, Map<String, ChatUsageBo>> claimed = ledger.claim(GROUP_NAME, consumerName,
+                    RECLAIM_IDLE_MINUTES, TimeUnit.MINUTES, retryIds.toArray(new StreamMessageId[0]));
+                settle(ledger, claimed);
+            }
+        } catch (Exception e) {
+            log.error("计费账单对账失败", e);
+        }
+    }
+
+    /**
+     * 按用户和模型分组结算, 结算成功的用量确认并从账单删除
+     */
+    private void settle(RStream<String, ChatUsageBo> ledger, Map<StreamMessageId, Map<String, ChatUsageBo>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, Map<StreamMessageId, ChatUsageBo>> groups = new LinkedHashMap<>();
+        List<StreamMessageId> doneIds = new ArrayList<>();
+        batch.forEach((id, fields) -> {
+            ChatUsageBo usage = fields.get(EVENT_FIELD);
+            if (usage == null) {
+                // 格式错误的用量直接确认
+                doneIds.add(id);
+                return;
+            }
+            groups.computeIfAbsent(usage.getUserId() + ":" + usage.getModelName(), k -> new LinkedHashMap<>())
+                .put(id, usage);
+        });
+        for (Map<StreamMessageId, ChatUsageBo> group : groups.values()) {
+            ChatUsageBo first = group.values().iterator().next();
+            if (settleGroup(first.getUserId(), first.getModelName(), group.values())) {
+                doneIds.addAll(group.keySet());
+            }
+        }
+        if (!doneIds.isEmpty()) {
+            StreamMessageId[] ids = doneIds.toArray(new StreamMessageId[0]);
+            ledger.ack(GROUP_NAME, ids);
+            ledger.remove(ids);
+        }
+    }
+
+    /**
+     * 结算同一用户同一模型的用量
+     *
+     * @return 是否结算成功
+     */
+    private boolean settleGroup(Long userId, String modelName, Collection<ChatUsageBo> usages) {
+        List<ChatMessageBo> messages = new ArrayList<>(usages.size());
+        for (ChatUsageBo usage : usages) {
+            ChatMessageBo chatMessageBo = new ChatMessageBo();
+            chatMessageBo.setUserId(userId);
+            chatMessageBo.setModelName(modelName);
+            chatMessageBo.setContent(usage.getContent());
+            chatMessageBo.setTotalTokens(TikTokensUtil.tokens(modelName, usage.getContent()));
+            chatMessageBo.setCreateBy(userId);
+            chatMessageBo.setCreateTime(usage.getCreateTime());
+            chatMessageBo.setUsageId(usage.getUsageId());
+            messages.add(chatMessageBo);
+        }
+        try {
+            // 定时任务中没有登录用户, 结算按用户ID进行, 忽略租户过滤
+            TenantHelper.ignore(() -> chatTokenService.withTokenLock(userId, modelName,
+                () -> chatCostService.settleUsage(userId, modelName, messages)));
+        } catch (DuplicateKeyException e) {
+            // 其他实例已结算了其中的用量, 整批回滚, 对账时排除已结算的用量后重新结算其余部分
+            log.warn("用户 {} 模型 {} 的用量已被结算, 等待对账: {}", userId, modelName, e.getMessage());
+            return false;
+        } catch (Exception e) {
+            log.error("结算用户 {} 模型 {} 的用量失败: {}", userId, modelName, e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    private void moveToFailed(RStream<String, ChatUsageBo> ledger, StreamMessageId id) {
+        Map<StreamMessageId, Map<String, ChatUsageBo>> entries = ledger.range(id, id);
+        entries.values().forEach(fields -> {
+            ChatUsageBo usage = fields.get(EVENT_FIELD);
+            if (usage != null) {
+                log.error("用量 {} 多次结算失败, 转入失败列表: userId={}, model={}",
+                    usage.getUsageId(), usage.getUserId(), usage.getModelName());
+                RedisUtils.getClient().getList(FAILED_KEY).add(usage);
+            }
+        });
+        ledger.ack(GROUP_NAME, id);
+        ledger.remove(id);
+    }
+
+    private RStream<String, ChatUsageBo> getLedger() {
+        return RedisUtils.getClient().getStream(LEDGER_KEY);
+    }
+}
@@ -3,6 +3,7 @@ package org.ruoyi.system.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.ruoyi.common.core.event.ConfigChangeEvent;
@@ -11,6 +12,9 @@ import org.ruoyi.common.core.utils.MapstructUtils;
 import org.ruoyi.common.core.utils.StringUtils;
 import org.ruoyi.common.mybatis.core.page.PageQuery;
 import org.ruoyi.common.mybatis.core.page.TableDataInfo;
+import org.ruoyi.common.redis.cache.NearCache;
+import org.ruoyi.common.satoken.utils.LoginHelper;
+import org.ruoyi.common.tenant.helper.TenantHelper;
 import org.ruoyi.system.domain.ChatConfig;
 import org.ruoyi.system.domain.bo.ChatConfigBo;
 import org.ruoyi.system.domain.vo.ChatConfigVo;
@@ -19,6 +23,8 @@ import org.ruoyi.system.service.IChatConfigService;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -34,10 +40,22 @@ Service业务层处理
 @Slf4j
 public class ChatConfigServiceImpl implements IChatConfigService, ConfigService {
 
+    private static final String CONFIG_CHANNEL = "chat:config:invalidate";
+
     private final ChatConfigMapper baseMapper;
 
     private final ApplicationEventPublisher eventPublisher;
 
+    /**
+     * 按分类缓存配置, 修改后通知所有节点失效
+     */
+    private NearCache<String, List<ChatConfigVo>> configCache;
+
+    @PostConstruct
+    public void init() {
+        configCache = new NearCache<>(CONFIG_CHANNEL, Duration.ofMinutes(10));
+    }
+
     /**
      * 查询对话配置信息
 
@@ -86,6 +104,7 @@ public class ChatConfigServiceImpl implements IChatConfigService, ConfigService
         if (flag) {
             bo.setId(add.getId());
         }
+        configCache.invalidateAll();
         return flag;
     }
 
@@ -97,9 +116,11 @@ public class ChatConfigServiceImpl implements IChatConfigService, ConfigService
     public Boolean updateByBo(ChatConfigBo bo) {
         ChatConfig update = MapstructUtils.convert(bo, ChatConfig.class);
         validEntityBeforeSave(update);
-        // 更新配置信息(类型区分)
+        boolean flag = baseMapper.updateById(update) > 0;
+        configCache.invalidateAll();
+        // 更新配置信息(类型区分), 需在缓存失效后发布, 监听方才能读到新值
         eventPublisher.publishEvent(new ConfigChangeEvent(this));
-        return baseMapper.updateById(update) > 0;
+        return flag;
     }
 
     /**
@@ -118,7 +139,9 @@ public class ChatConfigServiceImpl implements IChatConfigService, ConfigService
         if(isValid){
             //TODO 做一些业务上的校验,判断是否需要校验
         }
-        return baseMapper.deleteBatchIds(ids) > 0;
+        boolean flag = baseMapper.deleteBatchIds(ids) > 0;
+        configCache.invalidateAll();
+        return flag;
     }
 
     /**
@@ -130,16 +153,12 @@ public class ChatConfigServiceImpl implements IChatConfigService, ConfigService
      */
     @Override
     public String getConfigValue(String category,String configKey) {
-        ChatConfigBo bo = new ChatConfigBo();
-        bo.setCategory(category);
-        bo.setConfigName(configKey);
-        LambdaQueryWrapper<ChatConfig> lqw = buildQueryWrapper(bo);
-        ChatConfigVo chatConfigVo = baseMapper.selectVoOne(lqw);
-        if(chatConfigVo != null){
-            return chatConfigVo.getConfigValue();
-        }else {
-            return "";
+        for (ChatConfigVo chatConfigVo : getCategoryConfig(category)) {
+            if (StringUtils.equals(configKey, chatConfigVo.getConfigName())) {
+                return chatConfigVo.getConfigValue();
+            }
         }
+        return "";
     }
 
     /**
@@ -150,10 +169,20 @@ public class ChatConfigServiceImpl implements IChatConfigService, ConfigService
      */
     @Override
     public List<ChatConfigVo> getSysConfigValue(String category) {
-        ChatConfigBo bo = new ChatConfigBo();
-        bo.setCategory(category);
-        LambdaQueryWrapper<ChatConfig> lqw = buildQueryWrapper(bo);
-        return baseMapper.selectVoList(lqw);
+        return new ArrayList<>(getCategoryConfig(category));
+    }
+
+    /**
+     * 从缓存获取分类下的全部配置, 一次对话中多次读取配置只在首次查询数据库
+     */
+    private List<ChatConfigVo> getCategoryConfig(String category) {
+        // 配置按租户隔离, 开启多租户时缓存键带上租户
+        String cacheKey = TenantHelper.isEnable() ? LoginHelper.getTenantId() + ":" + category : category;
+        return configCache.get(cacheKey, key -> {
+            ChatConfigBo bo = new ChatConfigBo();
+            bo.setCategory(category);
+            return baseMapper.selectVoList(buildQueryWrapper(bo));
+        });
     }
 
 }
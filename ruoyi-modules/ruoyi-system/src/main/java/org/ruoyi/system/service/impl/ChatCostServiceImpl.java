@@ -1,5 +1,6 @@
 package org.ruoyi.system.service.impl;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -7,19 +8,28 @@ import org.ruoyi.common.core.domain.model.LoginUser;
 import org.ruoyi.common.core.exception.ServiceException;
 import org.ruoyi.common.core.exception.base.BaseException;
 import org.ruoyi.common.satoken.utils.LoginHelper;
+import org.ruoyi.system.domain.ChatMessage;
 import org.ruoyi.system.domain.ChatToken;
+import org.ruoyi.system.domain.SysModel;
 import org.ruoyi.system.domain.SysUser;
 import org.ruoyi.system.domain.bo.ChatMessageBo;
 import org.ruoyi.system.domain.bo.SysModelBo;
 import org.ruoyi.system.domain.vo.SysModelVo;
+import org.ruoyi.system.mapper.ChatMessageMapper;
 import org.ruoyi.system.mapper.SysUserMapper;
 import org.ruoyi.system.service.IChatCostService;
+import org.ruoyi.system.service.IChatMessageRecordService;
 import org.ruoyi.system.service.IChatMessageService;
 import org.ruoyi.system.service.IChatTokenService;
 import org.ruoyi.system.service.ISysModelService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * @author hncboy
@@ -33,8 +43,12 @@ public class ChatCostServiceImpl implements IChatCostService {
 
     private final SysUserMapper sysUserMapper;
 
+    private final ChatMessageMapper chatMessageMapper;
+
     private final IChatMessageService chatMessageService;
 
+    private final IChatMessageRecordService chatMessageRecordService;
+
     private final IChatTokenService chatTokenService;
 
     private final ISysModelService sysModelService;
@@ -45,6 +59,13 @@ public class ChatCostServiceImpl implements IChatCostService {
      * @param chatMessageBo
      */
     public void deductToken(ChatMessageBo chatMessageBo) {
+        chatTokenService.withTokenLock(chatMessageBo.getUserId(), chatMessageBo.getModelName(),
+            () -> doDeductToken(chatMessageBo));
+        // 保存消息记录
+        chatMessageRecordService.record(chatMessageBo);
+    }
+
+    private void doDeductToken(ChatMessageBo chatMessageBo) {
         // 计算总token数
         ChatToken chatToken = chatTokenService.queryByUserId(chatMessageBo.getUserId(), chatMessageBo.getModelName());
         if (chatToken == null) {
@@ -84,11 +105,116 @@ public class ChatCostServiceImpl implements IChatCostService {
             chatToken.setUserId(chatMessageBo.getUserId());
             chatTokenService.editToken(chatToken);
         }
-        // 保存消息记录
-        chatMessageService.insertByBo(chatMessageBo);
     }
 
+    /**
+     * 批量结算同一用户同一模型的消息
+     * 按原有规则逐条计算费用(满1000token扣费, 不足部分计入下一次), 待结算token只读写一次,
+     * 余额合并为一次原子扣减, 消息记录批量保存. 调用方需持有该用户模型的待结算token锁.
+     * 带用量ID的消息先排除已保存过的, 用量ID与扣费在同一事务中写入唯一索引, 重复结算时插入失败整体回滚
+     *
+     * @param userId    用户ID
+     * @param modelName 模型名称
+     * @param messages  消息记录
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void settleUsage(Long userId, String modelName, List<ChatMessageBo> messages) {
+        messages = excludeSettled(messages);
+        if (messages.isEmpty()) {
+            return;
+        }
+        SysModel sysModel = sysModelService.selectModelByName(modelName);
+        if (sysModel != null && "2".equals(sysModel.getModelType())) {
+            // 按次数扣费的模型在提问时已扣费
+            for (ChatMessageBo chatMessageBo : messages) {
+                chatMessageBo.setDeductCost(0d);
+                chatMessageBo.setRemark("提问时扣费");
+            }
+            chatMessageService.insertBatchByBo(messages);
+            return;
+        }
+        if (sysModel == null) {
+            log.warn("模型 {} 不存在, 消息按0元结算", modelName);
+        }
+        double modelPrice = sysModel == null ? 0 : sysModel.getModelPrice();
+        ChatToken chatToken = chatTokenService.queryByUserId(userId, modelName);
+        if (chatToken == null) {
+            chatToken = new ChatToken();
+            chatToken.setUserId(userId);
+            chatToken.setModelName(modelName);
+            chatToken.setToken(0);
+        }
+        int pendingTokens = chatToken.getToken();
+        double totalCost = 0;
+        for (ChatMessageBo chatMessageBo : messages) {
+            int totalTokens = pendingTokens + chatMessageBo.getTotalTokens();
+            double numberCost = totalTokens / 1000 * modelPrice;
+            pendingTokens = totalTokens % 1000;
+            chatMessageBo.setDeductCost(numberCost);
+            if (numberCost == 0) {
+                chatMessageBo.setRemark("不满1kToken,计入下一次!");
+            }
+            totalCost += numberCost;
+        }
+        if (chatToken.getId() != null || pendingTokens > 0) {
+            chatToken.setToken(pendingTokens);
+            chatTokenService.editToken(chatToken);
+        }
+        if (totalCost > 0) {
+            settleUserBalance(userId, totalCost);
+        }
+        chatMessageService.insertBatchByBo(messages);
+    }
+
+    /**
+     * 排除用量ID已保存过的消息(已结算)
+     */
+    private List<ChatMessageBo> excludeSettled(List<ChatMessageBo> messages) {
+        Set<String> usageIds = messages.stream().map(ChatMessageBo::getUsageId)
+            .filter(Objects::nonNull).collect(Collectors.toSet());
+        if (usageIds.isEmpty()) {
+            return messages;
+        }
+        Set<String> settled = chatMessageMapper.selectList(new LambdaQueryWrapper<ChatMessage>()
+                .select(ChatMessage::getUsageId)
+                .in(ChatMessage::getUsageId, usageIds))
+            .stream().map(ChatMessage::getUsageId).collect(Collectors.toSet());
+        if (settled.isEmpty()) {
+            return messages;
+        }
+        log.info("用户 {} 有 {} 条用量已结算, 跳过", messages.get(0).getUserId(), settled.size());
+        return messages.stream().filter(message -> !settled.contains(message.getUsageId())).toList();
+    }
+
+    /**
+     * 结算已产生的费用, 费用已经发生, 按实际金额扣减, 余额不足时扣为负数(欠费),
+     * 欠费用户后续提问时余额校验不通过, 充值后自动抵扣
+     */
+    @Override
+    public void settleUserBalance(Long userId, double numberCost) {
+        int rows = sysUserMapper.update(null,
+            new LambdaUpdateWrapper<SysUser>()
+                .setSql("user_balance = user_balance - " + toSqlNumber(numberCost))
+                .eq(SysUser::getUserId, userId));
+        if (rows == 0) {
+            log.warn("结算费用时用户 {} 不存在", userId);
+        }
+    }
 
+    /**
+     * 退还预扣的费用, 与扣减一样在 update 语句中原子累加
+     */
+    @Override
+    public void refundUserBalance(Long userId, double numberCost) {
+        int rows = sysUserMapper.update(null,
+            new LambdaUpdateWrapper<SysUser>()
+                .setSql("user_balance = user_balance + " + toSqlNumber(numberCost))
+                .eq(SysUser::getUserId, userId));
+        if (rows == 0) {
+            log.warn("退还费用时用户 {} 不存在", userId);
+        }
+    }
 
     /**
      * 从用户余额中扣除费用
@@ -98,19 +224,23 @@ public class ChatCostServiceImpl implements IChatCostService {
      */
     @Override
     public void deductUserBalance(Long userId, Double numberCost) {
-        SysUser sysUser = sysUserMapper.selectById(userId);
-        if (sysUser == null) {
-            return;
-        }
-
-        Double userBalance = sysUser.getUserBalance();
-        if (userBalance < numberCost || userBalance == 0) {
+        // 余额判断和扣减在一条 update 中完成, 并发扣费不会丢失
+        int rows = sysUserMapper.update(null,
+            new LambdaUpdateWrapper<SysUser>()
+                .setSql("user_balance = user_balance - " + toSqlNumber(numberCost))
+                .eq(SysUser::getUserId, userId)
+                .gt(SysUser::getUserBalance, 0)
+                .ge(SysUser::getUserBalance, numberCost));
+        if (rows == 0 && sysUserMapper.exists(new LambdaQueryWrapper<SysUser>().eq(SysUser::getUserId, userId))) {
             throw new ServiceException("余额不足, 请充值");
         }
-        sysUserMapper.update(null,
-            new LambdaUpdateWrapper<SysUser>()
-                .set(SysUser::getUserBalance, Math.max(userBalance - numberCost, 0))
-                .eq(SysUser::getUserId, userId));
+    }
+
+    /**
+     * 费用转为 sql 中的数值常量
+     */
+    private static String toSqlNumber(double numberCost) {
+        return BigDecimal.valueOf(numberCost).toPlainString();
     }
 
 
@@ -132,7 +262,7 @@ public class ChatCostServiceImpl implements IChatCostService {
         chatMessageBo.setContent(prompt);
         chatMessageBo.setDeductCost(cost);
         chatMessageBo.setTotalTokens(0);
-        chatMessageService.insertByBo(chatMessageBo);
+        chatMessageRecordService.record(chatMessageBo);
     }
 
     /**
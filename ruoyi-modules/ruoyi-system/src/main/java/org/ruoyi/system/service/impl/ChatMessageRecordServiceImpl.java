@@ -0,0 +1,285 @@
+package org.ruoyi.system.service.impl;
+
+import cn.hutool.core.util.IdUtil;
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.PendingEntry;
+import org.redisson.api.RBatch;
+import org.redisson.api.RStream;
+import org.redisson.api.RStreamAsync;
+import org.redisson.api.StreamMessageId;
+import org.redisson.api.stream.StreamAddArgs;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.ruoyi.common.core.domain.model.LoginUser;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.redis.utils.RedisUtils;
+import org.ruoyi.common.satoken.utils.LoginHelper;
+import org.ruoyi.common.tenant.helper.TenantHelper;
+import org.ruoyi.system.domain.bo.ChatMessageBo;
+import org.ruoyi.system.service.IChatMessageRecordService;
+import org.ruoyi.system.service.IChatMessageService;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 聊天消息异步记录
+ * 对话结束时消息只放入有界缓冲区, 缓冲区达到一批或每秒由后台多行 insert 批量写入, 不再在请求线程逐条 insert.
+ * 数据库写入慢或失败时, 一段时间内新消息和写入失败的批次转存到 Redis Stream, 数据库恢复后再读出写入;
+ * 缓冲区满且 Redis 不可用时退化为同步写入. 应用关闭时写完缓冲区中的全部消息.
+ * 消息ID、创建人和创建时间在记录时确定, 重复写入同一条消息会因主键冲突被忽略
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatMessageRecordServiceImpl implements IChatMessageRecordService {
+
+    private static final String SPILL_KEY = "chat:message:spill";
+
+    private static final String GROUP_NAME = "writer";
+
+    private static final String EVENT_FIELD = "message";
+
+    /**
+     * 每批写入的消息数
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 缓冲区默认容量
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 10000;
+
+    /**
+     * 单批写入超过该耗时视为数据库慢
+     */
+    private static final long SLOW_WRITE_MILLIS = 2000;
+
+    /**
+     * 数据库慢或失败后转存 Redis 的时长
+     */
+    private static final long SPILL_MILLIS = 10_000;
+
+    /**
+     * 转存消息超过该时间未确认(实例宕机)由其他实例重新写入
+     */
+    private static final long RECLAIM_IDLE_MINUTES = 5;
+
+    private final IChatMessageService chatMessageService;
+
+    private final ConfigService configService;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final String consumerName = "consumer-" + IdUtil.fastSimpleUUID();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private BlockingQueue<ChatMessageBo> buffer;
+
+    /**
+     * 在该时间之前新消息直接转存 Redis
+     */
+    private volatile long spillUntil;
+
+    @PostConstruct
+    public void init() {
+        String bufferSize = configService.getConfigValue("chat", "messageBufferSize");
+        buffer = new ArrayBlockingQueue<>(StringUtils.isBlank(bufferSize) ? DEFAULT_BUFFER_SIZE : Integer.parseInt(bufferSize.trim()));
+        try {
+            getSpill().createGroup(GROUP_NAME, StreamMessageId.ALL);
+        } catch (Exception e) {
+            // 消费组已存在
+            log.debug("消息转存消费组已存在: {}", e.getMessage());
+        }
+        scheduledExecutorService.scheduleWithFixedDelay(this::flush, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void record(ChatMessageBo bo) {
+        prepare(bo);
+        if (System.currentTimeMillis() >= spillUntil && buffer.offer(bo)) {
+            if (buffer.size() >= BATCH_SIZE && !flushing.get()) {
+                scheduledExecutorService.execute(this::flush);
+            }
+            return;
+        }
+        if (!spill(List.of(bo))) {
+            // 缓冲区已满且无法转存, 同步写入, 由请求线程承担背压
+            TenantHelper.ignore(() -> chatMessageService.insertByBo(bo));
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drainBuffer();
+            if (System.currentTimeMillis() >= spillUntil) {
+                drainSpill();
+            }
+        } catch (Exception e) {
+            log.error("写入聊天消息失败", e);
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 关闭前不再转存, 缓冲区的消息全部写入数据库, 写入失败的转存 Redis 由其他实例处理
+        spillUntil = 0;
+        drainBuffer();
+    }
+
+    /**
+     * 记录时确定ID、创建人和创建时间, 后台线程中没有登录用户
+     */
+    private void prepare(ChatMessageBo bo) {
+        if (bo.getId() == null) {
+            bo.setId(IdWorker.getId());
+        }
+        if (bo.getCreateTime() == null) {
+            bo.setCreateTime(new Date());
+        }
+        if (bo.getCreateBy() == null) {
+            LoginUser loginUser = null;
+            try {
+                loginUser = LoginHelper.getLoginUser();
+            } catch (Exception e) {
+                // 未登录
+            }
+            if (loginUser != null) {
+                bo.setCreateBy(loginUser.getUserId());
+                bo.setCreateDept(loginUser.getDeptId());
+            } else {
+                bo.setCreateBy(bo.getUserId());
+            }
+        }
+        bo.setUpdateBy(bo.getCreateBy());
+        bo.setUpdateTime(bo.getCreateTime());
+    }
+
+    private void drainBuffer() {
+        List<ChatMessageBo> batch = new ArrayList<>(BATCH_SIZE);
+        while (buffer.drainTo(batch, BATCH_SIZE) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 批量写入, 写入慢或失败时后续消息转存 Redis, 失败的批次同样转存
+     */
+    private void write(List<ChatMessageBo> batch) {
+        long start = System.currentTimeMillis();
+        try {
+            insertBatch(batch);
+        } catch (Exception e) {
+            log.error("批量写入 {} 条聊天消息失败, 转存 Redis: {}", batch.size(), e.getMessage());
+            spillUntil = System.currentTimeMillis() + SPILL_MILLIS;
+            if (!spill(batch)) {
+                log.error("转存失败, 丢失 {} 条聊天消息", batch.size());
+            }
+            return;
+        }
+        long cost = System.currentTimeMillis() - start;
+        if (cost > SLOW_WRITE_MILLIS) {
+            log.warn("批量写入 {} 条聊天消息耗时 {} ms, 暂时转存 Redis", batch.size(), cost);
+            spillUntil = System.currentTimeMillis() + SPILL_MILLIS;
+        }
+    }
+
+    /**
+     * 批量写入, 批次中有已写入过的消息时逐条写入并忽略主键冲突
+     */
+    private void insertBatch(List<ChatMessageBo> batch) {
+        try {
+            TenantHelper.ignore(() -> chatMessageService.insertBatchByBo(batch));
+        } catch (DuplicateKeyException e) {
+            for (ChatMessageBo bo : batch) {
+                try {
+                    TenantHelper.ignore(() -> chatMessageService.insertBatchByBo(List.of(bo)));
+                } catch (DuplicateKeyException ignored) {
+                    // 已写入
+                }
+            }
+        }
+    }
+
+    /**
+     * 转存到 Redis Stream
+     *
+     * @return 是否转存成功
+     */
+    protected boolean spill(List<ChatMessageBo> messages) {
+        try {
+            RBatch batch = RedisUtils.getClient().createBatch();
+            RStreamAsync<String, ChatMessageBo> stream = batch.getStream(SPILL_KEY);
+            for (ChatMessageBo bo : messages) {
+                stream.addAsync(StreamAddArgs.entry(EVENT_FIELD, bo));
+            }
+            batch.execute();
+            return true;
+        } catch (Exception e) {
+            log.error("转存聊天消息失败: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 读出转存的消息写入数据库, 包括其他实例转存后长时间未确认的消息
+     */
+    private void drainSpill() {
+        RStream<String, ChatMessageBo> spill = getSpill();
+        List<PendingEntry> pendingEntries = spill.listPending(GROUP_NAME, StreamMessageId.MIN, StreamMessageId.MAX,
+            RECLAIM_IDLE_MINUTES, TimeUnit.MINUTES, BATCH_SIZE);
+        if (!pendingEntries.isEmpty()) {
+            StreamMessageId[] ids = pendingEntries.stream().map(PendingEntry::getId).toArray(StreamMessageId[]::new);
+            writeSpilled(spill, spill.claim(GROUP_NAME, consumerName, RECLAIM_IDLE_MINUTES, TimeUnit.MINUTES, ids));
+        }
+        Map<StreamMessageId, Map<String, ChatMessageBo>> entries;
+        do {
+            entries = spill.readGroup(GROUP_NAME, consumerName, StreamReadGroupArgs.neverDelivered().count(BATCH_SIZE));
+            writeSpilled(spill, entries);
+        } while (entries.size() >= BATCH_SIZE);
+    }
+
+    private void writeSpilled(RStream<String, ChatMessageBo> spill, Map<StreamMessageId, Map<String, ChatMessageBo>> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<ChatMessageBo> batch = new ArrayList<>(entries.size());
+        entries.values().forEach(fields -> {
+            ChatMessageBo bo = fields.get(EVENT_FIELD);
+            if (bo != null) {
+                batch.add(bo);
+            }
+        });
+        if (!batch.isEmpty()) {
+            // 写入失败抛出异常, 消息保持未确认, 稍后重新认领
+            insertBatch(batch);
+        }
+        StreamMessageId[] ids = entries.keySet().toArray(new StreamMessageId[0]);
+        spill.ack(GROUP_NAME, ids);
+        spill.remove(ids);
+    }
+
+    protected RStream<String, ChatMessageBo> getSpill() {
+        return RedisUtils.getClient().getStream(SPILL_KEY);
+    }
+}
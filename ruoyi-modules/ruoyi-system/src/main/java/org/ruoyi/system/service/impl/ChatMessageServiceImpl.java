@@ -1,6 +1,7 @@
 package org.ruoyi.system.service.impl;
 
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.date.DateUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
@@ -10,18 +11,20 @@ import org.ruoyi.common.core.utils.StringUtils;
 import org.ruoyi.common.mybatis.core.page.PageQuery;
 import org.ruoyi.common.mybatis.core.page.TableDataInfo;
 import org.ruoyi.system.domain.ChatMessage;
+import org.ruoyi.system.domain.ChatUsageDaily;
 import org.ruoyi.system.domain.SysUser;
 import org.ruoyi.system.domain.bo.ChatMessageBo;
 import org.ruoyi.system.domain.vo.ChatMessageVo;
+import org.ruoyi.system.domain.vo.ChatUsageDailyVo;
 import org.ruoyi.system.domain.vo.SysUserVo;
 import org.ruoyi.system.mapper.ChatMessageMapper;
+import org.ruoyi.system.mapper.ChatUsageDailyMapper;
 import org.ruoyi.system.mapper.SysUserMapper;
 import org.ruoyi.system.service.IChatMessageService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +40,19 @@ public class ChatMessageServiceImpl implements IChatMessageService {
     private final ChatMessageMapper baseMapper;
 
     private final SysUserMapper sysUserMapper;
+
+    private final ChatUsageDailyMapper usageDailyMapper;
+
+    /**
+     * 游标分页默认每页条数
+     */
+    private static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * 游标分页每页最大条数
+     */
+    private static final int MAX_PAGE_SIZE = 100;
+
     /**
      * 查询聊天消息
      */
@@ -51,26 +67,66 @@ public class ChatMessageServiceImpl implements IChatMessageService {
     @Override
     public TableDataInfo<ChatMessageVo> queryPageList(ChatMessageBo bo, PageQuery pageQuery) {
         // 根据用户名称查询用户
-        if(StringUtils.isNotEmpty(bo.getUserName())){
+        if (!resolveUserName(bo)) {
+            return TableDataInfo.build();
+        }
+        LambdaQueryWrapper<ChatMessage> lqw = buildQueryWrapper(bo);
+        Page<ChatMessageVo> result = baseMapper.selectVoPage(pageQuery.build(), lqw);
+        fillUserNames(result.getRecords());
+        return TableDataInfo.build(result);
+    }
+
+    /**
+     * 按游标查询聊天消息列表
+     * (create_time, id) 行比较配合 (user_id, create_time, id) 和 (create_time, id) 索引, 直接从游标位置开始扫描
+     */
+    @Override
+    public TableDataInfo<ChatMessageVo> queryCursorList(ChatMessageBo bo, Date lastCreateTime, Long lastId, Integer pageSize) {
+        if (!resolveUserName(bo)) {
+            return TableDataInfo.build();
+        }
+        int limit = pageSize == null || pageSize <= 0 ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+        LambdaQueryWrapper<ChatMessage> lqw = buildQueryWrapper(bo);
+        if (lastCreateTime != null && lastId != null) {
+            lqw.apply("(create_time, id) < ({0}, {1})", lastCreateTime, lastId);
+        }
+        lqw.orderByDesc(ChatMessage::getCreateTime).orderByDesc(ChatMessage::getId)
+            .last("limit " + limit);
+        List<ChatMessageVo> list = baseMapper.selectVoList(lqw);
+        fillUserNames(list);
+        return TableDataInfo.build(list);
+    }
+
+    /**
+     * 用户名称转为用户ID
+     *
+     * @return 用户是否存在
+     */
+    private boolean resolveUserName(ChatMessageBo bo) {
+        if (StringUtils.isNotEmpty(bo.getUserName())) {
             SysUserVo sysUserVo = sysUserMapper.selectUserByUserName(bo.getUserName());
+            if (sysUserVo == null) {
+                return false;
+            }
             bo.setUserId(sysUserVo.getUserId());
         }
+        return true;
+    }
 
-        LambdaQueryWrapper<ChatMessage> lqw = buildQueryWrapper(bo);
-        Page<ChatMessageVo> result = baseMapper.selectVoPage(pageQuery.build(), lqw);
-        if(CollectionUtil.isEmpty(result.getRecords())){
-            return TableDataInfo.build(result);
+    private void fillUserNames(List<ChatMessageVo> records) {
+        if (CollectionUtil.isEmpty(records)) {
+            return;
         }
-        List<Long> userIds = result.getRecords().stream()
+        List<Long> userIds = records.stream()
             .map(ChatMessageVo::getUserId)
+            .distinct()
             .collect(Collectors.toList());
         // 一次性查询所有userName
         Map<Long, String> userIdToUserNameMap = getUserNamesByUserIds(userIds);
         // 设置userName
-        result.getRecords().forEach(chatMessageVo -> {
+        records.forEach(chatMessageVo -> {
             chatMessageVo.setUserName(userIdToUserNameMap.get(chatMessageVo.getUserId()));
         });
-        return TableDataInfo.build(result);
     }
 
     private Map<Long, String> getUserNamesByUserIds(List<Long> userIds) {
@@ -89,6 +145,25 @@ public class ChatMessageServiceImpl implements IChatMessageService {
         return baseMapper.selectVoList(lqw);
     }
 
+    /**
+     * 查询用户每日用量汇总
+     */
+    @Override
+    public List<ChatUsageDailyVo> queryUsageList(Long userId, Date beginDate, Date endDate) {
+        LambdaQueryWrapper<ChatUsageDaily> lqw = Wrappers.lambdaQuery();
+        lqw.eq(userId != null, ChatUsageDaily::getUserId, userId);
+        lqw.ge(beginDate != null, ChatUsageDaily::getUsageDate, beginDate);
+        lqw.le(endDate != null, ChatUsageDaily::getUsageDate, endDate);
+        lqw.orderByDesc(ChatUsageDaily::getUsageDate);
+        List<ChatUsageDailyVo> list = usageDailyMapper.selectVoList(lqw);
+        if (CollectionUtil.isNotEmpty(list)) {
+            Map<Long, String> userNames = getUserNamesByUserIds(
+                list.stream().map(ChatUsageDailyVo::getUserId).distinct().collect(Collectors.toList()));
+            list.forEach(vo -> vo.setUserName(userNames.get(vo.getUserId())));
+        }
+        return list;
+    }
+
     private LambdaQueryWrapper<ChatMessage> buildQueryWrapper(ChatMessageBo bo) {
         Map<String, Object> params = bo.getParams();
         LambdaQueryWrapper<ChatMessage> lqw = Wrappers.lambdaQuery();
@@ -104,16 +179,58 @@ public class ChatMessageServiceImpl implements IChatMessageService {
      * 新增聊天消息
      */
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public Boolean insertByBo(ChatMessageBo bo) {
         ChatMessage add = MapstructUtils.convert(bo, ChatMessage.class);
         validEntityBeforeSave(add);
         boolean flag = baseMapper.insert(add) > 0;
         if (flag) {
             bo.setId(add.getId());
+            incrementUsage(List.of(add));
         }
         return flag;
     }
 
+    /**
+     * 批量新增聊天消息
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Boolean insertBatchByBo(List<ChatMessageBo> boList) {
+        List<ChatMessage> addList = MapstructUtils.convert(boList, ChatMessage.class);
+        boolean flag = baseMapper.insertBatch(addList);
+        if (flag) {
+            incrementUsage(addList);
+        }
+        return flag;
+    }
+
+    /**
+     * 新增的消息按 (用户, 日期, 模型) 合并后累加到每日用量汇总, 与消息在同一事务中
+     */
+    private void incrementUsage(List<ChatMessage> messages) {
+        Map<String, ChatUsageDaily> usages = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            Date createTime = message.getCreateTime() != null ? message.getCreateTime() : new Date();
+            Date usageDate = DateUtil.beginOfDay(createTime);
+            String modelName = StringUtils.blankToDefault(message.getModelName(), "");
+            ChatUsageDaily usage = usages.computeIfAbsent(message.getUserId() + ":" + usageDate.getTime() + ":" + modelName, k -> {
+                ChatUsageDaily daily = new ChatUsageDaily();
+                daily.setUserId(message.getUserId());
+                daily.setUsageDate(usageDate);
+                daily.setModelName(modelName);
+                daily.setMessageCount(0);
+                daily.setTotalTokens(0L);
+                daily.setTotalCost(0d);
+                return daily;
+            });
+            usage.setMessageCount(usage.getMessageCount() + 1);
+            usage.setTotalTokens(usage.getTotalTokens() + (message.getTotalTokens() == null ? 0 : message.getTotalTokens()));
+            usage.setTotalCost(usage.getTotalCost() + (message.getDeductCost() == null ? 0 : message.getDeductCost()));
+        }
+        usageDailyMapper.incrementBatch(usages.values());
+    }
+
     /**
      * 修改聊天消息
      */
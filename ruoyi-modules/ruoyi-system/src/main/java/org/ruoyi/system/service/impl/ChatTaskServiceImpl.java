@@ -0,0 +1,359 @@
+package org.ruoyi.system.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.ruoyi.common.chat.entity.dto.WebSocketMessageDto;
+import org.ruoyi.common.chat.utils.WebSocketUtils;
+import org.ruoyi.common.core.exception.ServiceException;
+import org.ruoyi.common.core.exception.base.BaseException;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.common.core.utils.MapstructUtils;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.core.utils.Threads;
+import org.ruoyi.common.json.utils.JsonUtils;
+import org.ruoyi.common.mybatis.core.page.PageQuery;
+import org.ruoyi.common.mybatis.core.page.TableDataInfo;
+import org.ruoyi.common.satoken.utils.LoginHelper;
+import org.ruoyi.system.domain.ChatTask;
+import org.ruoyi.system.domain.bo.ChatMessageBo;
+import org.ruoyi.system.domain.vo.ChatTaskVo;
+import org.ruoyi.system.mapper.ChatTaskMapper;
+import org.ruoyi.system.service.IChatCostService;
+import org.ruoyi.system.service.IChatMessageRecordService;
+import org.ruoyi.system.service.IChatTaskService;
+import org.ruoyi.system.task.ChatTaskHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.ruoyi.common.chat.constant.WebSocketConstants.USER_SESSION_KEY_PREFIX;
+
+/**
+ * 异步任务Service业务层处理
+ * 绘图、PPT 生成等服务商调用耗时 30 秒到数分钟, 提交时只保存任务并返回ID, 不占用请求线程:
+ * 1. 任务由有界线程池执行, 线程池满时任务保持等待状态, 由定时检查重新分发;
+ * 2. 网络异常、服务商 5xx 等失败按指数退避重试, 请求本身有问题(ServiceException 等)直接失败;
+ * 3. 状态通过条件更新流转(等待 -> 执行中 -> 成功/失败), 多实例或重复分发时只有一个线程能认领任务;
+ *    执行超时(实例宕机或调用卡住)的任务重新执行, 原执行结果晚到时被丢弃. 原调用可能已在服务商完成,
+ *    重新执行会被服务商再收一次费, 因此超时时间按处理器设置(见 ChatTaskHandler#getTimeoutMinutes), 明显长于正常处理时间;
+ * 4. 提交时预扣费用(余额不足直接拒绝), 成功后保存消息记录, 最终失败时退还, 用户不会拿到结果却未付费;
+ * 5. 状态变化通过 WebSocket 推送给任务所属用户(跨实例经 Redis 主题转发), 也可以轮询查询.
+ *
+ * @date 2026/10/19
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChatTaskServiceImpl implements IChatTaskService {
+
+    /**
+     * 失败后最多重试次数
+     */
+    private static final int MAX_RETRIES = 2;
+
+    private static final long BASE_RETRY_DELAY_MILLIS = 2000;
+
+    private static final int DEFAULT_THREADS = 8;
+
+    /**
+     * 检查遗留任务的间隔, 等待超过该时间仍未执行的任务重新分发
+     */
+    private static final long RECOVER_INTERVAL_SECONDS = 30;
+
+    /**
+     * 每次检查最多处理的任务数
+     */
+    private static final int RECOVER_BATCH_SIZE = 100;
+
+    private static final int PROMPT_LENGTH = 1000;
+
+    private static final int ERROR_MSG_LENGTH = 500;
+
+    private final ChatTaskMapper baseMapper;
+
+    private final IChatCostService chatCostService;
+
+    private final IChatMessageRecordService chatMessageRecordService;
+
+    private final ConfigService configService;
+
+    private final ScheduledExecutorService scheduledExecutorService;
+
+    private final List<ChatTaskHandler> handlers;
+
+    /**
+     * 已放入线程池队列的任务, 避免重复分发
+     */
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+
+    private Map<String, ChatTaskHandler> handlerMap;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        handlerMap = handlers.stream().collect(Collectors.toMap(ChatTaskHandler::getType, Function.identity()));
+        String threadsValue = configService.getConfigValue("chat", "taskThreads");
+        int threads = StringUtils.isBlank(threadsValue) ? DEFAULT_THREADS : Integer.parseInt(threadsValue.trim());
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(threads * 16),
+            new BasicThreadFactory.Builder().namingPattern("chat-task-%d").daemon(true).build(),
+            new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        scheduledExecutorService.scheduleWithFixedDelay(this::recover,
+            RECOVER_INTERVAL_SECONDS, RECOVER_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // 未执行完的任务保持执行中, 超时后由其他实例重新执行
+        Threads.shutdownAndAwaitTermination(executor);
+    }
+
+    @Override
+    public Long submit(String taskType, String prompt, Object params) {
+        ChatTaskHandler handler = handlerMap.get(taskType);
+        if (handler == null) {
+            throw new ServiceException("不支持的任务类型: " + taskType);
+        }
+        Long userId = LoginHelper.getUserId();
+        ChatTask task = new ChatTask();
+        task.setUserId(userId);
+        task.setTaskType(taskType);
+        task.setStatus(ChatTask.STATUS_PENDING);
+        task.setPrompt(StringUtils.substring(prompt, 0, PROMPT_LENGTH));
+        task.setTaskParams(JsonUtils.toJsonString(params));
+        task.setRetryCount(0);
+        double cost = handler.getCost(task);
+        task.setCost(cost);
+        if (cost > 0) {
+            // 预扣费用, 余额判断和扣减是一条 update, 余额不足时抛出异常
+            chatCostService.checkUserGrade();
+            chatCostService.deductUserBalance(userId, cost);
+        }
+        try {
+            baseMapper.insert(task);
+        } catch (RuntimeException e) {
+            refund(task);
+            throw e;
+        }
+        dispatch(task.getId());
+        return task.getId();
+    }
+
+    @Override
+    public ChatTaskVo queryById(Long id) {
+        return baseMapper.selectVoOne(new LambdaQueryWrapper<ChatTask>()
+            .eq(ChatTask::getId, id)
+            .eq(ChatTask::getUserId, LoginHelper.getUserId()));
+    }
+
+    @Override
+    public TableDataInfo<ChatTaskVo> queryPageList(String taskType, PageQuery pageQuery) {
+        LambdaQueryWrapper<ChatTask> lqw = new LambdaQueryWrapper<ChatTask>()
+            .eq(ChatTask::getUserId, LoginHelper.getUserId())
+            .eq(StringUtils.isNotBlank(taskType), ChatTask::getTaskType, taskType)
+            .orderByDesc(ChatTask::getCreateTime);
+        Page<ChatTaskVo> result = baseMapper.selectVoPage(pageQuery.build(), lqw);
+        return TableDataInfo.build(result);
+    }
+
+    /**
+     * 放入线程池执行, 线程池满时保持等待, 由定时检查重新分发
+     */
+    private void dispatch(Long id) {
+        if (!queued.add(id)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                queued.remove(id);
+                run(id);
+            });
+        } catch (RejectedExecutionException e) {
+            queued.remove(id);
+            log.warn("任务线程池已满, 任务 {} 稍后执行", id);
+        }
+    }
+
+    private void run(Long id) {
+        ChatTask task = baseMapper.selectById(id);
+        if (task == null || !ChatTask.STATUS_PENDING.equals(task.getStatus())) {
+            return;
+        }
+        // 认领任务, 其他线程已认领时放弃
+        if (!transit(task, ChatTask.STATUS_RUNNING, wrapper -> wrapper)) {
+            return;
+        }
+        task.setStatus(ChatTask.STATUS_RUNNING);
+        notify(task);
+        Object result;
+        try {
+            result = handlerMap.get(task.getTaskType()).execute(task);
+        } catch (Exception e) {
+            onFailure(task, e);
+            return;
+        }
+        onSuccess(task, result);
+    }
+
+    private void onSuccess(ChatTask task, Object result) {
+        String taskResult = JsonUtils.toJsonString(result);
+        Date finishTime = new Date();
+        boolean updated = transit(task, ChatTask.STATUS_SUCCESS, wrapper -> wrapper
+            .set(ChatTask::getTaskResult, taskResult)
+            .set(ChatTask::getErrorMsg, null)
+            .set(ChatTask::getFinishTime, finishTime));
+        if (!updated) {
+            log.warn("任务 {} 已超时并重新执行, 丢弃本次结果", task.getId());
+            return;
+        }
+        settle(task);
+        task.setStatus(ChatTask.STATUS_SUCCESS);
+        task.setTaskResult(taskResult);
+        task.setErrorMsg(null);
+        task.setFinishTime(finishTime);
+        notify(task);
+    }
+
+    private void onFailure(ChatTask task, Exception e) {
+        String errorMsg = StringUtils.substring(StringUtils.blankToDefault(e.getMessage(), e.getClass().getSimpleName()),
+            0, ERROR_MSG_LENGTH);
+        boolean retryable = !(e instanceof ServiceException || e instanceof BaseException || e instanceof IllegalArgumentException);
+        if (retryable && task.getRetryCount() < MAX_RETRIES) {
+            int retryCount = task.getRetryCount() + 1;
+            if (transit(task, ChatTask.STATUS_PENDING, wrapper -> wrapper
+                .set(ChatTask::getRetryCount, retryCount)
+                .set(ChatTask::getErrorMsg, errorMsg))) {
+                long delay = BASE_RETRY_DELAY_MILLIS << (retryCount - 1);
+                log.warn("任务 {} 执行失败, {} ms 后第 {} 次重试: {}", task.getId(), delay, retryCount, errorMsg);
+                scheduledExecutorService.schedule(() -> dispatch(task.getId()), delay, TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+        log.error("任务 {} 执行失败: {}", task.getId(), errorMsg);
+        Date finishTime = new Date();
+        if (transit(task, ChatTask.STATUS_FAILED, wrapper -> wrapper
+            .set(ChatTask::getErrorMsg, errorMsg)
+            .set(ChatTask::getFinishTime, finishTime))) {
+            // 只有置为失败成功的线程退还, 不会重复退还
+            refund(task);
+            task.setStatus(ChatTask.STATUS_FAILED);
+            task.setErrorMsg(errorMsg);
+            task.setFinishTime(finishTime);
+            notify(task);
+        }
+    }
+
+    /**
+     * 任务成功, 确认预扣的费用并保存消息记录
+     */
+    private void settle(ChatTask task) {
+        double cost = task.getCost() == null ? 0 : task.getCost();
+        ChatMessageBo chatMessageBo = new ChatMessageBo();
+        chatMessageBo.setUserId(task.getUserId());
+        chatMessageBo.setModelName(task.getTaskType());
+        chatMessageBo.setContent(task.getPrompt());
+        chatMessageBo.setDeductCost(cost);
+        chatMessageBo.setTotalTokens(0);
+        chatMessageRecordService.record(chatMessageBo);
+    }
+
+    /**
+     * 退还预扣的费用
+     */
+    private void refund(ChatTask task) {
+        double cost = task.getCost() == null ? 0 : task.getCost();
+        if (cost <= 0) {
+            return;
+        }
+        try {
+            chatCostService.refundUserBalance(task.getUserId(), cost);
+        } catch (Exception e) {
+            log.error("任务 {} 退还费用 {} 失败", task.getId(), cost, e);
+        }
+    }
+
+    /**
+     * 定时检查遗留任务: 等待过久的重新分发, 执行超时的重新执行或置为失败
+     */
+    private void recover() {
+        try {
+            Date pendingBefore = new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(RECOVER_INTERVAL_SECONDS));
+            List<ChatTask> pending = baseMapper.selectList(new LambdaQueryWrapper<ChatTask>()
+                .select(ChatTask::getId)
+                .eq(ChatTask::getStatus, ChatTask.STATUS_PENDING)
+                .lt(ChatTask::getUpdateTime, pendingBefore)
+                .last("limit " + RECOVER_BATCH_SIZE));
+            pending.forEach(task -> dispatch(task.getId()));
+
+            for (ChatTaskHandler handler : handlerMap.values()) {
+                long timeoutMinutes = Math.max(getTimeoutMinutes(), handler.getTimeoutMinutes());
+                Date runningBefore = new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(timeoutMinutes));
+                List<ChatTask> timeout = baseMapper.selectList(new LambdaQueryWrapper<ChatTask>()
+                    .eq(ChatTask::getStatus, ChatTask.STATUS_RUNNING)
+                    .eq(ChatTask::getTaskType, handler.getType())
+                    .lt(ChatTask::getUpdateTime, runningBefore)
+                    .last("limit " + RECOVER_BATCH_SIZE));
+                for (ChatTask task : timeout) {
+                    onFailure(task, new TimeoutException("任务执行超时"));
+                }
+            }
+        } catch (Exception e) {
+            log.error("检查遗留任务失败", e);
+        }
+    }
+
+    /**
+     * 按当前状态和重试次数条件更新任务状态, 同一时刻只有一个线程能更新成功
+     *
+     * @param task   任务(更新前的状态)
+     * @param status 目标状态
+     * @param extra  其他要更新的字段
+     * @return 是否更新成功
+     */
+    private boolean transit(ChatTask task, String status,
+                            Function<LambdaUpdateWrapper<ChatTask>, LambdaUpdateWrapper<ChatTask>> extra) {
+        LambdaUpdateWrapper<ChatTask> wrapper = new LambdaUpdateWrapper<ChatTask>()
+            .set(ChatTask::getStatus, status)
+            .set(ChatTask::getUpdateTime, new Date())
+            .eq(ChatTask::getId, task.getId())
+            .eq(ChatTask::getStatus, task.getStatus())
+            .eq(ChatTask::getRetryCount, task.getRetryCount());
+        return baseMapper.update(null, extra.apply(wrapper)) > 0;
+    }
+
+    /**
+     * 配置的超时时间, 未配置时为 0, 使用处理器的超时时间
+     */
+    private long getTimeoutMinutes() {
+        String value = configService.getConfigValue("chat", "taskTimeoutMinutes");
+        return StringUtils.isBlank(value) ? 0 : Long.parseLong(value.trim());
+    }
+
+    /**
+     * 推送任务状态, 用户不在线时忽略
+     */
+    private void notify(ChatTask task) {
+        try {
+            Map<String, Object> message = new LinkedHashMap<>();
+            message.put("type", "task");
+            message.put("data", MapstructUtils.convert(task, ChatTaskVo.class));
+            WebSocketMessageDto webSocketMessage = new WebSocketMessageDto();
+            webSocketMessage.setSessionKeys(List.of(USER_SESSION_KEY_PREFIX + task.getUserId()));
+            webSocketMessage.setMessage(JsonUtils.toJsonString(message));
+            WebSocketUtils.publishMessage(webSocketMessage);
+        } catch (Exception e) {
+            log.warn("推送任务 {} 状态失败: {}", task.getId(), e.getMessage());
+        }
+    }
+}
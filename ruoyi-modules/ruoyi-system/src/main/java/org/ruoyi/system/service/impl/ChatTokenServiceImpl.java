@@ -5,6 +5,8 @@ import org.ruoyi.system.domain.ChatToken;
 import org.ruoyi.system.mapper.ChatTokenMapper;
 import org.ruoyi.system.service.IChatTokenService;
 import lombok.RequiredArgsConstructor;
+import org.redisson.api.RLock;
+import org.ruoyi.common.redis.utils.RedisUtils;
 import org.springframework.stereotype.Service;
 
 /**
@@ -17,6 +19,8 @@ import org.springframework.stereotype.Service;
 @Service
 public class ChatTokenServiceImpl implements IChatTokenService {
 
+    private static final String TOKEN_LOCK_KEY = "chat:token:lock:";
+
     private final ChatTokenMapper baseMapper;
 
     @Override
@@ -52,4 +56,19 @@ public class ChatTokenServiceImpl implements IChatTokenService {
             baseMapper.updateById(chatToken);
         }
     }
+
+    /**
+     * 在用户模型的待结算token锁内执行
+     *
+     */
+    @Override
+    public void withTokenLock(Long userId, String modelName, Runnable runnable) {
+        RLock lock = RedisUtils.getClient().getLock(TOKEN_LOCK_KEY + userId + ":" + modelName);
+        lock.lock();
+        try {
+            runnable.run();
+        } finally {
+            lock.unlock();
+        }
+    }
 }
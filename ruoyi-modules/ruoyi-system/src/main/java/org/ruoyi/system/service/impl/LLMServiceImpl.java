@@ -1,17 +1,17 @@
 package org.ruoyi.system.service.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.ruoyi.common.chat.cache.CompletionCache;
 import org.ruoyi.common.chat.config.ChatConfig;
 import org.ruoyi.common.chat.openai.OpenAiStreamClient;
+import org.ruoyi.common.chat.sse.ChatDeltaParser;
 import org.ruoyi.common.core.utils.SpringUtils;
 import org.ruoyi.knowledgegraph.service.impl.LLMService;
 import org.ruoyi.system.domain.SysModel;
 import org.ruoyi.system.service.ISysModelService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -24,7 +24,6 @@ import java.util.concurrent.atomic.AtomicReference;
 import okhttp3.Response;
 import okhttp3.sse.EventSource;
 import okhttp3.sse.EventSourceListener;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.ruoyi.common.chat.entity.chat.*;
 
@@ -34,24 +33,22 @@ import org.ruoyi.common.chat.entity.chat.*;
 public class LLMServiceImpl implements LLMService {
 
     private static final Logger log = LoggerFactory.getLogger(LLMServiceImpl.class);
-    private OpenAiStreamClient openAiStreamClient;
     private final ChatConfig chatConfig;
 
+    private final CompletionCache completionCache;
 
-    @Autowired
-    private ObjectMapper objectMapper;
     private static final ISysModelService sysModelService = SpringUtils.getBean(ISysModelService.class);
 
     @Override
     public String askLLM(String systemPrompt, String userPrompt, String modelName, Map<String, Object> params) {
         try {
             // 根据模型配置获取客户端
-            openAiStreamClient = chatConfig.getOpenAiStreamClient();
+            OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
 
 
             SysModel sysModel = sysModelService.selectModelByName(modelName);
             if (sysModel != null) {
-                openAiStreamClient = chatConfig.createOpenAiStreamClient(sysModel.getApiHost(), sysModel.getApiKey());
+                openAiStreamClient = chatConfig.getOpenAiStreamClient(sysModel.getApiHost(), sysModel.getApiKey());
             }
             // 构建消息
             List<Message> messages = new ArrayList<>();
@@ -93,10 +90,17 @@ public class LLMServiceImpl implements LLMService {
                         .temperature(temperature)
                         .topP(topP)
                         .build();
+                String cacheKey = completionCache.getKey(openAiStreamClient, completion);
+                String cached = completionCache.get("llm", cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
 
                 ChatCompletionResponse response = openAiStreamClient.chatCompletion(completion);
                 if (response != null && response.getChoices() != null && !response.getChoices().isEmpty()) {
-                    return (String) response.getChoices().get(0).getMessage().getContent();
+                    String content = (String) response.getChoices().get(0).getMessage().getContent();
+                    completionCache.put(cacheKey, completion, content);
+                    return content;
                 }
                 return "";
             } else {
@@ -111,19 +115,25 @@ public class LLMServiceImpl implements LLMService {
                         .topP(topP)
                         .stream(true)
                         .build();
+                String cacheKey = completionCache.getKey(openAiStreamClient, completion);
+                String cached = completionCache.get("llm", cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
 
+                AtomicReference<EventSource> eventSourceRef = new AtomicReference<>();
                 openAiStreamClient.streamChatCompletion(completion, new EventSourceListener() {
+                    @Override
+                    public void onOpen(EventSource eventSource, Response response) {
+                        eventSourceRef.set(eventSource);
+                    }
+
                     @Override
                     public void onEvent(EventSource eventSource, String id, String type, String data) {
                         if (!"[DONE]".equals(data)) {
                             try {
-                                JsonNode node = objectMapper.readTree(data);
-                                if (node.has("choices") &&
-                                        node.get("choices").size() > 0 &&
-                                        node.get("choices").get(0).has("delta") &&
-                                        node.get("choices").get(0).get("delta").has("content")) {
-
-                                    String content = node.get("choices").get(0).get("delta").get("content").asText();
+                                String content = ChatDeltaParser.parse(data).content();
+                                if (content != null) {
                                     contentBuilder.get().append(content);
                                 }
                             } catch (Exception e) {
@@ -134,6 +144,8 @@ public class LLMServiceImpl implements LLMService {
 
                     @Override
                     public void onClosed(EventSource eventSource) {
+                        // 正常结束才缓存, 超时或失败的不完整回复不缓存
+                        completionCache.put(cacheKey, completion, contentBuilder.get().toString());
                         latch.countDown();
                     }
 
@@ -149,8 +161,13 @@ public class LLMServiceImpl implements LLMService {
 
                 // 等待响应完成，最多30秒
                 try {
-                    latch.await(30, TimeUnit.SECONDS);
+                    if (!latch.await(30, TimeUnit.SECONDS)) {
+                        // 超时后取消上游请求, 不再继续消耗 token
+                        log.warn("等待模型响应超时, 取消请求");
+                        cancel(eventSourceRef.get());
+                    }
                 } catch (InterruptedException e) {
+                    cancel(eventSourceRef.get());
                     Thread.currentThread().interrupt();
                     log.error("等待响应被中断", e);
                 }
@@ -167,7 +184,7 @@ public class LLMServiceImpl implements LLMService {
     public String askLLM(String systemPrompt, String userPrompt, Map<String, Object> params) {
         try {
             // 获取客户端
-            openAiStreamClient = chatConfig.getOpenAiStreamClient();
+            OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
 
             // 构建消息
             List<Message> messages = new ArrayList<>();
@@ -190,10 +207,17 @@ public class LLMServiceImpl implements LLMService {
                         .temperature(temperature)
                         .topP(topP)
                         .build();
+                String cacheKey = completionCache.getKey(openAiStreamClient, completion);
+                String cached = completionCache.get("llm", cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
 
                 ChatCompletionResponse response = openAiStreamClient.chatCompletion(completion);
                 if (response != null && response.getChoices() != null && !response.getChoices().isEmpty()) {
-                    return (String) response.getChoices().get(0).getMessage().getContent();
+                    String content = (String) response.getChoices().get(0).getMessage().getContent();
+                    completionCache.put(cacheKey, completion, content);
+                    return content;
                 }
                 return "";
             } else {
@@ -208,8 +232,19 @@ public class LLMServiceImpl implements LLMService {
                         .topP(topP)
                         .stream(true)
                         .build();
+                String cacheKey = completionCache.getKey(openAiStreamClient, completion);
+                String cached = completionCache.get("llm", cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
 
+                AtomicReference<EventSource> eventSourceRef = new AtomicReference<>();
                 openAiStreamClient.streamChatCompletion(completion, new EventSourceListener() {
+                    @Override
+                    public void onOpen(EventSource eventSource, Response response) {
+                        eventSourceRef.set(eventSource);
+                    }
+
                     @Override
                     public void onEvent(EventSource eventSource, String id, String type, String data) {
                         if (!"[DONE]".equals(data)) {
@@ -225,6 +260,8 @@ public class LLMServiceImpl implements LLMService {
 
                     @Override
                     public void onClosed(EventSource eventSource) {
+                        // 正常结束才缓存, 超时或失败的不完整回复不缓存
+                        completionCache.put(cacheKey, completion, contentBuilder.get().toString());
                         latch.countDown();
                     }
 
@@ -237,8 +274,13 @@ public class LLMServiceImpl implements LLMService {
 
                 // 等待响应完成，最多30秒
                 try {
-                    latch.await(30, TimeUnit.SECONDS);
+                    if (!latch.await(30, TimeUnit.SECONDS)) {
+                        // 超时后取消上游请求, 不再继续消耗 token
+                        log.warn("等待模型响应超时, 取消请求");
+                        cancel(eventSourceRef.get());
+                    }
                 } catch (InterruptedException e) {
+                    cancel(eventSourceRef.get());
                     Thread.currentThread().interrupt();
                     log.error("等待响应被中断", e);
                 }
@@ -254,18 +296,18 @@ public class LLMServiceImpl implements LLMService {
     // 工具方法：从响应数据中提取content
     private String extractContentFromData(String data) {
         try {
-            // 这里需要根据实际的响应格式进行解析
-            // 假设使用JSON格式
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode node = mapper.readTree(data);
-            if (node.has("choices") && node.get("choices").size() > 0 &&
-                    node.get("choices").get(0).has("delta") &&
-                    node.get("choices").get(0).get("delta").has("content")) {
-                return node.get("choices").get(0).get("delta").get("content").asText();
-            }
+            String content = ChatDeltaParser.parse(data).content();
+            return content == null ? "" : content;
         } catch (Exception e) {
             log.error("解析内容失败", e);
         }
         return "";
     }
-}
\ No newline at end of file
+
+    // 工具方法：取消尚未结束的流式请求
+    private void cancel(EventSource eventSource) {
+        if (eventSource != null) {
+            eventSource.cancel();
+        }
+    }
+}
@@ -122,12 +122,17 @@ public class PptServiceImpl implements IPptService {
         } catch (Exception e) {
             throw new NotLoginException(NotLoginException.NOT_TOKEN_MESSAGE, NotLoginException.NOT_TOKEN, NotLoginException.NOT_TOKEN);
         }
-        String userId = String.valueOf(loginUser.getUserId());
+        return getApiToken(loginUser.getUserId());
+    }
+
+    @Override
+    public String getApiToken(Long userId) {
+        String uid = String.valueOf(userId);
         // 创建 api token (有效期2小时，同一个 uid 创建时之前的 token 会在10秒内失效)
-        String apiToken = RedisUtils.getCacheObject(Constants.WDD_TOKEN_KEY + userId);
+        String apiToken = RedisUtils.getCacheObject(Constants.WDD_TOKEN_KEY + uid);
         if (StrUtil.isEmpty(apiToken)) {
-            apiToken = WddPptApi.createApiToken(getKey("apiKey"), userId, null);
-            RedisUtils.setCacheObject(Constants.WDD_TOKEN_KEY, apiToken, Duration.ofMinutes(Constants.WDD_TOKEN_EXPIRATION));
+            apiToken = WddPptApi.createApiToken(getKey("apiKey"), uid, null);
+            RedisUtils.setCacheObject(Constants.WDD_TOKEN_KEY + uid, apiToken, Duration.ofMinutes(Constants.WDD_TOKEN_EXPIRATION));
         }
         return apiToken;
     }
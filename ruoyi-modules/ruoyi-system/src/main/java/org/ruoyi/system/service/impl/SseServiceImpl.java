@@ -1,7 +1,6 @@
 package org.ruoyi.system.service.impl;
 
 import cn.dev33.satoken.stp.StpUtil;
-import com.alibaba.fastjson.JSONObject;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zhipu.oapi.ClientV4;
 import com.zhipu.oapi.service.v4.tools.*;
@@ -15,8 +14,8 @@ import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.ruoyi.common.chat.cache.CompletionCache;
 import org.ruoyi.common.chat.config.ChatConfig;
-import org.ruoyi.common.chat.config.LocalCache;
 import org.ruoyi.common.chat.domain.request.ChatRequest;
 import org.ruoyi.common.chat.domain.request.Dall3Request;
 import org.ruoyi.common.chat.entity.Tts.TextToSpeech;
@@ -26,15 +25,19 @@ import org.ruoyi.common.chat.entity.images.Image;
 import org.ruoyi.common.chat.entity.images.ImageResponse;
 import org.ruoyi.common.chat.entity.images.Item;
 import org.ruoyi.common.chat.entity.images.ResponseFormat;
+import org.ruoyi.common.chat.entity.whisper.Transcriptions;
 import org.ruoyi.common.chat.entity.whisper.WhisperResponse;
+import org.ruoyi.common.chat.moderation.ModerationService;
 import org.ruoyi.common.chat.openai.OpenAiStreamClient;
-import org.ruoyi.common.chat.openai.plugin.PluginAbstract;
 import org.ruoyi.common.chat.plugin.CmdPlugin;
-import org.ruoyi.common.chat.plugin.CmdReq;
+import org.ruoyi.common.chat.plugin.PluginRegistry;
 import org.ruoyi.common.chat.plugin.SqlPlugin;
-import org.ruoyi.common.chat.plugin.SqlReq;
+import org.ruoyi.common.chat.sse.ChatStreamCoalescer;
+import org.ruoyi.common.chat.sse.ChatStreamManager;
+import org.ruoyi.common.chat.sse.ChatStreamManager.ChatStream;
 import org.ruoyi.common.chat.utils.TikTokensUtil;
 import org.ruoyi.common.core.domain.model.LoginUser;
+import org.ruoyi.common.core.exception.ServiceException;
 import org.ruoyi.common.core.exception.base.BaseException;
 import org.ruoyi.common.core.service.ConfigService;
 import org.ruoyi.common.core.utils.StringUtils;
@@ -58,20 +61,14 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URLEncoder;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 
 @Service
@@ -79,14 +76,12 @@ import java.util.concurrent.atomic.AtomicReference;
 @RequiredArgsConstructor
 public class SseServiceImpl implements ISseService {
 
-    private OpenAiStreamClient openAiStreamClient;
-
     private final ChatConfig chatConfig;
 
 
     private final IChatCostService chatService;
 
-    private final IChatMessageService chatMessageService;
+    private final IChatMessageRecordService chatMessageRecordService;
 
     private final ISysModelService sysModelService;
 
@@ -94,7 +89,17 @@ public class SseServiceImpl implements ISseService {
 
     private final IChatGptsService chatGptsService;
 
-    static final OkHttpClient HTTP_CLIENT = new OkHttpClient().newBuilder().build();
+    private final ChatStreamManager chatStreamManager;
+
+    private final ModerationService moderationService;
+
+    private final CompletionCache completionCache;
+
+    private final ChatStreamCoalescer chatStreamCoalescer;
+
+    private final IChatBillingService chatBillingService;
+
+    private final PluginRegistry pluginRegistry;
 
     private static final String requestIdTemplate = "mycompany-%d";
 
@@ -108,9 +113,17 @@ public class SseServiceImpl implements ISseService {
 
     @Override
     public SseEmitter sseChat(ChatRequest chatRequest, HttpServletRequest request) {
-        openAiStreamClient = chatConfig.getOpenAiStreamClient();
+        OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
         SseEmitter sseEmitter = new SseEmitter(0L);
-        SSEEventSourceListener openAIEventSourceListener = new SSEEventSourceListener(sseEmitter);
+        ChatStream stream;
+        try {
+            // 按租户限制同时进行的对话数, 客户端断开时取消上游请求
+            stream = chatStreamManager.open(sseEmitter);
+        } catch (ServiceException e) {
+            sendErrorEvent(sseEmitter, e.getMessage());
+            return sseEmitter;
+        }
+        SSEEventSourceListener openAIEventSourceListener = new SSEEventSourceListener(sseEmitter, stream);
         // 获取对话消息列表
         List<Message> messages = chatRequest.getMessages();
 
@@ -125,12 +138,17 @@ public class SseServiceImpl implements ISseService {
                 chatString = (String) content;
             }
 
-            String configValue = getKey("enabled");
-            if (Boolean.parseBoolean(configValue)) {
-                // 判断文本是否合规
-                String type = textReview(chatString);
-                // 审核状态 1 代表合法
-                if (!"1".equals(type) && StringUtils.isNotEmpty(type)) {
+            if (moderationService.isEnabled()) {
+                String reviewText = chatString;
+                if (moderationService.isOptimistic()) {
+                    // 审核与生成同时进行, 不合规时中断输出
+                    chatStreamManager.execute(stream, () -> {
+                        if (!moderationService.review(reviewText).compliant()) {
+                            sendErrorEvent(sseEmitter, "文本不合规,请修改!");
+                        }
+                    });
+                } else if (!moderationService.review(reviewText).compliant()) {
+                    // 判断文本是否合规
                     throw new BaseException("文本不合规,请修改!");
                 }
             }
@@ -161,7 +179,7 @@ public class SseServiceImpl implements ISseService {
             }
 
             if (StpUtil.isLogin()) {
-                LocalCache.CACHE.put("userId", getUserId());
+                openAIEventSourceListener.setUserId(getUserId());
 
                 ChatMessageBo chatMessageBo = new ChatMessageBo();
                 chatMessageBo.setUserId(getUserId());
@@ -174,7 +192,7 @@ public class SseServiceImpl implements ISseService {
                     // 如果模型不存在默认使用token扣费方式
                     processByToken(chatRequest.getModel(), chatString, chatMessageBo);
                 } else {
-                    openAiStreamClient = chatConfig.createOpenAiStreamClient(sysModel.getApiHost(), sysModel.getApiKey());
+                    openAiStreamClient = chatConfig.getOpenAiStreamClient(sysModel.getApiHost(), sysModel.getApiKey());
                     if (StringUtils.isNotEmpty(chatRequest.getAppId())) { // 设置应用的系统角色为描述
                         ChatGptsVo chatGptsVo = chatGptsService.queryById(Long.valueOf(chatRequest.getAppId()));
                         Message sysMessage = Message.builder().content(chatGptsVo.getSystemPrompt()).role(Message.Role.SYSTEM).build();
@@ -194,128 +212,149 @@ public class SseServiceImpl implements ISseService {
                     }
                 }
             }
-            String zhipuValue = configService.getConfigValue("zhipu", "key");
-            // 添加联网信息
-            if(StringUtils.isNotEmpty(zhipuValue)){
-                ClientV4 client = new ClientV4.Builder(zhipuValue)
-                        .networkConfig(300, 100, 100, 100, TimeUnit.SECONDS)
-                        .connectionPool(new okhttp3.ConnectionPool(8, 1, TimeUnit.SECONDS))
-                        .build();
-
-                SearchChatMessage jsonNodes = new SearchChatMessage();
-                jsonNodes.setRole(Message.Role.USER.getName());
-                jsonNodes.setContent(chatString);
-
-                String requestId = String.format(requestIdTemplate, System.currentTimeMillis());
-                WebSearchParamsRequest chatCompletionRequest = WebSearchParamsRequest.builder()
-                        .model("web-search-pro")
-                        .stream(Boolean.TRUE)
-                        .messages(Collections.singletonList(jsonNodes))
-                        .requestId(requestId)
-                        .build();
-                WebSearchApiResponse webSearchApiResponse = client.webSearchProStreamingInvoke(chatCompletionRequest);
-                List<ChoiceDelta> choices = new ArrayList<>();
-                if (webSearchApiResponse.isSuccess()) {
-                    AtomicBoolean isFirst = new AtomicBoolean(true);
-
-                    AtomicReference<WebSearchPro> lastAccumulator = new AtomicReference<>();
-
-                    webSearchApiResponse.getFlowable().map(result -> result)
-                            .doOnNext(accumulator -> {
-                                {
-                                    if (isFirst.getAndSet(false)) {
-                                        log.info("Response: ");
-                                    }
-                                    ChoiceDelta delta = accumulator.getChoices().get(0).getDelta();
-                                    if (delta != null && delta.getToolCalls() != null) {
-                                        log.info("tool_calls: {}", mapper.writeValueAsString(delta.getToolCalls()));
-                                    }
-                                    choices.add(delta);
+            // 联网搜索、插件调用会阻塞等待, 放到对话线程池执行, 模型流式输出走 OkHttp 异步回调
+            String question = chatString;
+            OpenAiStreamClient streamClient = openAiStreamClient;
+            chatStreamManager.execute(stream, () -> {
+                try {
+                    streamChat(chatRequest, messages, question, streamClient, sseEmitter, stream, openAIEventSourceListener);
+                } catch (Exception e) {
+                    sendErrorEvent(sseEmitter, e.getMessage());
+                }
+            });
+        } catch (Exception e) {
+            String message = e.getMessage();
+            sendErrorEvent(sseEmitter, message);
+            return sseEmitter;
+        }
+        return sseEmitter;
+    }
+
+    /**
+     * 联网搜索后调用插件或发起流式对话
+     */
+    private void streamChat(ChatRequest chatRequest, List<Message> messages, String chatString,
+                            OpenAiStreamClient openAiStreamClient, SseEmitter sseEmitter, ChatStream stream,
+                            SSEEventSourceListener listener) throws IOException {
+        String zhipuValue = configService.getConfigValue("zhipu", "key");
+        // 添加联网信息
+        if(StringUtils.isNotEmpty(zhipuValue)){
+            ClientV4 client = new ClientV4.Builder(zhipuValue)
+                    .networkConfig(300, 100, 100, 100, TimeUnit.SECONDS)
+                    .connectionPool(new okhttp3.ConnectionPool(8, 1, TimeUnit.SECONDS))
+                    .build();
+
+            SearchChatMessage jsonNodes = new SearchChatMessage();
+            jsonNodes.setRole(Message.Role.USER.getName());
+            jsonNodes.setContent(chatString);
+
+            String requestId = String.format(requestIdTemplate, System.currentTimeMillis());
+            WebSearchParamsRequest chatCompletionRequest = WebSearchParamsRequest.builder()
+                    .model("web-search-pro")
+                    .stream(Boolean.TRUE)
+                    .messages(Collections.singletonList(jsonNodes))
+                    .requestId(requestId)
+                    .build();
+            WebSearchApiResponse webSearchApiResponse = client.webSearchProStreamingInvoke(chatCompletionRequest);
+            List<ChoiceDelta> choices = new ArrayList<>();
+            if (webSearchApiResponse.isSuccess()) {
+                AtomicBoolean isFirst = new AtomicBoolean(true);
+
+                AtomicReference<WebSearchPro> lastAccumulator = new AtomicReference<>();
+
+                webSearchApiResponse.getFlowable().map(result -> result)
+                        .doOnNext(accumulator -> {
+                            {
+                                if (isFirst.getAndSet(false)) {
+                                    log.info("Response: ");
                                 }
-                            })
-                            .doOnComplete(() -> System.out.println("Stream completed."))
-                            .doOnError(throwable -> System.err.println("Error: " + throwable))
-                            .blockingSubscribe();
+                                ChoiceDelta delta = accumulator.getChoices().get(0).getDelta();
+                                if (delta != null && delta.getToolCalls() != null) {
+                                    log.info("tool_calls: {}", mapper.writeValueAsString(delta.getToolCalls()));
+                                }
+                                choices.add(delta);
+                            }
+                        })
+                        .doOnComplete(() -> System.out.println("Stream completed."))
+                        .doOnError(throwable -> System.err.println("Error: " + throwable))
+                        .blockingSubscribe();
 
-                    WebSearchPro chatMessageAccumulator = lastAccumulator.get();
+                WebSearchPro chatMessageAccumulator = lastAccumulator.get();
 
-                    webSearchApiResponse.setFlowable(null);// 打印前置空
-                    webSearchApiResponse.setData(chatMessageAccumulator);
-                }
+                webSearchApiResponse.setFlowable(null);// 打印前置空
+                webSearchApiResponse.setData(chatMessageAccumulator);
+            }
 
 
-                Message message = Message.builder().role(Message.Role.ASSISTANT).content(choices.get(1).getToolCalls().toString()).build();
-                messages.add(message);
-            }
+            Message message = Message.builder().role(Message.Role.ASSISTANT).content(choices.get(1).getToolCalls().toString()).build();
+            messages.add(message);
+        }
 
-            if ("openCmd".equals(chatRequest.getModel())) {
-                sseEmitter.send(cmdPlugin(messages));
-                sseEmitter.complete();
-            } else if ("sqlPlugin".equals(chatRequest.getModel())) {
-                sseEmitter.send(sqlPlugin(messages));
-                sseEmitter.complete();
-            } else {
-                ChatCompletion completion = ChatCompletion
-                        .builder()
-                        .messages(messages)
-                        .model(chatRequest.getModel())
-                        .temperature(chatRequest.getTemperature())
-                        .topP(chatRequest.getTop_p())
-                        .stream(true)
-                        .build();
-                openAiStreamClient.streamChatCompletion(completion, openAIEventSourceListener);
+        if ("openCmd".equals(chatRequest.getModel())) {
+            sseEmitter.send(cmdPlugin(openAiStreamClient, messages));
+            sseEmitter.complete();
+        } else if ("sqlPlugin".equals(chatRequest.getModel())) {
+            sseEmitter.send(sqlPlugin(openAiStreamClient, messages));
+            sseEmitter.complete();
+        } else {
+            ChatCompletion completion = ChatCompletion
+                    .builder()
+                    .messages(messages)
+                    .model(chatRequest.getModel())
+                    .temperature(chatRequest.getTemperature())
+                    .topP(chatRequest.getTop_p())
+                    .stream(true)
+                    .build();
+            String cacheKey = completionCache.getKey(openAiStreamClient, completion);
+            String cached = completionCache.get("chat", cacheKey);
+            if (cached != null) {
+                // 相同的确定性请求直接推送缓存的回复, 仍按回复内容计费
+                Long userId = listener.getUserId();
+                completionCache.replay(stream, sseEmitter, completion.getModel(), cached, () -> {
+                    if (userId != null) {
+                        chatBillingService.record(userId, completion.getModel(), cached);
+                    }
+                });
+                return;
             }
-        } catch (Exception e) {
-            String message = e.getMessage();
-            sendErrorEvent(sseEmitter, message);
-            return sseEmitter;
+            String digest = chatStreamCoalescer.isEnabled() ? completionCache.digest(openAiStreamClient, completion) : null;
+            if (digest != null) {
+                // 同时进行的相同请求共用一个上游请求, 每个用户按收到的回复计费
+                Long userId = listener.getUserId();
+                ChatStreamCoalescer.SharedStream upstream = chatStreamCoalescer.subscribe(digest, stream, sseEmitter, content -> {
+                    if (userId != null) {
+                        chatBillingService.record(userId, completion.getModel(), content);
+                    }
+                });
+                if (upstream == null) {
+                    return;
+                }
+                if (cacheKey != null) {
+                    upstream.onComplete(content -> completionCache.put(cacheKey, completion, content));
+                }
+                try {
+                    openAiStreamClient.streamChatCompletion(completion, upstream);
+                } catch (Exception e) {
+                    upstream.fail(e);
+                }
+                return;
+            }
+            if (cacheKey != null) {
+                listener.onComplete(content -> completionCache.put(cacheKey, completion, content));
+            }
+            openAiStreamClient.streamChatCompletion(completion, listener);
         }
-        return sseEmitter;
     }
 
-    public String cmdPlugin(List<Message> messages) {
-        CmdPlugin plugin = new CmdPlugin(CmdReq.class);
-        // 插件名称
-        plugin.setName("命令行工具");
-        // 方法名称
-        plugin.setFunction("openCmd");
-        // 方法说明
-        plugin.setDescription("提供一个命令行指令,比如<记事本>,指令使用中文");
-
-        PluginAbstract.Arg arg = new PluginAbstract.Arg();
-        // 参数名称
-        arg.setName("cmd");
-        // 参数说明
-        arg.setDescription("命令行指令");
-        // 参数类型
-        arg.setType("string");
-        arg.setRequired(true);
-        plugin.setArgs(Collections.singletonList(arg));
-        //有四个重载方法，都可以使用
-        ChatCompletionResponse response = openAiStreamClient.chatCompletionWithPlugin(messages,"gpt-4o-mini",plugin);
+    public String cmdPlugin(OpenAiStreamClient openAiStreamClient, List<Message> messages) {
+        ChatCompletion completion = ChatCompletion.builder().messages(messages).model("gpt-4o-mini").build();
+        ChatCompletionResponse response = pluginRegistry.chatCompletion(openAiStreamClient, completion, CmdPlugin.FUNCTION);
         return response.getChoices().get(0).getMessage().getContent().toString();
     }
 
-    public String sqlPlugin(List<Message> messages) {
-        SqlPlugin plugin = new SqlPlugin(SqlReq.class);
-        // 插件名称
-        plugin.setName("数据库查询插件");
-        // 方法名称
-        plugin.setFunction("sqlPlugin");
-        // 方法说明
-        plugin.setDescription("提供一个用户名称查询余额信息");
-
-        PluginAbstract.Arg arg = new PluginAbstract.Arg();
-        // 参数名称
-        arg.setName("username");
-        // 参数说明
-        arg.setDescription("用户名称");
-        // 参数类型
-        arg.setType("string");
-        arg.setRequired(true);
-        plugin.setArgs(Collections.singletonList(arg));
-        //有四个重载方法，都可以使用
-        ChatCompletionResponse response = openAiStreamClient.chatCompletionWithPlugin(messages,"gpt-4o-mini",plugin);
+    public String sqlPlugin(OpenAiStreamClient openAiStreamClient, List<Message> messages) {
+        ChatCompletion completion = ChatCompletion.builder().messages(messages).model("gpt-4o-mini").build();
+        ChatCompletionResponse response = pluginRegistry.chatCompletion(openAiStreamClient, completion, SqlPlugin.FUNCTION);
         return response.getChoices().get(0).getMessage().getContent().toString();
     }
 
@@ -329,7 +368,7 @@ public class SseServiceImpl implements ISseService {
         double cost = model.getModelPrice();
         chatService.deductUserBalance(getUserId(), cost);
         chatMessageBo.setDeductCost(cost);
-        chatMessageService.insertByBo(chatMessageBo);
+        chatMessageRecordService.record(chatMessageBo);
     }
 
     /**
@@ -350,6 +389,7 @@ public class SseServiceImpl implements ISseService {
      */
     @Override
     public ResponseEntity<Resource> textToSpeed(TextToSpeech textToSpeech) {
+        OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
         ResponseBody body = openAiStreamClient.textToSpeech(textToSpeech);
         if (body != null) {
             // 将ResponseBody转换为InputStreamResource
@@ -378,15 +418,9 @@ public class SseServiceImpl implements ISseService {
         if (!FileUtils.isValidFileExtention(file, MimeTypeUtils.AUDIO__EXTENSION)) {
             throw new IllegalStateException("File Extention not supported");
         }
-        // 创建一个文件对象
-        File fileA = new File(System.getProperty("java.io.tmpdir") + File.separator + file.getOriginalFilename());
-        try {
-            // 将 MultipartFile 的内容写入文件
-            file.transferTo(fileA);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to convert MultipartFile to File", e);
-        }
-        return openAiStreamClient.speechToTextTranscriptions(fileA);
+        // 上传内容直接写入请求, 不复制到临时文件
+        return chatConfig.getOpenAiStreamClient().speechToTextTranscriptions(file, getFileName(file), file.getSize(),
+            Transcriptions.builder().build());
     }
 
     @Override
@@ -402,7 +436,7 @@ public class SseServiceImpl implements ISseService {
      */
     @Override
     public List<Item> dall3(Dall3Request request) {
-        openAiStreamClient = chatConfig.getOpenAiStreamClient();
+        OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
         chatService.checkUserGrade();
         // DALL3 绘图模型
         Image image = Image.builder()
@@ -424,13 +458,13 @@ public class SseServiceImpl implements ISseService {
         chatMessageBo.setContent(request.getPrompt());
         chatMessageBo.setDeductCost(sysModel.getModelPrice());
         chatMessageBo.setTotalTokens(0);
-        chatMessageService.insertByBo(chatMessageBo);
+        chatMessageRecordService.record(chatMessageBo);
         return imageResponse.getData();
     }
 
     @Override
     public List<Item> wxDall(String prompt, String userId) {
-        openAiStreamClient = chatConfig.getOpenAiStreamClient();
+        OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
         // DALL3 绘图模型
         Image image = Image.builder()
             .responseFormat(ResponseFormat.URL.getName())
@@ -448,7 +482,7 @@ public class SseServiceImpl implements ISseService {
         chatMessageBo.setContent(prompt);
         chatMessageBo.setDeductCost(dall3.getModelPrice());
         chatMessageBo.setTotalTokens(0);
-        chatMessageService.insertByBo(chatMessageBo);
+        chatMessageRecordService.record(chatMessageBo);
         return imageResponse.getData();
     }
 
@@ -473,43 +507,12 @@ public class SseServiceImpl implements ISseService {
         if (!FileUtils.isValidFileExtention(file, MimeTypeUtils.DEFAULT_ALLOWED_EXTENSION)) {
             throw new IllegalStateException("File Extention not supported");
         }
-        openAiStreamClient = chatConfig.getOpenAiStreamClient();
-        return openAiStreamClient.uploadFile("fine-tune", convertMultiPartToFile(file));
+        OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
+        return openAiStreamClient.uploadFile("fine-tune", file, getFileName(file), file.getSize());
     }
 
-    private File convertMultiPartToFile(MultipartFile multipartFile) {
-        File file = null;
-        try {
-            // 获取原始文件名
-            String originalFileName = multipartFile.getOriginalFilename();
-            // 默认扩展名
-            String extension = ".tmp";
-            // 尝试从原始文件名中获取扩展名
-            if (originalFileName != null && originalFileName.contains(".")) {
-                extension = originalFileName.substring(originalFileName.lastIndexOf("."));
-            }
-
-            // 使用原始文件的扩展名创建临时文件
-            Path tempFile = Files.createTempFile(null, extension);
-            file = tempFile.toFile();
-
-            // 将MultipartFile的内容写入文件
-            try (InputStream inputStream = multipartFile.getInputStream();
-                 FileOutputStream outputStream = new FileOutputStream(file)) {
-                int read;
-                byte[] bytes = new byte[1024];
-                while ((read = inputStream.read(bytes)) != -1) {
-                    outputStream.write(bytes, 0, read);
-                }
-            } catch (IOException e) {
-                // 处理文件写入异常
-                e.printStackTrace();
-            }
-        } catch (IOException e) {
-            // 处理临时文件创建异常
-            e.printStackTrace();
-        }
-        return file;
+    private String getFileName(MultipartFile file) {
+        return StringUtils.isNotEmpty(file.getOriginalFilename()) ? file.getOriginalFilename() : file.getName();
     }
 
     // 发送SSE错误事件的封装方法
@@ -525,57 +528,6 @@ public class SseServiceImpl implements ISseService {
         sseEmitter.complete();
     }
 
-    /**
-     * 文本内容审核
-     *
-     * @param msg
-     * @return String
-     * @Date 2023/5/27
-     **/
-    public String textReview(String msg) {
-        String conclusionType = "";
-        try {
-            String text = URLEncoder.encode(msg);
-            okhttp3.MediaType mediaType = okhttp3.MediaType.parse("application/x-www-form-urlencoded");
-            RequestBody body = RequestBody.create(mediaType, "text=" + text);
-            Request request = new Request.Builder()
-                .url("https://aip.baidubce.com/rest/2.0/solution/v1/text_censor/v2/user_defined?access_token=" + getAccessToken())
-                .method("POST", body)
-                .addHeader("Content-Type", "application/x-www-form-urlencoded")
-                .addHeader("Accept", "application/json")
-                .build();
-            Response response = HTTP_CLIENT.newCall(request).execute();
-            JSONObject jsonObject = JSONObject.parseObject(response.body().string());
-            conclusionType = jsonObject.getString("conclusionType");
-        } catch (IOException e) {
-            log.info("发生错误{}", e.getMessage());
-        }
-        return conclusionType;
-    }
-
-    /**
-     * 从用户的AK，SK生成鉴权签名（Access Token）
-     *
-     * @return 鉴权签名（Access Token）
-     * @throws IOException IO异常
-     */
-    public String getAccessToken() throws IOException {
-        okhttp3.MediaType mediaType = okhttp3.MediaType.parse("application/x-www-form-urlencoded");
-        RequestBody body = RequestBody.create(mediaType, "grant_type=client_credentials&client_id=" + getKey("apiKey")
-            + "&client_secret=" + getKey("secretKey"));
-        Request request = new Request.Builder()
-            .url("https://aip.baidubce.com/oauth/2.0/token")
-            .method("POST", body)
-            .addHeader("Content-Type", "application/x-www-form-urlencoded")
-            .build();
-        Response response = HTTP_CLIENT.newCall(request).execute();
-        return JSONObject.parseObject(response.body().string()).getString("access_token");
-    }
-
-    public String getKey(String key) {
-        return configService.getConfigValue("review", key);
-    }
-
     /**
      * 获取客户端的 IP 地址
      *
@@ -627,8 +579,8 @@ public class SseServiceImpl implements ISseService {
         chatMessageBo.setContent(translationRequest.getPrompt());
         chatMessageBo.setDeductCost(0.01);
         chatMessageBo.setTotalTokens(0);
-        chatMessageService.insertByBo(chatMessageBo);
-        openAiStreamClient = chatConfig.getOpenAiStreamClient();
+        chatMessageRecordService.record(chatMessageBo);
+        OpenAiStreamClient openAiStreamClient = chatConfig.getOpenAiStreamClient();
         List<Message> messageList = new ArrayList<>();
         Message sysMessage = Message.builder().role(Message.Role.SYSTEM).content("你是一位精通各国语言的翻译大师\n" +
             "\n" +
@@ -643,20 +595,34 @@ public class SseServiceImpl implements ISseService {
         messageList.add(sysMessage);
         Message message = Message.builder().role(Message.Role.USER).content(translationRequest.getPrompt()).build();
         messageList.add(message);
-        ChatCompletionResponse chatCompletionResponse = null;
         try {
            ChatCompletion chatCompletion = ChatCompletion
                .builder()
                .messages(messageList)
                .model(translationRequest.getModel())
+               .temperature(0)
                .stream(false)
                .build();
-           chatCompletionResponse = openAiStreamClient.chatCompletion(chatCompletion);
+           // 同一段文本翻译成同一种语言, 结果可以复用
+           String cacheKey = completionCache.getKey(openAiStreamClient, chatCompletion);
+           String cached = completionCache.get("translation", cacheKey);
+           if (cached != null) {
+               return cached;
+           }
+           Supplier<String> request = () -> {
+               ChatCompletionResponse chatCompletionResponse = openAiStreamClient.chatCompletion(chatCompletion);
+               String content = chatCompletionResponse.getChoices().get(0).getMessage().getContent().toString();
+               completionCache.put(cacheKey, chatCompletion, content);
+               return content;
+           };
+           // 同时翻译同一段文本只请求一次
+           String digest = chatStreamCoalescer.isEnabled() ? completionCache.digest(openAiStreamClient, chatCompletion) : null;
+           return digest == null ? request.get() : chatStreamCoalescer.call(digest, request);
        }catch (Exception e) {
            log.error(e.getMessage());
        }
 
-        return chatCompletionResponse.getChoices().get(0).getMessage().getContent().toString();
+        throw new ServiceException("翻译失败, 请稍后再试");
     }
 
     @Override
@@ -682,18 +648,28 @@ public class SseServiceImpl implements ISseService {
             .withMessages(messages)
             .build();
 
-        // 异步执行 OllAma API 调用
-        CompletableFuture.runAsync(() -> {
+        ChatStream stream;
+        try {
+            stream = chatStreamManager.open(emitter);
+        } catch (ServiceException e) {
+            sendErrorEvent(emitter, e.getMessage());
+            return emitter;
+        }
+        // 在对话线程池中执行 OllAma API 调用, 客户端断开后中断
+        chatStreamManager.execute(stream, () -> {
             try {
                 StringBuilder response = new StringBuilder();
                 OllamaStreamHandler streamHandler = (s) -> {
+                    if (stream.isClosed()) {
+                        throw new IllegalStateException("客户端已断开");
+                    }
                     String substr = s.substring(response.length());
                     response.append(substr);
-                    System.out.println(substr);
                     try {
                         emitter.send(substr);
                     } catch (IOException e) {
-                        sendErrorEvent(emitter, e.getMessage());
+                        stream.close();
+                        throw new IllegalStateException(e);
                     }
                 };
                 api.chat(requestModel, streamHandler);
@@ -716,7 +692,7 @@ public class SseServiceImpl implements ISseService {
             .model("gpt-4o-mini")
             .stream(false)
             .build();
-        ChatCompletionResponse chatCompletionResponse = openAiStreamClient.chatCompletion(chatCompletion);
+        ChatCompletionResponse chatCompletionResponse = chatConfig.getOpenAiStreamClient().chatCompletion(chatCompletion);
         return chatCompletionResponse.getChoices().get(0).getMessage().getContent().toString();
     }
 }
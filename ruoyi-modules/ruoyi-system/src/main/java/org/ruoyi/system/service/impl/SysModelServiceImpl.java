@@ -3,11 +3,16 @@ package org.ruoyi.system.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ruoyi.common.chat.metrics.ChatMetrics;
 import org.ruoyi.common.core.utils.MapstructUtils;
 import org.ruoyi.common.core.utils.StringUtils;
 import org.ruoyi.common.mybatis.core.page.PageQuery;
 import org.ruoyi.common.mybatis.core.page.TableDataInfo;
+import org.ruoyi.common.redis.cache.NearCache;
+import org.ruoyi.common.redis.utils.RedisUtils;
 import org.ruoyi.system.domain.SysModel;
 import org.ruoyi.system.domain.bo.SysModelBo;
 import org.ruoyi.system.domain.vo.SysModelVo;
@@ -15,6 +20,7 @@ import org.ruoyi.system.mapper.SysModelMapper;
 import org.ruoyi.system.service.ISysModelService;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -24,12 +30,28 @@ import java.util.List;
  * @author Lion Li
  * @date 2024-04-04
  */
+@Slf4j
 @RequiredArgsConstructor
 @Service
 public class SysModelServiceImpl implements ISysModelService {
 
+    private static final String MODEL_CHANNEL = "sys:model:invalidate";
+
     private final SysModelMapper baseMapper;
 
+    /**
+     * 按模型名称缓存模型, 修改后通知所有节点失效
+     */
+    private NearCache<String, SysModel> modelCache;
+
+    @PostConstruct
+    public void init() {
+        modelCache = new NearCache<>(MODEL_CHANNEL, Duration.ofMinutes(10));
+        // 模型修改后其他节点同样收到失效通知, 重新设置监控指标的模型标签
+        RedisUtils.subscribe(MODEL_CHANNEL, String.class, msg -> refreshMetricModels());
+        refreshMetricModels();
+    }
+
     /**
      * 查询系统模型
      */
@@ -78,6 +100,7 @@ public class SysModelServiceImpl implements ISysModelService {
         if (flag) {
             bo.setId(add.getId());
         }
+        modelChanged();
         return flag;
     }
 
@@ -88,7 +111,9 @@ public class SysModelServiceImpl implements ISysModelService {
     public Boolean updateByBo(SysModelBo bo) {
         SysModel update = MapstructUtils.convert(bo, SysModel.class);
         validEntityBeforeSave(update);
-        return baseMapper.updateById(update) > 0;
+        boolean flag = baseMapper.updateById(update) > 0;
+        modelChanged();
+        return flag;
     }
 
     /**
@@ -106,13 +131,33 @@ public class SysModelServiceImpl implements ISysModelService {
         if(isValid){
             //TODO 做一些业务上的校验,判断是否需要校验
         }
-        return baseMapper.deleteBatchIds(ids) > 0;
+        boolean flag = baseMapper.deleteBatchIds(ids) > 0;
+        modelChanged();
+        return flag;
+    }
+
+    /**
+     * 模型修改后清空所有节点的模型缓存, 并重新设置监控指标的模型标签
+     */
+    private void modelChanged() {
+        modelCache.invalidateAll();
+        refreshMetricModels();
+    }
+
+    private void refreshMetricModels() {
+        try {
+            ChatMetrics.setModels(baseMapper.selectList(new LambdaQueryWrapper<SysModel>().select(SysModel::getModelName))
+                .stream().map(SysModel::getModelName).toList());
+        } catch (Exception e) {
+            log.warn("加载监控指标的模型名称失败: {}", e.getMessage());
+        }
     }
 
     @Override
     public SysModel selectModelByName(String modelName) {
-        return baseMapper.selectOne(
-                new LambdaQueryWrapper<SysModel>().eq(SysModel::getModelName, modelName)
-        );
+        // 一次对话中多处按名称查询模型, 只在首次查询数据库
+        return modelCache.get(modelName, key -> baseMapper.selectOne(
+                new LambdaQueryWrapper<SysModel>().eq(SysModel::getModelName, key)
+        ));
     }
 }
@@ -0,0 +1,42 @@
+package org.ruoyi.system.task;
+
+import org.ruoyi.system.domain.ChatTask;
+
+/**
+ * 异步任务处理器
+ * 每种耗时较长的服务商调用(绘图、PPT 生成等)实现一个处理器并注册为 Spring Bean, 由 IChatTaskService 按任务类型分发执行
+ *
+ * @date 2026/10/19
+ */
+public interface ChatTaskHandler {
+
+    /**
+     * 任务类型, 与提交时的类型对应
+     */
+    String getType();
+
+    /**
+     * 任务的费用, 提交时计算并预扣, 成功后确认, 失败后退还
+     *
+     * @param task 任务, 参数已填充
+     * @return 费用
+     */
+    double getCost(ChatTask task);
+
+    /**
+     * 执行任务, 在任务线程池中调用, 没有登录上下文, 用户取 task.getUserId()
+     * 抛出 ServiceException/BaseException/IllegalArgumentException 表示请求本身有问题, 不再重试; 其余异常按次数重试
+     *
+     * @param task 任务
+     * @return 任务结果, 保存为 JSON
+     */
+    Object execute(ChatTask task) throws Exception;
+
+    /**
+     * 执行超时时间(分钟), 超时的任务会重新执行, 服务商可能对两次调用都收费,
+     * 因此应明显长于服务商正常的处理时间. 配置 chat/taskTimeoutMinutes 更长时以配置为准
+     */
+    default long getTimeoutMinutes() {
+        return 10;
+    }
+}
@@ -0,0 +1,62 @@
+package org.ruoyi.system.task;
+
+import lombok.RequiredArgsConstructor;
+import org.ruoyi.common.chat.config.ChatConfig;
+import org.ruoyi.common.chat.domain.request.Dall3Request;
+import org.ruoyi.common.chat.entity.images.Image;
+import org.ruoyi.common.chat.entity.images.ResponseFormat;
+import org.ruoyi.common.core.utils.StringUtils;
+import org.ruoyi.common.json.utils.JsonUtils;
+import org.ruoyi.system.domain.ChatTask;
+import org.ruoyi.system.domain.SysModel;
+import org.ruoyi.system.service.ISysModelService;
+import org.springframework.stereotype.Component;
+
+/**
+ * dall-e-3 绘图任务
+ *
+ * @date 2026/10/19
+ */
+@Component
+@RequiredArgsConstructor
+public class Dall3TaskHandler implements ChatTaskHandler {
+
+    public static final String TYPE = "dall3";
+
+    /**
+     * 未配置模型价格时的默认费用
+     */
+    private static final double DEFAULT_COST = 0.3;
+
+    private final ChatConfig chatConfig;
+
+    private final ISysModelService sysModelService;
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public double getCost(ChatTask task) {
+        Dall3Request request = JsonUtils.parseObject(task.getTaskParams(), Dall3Request.class);
+        String model = StringUtils.blankToDefault(request.getModel(), TYPE);
+        SysModel sysModel = sysModelService.selectModelByName(model);
+        return sysModel == null ? DEFAULT_COST : sysModel.getModelPrice();
+    }
+
+    @Override
+    public Object execute(ChatTask task) {
+        Dall3Request request = JsonUtils.parseObject(task.getTaskParams(), Dall3Request.class);
+        Image image = Image.builder()
+            .responseFormat(ResponseFormat.URL.getName())
+            .model(Image.Model.DALL_E_3.getName())
+            .prompt(request.getPrompt())
+            .n(1)
+            .quality(request.getQuality())
+            .size(request.getSize())
+            .style(request.getStyle())
+            .build();
+        return chatConfig.getOpenAiStreamClient().genImages(image).getData();
+    }
+}
@@ -0,0 +1,52 @@
+package org.ruoyi.system.task;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.ruoyi.common.json.utils.JsonUtils;
+import org.ruoyi.system.cofing.OkHttpConfig;
+import org.ruoyi.system.domain.ChatTask;
+import org.ruoyi.system.domain.vo.ppt.PptGeneratePptxDto;
+import org.ruoyi.system.service.IPptService;
+import org.ruoyi.system.util.WddPptApi;
+import org.springframework.stereotype.Component;
+
+/**
+ * AI-PPT 生成任务, 提交时预扣费用, 无需再调用生成成功回调
+ *
+ * @date 2026/10/19
+ */
+@Component
+@RequiredArgsConstructor
+public class PptTaskHandler implements ChatTaskHandler {
+
+    public static final String TYPE = "ppt";
+
+    private final OkHttpConfig okHttpConfig;
+
+    private final IPptService pptService;
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public double getCost(ChatTask task) {
+        return NumberUtils.toDouble(okHttpConfig.getGenerate(), 1.1);
+    }
+
+    /**
+     * PPT 生成排队时可能超过 10 分钟, 过早超时会重复生成并被服务商重复收费
+     */
+    @Override
+    public long getTimeoutMinutes() {
+        return 30;
+    }
+
+    @Override
+    public Object execute(ChatTask task) {
+        PptGeneratePptxDto dto = JsonUtils.parseObject(task.getTaskParams(), PptGeneratePptxDto.class);
+        String apiToken = pptService.getApiToken(task.getUserId());
+        return WddPptApi.generatePptx(apiToken, dto.getTemplateId(), dto.getOutlineContentMarkdown(), dto.isPptxProperty());
+    }
+}
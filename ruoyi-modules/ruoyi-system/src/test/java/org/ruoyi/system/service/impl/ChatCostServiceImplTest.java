@@ -0,0 +1,187 @@
+package org.ruoyi.system.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ruoyi.system.domain.ChatMessage;
+import org.ruoyi.system.domain.SysModel;
+import org.ruoyi.system.domain.SysUser;
+import org.ruoyi.system.domain.bo.ChatMessageBo;
+import org.ruoyi.system.mapper.ChatMessageMapper;
+import org.ruoyi.system.mapper.SysUserMapper;
+import org.ruoyi.system.service.IChatMessageRecordService;
+import org.ruoyi.system.service.IChatMessageService;
+import org.ruoyi.system.service.IChatTokenService;
+import org.ruoyi.system.service.ISysModelService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 对话结算并发扣费测试
+ * 模拟数据库按行执行 update 语句, 并发结算后余额必须等于初始余额减去全部费用
+ *
+ * @date 2026/10/19
+ */
+class ChatCostServiceImplTest {
+
+    private static final Pattern DEDUCT_SQL = Pattern.compile("^user_balance = user_balance - ([0-9.]+)$");
+
+    private static final long USER_ID = 1L;
+
+    private static final String MODEL_NAME = "gpt-4o-mini";
+
+    private SysUserMapper sysUserMapper;
+
+    private ChatMessageMapper chatMessageMapper;
+
+    private IChatMessageService chatMessageService;
+
+    private ChatCostServiceImpl chatCostService;
+
+    /**
+     * 用户行的余额, 模拟数据库对同一行 update 的串行执行
+     */
+    private BigDecimal balance;
+
+    private final AtomicInteger insertedMessages = new AtomicInteger();
+
+    @BeforeAll
+    static void initTableInfo() {
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, SysUser.class);
+        TableInfoHelper.initTableInfo(assistant, ChatMessage.class);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        sysUserMapper = mock(SysUserMapper.class);
+        chatMessageMapper = mock(ChatMessageMapper.class);
+        chatMessageService = mock(IChatMessageService.class);
+        IChatTokenService chatTokenService = mock(IChatTokenService.class);
+        ISysModelService sysModelService = mock(ISysModelService.class);
+
+        SysModel sysModel = new SysModel();
+        sysModel.setModelName(MODEL_NAME);
+        sysModel.setModelType("1");
+        sysModel.setModelPrice(0.01);
+        when(sysModelService.selectModelByName(MODEL_NAME)).thenReturn(sysModel);
+        when(sysUserMapper.update(isNull(), any(LambdaUpdateWrapper.class))).thenAnswer(invocation -> {
+            LambdaUpdateWrapper<SysUser> wrapper = invocation.getArgument(1);
+            Matcher matcher = DEDUCT_SQL.matcher(wrapper.getSqlSet());
+            assertTrue(matcher.matches(), "余额必须在 update 语句中原子扣减: " + wrapper.getSqlSet());
+            synchronized (this) {
+                balance = balance.subtract(new BigDecimal(matcher.group(1)));
+            }
+            return 1;
+        });
+        when(chatMessageService.insertBatchByBo(anyList())).thenAnswer(invocation -> {
+            insertedMessages.addAndGet(((List<?>) invocation.getArgument(0)).size());
+            return true;
+        });
+
+        chatCostService = new ChatCostServiceImpl(sysUserMapper, chatMessageMapper, chatMessageService,
+            mock(IChatMessageRecordService.class), chatTokenService, sysModelService);
+    }
+
+    @Test
+    void concurrentSettlementLosesNoDeduction() throws Exception {
+        balance = new BigDecimal("100");
+        int threads = 16;
+        int settlementsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < settlementsPerThread; j++) {
+                    // 每次 1000 token, 按 0.01 扣费
+                    chatCostService.settleUsage(USER_ID, MODEL_NAME, List.of(message(null, 1000)));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        int settlements = threads * settlementsPerThread;
+        assertEquals(0, new BigDecimal("100").subtract(new BigDecimal("0.01").multiply(BigDecimal.valueOf(settlements)))
+            .compareTo(balance), "余额 " + balance);
+        assertEquals(settlements, insertedMessages.get());
+    }
+
+    @Test
+    void insufficientBalanceIsDeductedAsArrears() {
+        balance = new BigDecimal("0.01");
+        chatCostService.settleUsage(USER_ID, MODEL_NAME, List.of(message(null, 3000)));
+
+        assertEquals(0, new BigDecimal("-0.02").compareTo(balance), "余额 " + balance);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void settledUsageIsNotChargedAgain() {
+        balance = new BigDecimal("1");
+        ChatMessage settled = new ChatMessage();
+        settled.setUsageId("u1");
+        when(chatMessageMapper.selectList(any())).thenReturn(List.of(settled));
+
+        chatCostService.settleUsage(USER_ID, MODEL_NAME, List.of(message("u1", 1000), message("u2", 1000)));
+
+        assertEquals(0, new BigDecimal("0.99").compareTo(balance), "余额 " + balance);
+        assertEquals(1, insertedMessages.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void replayedBatchDoesNothing() {
+        balance = new BigDecimal("1");
+        ChatMessage settled = new ChatMessage();
+        settled.setUsageId("u1");
+        when(chatMessageMapper.selectList(any())).thenReturn(List.of(settled));
+
+        chatCostService.settleUsage(USER_ID, MODEL_NAME, List.of(message("u1", 1000)));
+
+        assertEquals(0, BigDecimal.ONE.compareTo(balance));
+        verify(sysUserMapper, never()).update(isNull(), any(LambdaUpdateWrapper.class));
+        verify(chatMessageService, never()).insertBatchByBo(anyList());
+    }
+
+    private static ChatMessageBo message(String usageId, int tokens) {
+        ChatMessageBo bo = new ChatMessageBo();
+        bo.setUserId(USER_ID);
+        bo.setModelName(MODEL_NAME);
+        bo.setContent("content");
+        bo.setTotalTokens(tokens);
+        bo.setUsageId(usageId);
+        return bo;
+    }
+}
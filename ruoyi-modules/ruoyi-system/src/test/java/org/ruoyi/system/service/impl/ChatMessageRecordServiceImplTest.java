@@ -0,0 +1,210 @@
+package org.ruoyi.system.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RStream;
+import org.redisson.api.stream.StreamReadGroupArgs;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.system.domain.bo.ChatMessageBo;
+import org.ruoyi.system.service.IChatMessageService;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 聊天消息异步记录测试
+ * 数据库写入由 mock 的 IChatMessageService 模拟, 转存 Redis 的消息记录在内存中:
+ * 写入慢或失败后进入转存窗口、批次主键冲突时逐条写入、缓冲区满且无法转存时同步写入、关闭时写完缓冲区
+ *
+ * @date 2026/10/19
+ */
+class ChatMessageRecordServiceImplTest {
+
+    private IChatMessageService chatMessageService;
+
+    private ConfigService configService;
+
+    private RStream<String, ChatMessageBo> spillStream;
+
+    /**
+     * 转存到 Redis 的消息
+     */
+    private final List<ChatMessageBo> spilled = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 写入数据库的批次大小
+     */
+    private final List<Integer> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private boolean spillAvailable = true;
+
+    /**
+     * 模拟数据库单批写入耗时
+     */
+    private long writeMillis;
+
+    private ChatMessageRecordServiceImpl recordService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        chatMessageService = mock(IChatMessageService.class);
+        configService = mock(ConfigService.class);
+        spillStream = mock(RStream.class);
+        when(spillStream.listPending(anyString(), any(), any(), anyLong(), any(), anyInt()))
+            .thenReturn(List.of());
+        when(spillStream.readGroup(anyString(), anyString(), any(StreamReadGroupArgs.class))).thenReturn(Collections.emptyMap());
+        when(chatMessageService.insertBatchByBo(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(writeMillis);
+            batches.add(invocation.<List<ChatMessageBo>>getArgument(0).size());
+            return true;
+        });
+    }
+
+    private void start() {
+        recordService = new ChatMessageRecordServiceImpl(chatMessageService, configService, mock(ScheduledExecutorService.class)) {
+            @Override
+            protected boolean spill(List<ChatMessageBo> messages) {
+                if (!spillAvailable) {
+                    return false;
+                }
+                spilled.addAll(messages);
+                return true;
+            }
+
+            @Override
+            protected RStream<String, ChatMessageBo> getSpill() {
+                return spillStream;
+            }
+        };
+        recordService.init();
+    }
+
+    @Test
+    void bufferedMessagesAreWrittenInOneBatch() {
+        start();
+        for (long i = 1; i <= 3; i++) {
+            recordService.record(message(i));
+        }
+        verify(chatMessageService, never()).insertBatchByBo(anyList());
+
+        recordService.flush();
+
+        assertEquals(List.of(3), batches);
+        assertTrue(spilled.isEmpty());
+        verify(chatMessageService, never()).insertByBo(any());
+    }
+
+    @Test
+    void slowWriteOpensSpillWindow() {
+        writeMillis = 2100;
+        start();
+        recordService.record(message(1L));
+        recordService.flush();
+        assertEquals(List.of(1), batches);
+
+        // 写入虽然成功但超过阈值, 后续消息在窗口内转存 Redis, 也不从 Redis 读出写回
+        ChatMessageBo next = message(2L);
+        recordService.record(next);
+        recordService.flush();
+
+        assertEquals(List.of(next), spilled);
+        assertEquals(List.of(1), batches);
+        verify(spillStream, never()).readGroup(anyString(), anyString(), any(StreamReadGroupArgs.class));
+    }
+
+    @Test
+    void failedWriteSpillsBatchAndOpensSpillWindow() {
+        when(chatMessageService.insertBatchByBo(anyList())).thenThrow(new IllegalStateException("connection refused"));
+        start();
+        ChatMessageBo first = message(1L);
+        ChatMessageBo second = message(2L);
+        recordService.record(first);
+        recordService.record(second);
+        recordService.flush();
+        assertEquals(List.of(first, second), spilled);
+
+        ChatMessageBo third = message(3L);
+        recordService.record(third);
+
+        assertEquals(List.of(first, second, third), spilled);
+        verify(chatMessageService, times(1)).insertBatchByBo(anyList());
+    }
+
+    @Test
+    void duplicateKeyFallsBackToRowByRowInserts() {
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        when(chatMessageService.insertBatchByBo(anyList())).thenAnswer(invocation -> {
+            List<ChatMessageBo> batch = invocation.getArgument(0);
+            // 第 2 条在上次转存重放时已写入, 多行 insert 整批失败, 逐条写入时只有它冲突
+            if (batch.size() > 1 || batch.get(0).getId() == 2L) {
+                throw new DuplicateKeyException("Duplicate entry");
+            }
+            written.add(batch.get(0).getId());
+            return true;
+        });
+        start();
+        for (long i = 1; i <= 3; i++) {
+            recordService.record(message(i));
+        }
+
+        recordService.flush();
+
+        assertEquals(List.of(1L, 3L), written);
+        // 主键冲突不是数据库故障, 不转存也不进入转存窗口
+        assertTrue(spilled.isEmpty());
+        recordService.record(message(4L));
+        assertTrue(spilled.isEmpty());
+    }
+
+    @Test
+    void fullBufferWithoutSpillWritesSynchronously() {
+        when(configService.getConfigValue("chat", "messageBufferSize")).thenReturn("1");
+        spillAvailable = false;
+        start();
+        ChatMessageBo buffered = message(1L);
+        ChatMessageBo overflow = message(2L);
+        recordService.record(buffered);
+        recordService.record(overflow);
+
+        verify(chatMessageService).insertByBo(overflow);
+        verify(chatMessageService, never()).insertByBo(buffered);
+    }
+
+    @Test
+    void destroyDrainsBufferInBatches() {
+        start();
+        for (long i = 1; i <= 1200; i++) {
+            recordService.record(message(i));
+        }
+
+        recordService.destroy();
+
+        assertEquals(List.of(500, 500, 200), batches);
+        assertTrue(spilled.isEmpty());
+    }
+
+    private static ChatMessageBo message(Long id) {
+        ChatMessageBo bo = new ChatMessageBo();
+        bo.setId(id);
+        bo.setUserId(1L);
+        bo.setContent("message " + id);
+        return bo;
+    }
+}
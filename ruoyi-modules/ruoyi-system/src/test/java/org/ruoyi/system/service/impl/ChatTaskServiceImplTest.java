@@ -0,0 +1,315 @@
+package org.ruoyi.system.service.impl;
+
+import cn.hutool.extra.spring.SpringUtil;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.linpeilie.Converter;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.ruoyi.common.core.exception.ServiceException;
+import org.ruoyi.common.core.service.ConfigService;
+import org.ruoyi.system.domain.ChatTask;
+import org.ruoyi.system.mapper.ChatTaskMapper;
+import org.ruoyi.system.service.IChatCostService;
+import org.ruoyi.system.service.IChatMessageRecordService;
+import org.ruoyi.system.task.ChatTaskHandler;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 异步任务状态流转测试
+ * mock 的 ChatTaskMapper 在内存中按 update 语句的条件更新任务行, 与数据库一样同一时刻只有一个条件更新能成功:
+ * 超时重新执行后原执行结果晚到被丢弃、最终失败只退还一次费用、线程池满被拒绝的任务由定时检查重新分发
+ *
+ * @date 2026/10/19
+ */
+class ChatTaskServiceImplTest {
+
+    private static final Pattern CONDITION = Pattern.compile("(\\w+)\\s*(=|<)\\s*#\\{ew\\.paramNameValuePairs\\.(MPGENVAL\\d+)}");
+
+    private static final String TASK_TYPE = "draw";
+
+    private static final long USER_ID = 1L;
+
+    private static final double COST = 0.5;
+
+    /**
+     * 内存中的任务表, 列名 -> 值
+     */
+    private final Map<Long, Map<String, Object>> rows = new ConcurrentHashMap<>();
+
+    private ChatTaskMapper chatTaskMapper;
+
+    private IChatCostService chatCostService;
+
+    private IChatMessageRecordService chatMessageRecordService;
+
+    private ConfigService configService;
+
+    private ChatTaskHandler handler;
+
+    private ChatTaskServiceImpl chatTaskService;
+
+    @BeforeAll
+    static void init() {
+        MapperBuilderAssistant assistant = new MapperBuilderAssistant(new MybatisConfiguration(), "");
+        TableInfoHelper.initTableInfo(assistant, ChatTask.class);
+        // 状态推送使用 JsonUtils、MapstructUtils 和 RedisUtils, 从 Spring 容器获取依赖; 推送失败不影响任务
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.getBeanFactory().registerSingleton("objectMapper", new ObjectMapper());
+        context.getBeanFactory().registerSingleton("converter", mock(Converter.class));
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        when(redissonClient.getTopic(anyString())).thenReturn(mock(RTopic.class));
+        context.getBeanFactory().registerSingleton("redissonClient", redissonClient);
+        context.refresh();
+        new SpringUtil().setApplicationContext(context);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        chatTaskMapper = mock(ChatTaskMapper.class);
+        chatCostService = mock(IChatCostService.class);
+        chatMessageRecordService = mock(IChatMessageRecordService.class);
+        configService = mock(ConfigService.class);
+        handler = mock(ChatTaskHandler.class);
+        when(handler.getType()).thenReturn(TASK_TYPE);
+        when(handler.getTimeoutMinutes()).thenReturn(10L);
+
+        when(chatTaskMapper.selectById(any())).thenAnswer(invocation -> {
+            synchronized (rows) {
+                Map<String, Object> row = rows.get((Long) invocation.getArgument(0));
+                return row == null ? null : toTask(row);
+            }
+        });
+        when(chatTaskMapper.update(isNull(), any(LambdaUpdateWrapper.class))).thenAnswer(invocation -> {
+            LambdaUpdateWrapper<ChatTask> wrapper = invocation.getArgument(1);
+            int updated = 0;
+            synchronized (rows) {
+                for (Map<String, Object> row : rows.values()) {
+                    if (matches(row, wrapper)) {
+                        Matcher matcher = CONDITION.matcher(wrapper.getSqlSet());
+                        while (matcher.find()) {
+                            row.put(matcher.group(1), wrapper.getParamNameValuePairs().get(matcher.group(3)));
+                        }
+                        updated++;
+                    }
+                }
+            }
+            return updated;
+        });
+        when(chatTaskMapper.selectList(any(LambdaQueryWrapper.class))).thenAnswer(invocation -> {
+            LambdaQueryWrapper<ChatTask> wrapper = invocation.getArgument(0);
+            synchronized (rows) {
+                return rows.values().stream().filter(row -> matches(row, wrapper)).map(ChatTaskServiceImplTest::toTask).toList();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatTaskService.destroy();
+    }
+
+    private void start() {
+        chatTaskService = new ChatTaskServiceImpl(chatTaskMapper, chatCostService, chatMessageRecordService,
+            configService, mock(ScheduledExecutorService.class), List.of(handler));
+        chatTaskService.init();
+    }
+
+    @Test
+    void resultArrivingAfterTimeoutIsDropped() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(handler.execute(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return "late result";
+        });
+        start();
+        insert(1L, 0);
+        dispatch(1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 执行卡住超过超时时间, 定时检查将任务放回等待并增加重试次数
+        rows.get(1L).put("update_time", minutesAgo(20));
+        recover();
+        assertEquals(ChatTask.STATUS_PENDING, rows.get(1L).get("status"));
+        assertEquals(1, rows.get(1L).get("retry_count"));
+
+        // 原执行随后返回结果, 条件更新失败, 结果被丢弃, 不保存消息也不退费
+        release.countDown();
+        chatTaskService.destroy();
+        assertEquals(ChatTask.STATUS_PENDING, rows.get(1L).get("status"));
+        assertNull(rows.get(1L).get("task_result"));
+        verify(chatMessageRecordService, never()).record(any());
+        verify(chatCostService, never()).refundUserBalance(anyLong(), anyDouble());
+    }
+
+    @Test
+    void nonRetryableFailureRefundsOnce() throws Exception {
+        when(handler.execute(any())).thenThrow(new ServiceException("提示词违规"));
+        start();
+        insert(1L, 0);
+        dispatch(1L);
+
+        await(() -> ChatTask.STATUS_FAILED.equals(rows.get(1L).get("status")));
+        assertEquals("提示词违规", rows.get(1L).get("error_msg"));
+        verify(chatCostService, times(1)).refundUserBalance(USER_ID, COST);
+    }
+
+    @Test
+    void timeoutAndLateFailureRefundOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(handler.execute(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            throw new IOException("connection reset");
+        });
+        start();
+        // 已用完重试次数的最后一次执行
+        insert(1L, 2);
+        dispatch(1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // 定时检查判定超时, 置为失败并退费; 原执行随后也失败, 不能再退一次
+        rows.get(1L).put("update_time", minutesAgo(20));
+        recover();
+        assertEquals(ChatTask.STATUS_FAILED, rows.get(1L).get("status"));
+        release.countDown();
+        chatTaskService.destroy();
+
+        assertEquals(ChatTask.STATUS_FAILED, rows.get(1L).get("status"));
+        verify(chatCostService, times(1)).refundUserBalance(USER_ID, COST);
+    }
+
+    @Test
+    void rejectedDispatchIsPickedUpByRecover() throws Exception {
+        when(configService.getConfigValue("chat", "taskThreads")).thenReturn("1");
+        CountDownLatch release = new CountDownLatch(1);
+        when(handler.execute(any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return "result";
+        });
+        start();
+        // 1 个线程执行第 1 个任务, 队列容纳 16 个, 第 18 个被拒绝
+        for (long id = 1; id <= 18; id++) {
+            insert(id, 0);
+            dispatch(id);
+        }
+        release.countDown();
+        await(() -> rows.values().stream().filter(row -> ChatTask.STATUS_SUCCESS.equals(row.get("status"))).count() == 17);
+        assertEquals(ChatTask.STATUS_PENDING, rows.get(18L).get("status"));
+
+        // 等待超过检查间隔后由定时检查重新分发
+        rows.get(18L).put("update_time", minutesAgo(1));
+        recover();
+
+        await(() -> ChatTask.STATUS_SUCCESS.equals(rows.get(18L).get("status")));
+        verify(handler, times(18)).execute(any());
+        verify(chatMessageRecordService, times(18)).record(any());
+        verify(chatCostService, never()).refundUserBalance(anyLong(), anyDouble());
+    }
+
+    private void insert(Long id, int retryCount) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("user_id", USER_ID);
+        row.put("task_type", TASK_TYPE);
+        row.put("status", ChatTask.STATUS_PENDING);
+        row.put("retry_count", retryCount);
+        row.put("cost", COST);
+        row.put("update_time", new Date());
+        rows.put(id, row);
+    }
+
+    private void dispatch(Long id) {
+        ReflectionTestUtils.invokeMethod(chatTaskService, "dispatch", id);
+    }
+
+    private void recover() {
+        ReflectionTestUtils.invokeMethod(chatTaskService, "recover");
+    }
+
+    /**
+     * 行是否满足 where 条件, 只支持测试用到的 = 和 <
+     */
+    private static boolean matches(Map<String, Object> row, AbstractWrapper<ChatTask, ?, ?> wrapper) {
+        Matcher matcher = CONDITION.matcher(wrapper.getExpression().getNormal().getSqlSegment());
+        while (matcher.find()) {
+            Object expected = wrapper.getParamNameValuePairs().get(matcher.group(3));
+            Object actual = row.get(matcher.group(1));
+            boolean matched = "=".equals(matcher.group(2))
+                ? Objects.equals(actual, expected)
+                : actual != null && ((Date) actual).before((Date) expected);
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ChatTask toTask(Map<String, Object> row) {
+        ChatTask task = new ChatTask();
+        task.setId((Long) row.get("id"));
+        task.setUserId((Long) row.get("user_id"));
+        task.setTaskType((String) row.get("task_type"));
+        task.setStatus((String) row.get("status"));
+        task.setRetryCount((Integer) row.get("retry_count"));
+        task.setCost((Double) row.get("cost"));
+        task.setTaskResult((String) row.get("task_result"));
+        task.setErrorMsg((String) row.get("error_msg"));
+        task.setUpdateTime((Date) row.get("update_time"));
+        return task;
+    }
+
+    private static Date minutesAgo(long minutes) {
+        return new Date(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(minutes));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "等待任务状态超时");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -161,6 +161,35 @@ INSERT INTO `chat_config` VALUES (1897610056458412053, 'milvus', 'host', '127.0.
 INSERT INTO `chat_config` VALUES (1897610056458412054, 'milvus', 'port', '19530', '端口', 103, '2025-03-06 21:10:02', '1', '1', '2025-03-06 21:10:31', NULL, NULL, '0', NULL, 0);
 INSERT INTO `chat_config` VALUES (1897610056458412055, 'milvus', 'dimension', '1536', '维度', 103, '2025-03-06 21:10:02', '1', '1', '2025-03-06 21:10:31', NULL, NULL, '0', NULL, 0);
 INSERT INTO `chat_config` VALUES (1897610056458412056, 'milvus', 'collection', 'LocalKnowledge', '分类名称', 103, '2025-03-06 21:10:02', '1', '1', '2025-03-06 21:10:31', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019906, 'milvus', 'index', 'IVF_FLAT', '新建知识库的向量索引类型(IVF_FLAT/IVF_SQ8/IVF_PQ), 已有知识库保持原索引', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019907, 'milvus', 'memoryBudget', '4096', '已装载集合内存预算(MB)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019908, 'milvus', 'idleMinutes', '30', '集合空闲释放时间(分钟)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019909, 'milvus', 'preload', '10', '启动时预装载的集合数量', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019910, 'knowledge', 'importRoot', '', '服务器目录/仓库批量导入的根目录', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019911, 'knowledge', 'importParallelism', '4', '批量导入并发数', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019912, 'chat', 'httpLog', 'NONE', '模型请求日志级别(NONE/BASIC/HEADERS/BODY)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019913, 'chat', 'maxRequests', '1024', '模型请求最大并发数', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019914, 'chat', 'maxRequestsPerHost', '512', '单个模型服务地址最大并发数', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019915, 'chat', 'maxIdleConnections', '32', '模型请求连接池最大空闲连接数', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019916, 'chat', 'keepAliveMinutes', '5', '模型请求空闲连接保持时间(分钟)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019917, 'chat', 'tenantMaxStreams', '200', '每个租户同时进行的流式对话上限', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019918, 'chat', 'streamThreads', '64', '对话阻塞调用线程池大小', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019919, 'review', 'provider', 'baidu', '文本审核服务商(baidu/keyword, 逗号分隔)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019920, 'review', 'mode', 'block', '审核模式(block先审核/optimistic边输出边审核)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019921, 'review', 'keywords', '', '敏感词(换行或逗号分隔)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019922, 'review', 'patterns', '', '敏感正则(换行分隔)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019923, 'chat', 'wsModel', 'gpt-4o-mini', 'WebSocket对话使用的模型', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019924, 'chat', 'wsContextTokens', '4000', 'WebSocket对话上下文token预算', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019925, 'chat', 'messageBufferSize', '10000', '聊天消息异步写入缓冲区容量', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019926, 'chat', 'completionCache', 'false', '是否缓存确定性(temperature为0)对话的回复', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019927, 'chat', 'completionCacheMinutes', '1440', '对话回复缓存时间(分钟)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019928, 'chat', 'coalesce', 'true', '是否合并同时进行的相同确定性对话请求', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019929, 'chat', 'taskThreads', '8', '异步任务执行线程数', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019930, 'chat', 'taskTimeoutMinutes', '10', '异步任务执行超时时间(分钟), 处理器要求更长时按处理器, 超时后重新执行, 服务商可能重复收费', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019931, 'mj', 'taskPollSeconds', '3', '任务状态刷新间隔(秒)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019932, 'mj', 'taskCacheMinutes', '1440', '任务状态缓存时间(分钟)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019933, 'chat', 'pluginThreads', '8', '插件执行线程数', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
+INSERT INTO `chat_config` VALUES (1904862904897019934, 'chat', 'pluginTimeoutSeconds', '30', '插件执行超时时间(秒)', 103, '2026-10-19 10:00:00', '1', '1', '2026-10-19 10:00:00', NULL, NULL, '0', NULL, 0);
 INSERT INTO `chat_config` VALUES (1897610056458412057, 'zhipu', 'key', '', '智谱清言key', 103, '2025-03-12 00:13:12', '1', '1', '2025-03-12 00:13:10', NULL, NULL, '0', NULL, 0);
 INSERT INTO `chat_config` VALUES (1904862904897019905, 'sys', 'model', '', '系统模型', 103, '2025-03-26 19:48:02', '1', '1', '2025-03-26 19:48:02', NULL, NULL, '0', NULL, 0);
 
@@ -220,13 +249,65 @@ CREATE TABLE `chat_message`  (
   `update_by` bigint(20) NULL DEFAULT NULL COMMENT '更新者',
   `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
   `remark` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '备注',
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_chat_message_user_time`(`user_id`, `create_time`, `id`) USING BTREE,
+  INDEX `idx_chat_message_time`(`create_time`, `id`) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '聊天消息表' ROW_FORMAT = DYNAMIC;
 
 -- ----------------------------
 -- Records of chat_message
 -- ----------------------------
 
+-- ----------------------------
+-- Table structure for chat_usage_daily
+-- ----------------------------
+DROP TABLE IF EXISTS `chat_usage_daily`;
+CREATE TABLE `chat_usage_daily`  (
+  `user_id` bigint(20) NOT NULL COMMENT '用户id',
+  `usage_date` date NOT NULL COMMENT '日期',
+  `model_name` varchar(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL DEFAULT '' COMMENT '模型名称',
+  `message_count` int(11) NOT NULL DEFAULT 0 COMMENT '消息数',
+  `total_tokens` bigint(20) NOT NULL DEFAULT 0 COMMENT '累计 Tokens',
+  `total_cost` double(20, 2) NOT NULL DEFAULT 0.00 COMMENT '累计扣除金额',
+  `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`user_id`, `usage_date`, `model_name`) USING BTREE,
+  INDEX `idx_chat_usage_daily_date`(`usage_date`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '用户每日用量汇总表' ROW_FORMAT = DYNAMIC;
+
+-- ----------------------------
+-- Records of chat_usage_daily
+-- ----------------------------
+
+-- ----------------------------
+-- Table structure for chat_task
+-- ----------------------------
+DROP TABLE IF EXISTS `chat_task`;
+CREATE TABLE `chat_task`  (
+  `id` bigint(20) NOT NULL COMMENT '主键',
+  `user_id` bigint(20) NOT NULL COMMENT '用户id',
+  `task_type` varchar(32) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL COMMENT '任务类型',
+  `status` char(1) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NOT NULL DEFAULT '0' COMMENT '状态(0等待 1执行中 2成功 3失败)',
+  `prompt` varchar(1000) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '提示词',
+  `task_params` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL COMMENT '任务参数',
+  `task_result` longtext CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL COMMENT '任务结果',
+  `error_msg` varchar(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_general_ci NULL DEFAULT NULL COMMENT '失败原因',
+  `retry_count` int(11) NOT NULL DEFAULT 0 COMMENT '重试次数',
+  `cost` double(20, 2) NULL DEFAULT 0.00 COMMENT '提交时预扣的金额, 失败后退还',
+  `finish_time` datetime NULL DEFAULT NULL COMMENT '完成时间',
+  `create_dept` bigint(20) NULL DEFAULT NULL COMMENT '创建部门',
+  `create_by` bigint(20) NULL DEFAULT NULL COMMENT '创建者',
+  `create_time` datetime NULL DEFAULT NULL COMMENT '创建时间',
+  `update_by` bigint(20) NULL DEFAULT NULL COMMENT '更新者',
+  `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_chat_task_user_time`(`user_id`, `create_time`) USING BTREE,
+  INDEX `idx_chat_task_status_time`(`status`, `update_time`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '异步任务表' ROW_FORMAT = DYNAMIC;
+
+-- ----------------------------
+-- Records of chat_task
+-- ----------------------------
+
 -- ----------------------------
 -- Table structure for chat_model
 -- ----------------------------
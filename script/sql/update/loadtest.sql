@@ -0,0 +1,8 @@
+-- 压测环境数据, 配合 ruoyi-modules/ruoyi-loadtest 使用, 仅在压测环境执行
+-- 对话模型和向量化模型指向本地模拟服务(java -jar ruoyi-loadtest.jar mock --port=18080)
+INSERT INTO `ruoyi-ai`.`chat_model` (`id`, `tenant_id`, `category`, `model_name`, `model_describe`, `model_price`, `model_type`, `model_show`, `system_prompt`, `api_host`, `api_key`, `create_dept`, `create_by`, `create_time`, `update_by`, `update_time`, `remark`) VALUES (1904862904897019935, '000000', 'chat', 'loadtest-model', '压测模型(模拟服务)', 0, '2', '1', NULL, 'http://127.0.0.1:18080/', 'sk-loadtest', 103, 1, '2026-10-19 10:00:00', 1, '2026-10-19 10:00:00', '压测');
+INSERT INTO `ruoyi-ai`.`chat_model` (`id`, `tenant_id`, `category`, `model_name`, `model_describe`, `model_price`, `model_type`, `model_show`, `system_prompt`, `api_host`, `api_key`, `create_dept`, `create_by`, `create_time`, `update_by`, `update_time`, `remark`) VALUES (1904862904897019936, '000000', 'vector', 'loadtest-embedding', '压测向量化模型(模拟服务)', 0, '2', '1', NULL, 'http://127.0.0.1:18080/', 'sk-loadtest', 103, 1, '2026-10-19 10:00:00', 1, '2026-10-19 10:00:00', '压测');
+-- 使用内存向量库的知识库, 压测参数 --kid=1904862904897019937
+INSERT INTO `ruoyi-ai`.`knowledge_info` (`id`, `kid`, `uid`, `kname`, `share`, `description`, `knowledge_separator`, `question_separator`, `overlap_char`, `retrieve_limit`, `text_block_size`, `vector`, `vector_model`, `create_dept`, `create_by`, `create_time`, `update_by`, `update_time`, `remark`) VALUES (1904862904897019937, 'loadtest', 1, '压测知识库', 0, '压测使用, 向量保存在应用内存中', '', '', 50, 3, 500, 'memory', 'loadtest-embedding', 103, 1, '2026-10-19 10:00:00', 1, '2026-10-19 10:00:00', '压测');
+-- 关闭文本审核, 避免请求外部审核服务
+UPDATE `ruoyi-ai`.`chat_config` SET `config_value` = 'false' WHERE `category` = 'review' AND `config_name` = 'enabled';